@@ -39,13 +39,16 @@ public class ChunkCache
         implements CacheLoader<ChunkCache.Key, ChunkCache.Buffer>, RemovalListener<ChunkCache.Key, ChunkCache.Buffer>, CacheSize
 {
     public static final int RESERVED_POOL_SPACE_IN_MB = 32;
-    public static final long cacheSize = 1024L * 1024L * Math.max(0, DatabaseDescriptor.getFileCacheSizeInMB() - RESERVED_POOL_SPACE_IN_MB);
+    public static final long compressedCacheSize = 1024L * 1024L * DatabaseDescriptor.getFileCacheCompressedSizeInMB();
+    public static final long cacheSize = Math.max(0, 1024L * 1024L * (DatabaseDescriptor.getFileCacheSizeInMB() - RESERVED_POOL_SPACE_IN_MB) - compressedCacheSize);
     public static final boolean roundUp = DatabaseDescriptor.getFileCacheRoundUp();
 
     private static boolean enabled = cacheSize > 0;
-    public static final ChunkCache instance = enabled ? new ChunkCache() : null;
+    public static final ChunkCache instance = enabled ? new ChunkCache(cacheSize, compressedCacheSize) : null;
 
+    private final long capacity;
     private final LoadingCache<Key, Buffer> cache;
+    private final CompressedTier compressedTier;
     public final ChunkCacheMetrics metrics;
 
     static class Key
@@ -134,16 +137,19 @@ public class ChunkCache
         }
     }
 
-    private ChunkCache()
+    @VisibleForTesting
+    ChunkCache(long capacity, long compressedCapacity)
     {
+        this.capacity = capacity;
         metrics = new ChunkCacheMetrics(this);
         cache = Caffeine.newBuilder()
-                        .maximumWeight(cacheSize)
+                        .maximumWeight(capacity)
                         .executor(MoreExecutors.directExecutor())
                         .weigher((key, buffer) -> ((Buffer) buffer).buffer.capacity())
                         .removalListener(this)
                         .recordStats(() -> metrics)
                         .build(this);
+        compressedTier = compressedCapacity > 0 ? new CompressedTier(compressedCapacity) : null;
     }
 
     @Override
@@ -151,7 +157,10 @@ public class ChunkCache
     {
         ByteBuffer buffer = BufferPool.get(key.file.chunkSize(), key.file.preferredBufferType());
         assert buffer != null;
-        key.file.readChunk(key.position, buffer);
+        if (compressedTier != null && key.file instanceof CompressedChunkReader.Standard)
+            compressedTier.readChunk(key, (CompressedChunkReader.Standard) key.file, buffer);
+        else
+            key.file.readChunk(key.position, buffer);
         return new Buffer(buffer, key.position);
     }
 
@@ -164,6 +173,8 @@ public class ChunkCache
     public void close()
     {
         cache.invalidateAll();
+        if (compressedTier != null)
+            compressedTier.cache.invalidateAll();
     }
 
     public RebuffererFactory wrap(ChunkReader file)
@@ -190,16 +201,82 @@ public class ChunkCache
     public void invalidateFile(String fileName)
     {
         cache.invalidateAll(Iterables.filter(cache.asMap().keySet(), x -> x.path.equals(fileName)));
+        if (compressedTier != null)
+            compressedTier.cache.invalidateAll(Iterables.filter(compressedTier.cache.asMap().keySet(), x -> x.path.equals(fileName)));
     }
 
     @VisibleForTesting
     public void enable(boolean enabled)
     {
         ChunkCache.enabled = enabled;
-        cache.invalidateAll();
+        close();
         metrics.reset();
     }
 
+    /**
+     * Second tier of the cache, holding the compressed bytes of the chunks loaded in the first tier from compressed
+     * files. A chunk evicted from the first tier can be loaded back from there without any I/O, and as compressed
+     * chunks are smaller, this tier holds more chunks than the first one would in the same space.
+     */
+    class CompressedTier implements RemovalListener<Key, Buffer>
+    {
+        private final Cache<Key, Buffer> cache;
+
+        CompressedTier(long size)
+        {
+            cache = Caffeine.newBuilder()
+                            .maximumWeight(size)
+                            .executor(MoreExecutors.directExecutor())
+                            .weigher((key, buffer) -> ((Buffer) buffer).buffer.capacity())
+                            .removalListener(this)
+                            .build();
+        }
+
+        void readChunk(Key key, CompressedChunkReader.Standard reader, ByteBuffer uncompressed)
+        {
+            Buffer compressed = cache.getIfPresent(key);
+            if (compressed != null)
+                compressed = compressed.reference();
+
+            if (compressed != null)
+            {
+                metrics.compressedHits.mark();
+            }
+            else
+            {
+                metrics.compressedMisses.mark();
+                ByteBuffer buffer = BufferPool.get(reader.compressedChunkSize(key.position), reader.preferredBufferType());
+                try
+                {
+                    reader.readCompressedChunk(key.position, buffer);
+                }
+                catch (Throwable t)
+                {
+                    BufferPool.put(buffer);
+                    throw t;
+                }
+                // one reference for the cache, one for us
+                compressed = new Buffer(buffer, key.position).reference();
+                cache.put(key, compressed);
+            }
+
+            try
+            {
+                reader.uncompressChunk(key.position, compressed.buffer(), uncompressed);
+            }
+            finally
+            {
+                compressed.release();
+            }
+        }
+
+        @Override
+        public void onRemoval(Key key, Buffer buffer, RemovalCause cause)
+        {
+            buffer.release();
+        }
+    }
+
     // TODO: Invalidate caches for obsoleted/MOVED_START tables?
 
     /**
@@ -251,6 +328,12 @@ public class ChunkCache
             return this;
         }
 
+        @Override
+        public Rebufferer instantiateScanRebufferer()
+        {
+            return new ScanRebufferer(this, source.instantiateRebufferer());
+        }
+
         @Override
         public void close()
         {
@@ -288,10 +371,78 @@ public class ChunkCache
         }
     }
 
+    /**
+     * Rebufferer for the scans of background operations, like compactions or repair validations, which would replace
+     * the chunks used by the reads with chunks that are read once. It uses the chunks that are already cached, but
+     * reads the others in its own buffer, without adding them to the cache.
+     * Not thread-safe: one instance per reader.
+     */
+    class ScanRebufferer implements Rebufferer
+    {
+        private final CachingRebufferer cached;
+        private final Rebufferer uncached;
+
+        ScanRebufferer(CachingRebufferer cached, Rebufferer uncached)
+        {
+            this.cached = cached;
+            this.uncached = uncached;
+        }
+
+        @Override
+        public BufferHolder rebuffer(long position)
+        {
+            Buffer buf = cache.asMap().get(new Key(cached.source, position & cached.alignmentMask));
+            if (buf != null)
+                buf = buf.reference();
+
+            if (buf != null)
+                return buf;
+
+            metrics.scanMisses.mark();
+            return uncached.rebuffer(position);
+        }
+
+        @Override
+        public void closeReader()
+        {
+            uncached.closeReader();
+        }
+
+        @Override
+        public void close()
+        {
+            // The source is shared with the cache, and closed with it.
+        }
+
+        @Override
+        public ChannelProxy channel()
+        {
+            return cached.channel();
+        }
+
+        @Override
+        public long fileLength()
+        {
+            return cached.fileLength();
+        }
+
+        @Override
+        public double getCrcCheckChance()
+        {
+            return cached.getCrcCheckChance();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "ScanRebufferer:" + cached.source;
+        }
+    }
+
     @Override
     public long capacity()
     {
-        return cacheSize;
+        return capacity;
     }
 
     @Override
@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.concurrent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.exceptions.OverloadedException;
+import org.apache.cassandra.metrics.ConcurrencyLimiterMetrics;
+import org.apache.cassandra.net.Verb;
+import org.apache.cassandra.utils.MBeanWrapper;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Limits the number of tasks a stage admits at once, queued or running, to a limit that adapts to how long the tasks
+ * wait before running, compared to how long they take to run.
+ *
+ * The tasks admitted over the number of threads of the stage queue. As long as they queue for less than they run, the
+ * stage keeps up and the limit grows, so that a stage whose tasks block, on disk for instance, gets more of them in
+ * flight. Once they queue for longer than they run, the stage does not keep up anymore and the limit shrinks in
+ * proportion, down to the number of threads of the stage. The tasks over the limit are rejected with an
+ * {@link OverloadedException} right away, instead of queueing until they time out. Mutations are not failed but
+ * dropped, so that they get hinted like the mutations that time out.
+ *
+ * The limit is updated at most once per window, from the average queue and service times of the tasks that completed
+ * during that window:
+ * <pre>
+ *     gradient = clamp(TOLERANCE * service / (queue + service), MIN_GRADIENT, 1)
+ *     limit = limit * gradient + sqrt(limit)
+ * </pre>
+ * smoothed over the previous limit. The limit does not grow while less than half of it is in use, so that an idle
+ * stage does not accumulate a limit it has never been measured at.
+ */
+public class AdaptiveConcurrencyLimiter implements AdaptiveConcurrencyLimiterMBean
+{
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    public static final String MBEAN_TYPE = "org.apache.cassandra.request:type=AdaptiveConcurrencyLimiters";
+
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MIN_SAMPLES = 10;
+    // how much longer than their service time the tasks can queue before the limit shrinks
+    private static final double TOLERANCE = 2.0;
+    // how much the limit can shrink in a single window
+    private static final double MIN_GRADIENT = 0.5;
+    // the weight of a new limit over the previous one
+    private static final double SMOOTHING = 0.2;
+    private static final int DEFAULT_MAX_LIMIT_FACTOR = 16;
+
+    private static final Map<Stage, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    public final String name;
+    private final ConcurrencyLimiterMetrics metrics;
+    private final long windowNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int peakInFlight;
+    private volatile double limit;
+    private volatile int minLimit;
+    private volatile int maxLimit;
+
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder serviceNanos = new LongAdder();
+    private volatile long lastQueueNanos;
+    private volatile long lastServiceNanos;
+
+    private volatile long windowStart;
+    private static final AtomicLongFieldUpdater<AdaptiveConcurrencyLimiter> windowStartUpdater =
+        AtomicLongFieldUpdater.newUpdater(AdaptiveConcurrencyLimiter.class, "windowStart");
+
+    @VisibleForTesting
+    AdaptiveConcurrencyLimiter(String name, int minLimit, int maxLimit, long windowNanos)
+    {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.min(2 * minLimit, maxLimit);
+        this.windowNanos = windowNanos;
+        this.windowStart = System.nanoTime();
+        this.metrics = new ConcurrencyLimiterMetrics(this, "request", name);
+    }
+
+    /**
+     * @return the limiter of the stage, or {@code null} if the stage is not limited
+     */
+    public static AdaptiveConcurrencyLimiter forStage(Stage stage)
+    {
+        if (!DatabaseDescriptor.useAdaptiveConcurrencyLimit() || (stage != Stage.READ && stage != Stage.MUTATION))
+            return null;
+
+        AdaptiveConcurrencyLimiter limiter = limiters.get(stage);
+        return limiter != null ? limiter : limiters.computeIfAbsent(stage, AdaptiveConcurrencyLimiter::create);
+    }
+
+    /**
+     * @return the limiter of the stage the requests of the verb run on, or {@code null} if they are not limited
+     */
+    public static AdaptiveConcurrencyLimiter forVerb(Verb verb)
+    {
+        switch (verb)
+        {
+            case READ_REQ:
+            case RANGE_REQ:
+            case MUTATION_REQ:
+                return forStage(verb.stage);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the limiter of the stage with this pool name, if it has been created, or {@code null} otherwise
+     */
+    public static AdaptiveConcurrencyLimiter forPoolName(String poolName)
+    {
+        for (AdaptiveConcurrencyLimiter limiter : limiters.values())
+        {
+            if (limiter.name.equals(poolName))
+                return limiter;
+        }
+        return null;
+    }
+
+    private static AdaptiveConcurrencyLimiter create(Stage stage)
+    {
+        int threads = stage.getMaximumPoolSize();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(stage.jmxName, threads, threads * DEFAULT_MAX_LIMIT_FACTOR, WINDOW_NANOS);
+        MBeanWrapper.instance.registerMBean(limiter, MBEAN_TYPE + ",name=" + stage.jmxName);
+        logger.info("Limiting the concurrency of {} to between {} and {} tasks", stage.jmxName, limiter.minLimit, limiter.maxLimit);
+        return limiter;
+    }
+
+    /**
+     * Admits a task submitted to the stage, if the stage is limited.
+     *
+     * @return the task to submit to the stage instead, that releases the limit once it completes
+     * @throws OverloadedException if the stage has reached its limit
+     */
+    public static Runnable admit(Stage stage, Runnable task)
+    {
+        AdaptiveConcurrencyLimiter limiter = forStage(stage);
+        if (limiter == null)
+            return task;
+
+        if (!limiter.tryAcquire())
+            throw new OverloadedException(stage.jmxName + " has reached its concurrency limit of " + limiter.getLimit() + " tasks");
+
+        return new LimitedTask(limiter, task);
+    }
+
+    /**
+     * Admits a task submitted to the stage, if the stage is limited, or runs {@code onShed} instead of throwing if
+     * the stage has reached its limit, for the tasks that must not fail when shed.
+     *
+     * @return the task to submit to the stage instead, or {@code null} if the task has been shed
+     */
+    public static Runnable admit(Stage stage, Runnable task, Runnable onShed)
+    {
+        AdaptiveConcurrencyLimiter limiter = forStage(stage);
+        if (limiter == null)
+            return task;
+
+        if (!limiter.tryAcquire())
+        {
+            onShed.run();
+            return null;
+        }
+
+        return new LimitedTask(limiter, task);
+    }
+
+    /**
+     * Admits a task, to be released once it completes.
+     *
+     * @return whether the task was admitted
+     */
+    public boolean tryAcquire()
+    {
+        int current = inFlight.incrementAndGet();
+        if (current > limit)
+        {
+            inFlight.decrementAndGet();
+            metrics.shedTasks.mark();
+            return false;
+        }
+        if (current > peakInFlight)
+            peakInFlight = current;
+        return true;
+    }
+
+    /**
+     * Releases an admitted task, recording how long it queued and ran.
+     */
+    public void release(long queueNanos, long serviceNanos)
+    {
+        inFlight.decrementAndGet();
+
+        samples.increment();
+        this.queueNanos.add(queueNanos);
+        this.serviceNanos.add(serviceNanos);
+        metrics.queueTime.update(queueNanos, NANOSECONDS);
+        metrics.serviceTime.update(serviceNanos, NANOSECONDS);
+
+        long start = windowStart;
+        long now = System.nanoTime();
+        if (now - start >= windowNanos && samples.sum() >= MIN_SAMPLES && windowStartUpdater.compareAndSet(this, start, now))
+            updateLimit();
+    }
+
+    /**
+     * Updates the limit from the samples recorded since the last update. Only called by one thread at a time.
+     */
+    @VisibleForTesting
+    void updateLimit()
+    {
+        long count = samples.sumThenReset();
+        long queue = queueNanos.sumThenReset();
+        long service = serviceNanos.sumThenReset();
+        int peak = peakInFlight;
+        peakInFlight = inFlight.get();
+        if (count == 0)
+            return;
+
+        lastQueueNanos = queue / count;
+        lastServiceNanos = service / count;
+
+        double current = limit;
+        double gradient = queue + service == 0 ? 1.0 : TOLERANCE * service / (queue + service);
+        gradient = Math.max(MIN_GRADIENT, Math.min(1.0, gradient));
+        double newLimit = current * gradient + Math.sqrt(current);
+        if (newLimit > current && peak < current / 2)
+            return;
+
+        newLimit = current * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public int getLimit()
+    {
+        return (int) limit;
+    }
+
+    public int getInFlight()
+    {
+        return inFlight.get();
+    }
+
+    public long getShedTasks()
+    {
+        return metrics.shedTasks.getCount();
+    }
+
+    public int getMinLimit()
+    {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit)
+    {
+        if (minLimit <= 0 || minLimit > maxLimit)
+            throw new IllegalArgumentException("The minimum limit must be positive and at most the maximum limit " + maxLimit);
+        this.minLimit = minLimit;
+        limit = Math.max(minLimit, limit);
+    }
+
+    public int getMaxLimit()
+    {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit)
+    {
+        if (maxLimit < minLimit)
+            throw new IllegalArgumentException("The maximum limit must be at least the minimum limit " + minLimit);
+        this.maxLimit = maxLimit;
+        limit = Math.min(maxLimit, limit);
+    }
+
+    public long getQueueTimeMicros()
+    {
+        return NANOSECONDS.toMicros(lastQueueNanos);
+    }
+
+    public long getServiceTimeMicros()
+    {
+        return NANOSECONDS.toMicros(lastServiceNanos);
+    }
+
+    @VisibleForTesting
+    void releaseMetrics()
+    {
+        metrics.release();
+    }
+
+    /**
+     * A task admitted by a limiter, that measures how long it queued and ran, and releases the limiter once it has run.
+     */
+    private static class LimitedTask implements Runnable
+    {
+        private final AdaptiveConcurrencyLimiter limiter;
+        private final Runnable task;
+        private final long admittedAtNanos = System.nanoTime();
+
+        private LimitedTask(AdaptiveConcurrencyLimiter limiter, Runnable task)
+        {
+            this.limiter = limiter;
+            this.task = task;
+        }
+
+        public void run()
+        {
+            long startedAtNanos = System.nanoTime();
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                limiter.release(startedAtNanos - admittedAtNanos, System.nanoTime() - startedAtNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.concurrent;
+
+public interface AdaptiveConcurrencyLimiterMBean
+{
+    /**
+     * @return the number of tasks currently admitted at once, queued or running
+     */
+    public int getLimit();
+
+    /**
+     * @return the number of admitted tasks, queued or running
+     */
+    public int getInFlight();
+
+    /**
+     * @return the number of tasks rejected because the limit was reached
+     */
+    public long getShedTasks();
+
+    /**
+     * @return the lowest the limit can go, which defaults to the number of threads of the stage
+     */
+    public int getMinLimit();
+    public void setMinLimit(int minLimit);
+
+    /**
+     * @return the highest the limit can go
+     */
+    public int getMaxLimit();
+    public void setMaxLimit(int maxLimit);
+
+    /**
+     * @return the average time the tasks of the last window waited before running, in microseconds
+     */
+    public long getQueueTimeMicros();
+
+    /**
+     * @return the average time the tasks of the last window took to run, in microseconds
+     */
+    public long getServiceTimeMicros();
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.concurrent;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A set of executors, one per core, each with its own queue and threads.
+ *
+ * Each owner of tasks, such as a netty event loop, is assigned one of the executors, round-robin, on its first use,
+ * and all its tasks are then executed by that executor. The owners thus spread over the executors without contending
+ * on a single queue, and the tasks of an owner are executed by a small set of threads, that are more likely to stay
+ * on the same core.
+ */
+public class PerCoreExecutors
+{
+    private final LocalAwareExecutorService[] executors;
+    private final ConcurrentMap<Object, LocalAwareExecutorService> assignedExecutors = new ConcurrentHashMap<>();
+    private final AtomicInteger nextExecutor = new AtomicInteger();
+
+    /**
+     * @param name the name of the executors, suffixed with the index of their core
+     * @param jmxPath the JMX path of the executors
+     * @param cores the number of executors
+     * @param threadsPerCore the number of threads of each executor
+     */
+    public PerCoreExecutors(String name, String jmxPath, int cores, int threadsPerCore)
+    {
+        assert cores > 0 && threadsPerCore > 0;
+        executors = new LocalAwareExecutorService[cores];
+        for (int i = 0; i < cores; i++)
+            executors[i] = new JMXEnabledThreadPoolExecutor(threadsPerCore,
+                                                            Stage.KEEP_ALIVE_SECONDS,
+                                                            TimeUnit.SECONDS,
+                                                            new LinkedBlockingQueue<>(),
+                                                            new NamedThreadFactory(name + "-Core" + i),
+                                                            jmxPath);
+    }
+
+    /**
+     * @return the executor of the tasks of the given owner
+     */
+    public LocalAwareExecutorService executorFor(Object owner)
+    {
+        LocalAwareExecutorService executor = assignedExecutors.get(owner);
+        if (executor != null)
+            return executor;
+
+        return assignedExecutors.computeIfAbsent(owner, o -> executors[Math.floorMod(nextExecutor.getAndIncrement(), executors.length)]);
+    }
+
+    public List<LocalAwareExecutorService> executors()
+    {
+        return Arrays.asList(executors);
+    }
+
+    public void shutdown()
+    {
+        for (LocalAwareExecutorService executor : executors)
+            executor.shutdown();
+    }
+}
@@ -50,6 +50,7 @@ import static java.util.stream.Collectors.toMap;
 public enum Stage
 {
     READ              ("ReadStage",             "request",  DatabaseDescriptor::getConcurrentReaders,        DatabaseDescriptor::setConcurrentReaders,        Stage::multiThreadedLowSignalStage),
+    READ_PREFETCH     ("ReadPrefetchStage",     "request",  DatabaseDescriptor::getConcurrentSSTablePrefetches, DatabaseDescriptor::setConcurrentSSTablePrefetches, Stage::multiThreadedLowSignalStage),
     MUTATION          ("MutationStage",         "request",  DatabaseDescriptor::getConcurrentWriters,        DatabaseDescriptor::setConcurrentWriters,        Stage::multiThreadedLowSignalStage),
     COUNTER_MUTATION  ("CounterMutationStage",  "request",  DatabaseDescriptor::getConcurrentCounterWriters, DatabaseDescriptor::setConcurrentCounterWriters, Stage::multiThreadedLowSignalStage),
     VIEW_MUTATION     ("ViewMutationStage",     "request",  DatabaseDescriptor::getConcurrentViewWriters,    DatabaseDescriptor::setConcurrentViewWriters,    Stage::multiThreadedLowSignalStage),
@@ -191,6 +192,8 @@ public enum Stage
 
     static LocalAwareExecutorService multiThreadedLowSignalStage(String jmxName, String jmxType, int numThreads, LocalAwareExecutorService.MaximumPoolSizeListener onSetMaximumPoolSize)
     {
+        if (DatabaseDescriptor.useWorkStealingStages())
+            return new WorkStealingExecutor(numThreads, onSetMaximumPoolSize, jmxType, jmxName);
         return SharedExecutorPool.SHARED.newExecutor(numThreads, onSetMaximumPoolSize, Integer.MAX_VALUE, jmxType, jmxName);
     }
 
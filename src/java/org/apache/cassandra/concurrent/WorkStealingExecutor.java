@@ -0,0 +1,423 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.concurrent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.metrics.ThreadPoolMetrics;
+import org.apache.cassandra.utils.MBeanWrapper;
+import org.apache.cassandra.utils.concurrent.SimpleCondition;
+
+/**
+ * An executor with a dedicated set of workers, each with its own deque of tasks, that steal the tasks of the other
+ * workers once they have run out of their own.
+ *
+ * Unlike {@link SEPExecutor}, there is no queue or counter shared by all the producers and workers: a task submitted
+ * by a worker goes to the deque of that worker, and a task submitted by another thread is handed to an idle worker if
+ * there is one, or to a deque picked from the submitting thread otherwise. Idle workers only spin for a short while
+ * before parking, and are unparked by the producers, so that an idle executor does not consume any CPU.
+ *
+ * Shrinking the executor disables the workers above the new maximum pool size; their pending tasks are stolen by the
+ * remaining workers.
+ */
+public class WorkStealingExecutor extends AbstractLocalAwareExecutorService implements WorkStealingExecutorMBean
+{
+    private static final Logger logger = LoggerFactory.getLogger(WorkStealingExecutor.class);
+
+    // how many times an idle worker looks for tasks before parking
+    private static final int SPINS = 64;
+
+    public final String name;
+    private final String mbeanName;
+    private final NamedThreadFactory threadFactory;
+    private final MaximumPoolSizeListener maximumPoolSizeListener;
+    private final ThreadPoolMetrics metrics;
+
+    // the worker of the current thread, if it is one of ours
+    private final FastThreadLocal<Worker> currentWorker = new FastThreadLocal<>();
+
+    // never shrinks, the workers above maximumPoolSize are disabled
+    private volatile Worker[] workers = new Worker[0];
+    private volatile int maximumPoolSize;
+
+    // the workers that are parked waiting for tasks, most recently parked first; may contain workers that left
+    private final ConcurrentLinkedDeque<Worker> idleWorkers = new ConcurrentLinkedDeque<>();
+
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final LongAdder pendingTasks = new LongAdder();
+    private final LongAdder completedTasks = new LongAdder();
+
+    private volatile boolean shuttingDown = false;
+    private final AtomicInteger liveWorkers = new AtomicInteger();
+    private final SimpleCondition terminated = new SimpleCondition();
+
+    public WorkStealingExecutor(int maximumPoolSize, MaximumPoolSizeListener maximumPoolSizeListener, String jmxPath, String name)
+    {
+        this.name = name;
+        this.mbeanName = "org.apache.cassandra." + jmxPath + ":type=" + name;
+        this.threadFactory = new NamedThreadFactory(name);
+        this.maximumPoolSizeListener = maximumPoolSizeListener;
+        resize(maximumPoolSize);
+        this.metrics = new ThreadPoolMetrics(this, jmxPath, name).register();
+        MBeanWrapper.instance.registerMBean(this, mbeanName);
+    }
+
+    protected void addTask(FutureTask<?> task)
+    {
+        if (shuttingDown)
+            throw new RejectedExecutionException(name + " has shut down");
+
+        pendingTasks.increment();
+        Worker[] workers = this.workers;
+        int size = maximumPoolSize;
+
+        // keep the tasks of a worker to itself, the idle workers will steal them if needed
+        Worker worker = currentWorker.get();
+        if (worker != null)
+        {
+            worker.tasks.addLast(task);
+            unparkIdleWorker();
+            return;
+        }
+
+        Worker idle = pollIdleWorker();
+        if (idle != null)
+        {
+            idle.tasks.addLast(task);
+            LockSupport.unpark(idle.thread);
+            return;
+        }
+
+        workers[(int) (Thread.currentThread().getId() % Math.max(size, 1))].tasks.addLast(task);
+        // a worker may have parked in between
+        unparkIdleWorker();
+    }
+
+    protected void onCompletion()
+    {
+        completedTasks.increment();
+    }
+
+    private Worker pollIdleWorker()
+    {
+        Worker worker;
+        while ((worker = idleWorkers.pollFirst()) != null)
+        {
+            if (worker.parked.compareAndSet(true, false))
+            {
+                if (worker.index < maximumPoolSize)
+                    return worker;
+                // disabled by a resize, let it notice
+                LockSupport.unpark(worker.thread);
+            }
+        }
+        return null;
+    }
+
+    private void unparkIdleWorker()
+    {
+        Worker worker = pollIdleWorker();
+        if (worker != null)
+            LockSupport.unpark(worker.thread);
+    }
+
+    /**
+     * Runs the task on the calling thread if fewer tasks than the maximum pool size are running, queues it otherwise.
+     */
+    public void maybeExecuteImmediately(Runnable command)
+    {
+        FutureTask<?> task = newTaskFor(command, null);
+        while (true)
+        {
+            int active = activeTasks.get();
+            if (active >= maximumPoolSize || shuttingDown)
+            {
+                addTask(task);
+                return;
+            }
+            if (activeTasks.compareAndSet(active, active + 1))
+                break;
+        }
+
+        try
+        {
+            task.run();
+        }
+        finally
+        {
+            activeTasks.decrementAndGet();
+        }
+    }
+
+    private FutureTask<?> poll(Worker worker)
+    {
+        FutureTask<?> task = worker.tasks.pollFirst();
+        if (task != null)
+            return task;
+
+        // steal from the other workers, starting from a random one to spread the thieves
+        Worker[] workers = this.workers;
+        int start = ThreadLocalRandom.current().nextInt(workers.length);
+        for (int i = 0; i < workers.length; i++)
+        {
+            Worker victim = workers[(start + i) % workers.length];
+            if (victim != worker && (task = victim.tasks.pollFirst()) != null)
+                return task;
+        }
+        return null;
+    }
+
+    private boolean hasTasks()
+    {
+        for (Worker worker : workers)
+        {
+            if (!worker.tasks.isEmpty())
+                return true;
+        }
+        return false;
+    }
+
+    private final class Worker implements Runnable
+    {
+        final int index;
+        final ConcurrentLinkedDeque<FutureTask<?>> tasks = new ConcurrentLinkedDeque<>();
+        final AtomicBoolean parked = new AtomicBoolean();
+        final Thread thread;
+
+        Worker(int index)
+        {
+            this.index = index;
+            this.thread = threadFactory.newThread(this);
+        }
+
+        public void run()
+        {
+            currentWorker.set(this);
+            try
+            {
+                while (true)
+                {
+                    if (index >= maximumPoolSize && !shuttingDown)
+                    {
+                        // disabled by a resize, until the executor grows back
+                        LockSupport.park(this);
+                        continue;
+                    }
+
+                    FutureTask<?> task = poll(this);
+                    if (task != null && index >= maximumPoolSize && !shuttingDown)
+                    {
+                        // disabled while polling, leave the task to the enabled workers
+                        tasks.addFirst(task);
+                        unparkIdleWorker();
+                    }
+                    else if (task != null)
+                    {
+                        pendingTasks.decrement();
+                        activeTasks.incrementAndGet();
+                        try
+                        {
+                            task.run();
+                        }
+                        finally
+                        {
+                            activeTasks.decrementAndGet();
+                        }
+                    }
+                    else if (shuttingDown)
+                    {
+                        return;
+                    }
+                    else
+                    {
+                        idle();
+                    }
+                }
+            }
+            finally
+            {
+                if (liveWorkers.decrementAndGet() == 0 && shuttingDown)
+                    terminated.signalAll();
+            }
+        }
+
+        private void idle()
+        {
+            for (int i = 0; i < SPINS; i++)
+            {
+                if (hasTasks() || shuttingDown)
+                    return;
+                Thread.yield();
+            }
+
+            parked.set(true);
+            idleWorkers.addFirst(this);
+            // a producer may not have seen us in idleWorkers
+            if (hasTasks() || shuttingDown || index >= maximumPoolSize)
+            {
+                // if we were already polled, we are about to be unparked, and will just loop once more
+                parked.set(false);
+                return;
+            }
+
+            LockSupport.park(this);
+            parked.set(false);
+        }
+    }
+
+    private synchronized void resize(int newMaximumPoolSize)
+    {
+        Worker[] workers = this.workers;
+        if (newMaximumPoolSize > workers.length)
+        {
+            Worker[] grown = Arrays.copyOf(workers, newMaximumPoolSize);
+            for (int i = workers.length; i < newMaximumPoolSize; i++)
+                grown[i] = new Worker(i);
+            this.workers = grown;
+            maximumPoolSize = newMaximumPoolSize;
+            for (int i = workers.length; i < newMaximumPoolSize; i++)
+            {
+                liveWorkers.incrementAndGet();
+                grown[i].thread.start();
+            }
+        }
+        else
+        {
+            maximumPoolSize = newMaximumPoolSize;
+        }
+
+        // wake up the workers enabled again, and let the disabled ones notice it
+        for (Worker worker : this.workers)
+            LockSupport.unpark(worker.thread);
+    }
+
+    public synchronized void shutdown()
+    {
+        if (shuttingDown)
+            return;
+        shuttingDown = true;
+        for (Worker worker : workers)
+            LockSupport.unpark(worker.thread);
+        if (liveWorkers.get() == 0)
+            terminated.signalAll();
+
+        // release metrics
+        metrics.release();
+        MBeanWrapper.instance.unregisterMBean(mbeanName);
+    }
+
+    public synchronized List<Runnable> shutdownNow()
+    {
+        shutdown();
+        List<Runnable> aborted = new ArrayList<>();
+        for (Worker worker : workers)
+        {
+            FutureTask<?> task;
+            while ((task = worker.tasks.pollFirst()) != null)
+            {
+                pendingTasks.decrement();
+                aborted.add(task);
+            }
+        }
+        return aborted;
+    }
+
+    public boolean isShutdown()
+    {
+        return shuttingDown;
+    }
+
+    public boolean isTerminated()
+    {
+        return shuttingDown && terminated.isSignaled();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        terminated.await(timeout, unit);
+        return isTerminated();
+    }
+
+    @Override
+    public int getPendingTaskCount()
+    {
+        return (int) pendingTasks.sum();
+    }
+
+    @Override
+    public long getCompletedTaskCount()
+    {
+        return completedTasks.sum();
+    }
+
+    public int getActiveTaskCount()
+    {
+        return activeTasks.get();
+    }
+
+    @Override
+    public int getMaxTasksQueued()
+    {
+        return Integer.MAX_VALUE;
+    }
+
+    public int getCorePoolSize()
+    {
+        return 0;
+    }
+
+    public void setCorePoolSize(int newCorePoolSize)
+    {
+        throw new IllegalArgumentException("Cannot resize core pool size of WorkStealingExecutor");
+    }
+
+    @Override
+    public int getMaximumPoolSize()
+    {
+        return maximumPoolSize;
+    }
+
+    @Override
+    public synchronized void setMaximumPoolSize(int newMaximumPoolSize)
+    {
+        if (newMaximumPoolSize < 0)
+            throw new IllegalArgumentException("Maximum number of workers must not be negative");
+
+        int oldMaximumPoolSize = maximumPoolSize;
+        if (newMaximumPoolSize == oldMaximumPoolSize)
+            return;
+
+        resize(newMaximumPoolSize);
+        logger.info("Resized {} maximum pool size from {} to {}", name, oldMaximumPoolSize, newMaximumPoolSize);
+        maximumPoolSizeListener.onUpdateMaximumPoolSize(newMaximumPoolSize);
+    }
+}
@@ -118,6 +118,9 @@ public class Config
     public int concurrent_writes = 32;
     public int concurrent_counter_writes = 32;
     public int concurrent_materialized_view_writes = 32;
+    public int concurrent_sstable_prefetches = 0;
+    public boolean work_stealing_stages_enabled = false;
+    public boolean adaptive_concurrency_limit_enabled = false;
 
     @Deprecated
     public Integer concurrent_replicates = null;
@@ -131,8 +134,15 @@ public class Config
     @Deprecated
     public volatile Integer repair_session_max_tree_depth = null;
     public volatile Integer repair_session_space_in_mb = null;
+    public volatile boolean repair_partition_digests_enabled = false;
+    public volatile int repair_pipeline_segments = 1;
 
     public volatile boolean use_offheap_merkle_trees = true;
+    public volatile Integer offheap_merkle_trees_space_in_mb = null;
+
+    public volatile int repair_scheduler_concurrent_sessions = 1;
+    public volatile long repair_scheduler_partitions_per_session = 1048576;
+    public volatile int repair_scheduler_throughput_mb_per_sec = 0;
 
     public int storage_port = 7000;
     public int ssl_storage_port = 7001;
@@ -183,10 +193,19 @@ public class Config
     public int native_transport_port = 9042;
     public Integer native_transport_port_ssl = null;
     public int native_transport_max_threads = 128;
+    public boolean native_transport_thread_per_core = false;
     public int native_transport_max_frame_size_in_mb = 256;
     public volatile long native_transport_max_concurrent_connections = -1L;
     public volatile long native_transport_max_concurrent_connections_per_ip = -1L;
     public boolean native_transport_flush_in_batches_legacy = false;
+    public boolean native_transport_flush_adaptive = false;
+    public int native_transport_flush_max_delay_in_micros = 100;
+    public boolean native_transport_encode_rows_directly = false;
+    public volatile int native_transport_max_page_size_in_kb = 0;
+    public volatile boolean native_transport_pause_reads_while_unwritable = false;
+    public volatile int native_transport_requests_per_sec_per_ip = 0;
+    public volatile int native_transport_requests_per_sec_per_role = 0;
+    public volatile int native_transport_requests_per_sec_per_table = 0;
     public volatile boolean native_transport_allow_older_protocols = true;
     public int native_transport_frame_block_size_in_kb = 32;
     public volatile long native_transport_max_concurrent_requests_in_bytes_per_ip = -1L;
@@ -212,6 +231,8 @@ public class Config
     public volatile int batch_size_fail_threshold_in_kb = 50;
     public Integer unlogged_batch_across_partitions_warn_threshold = 10;
     public volatile Integer concurrent_compactors;
+    public volatile int compaction_subrange_parallelism = 1;
+    public volatile int compaction_subrange_min_size_in_mb = 1024;
     public volatile int compaction_throughput_mb_per_sec = 16;
     public volatile int compaction_large_partition_warning_threshold_mb = 100;
     public int min_free_space_per_drive_in_mb = 50;
@@ -244,7 +265,9 @@ public class Config
     public double commitlog_sync_group_window_in_ms = Double.NaN;
     public int commitlog_sync_period_in_ms;
     public int commitlog_segment_size_in_mb = 32;
+    public int commitlog_stripes = 1;
     public ParameterizedClass commitlog_compression;
+    public CommitLogDiskAccessMode commitlog_disk_access_mode = CommitLogDiskAccessMode.mmap;
     public FlushCompression flush_compression = FlushCompression.fast;
     public int commitlog_max_compression_buffers_in_pool = 3;
     public Integer periodic_commitlog_sync_lag_block_in_ms;
@@ -303,6 +326,7 @@ public class Config
     private static Supplier<Config> overrideLoadConfig = null;
 
     public Integer file_cache_size_in_mb;
+    public int file_cache_compressed_size_in_mb = 0;
 
     /**
      * Because of the current {@link org.apache.cassandra.utils.memory.BufferPool} slab sizes of 64 kb, we
@@ -333,6 +357,7 @@ public class Config
 
     public volatile Long index_summary_capacity_in_mb;
     public volatile int index_summary_resize_interval_in_minutes = 60;
+    public volatile boolean trie_partition_index_enabled = false;
 
     public int gc_log_threshold_in_ms = 200;
     public int gc_warn_threshold_in_ms = 1000;
@@ -550,6 +575,12 @@ public class Config
         group
     }
 
+    public enum CommitLogDiskAccessMode
+    {
+        mmap,
+        direct
+    }
+
     public enum FlushCompression
     {
         none,
@@ -443,6 +443,11 @@ public class DatabaseDescriptor
             throw new ConfigurationException("concurrent_reads must be at least 2, but was " + conf.concurrent_reads, false);
         }
 
+        if (conf.concurrent_sstable_prefetches < 0)
+        {
+            throw new ConfigurationException("concurrent_sstable_prefetches must be non-negative, but was " + conf.concurrent_sstable_prefetches, false);
+        }
+
         if (conf.concurrent_writes < 2 && System.getProperty("cassandra.test.fail_mv_locks_count", "").isEmpty())
         {
             throw new ConfigurationException("concurrent_writes must be at least 2, but was " + conf.concurrent_writes, false);
@@ -457,6 +462,11 @@ public class DatabaseDescriptor
         if (conf.file_cache_size_in_mb == null)
             conf.file_cache_size_in_mb = Math.min(512, (int) (Runtime.getRuntime().maxMemory() / (4 * 1048576)));
 
+        if (conf.file_cache_compressed_size_in_mb < 0
+            || (conf.file_cache_compressed_size_in_mb > 0 && conf.file_cache_compressed_size_in_mb >= conf.file_cache_size_in_mb))
+            throw new ConfigurationException("file_cache_compressed_size_in_mb must be non-negative and less than file_cache_size_in_mb, but was "
+                                             + conf.file_cache_compressed_size_in_mb, false);
+
         // round down for SSDs and round up for spinning disks
         if (conf.file_cache_round_up == null)
             conf.file_cache_round_up = conf.disk_optimization_strategy == Config.DiskOptimizationStrategy.spinning;
@@ -497,11 +507,39 @@ public class DatabaseDescriptor
         else if (conf.repair_session_space_in_mb > (int) (Runtime.getRuntime().maxMemory() / (4 * 1048576)))
             logger.warn("A repair_session_space_in_mb of " + conf.repair_session_space_in_mb + " megabytes is likely to cause heap pressure");
 
+        if (conf.offheap_merkle_trees_space_in_mb == null)
+            conf.offheap_merkle_trees_space_in_mb = 2 * conf.repair_session_space_in_mb;
+
+        if (conf.offheap_merkle_trees_space_in_mb < 0)
+            throw new ConfigurationException("offheap_merkle_trees_space_in_mb must be >= 0, but was " + conf.offheap_merkle_trees_space_in_mb);
+
+        if (conf.repair_pipeline_segments < 1)
+            throw new ConfigurationException("repair_pipeline_segments must be > 0, but was " + conf.repair_pipeline_segments);
+
+        if (conf.repair_scheduler_concurrent_sessions < 1)
+            throw new ConfigurationException("repair_scheduler_concurrent_sessions must be > 0, but was " + conf.repair_scheduler_concurrent_sessions);
+
+        if (conf.repair_scheduler_partitions_per_session < 1)
+            throw new ConfigurationException("repair_scheduler_partitions_per_session must be > 0, but was " + conf.repair_scheduler_partitions_per_session);
+
+        if (conf.repair_scheduler_throughput_mb_per_sec < 0)
+            throw new ConfigurationException("repair_scheduler_throughput_mb_per_sec must be >= 0, but was " + conf.repair_scheduler_throughput_mb_per_sec);
+
         checkForLowestAcceptedTimeouts(conf);
 
         checkValidForByteConversion(conf.native_transport_max_frame_size_in_mb,
                                     "native_transport_max_frame_size_in_mb", ByteUnit.MEBI_BYTES);
 
+        if (conf.native_transport_flush_max_delay_in_micros < 0)
+            throw new ConfigurationException("native_transport_flush_max_delay_in_micros must not be negative, but was " + conf.native_transport_flush_max_delay_in_micros, false);
+
+        checkValidForByteConversion(conf.native_transport_max_page_size_in_kb,
+                                    "native_transport_max_page_size_in_kb", ByteUnit.KIBI_BYTES);
+
+        checkValidRequestRate(conf.native_transport_requests_per_sec_per_ip, "native_transport_requests_per_sec_per_ip");
+        checkValidRequestRate(conf.native_transport_requests_per_sec_per_role, "native_transport_requests_per_sec_per_role");
+        checkValidRequestRate(conf.native_transport_requests_per_sec_per_table, "native_transport_requests_per_sec_per_table");
+
         checkValidForByteConversion(conf.column_index_size_in_kb,
                                     "column_index_size_in_kb", ByteUnit.KIBI_BYTES);
 
@@ -752,6 +790,9 @@ public class DatabaseDescriptor
             throw new ConfigurationException("commitlog_segment_size_in_mb must be smaller than 2048, but was "
                     + conf.commitlog_segment_size_in_mb, false);
 
+        if (conf.commitlog_stripes < 1)
+            throw new ConfigurationException("commitlog_stripes must be at least 1, but was " + conf.commitlog_stripes, false);
+
         if (conf.max_mutation_size_in_kb == null)
             conf.max_mutation_size_in_kb = conf.commitlog_segment_size_in_mb * 1024 / 2;
         else if (conf.commitlog_segment_size_in_mb * 1024 < 2 * conf.max_mutation_size_in_kb)
@@ -1713,6 +1754,42 @@ public class DatabaseDescriptor
         conf.concurrent_materialized_view_writes = concurrent_materialized_view_writes;
     }
 
+    public static int getConcurrentSSTablePrefetches()
+    {
+        return conf.concurrent_sstable_prefetches;
+    }
+
+    public static void setConcurrentSSTablePrefetches(int concurrent_sstable_prefetches)
+    {
+        if (concurrent_sstable_prefetches < 0)
+        {
+            throw new IllegalArgumentException("Concurrent sstable prefetches must be non-negative");
+        }
+        conf.concurrent_sstable_prefetches = concurrent_sstable_prefetches;
+    }
+
+    public static boolean useWorkStealingStages()
+    {
+        return conf.work_stealing_stages_enabled;
+    }
+
+    @VisibleForTesting
+    public static void setWorkStealingStages(boolean enabled)
+    {
+        conf.work_stealing_stages_enabled = enabled;
+    }
+
+    public static boolean useAdaptiveConcurrencyLimit()
+    {
+        return conf.adaptive_concurrency_limit_enabled;
+    }
+
+    @VisibleForTesting
+    public static void setAdaptiveConcurrencyLimit(boolean enabled)
+    {
+        conf.adaptive_concurrency_limit_enabled = enabled;
+    }
+
     public static int getFlushWriters()
     {
             return conf.memtable_flush_writers;
@@ -1728,6 +1805,26 @@ public class DatabaseDescriptor
         conf.concurrent_compactors = value;
     }
 
+    public static int getCompactionSubRangeParallelism()
+    {
+        return conf.compaction_subrange_parallelism;
+    }
+
+    public static void setCompactionSubRangeParallelism(int value)
+    {
+        conf.compaction_subrange_parallelism = value;
+    }
+
+    public static long getCompactionSubRangeMinSize()
+    {
+        return conf.compaction_subrange_min_size_in_mb * 1024L * 1024L;
+    }
+
+    public static void setCompactionSubRangeMinSizeInMB(int value)
+    {
+        conf.compaction_subrange_min_size_in_mb = value;
+    }
+
     public static int getCompactionThroughputMbPerSec()
     {
         return conf.compaction_throughput_mb_per_sec;
@@ -1822,6 +1919,17 @@ public class DatabaseDescriptor
         conf.commitlog_compression = compressor;
     }
 
+    public static Config.CommitLogDiskAccessMode getCommitLogDiskAccessMode()
+    {
+        return conf.commitlog_disk_access_mode;
+    }
+
+    @VisibleForTesting
+    public static void setCommitLogDiskAccessMode(Config.CommitLogDiskAccessMode mode)
+    {
+        conf.commitlog_disk_access_mode = mode;
+    }
+
     public static Config.FlushCompression getFlushCompression()
     {
         return conf.flush_compression;
@@ -1885,6 +1993,17 @@ public class DatabaseDescriptor
         conf.commitlog_segment_size_in_mb = sizeMegabytes;
     }
 
+    public static int getCommitLogStripes()
+    {
+        return conf.commitlog_stripes;
+    }
+
+    @VisibleForTesting
+    public static void setCommitLogStripes(int stripes)
+    {
+        conf.commitlog_stripes = stripes;
+    }
+
     public static String getSavedCachesLocation()
     {
         return conf.saved_caches_directory;
@@ -2097,6 +2216,17 @@ public class DatabaseDescriptor
         conf.native_transport_max_threads = max_threads;
     }
 
+    public static boolean useNativeTransportThreadPerCore()
+    {
+        return conf.native_transport_thread_per_core;
+    }
+
+    @VisibleForTesting
+    public static void setNativeTransportThreadPerCore(boolean threadPerCore)
+    {
+        conf.native_transport_thread_per_core = threadPerCore;
+    }
+
     public static int getNativeTransportMaxFrameSize()
     {
         return (int) ByteUnit.MEBI_BYTES.toBytes(conf.native_transport_max_frame_size_in_mb);
@@ -2127,6 +2257,98 @@ public class DatabaseDescriptor
         return conf.native_transport_flush_in_batches_legacy;
     }
 
+    public static boolean useNativeTransportAdaptiveFlusher()
+    {
+        return conf.native_transport_flush_adaptive;
+    }
+
+    @VisibleForTesting
+    public static void setNativeTransportAdaptiveFlusher(boolean adaptive)
+    {
+        conf.native_transport_flush_adaptive = adaptive;
+    }
+
+    /**
+     * @return the maximum time the adaptive flusher holds a response back, in microseconds
+     */
+    public static int getNativeTransportFlushMaxDelay()
+    {
+        return conf.native_transport_flush_max_delay_in_micros;
+    }
+
+    public static boolean encodeNativeTransportRowsDirectly()
+    {
+        return conf.native_transport_encode_rows_directly;
+    }
+
+    @VisibleForTesting
+    public static void setEncodeNativeTransportRowsDirectly(boolean encodeRowsDirectly)
+    {
+        conf.native_transport_encode_rows_directly = encodeRowsDirectly;
+    }
+
+    /**
+     * @return the size in bytes after which the pages of the native transport queries end, or 0 if they are only
+     * limited by their number of rows
+     */
+    public static int getNativeTransportMaxPageSize()
+    {
+        return (int) ByteUnit.KIBI_BYTES.toBytes(conf.native_transport_max_page_size_in_kb);
+    }
+
+    public static void setNativeTransportMaxPageSizeInKb(int maxPageSizeInKb)
+    {
+        checkValidForByteConversion(maxPageSizeInKb, "native_transport_max_page_size_in_kb", ByteUnit.KIBI_BYTES);
+        conf.native_transport_max_page_size_in_kb = maxPageSizeInKb;
+    }
+
+    /**
+     * @return whether the native transport stops reading the requests of a connection while its responses cannot be
+     * written as fast as they are produced
+     */
+    public static boolean pauseNativeTransportReadsWhileUnwritable()
+    {
+        return conf.native_transport_pause_reads_while_unwritable;
+    }
+
+    public static void setPauseNativeTransportReadsWhileUnwritable(boolean pauseReadsWhileUnwritable)
+    {
+        conf.native_transport_pause_reads_while_unwritable = pauseReadsWhileUnwritable;
+    }
+
+    public static int getNativeTransportRequestsPerSecPerIp()
+    {
+        return conf.native_transport_requests_per_sec_per_ip;
+    }
+
+    public static void setNativeTransportRequestsPerSecPerIp(int requestsPerSecond)
+    {
+        checkValidRequestRate(requestsPerSecond, "native_transport_requests_per_sec_per_ip");
+        conf.native_transport_requests_per_sec_per_ip = requestsPerSecond;
+    }
+
+    public static int getNativeTransportRequestsPerSecPerRole()
+    {
+        return conf.native_transport_requests_per_sec_per_role;
+    }
+
+    public static void setNativeTransportRequestsPerSecPerRole(int requestsPerSecond)
+    {
+        checkValidRequestRate(requestsPerSecond, "native_transport_requests_per_sec_per_role");
+        conf.native_transport_requests_per_sec_per_role = requestsPerSecond;
+    }
+
+    public static int getNativeTransportRequestsPerSecPerTable()
+    {
+        return conf.native_transport_requests_per_sec_per_table;
+    }
+
+    public static void setNativeTransportRequestsPerSecPerTable(int requestsPerSecond)
+    {
+        checkValidRequestRate(requestsPerSecond, "native_transport_requests_per_sec_per_table");
+        conf.native_transport_requests_per_sec_per_table = requestsPerSecond;
+    }
+
     public static boolean getNativeTransportAllowOlderProtocols()
     {
         return conf.native_transport_allow_older_protocols;
@@ -2433,6 +2655,11 @@ public class DatabaseDescriptor
         return conf.file_cache_size_in_mb;
     }
 
+    public static int getFileCacheCompressedSizeInMB()
+    {
+        return conf.file_cache_compressed_size_in_mb;
+    }
+
     public static boolean getFileCacheRoundUp()
     {
         if (conf.file_cache_round_up == null)
@@ -2656,6 +2883,17 @@ public class DatabaseDescriptor
         return conf.repair_session_space_in_mb;
     }
 
+    public static boolean isRepairPartitionDigestsEnabled()
+    {
+        return conf.repair_partition_digests_enabled;
+    }
+
+    @VisibleForTesting
+    public static void setRepairPartitionDigestsEnabled(boolean enabled)
+    {
+        conf.repair_partition_digests_enabled = enabled;
+    }
+
     public static void setRepairSessionSpaceInMegabytes(int sizeInMegabytes)
     {
         if (sizeInMegabytes < 1)
@@ -2668,6 +2906,58 @@ public class DatabaseDescriptor
         conf.repair_session_space_in_mb = sizeInMegabytes;
     }
 
+    public static int getRepairPipelineSegments()
+    {
+        return conf.repair_pipeline_segments;
+    }
+
+    public static void setRepairPipelineSegments(int segments)
+    {
+        if (segments < 1)
+            throw new ConfigurationException("Cannot set repair_pipeline_segments to " + segments + " < 1");
+
+        conf.repair_pipeline_segments = segments;
+    }
+
+    public static int getRepairSchedulerConcurrentSessions()
+    {
+        return conf.repair_scheduler_concurrent_sessions;
+    }
+
+    public static void setRepairSchedulerConcurrentSessions(int sessions)
+    {
+        if (sessions < 1)
+            throw new ConfigurationException("Cannot set repair_scheduler_concurrent_sessions to " + sessions + " < 1");
+
+        conf.repair_scheduler_concurrent_sessions = sessions;
+    }
+
+    public static long getRepairSchedulerPartitionsPerSession()
+    {
+        return conf.repair_scheduler_partitions_per_session;
+    }
+
+    public static void setRepairSchedulerPartitionsPerSession(long partitions)
+    {
+        if (partitions < 1)
+            throw new ConfigurationException("Cannot set repair_scheduler_partitions_per_session to " + partitions + " < 1");
+
+        conf.repair_scheduler_partitions_per_session = partitions;
+    }
+
+    public static int getRepairSchedulerThroughputMbPerSec()
+    {
+        return conf.repair_scheduler_throughput_mb_per_sec;
+    }
+
+    public static void setRepairSchedulerThroughputMbPerSec(int value)
+    {
+        if (value < 0)
+            throw new ConfigurationException("Cannot set repair_scheduler_throughput_mb_per_sec to " + value + " < 0");
+
+        conf.repair_scheduler_throughput_mb_per_sec = value;
+    }
+
     public static Float getMemtableCleanupThreshold()
     {
         return conf.memtable_cleanup_threshold;
@@ -2678,6 +2968,17 @@ public class DatabaseDescriptor
         return conf.index_summary_resize_interval_in_minutes;
     }
 
+    public static boolean isTriePartitionIndexEnabled()
+    {
+        return conf.trie_partition_index_enabled;
+    }
+
+    @VisibleForTesting
+    public static void setTriePartitionIndexEnabled(boolean enabled)
+    {
+        conf.trie_partition_index_enabled = enabled;
+    }
+
     public static boolean hasLargeAddressSpace()
     {
         // currently we just check if it's a 64bit arch, but any we only really care if the address space is large
@@ -3042,6 +3343,19 @@ public class DatabaseDescriptor
         conf.use_offheap_merkle_trees = value;
     }
 
+    public static int getOffheapMerkleTreesSpaceInMegabytes()
+    {
+        return conf.offheap_merkle_trees_space_in_mb;
+    }
+
+    public static void setOffheapMerkleTreesSpaceInMegabytes(int sizeInMegabytes)
+    {
+        if (sizeInMegabytes < 0)
+            throw new ConfigurationException("Cannot set offheap_merkle_trees_space_in_mb to " + sizeInMegabytes + " < 0");
+
+        conf.offheap_merkle_trees_space_in_mb = sizeInMegabytes;
+    }
+
     public static Function<CommitLog, AbstractCommitLogSegmentManager> getCommitLogSegmentMgrProvider()
     {
         return commitLogSegmentMgrProvider;
@@ -3087,6 +3401,12 @@ public class DatabaseDescriptor
     /**
      * Ensures passed in configuration value is positive and will not overflow when converted to Bytes
      */
+    private static void checkValidRequestRate(int requestsPerSecond, String name)
+    {
+        if (requestsPerSecond < 0)
+            throw new ConfigurationException(name + " must not be negative, but was " + requestsPerSecond, false);
+    }
+
     private static void checkValidForByteConversion(int val, final String name, final ByteUnit unit)
     {
         if (val < 0 || unit.willOverflowInBytes(val))
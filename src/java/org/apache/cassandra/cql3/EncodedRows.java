@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cql3;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import org.apache.cassandra.metrics.ClientRequestSizeMetrics;
+import org.apache.cassandra.net.GlobalBufferPoolAllocator;
+import org.apache.cassandra.transport.CBUtil;
+import org.apache.cassandra.utils.memory.BufferPool;
+
+/**
+ * The rows of a {@link ResultSet}, serialized in the native protocol format as they are added, into off-heap buffers
+ * from the {@link BufferPool}, instead of being kept as lists of values until the response is encoded.
+ *
+ * The buffers are handed over to the frame of the response by {@link #take()}, so that the values are not copied
+ * again, and are not retained on heap while the rest of the page is read.
+ *
+ * The rows can still be read as a list, for the consumers of the result set other than the native protocol, in which
+ * case they are decoded to heap buffers on first access, and the encoded buffers released.
+ */
+public class EncodedRows extends AbstractList<List<ByteBuffer>>
+{
+    private static final int MIN_CHUNK_SIZE = 4 << 10;
+    private static final int MAX_CHUNK_SIZE = BufferPool.NORMAL_CHUNK_SIZE;
+
+    private final int columnCount;
+    private List<ByteBuf> chunks = new ArrayList<>();
+    private int nextChunkSize;
+    private int size;
+
+    // the rows once decoded, after which the chunks are released
+    private List<List<ByteBuffer>> decoded;
+    private boolean taken;
+
+    public EncodedRows(int columnCount)
+    {
+        this.columnCount = columnCount;
+        this.nextChunkSize = initialChunkSize();
+    }
+
+    /**
+     * The size of the first buffer, from the average size of the frames sent to the clients, so that most result
+     * sets fit in a single buffer.
+     */
+    private static int initialChunkSize()
+    {
+        long average = ClientRequestSizeMetrics.averageBytesTransmittedPerFrame();
+        return (int) Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, Long.highestOneBit(Math.max(1, average)) << 1));
+    }
+
+    @Override
+    public boolean add(List<ByteBuffer> row)
+    {
+        if (decoded != null)
+            return decoded.add(row);
+        checkNotTaken();
+
+        int rowSize = 0;
+        for (int i = 0; i < columnCount; i++)
+            rowSize += CBUtil.sizeOfValue(row.get(i));
+
+        ByteBuf chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (chunk == null || chunk.writableBytes() < rowSize)
+        {
+            chunk = GlobalBufferPoolAllocator.instance.directBuffer(Math.max(nextChunkSize, rowSize));
+            chunks.add(chunk);
+            nextChunkSize = Math.min(MAX_CHUNK_SIZE, nextChunkSize << 1);
+        }
+
+        for (int i = 0; i < columnCount; i++)
+            CBUtil.writeValue(row.get(i), chunk);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    public List<ByteBuffer> get(int index)
+    {
+        return decoded().get(index);
+    }
+
+    @Override
+    public List<ByteBuffer> set(int index, List<ByteBuffer> row)
+    {
+        return decoded().set(index, row);
+    }
+
+    @Override
+    public List<ByteBuffer> remove(int index)
+    {
+        modCount++;
+        return decoded().remove(index);
+    }
+
+    public int size()
+    {
+        return decoded == null ? size : decoded.size();
+    }
+
+    /**
+     * @return {@code true} if the rows are still encoded, and have thus to be taken with {@link #take()} to be
+     * written, rather than read from the list
+     */
+    public boolean isEncoded()
+    {
+        return decoded == null;
+    }
+
+    /**
+     * @return the number of bytes of the encoded rows
+     */
+    @VisibleForTesting
+    public int encodedSize()
+    {
+        int encodedSize = 0;
+        for (ByteBuf chunk : chunks)
+            encodedSize += chunk.readableBytes();
+        return encodedSize;
+    }
+
+    /**
+     * Hands the encoded rows over to the caller, who becomes responsible for releasing them.
+     *
+     * @return the encoded rows, or {@code null} if there are none
+     */
+    public ByteBuf take()
+    {
+        assert isEncoded();
+        checkNotTaken();
+        taken = true;
+
+        List<ByteBuf> chunks = this.chunks;
+        this.chunks = null;
+        if (chunks.isEmpty())
+            return null;
+        if (chunks.size() == 1)
+            return chunks.get(0);
+
+        CompositeByteBuf composite = CBUtil.allocator.compositeDirectBuffer(chunks.size());
+        composite.addComponents(true, chunks);
+        return composite;
+    }
+
+    /**
+     * Releases the encoded rows, if they have not been taken.
+     */
+    public void release()
+    {
+        if (chunks == null)
+            return;
+        for (ByteBuf chunk : chunks)
+            chunk.release();
+        chunks = null;
+    }
+
+    private List<List<ByteBuffer>> decoded()
+    {
+        if (decoded != null)
+            return decoded;
+        checkNotTaken();
+
+        List<List<ByteBuffer>> rows = new ArrayList<>(size);
+        for (ByteBuf chunk : chunks)
+        {
+            ByteBuf rowsOfChunk = chunk.duplicate();
+            while (rowsOfChunk.isReadable())
+            {
+                List<ByteBuffer> row = new ArrayList<>(columnCount);
+                for (int i = 0; i < columnCount; i++)
+                    row.add(CBUtil.readValue(rowsOfChunk));
+                rows.add(row);
+            }
+        }
+        release();
+        decoded = rows;
+        return decoded;
+    }
+
+    private void checkNotTaken()
+    {
+        if (taken)
+            throw new IllegalStateException("The encoded rows have already been taken");
+    }
+}
@@ -165,6 +165,10 @@ public class ResultSet
         {
             ResultMetadata.codec.encode(rs.metadata, dest, version);
             dest.writeInt(rs.rows.size());
+            // the rows already encoded are appended by the frame encoder, see encodedRows
+            if (isEncoded(rs))
+                return;
+
             for (List<ByteBuffer> row : rs.rows)
             {
                 // Note that we do only want to serialize only the first columnCount values, even if the row
@@ -177,6 +181,9 @@ public class ResultSet
         public int encodedSize(ResultSet rs, ProtocolVersion version)
         {
             int size = ResultMetadata.codec.encodedSize(rs.metadata, version) + 4;
+            if (isEncoded(rs))
+                return size;
+
             for (List<ByteBuffer> row : rs.rows)
             {
                 for (int i = 0; i < rs.metadata.columnCount; i++)
@@ -184,6 +191,22 @@ public class ResultSet
             }
             return size;
         }
+
+        /**
+         * Takes the rows of the result set that have been encoded as they were added, if any, which end its encoding
+         * after what {@link #encode} writes.
+         *
+         * @return the encoded rows, owned by the caller, or {@code null} if they are not encoded
+         */
+        public ByteBuf encodedRows(ResultSet rs)
+        {
+            return isEncoded(rs) ? ((EncodedRows) rs.rows).take() : null;
+        }
+
+        private static boolean isEncoded(ResultSet rs)
+        {
+            return rs.rows instanceof EncodedRows && ((EncodedRows) rs.rows).isEncoded();
+        }
     }
 
     /**
@@ -256,7 +279,6 @@ public class ResultSet
             return flags;
         }
 
-        @VisibleForTesting
         public int getColumnCount()
         {
             return columnCount;
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.cassandra.cql3.EncodedRows;
 import org.apache.cassandra.cql3.ResultSet;
 import org.apache.cassandra.cql3.ResultSet.ResultMetadata;
 import org.apache.cassandra.cql3.selection.Selection.Selectors;
@@ -66,7 +67,19 @@ public final class ResultSetBuilder
 
     public ResultSetBuilder(ResultMetadata metadata, Selectors selectors, GroupMaker groupMaker)
     {
-        this.resultSet = new ResultSet(metadata.copy(), new ArrayList<List<ByteBuffer>>());
+        this(metadata, selectors, groupMaker, false);
+    }
+
+    /**
+     * @param encodeRows whether the rows should be encoded in the native protocol format as they are built, see
+     * {@link EncodedRows}; ignored if the result set holds values that are not sent to the client
+     */
+    public ResultSetBuilder(ResultMetadata metadata, Selectors selectors, GroupMaker groupMaker, boolean encodeRows)
+    {
+        List<List<ByteBuffer>> rows = encodeRows && metadata.valueCount() == metadata.getColumnCount()
+                                      ? new EncodedRows(metadata.valueCount())
+                                      : new ArrayList<>();
+        this.resultSet = new ResultSet(metadata.copy(), rows);
         this.selectors = selectors;
         this.groupMaker = groupMaker;
         this.timestamps = selectors.collectTimestamps() ? new long[selectors.numberOfFetchedColumns()] : null;
@@ -164,6 +177,16 @@ public final class ResultSetBuilder
         return resultSet;
     }
 
+    /**
+     * Releases the rows encoded so far, if any, when the <code>ResultSet</code> is not going to be built or sent
+     * because the query failed.
+     */
+    public void release()
+    {
+        if (resultSet.rows instanceof EncodedRows)
+            ((EncodedRows) resultSet.rows).release();
+    }
+
     private List<ByteBuffer> getOutputRow()
     {
         return selectors.getOutputRow();
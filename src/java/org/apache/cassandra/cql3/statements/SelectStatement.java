@@ -29,6 +29,7 @@ import org.slf4j.LoggerFactory;
 import org.apache.cassandra.audit.AuditLogContext;
 import org.apache.cassandra.audit.AuditLogEntryType;
 import org.apache.cassandra.auth.Permission;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.schema.ColumnMetadata;
 import org.apache.cassandra.schema.Schema;
 import org.apache.cassandra.schema.TableMetadata;
@@ -242,7 +243,9 @@ public class SelectStatement implements CQLStatement
         Selectors selectors = selection.newSelectors(options);
         ReadQuery query = getQuery(options, selectors.getColumnFilter(), nowInSec, userLimit, userPerPartitionLimit, pageSize);
 
-        if (aggregationSpec == null && (pageSize <= 0 || (query.limits().count() <= pageSize)))
+        // the queries limited by the page size in bytes go through the pager, even if their limit would fit in a page
+        int pageSizeInBytes = pageSizeInBytes(state, pageSize);
+        if (aggregationSpec == null && (pageSize <= 0 || (query.limits().count() <= pageSize && pageSizeInBytes == QueryPager.NO_PAGE_SIZE_IN_BYTES)))
             return execute(query, options, state, selectors, nowInSec, userLimit, queryStartNanoTime);
 
         QueryPager pager = getPager(query, options);
@@ -251,11 +254,38 @@ public class SelectStatement implements CQLStatement
                        options,
                        selectors,
                        pageSize,
+                       pageSizeInBytes,
                        nowInSec,
                        userLimit,
+                       encodeRows(state),
                        queryStartNanoTime);
     }
 
+    /**
+     * The size in bytes after which the pages of the query end, so that the size of a page in memory is bounded even
+     * when its rows are large. Only the paged queries of the native transport clients are limited, as the other
+     * queries expect the number of rows they asked for, and so are the aggregation queries, whose pages cannot end
+     * in the middle of a group.
+     */
+    private int pageSizeInBytes(QueryState state, int pageSize)
+    {
+        int maxPageSize = DatabaseDescriptor.getNativeTransportMaxPageSize();
+        if (maxPageSize <= 0 || pageSize <= 0 || aggregationSpec != null || state.getClientState().isInternal)
+            return QueryPager.NO_PAGE_SIZE_IN_BYTES;
+        return maxPageSize;
+    }
+
+    /**
+     * Whether the rows of the result should be encoded as they are read, which is only the case for the queries of
+     * the native transport clients, as the encoded rows are meant to be written to the connection.
+     */
+    private boolean encodeRows(QueryState state)
+    {
+        return DatabaseDescriptor.encodeNativeTransportRowsDirectly()
+               && !state.getClientState().isInternal
+               && !needsPostQueryOrdering();
+    }
+
     public ReadQuery getQuery(QueryOptions options, int nowInSec) throws RequestValidationException
     {
         Selectors selectors = selection.newSelectors(options);
@@ -293,7 +323,7 @@ public class SelectStatement implements CQLStatement
     {
         try (PartitionIterator data = query.execute(options.getConsistency(), state.getClientState(), queryStartNanoTime))
         {
-            return processResults(data, options, selectors, nowInSec, userLimit);
+            return processResults(data, options, selectors, nowInSec, userLimit, encodeRows(state));
         }
     }
 
@@ -333,7 +363,7 @@ public class SelectStatement implements CQLStatement
             return pager.state();
         }
 
-        public abstract PartitionIterator fetchPage(int pageSize, long queryStartNanoTime);
+        public abstract PartitionIterator fetchPage(int pageSize, int pageSizeInBytes, long queryStartNanoTime);
 
         public static class NormalPager extends Pager
         {
@@ -347,9 +377,9 @@ public class SelectStatement implements CQLStatement
                 this.clientState = clientState;
             }
 
-            public PartitionIterator fetchPage(int pageSize, long queryStartNanoTime)
+            public PartitionIterator fetchPage(int pageSize, int pageSizeInBytes, long queryStartNanoTime)
             {
-                return pager.fetchPage(pageSize, consistency, clientState, queryStartNanoTime);
+                return pager.fetchPage(pageSize, pageSizeInBytes, consistency, clientState, queryStartNanoTime);
             }
         }
 
@@ -363,9 +393,9 @@ public class SelectStatement implements CQLStatement
                 this.executionController = executionController;
             }
 
-            public PartitionIterator fetchPage(int pageSize, long queryStartNanoTime)
+            public PartitionIterator fetchPage(int pageSize, int pageSizeInBytes, long queryStartNanoTime)
             {
-                return pager.fetchPageInternal(pageSize, executionController);
+                return pager.fetchPageInternal(pageSize, pageSizeInBytes, executionController);
             }
         }
     }
@@ -374,8 +404,10 @@ public class SelectStatement implements CQLStatement
                                        QueryOptions options,
                                        Selectors selectors,
                                        int pageSize,
+                                       int pageSizeInBytes,
                                        int nowInSec,
                                        int userLimit,
+                                       boolean encodeRows,
                                        long queryStartNanoTime) throws RequestValidationException, RequestExecutionException
     {
         if (aggregationSpec != null)
@@ -397,9 +429,9 @@ public class SelectStatement implements CQLStatement
                   + " you must either remove the ORDER BY or the IN and sort client side, or disable paging for this query");
 
         ResultMessage.Rows msg;
-        try (PartitionIterator page = pager.fetchPage(pageSize, queryStartNanoTime))
+        try (PartitionIterator page = pager.fetchPage(pageSize, pageSizeInBytes, queryStartNanoTime))
         {
-            msg = processResults(page, options, selectors, nowInSec, userLimit);
+            msg = processResults(page, options, selectors, nowInSec, userLimit, encodeRows);
         }
 
         // Please note that the isExhausted state of the pager only gets updated when we've closed the page, so this
@@ -420,9 +452,10 @@ public class SelectStatement implements CQLStatement
                                               QueryOptions options,
                                               Selectors selectors,
                                               int nowInSec,
-                                              int userLimit) throws RequestValidationException
+                                              int userLimit,
+                                              boolean encodeRows) throws RequestValidationException
     {
-        ResultSet rset = process(partitions, options, selectors, nowInSec, userLimit);
+        ResultSet rset = process(partitions, options, selectors, nowInSec, userLimit, encodeRows);
         return new ResultMessage.Rows(rset);
     }
 
@@ -446,7 +479,7 @@ public class SelectStatement implements CQLStatement
             {
                 try (PartitionIterator data = query.executeInternal(executionController))
                 {
-                    return processResults(data, options, selectors, nowInSec, userLimit);
+                    return processResults(data, options, selectors, nowInSec, userLimit, false);
                 }
             }
 
@@ -456,8 +489,10 @@ public class SelectStatement implements CQLStatement
                            options,
                            selectors,
                            pageSize,
+                           QueryPager.NO_PAGE_SIZE_IN_BYTES,
                            nowInSec,
                            userLimit,
+                           false,
                            queryStartNanoTime);
         }
     }
@@ -476,7 +511,7 @@ public class SelectStatement implements CQLStatement
     {
         QueryOptions options = QueryOptions.DEFAULT;
         Selectors selectors = selection.newSelectors(options);
-        return process(partitions, options, selectors, nowInSec, getLimit(options));
+        return process(partitions, options, selectors, nowInSec, getLimit(options), false);
     }
 
     public String keyspace()
@@ -769,26 +804,36 @@ public class SelectStatement implements CQLStatement
                               QueryOptions options,
                               Selectors selectors,
                               int nowInSec,
-                              int userLimit) throws InvalidRequestException
+                              int userLimit,
+                              boolean encodeRows) throws InvalidRequestException
     {
         GroupMaker groupMaker = aggregationSpec == null ? null : aggregationSpec.newGroupMaker();
-        ResultSetBuilder result = new ResultSetBuilder(getResultMetadata(), selectors, groupMaker);
+        ResultSetBuilder result = new ResultSetBuilder(getResultMetadata(), selectors, groupMaker, encodeRows);
 
-        while (partitions.hasNext())
+        try
         {
-            try (RowIterator partition = partitions.next())
+            while (partitions.hasNext())
             {
-                processPartition(partition, options, result, nowInSec);
+                try (RowIterator partition = partitions.next())
+                {
+                    processPartition(partition, options, result, nowInSec);
+                }
             }
-        }
 
-        ResultSet cqlRows = result.build();
+            ResultSet cqlRows = result.build();
 
-        orderResults(cqlRows);
+            orderResults(cqlRows);
 
-        cqlRows.trim(userLimit);
+            cqlRows.trim(userLimit);
 
-        return cqlRows;
+            return cqlRows;
+        }
+        catch (Throwable t)
+        {
+            // the rows encoded before the failure are never going to be sent
+            result.release();
+            throw t;
+        }
     }
 
     public static ByteBuffer[] getComponents(TableMetadata metadata, DecoratedKey dk)
@@ -30,6 +30,8 @@ import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.serializers.MarshalException;
 
 import org.apache.cassandra.io.sstable.IndexInfo;
+import org.apache.cassandra.utils.bytecomparable.ByteComparable;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 /**
  * A comparator of clustering prefixes (or more generally of {@link Clusterable}}.
@@ -177,6 +179,49 @@ public class ClusteringComparator implements Comparator<Clusterable>
         return clusteringTypes.get(i).compare(v1, v2);
     }
 
+    /**
+     * Produce a byte-comparable representation of the given prefix, whose unsigned lexicographic order is the same
+     * as the order defined by {@link #compare(ClusteringPrefix, ClusteringPrefix)}.
+     * <p>
+     * Each component is preceded by a separator (see {@link AbstractType#asComparableComponent}), and the prefix is
+     * terminated by a byte that depends on its kind: bounds that sort before the clusterings they prefix end with
+     * a byte that is smaller than any separator, the ones that sort after them with a byte that is greater. The
+     * static clustering, which is empty, sorts right after the empty bottom bound.
+     */
+    public ByteComparable asByteComparable(ClusteringPrefix prefix)
+    {
+        return () ->
+        {
+            int size = prefix.size();
+            ByteSource[] sources = new ByteSource[size + 1];
+            for (int i = 0; i < size; i++)
+                sources[i] = subtype(i).asComparableComponent(prefix.get(i));
+            sources[size] = ByteSource.oneByte(terminator(prefix.kind()));
+            return ByteSource.concat(sources);
+        };
+    }
+
+    private static int terminator(ClusteringPrefix.Kind kind)
+    {
+        switch (kind)
+        {
+            case EXCL_END_BOUND:
+            case INCL_START_BOUND:
+            case EXCL_END_INCL_START_BOUNDARY:
+                return ByteSource.LT_NEXT_COMPONENT;
+            case STATIC_CLUSTERING:
+                return ByteSource.LT_NEXT_COMPONENT + 1;
+            case CLUSTERING:
+                return ByteSource.TERMINATOR;
+            case INCL_END_EXCL_START_BOUNDARY:
+            case INCL_END_BOUND:
+            case EXCL_START_BOUND:
+                return ByteSource.GT_NEXT_COMPONENT;
+            default:
+                throw new AssertionError();
+        }
+    }
+
     /**
      * Returns whether this clustering comparator is compatible with the provided one,
      * that is if the provided one can be safely replaced by this new one.
@@ -258,7 +258,9 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
 
         // If the CF comparator has changed, we need to change the memtable,
         // because the old one still aliases the previous comparator.
-        if (data.getView().getCurrentMemtable().initialComparator != metadata().comparator)
+        // Likewise if the memtable implementation has changed.
+        Memtable current = data.getView().getCurrentMemtable();
+        if (current.initialComparator != metadata().comparator || !current.initialParams.equals(metadata().params.memtable))
             switchMemtable();
     }
 
@@ -400,7 +402,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         // Create Memtable only on online
         Memtable initialMemtable = null;
         if (DatabaseDescriptor.isDaemonInitialized())
-            initialMemtable = new Memtable(new AtomicReference<>(CommitLog.instance.getCurrentPosition()), this);
+            initialMemtable = createMemtable(new AtomicReference<>(CommitLog.instance.getCurrentPosition()));
         data = new Tracker(initialMemtable, loadSSTables);
 
         // scan for sstables corresponding to this cf and load them
@@ -806,6 +808,14 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         return waitForFlushes();
     }
 
+    /**
+     * Creates a new memtable of the implementation configured for this table.
+     */
+    public Memtable createMemtable(AtomicReference<CommitLogPosition> commitLogLowerBound)
+    {
+        return metadata().params.memtable.factory().create(commitLogLowerBound, this);
+    }
+
     /*
      * switchMemtable puts Memtable.getSortedContents on the writer executor.  When the write is complete,
      * we turn the writer into an SSTableReader and add it to ssTables where it is available for reads.
@@ -999,7 +1009,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                 // switch all memtables, regardless of their dirty status, setting the barrier
                 // so that we can reach a coordinated decision about cleanliness once they
                 // are no longer possible to be modified
-                Memtable newMemtable = new Memtable(commitLogUpperBound, cfs);
+                Memtable newMemtable = cfs.createMemtable(commitLogUpperBound);
                 Memtable oldMemtable = cfs.data.switchMemtable(truncate, newMemtable);
                 oldMemtable.setDiscarding(writeBarrier, commitLogUpperBound);
                 memtables.add(oldMemtable);
@@ -2083,7 +2093,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
             {
                 public Void call()
                 {
-                    cfs.data.reset(new Memtable(new AtomicReference<>(CommitLogPosition.NONE), cfs));
+                    cfs.data.reset(cfs.createMemtable(new AtomicReference<>(CommitLogPosition.NONE)));
                     return null;
                 }
             }, true, false);
@@ -2453,6 +2463,22 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         return totalPartitions > 0 ? (int) (totalRows / totalPartitions) : 0;
     }
 
+    /**
+     * @return the mean size in bytes of the rows of the live sstables, or 0 if they have no rows
+     */
+    public double getMeanRowSize()
+    {
+        long totalBytes = 0;
+        long totalRows = 0;
+        for (SSTableReader sstable : getSSTables(SSTableSet.CANONICAL))
+        {
+            totalBytes += sstable.uncompressedLength();
+            totalRows += sstable.getTotalRows();
+        }
+
+        return totalRows > 0 ? totalBytes * 1.0 / totalRows : 0;
+    }
+
     public long estimateKeys()
     {
         long n = 0;
@@ -26,6 +26,7 @@ import org.apache.cassandra.dht.Token.KeyBound;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.MurmurHash;
 import org.apache.cassandra.utils.IFilter.FilterKey;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 /**
  * Represents a decorated key, handy for certain operations
@@ -97,6 +98,15 @@ public abstract class DecoratedKey implements PartitionPosition, FilterKey
         return cmp == 0 ? ByteBufferUtil.compareUnsigned(key, otherKey.getKey()) : cmp;
     }
 
+    /**
+     * The byte-comparable form of the key: the token followed by the escaped key bytes, in this order so that the
+     * result sorts like {@link #compareTo}.
+     */
+    public ByteSource asComparableBytes()
+    {
+        return ByteSource.withTerminator(ByteSource.TERMINATOR, getToken().asComparableBytes(), ByteSource.of(getKey()));
+    }
+
     public IPartitioner getPartitioner()
     {
         return getToken().getPartitioner();
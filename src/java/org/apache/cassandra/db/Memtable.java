@@ -20,8 +20,8 @@ package org.apache.cassandra.db;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
@@ -30,6 +30,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.schema.ColumnMetadata;
+import org.apache.cassandra.schema.MemtableParams;
 import org.apache.cassandra.schema.TableMetadata;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.schema.SchemaConstants;
@@ -43,16 +44,13 @@ import org.apache.cassandra.db.partitions.*;
 import org.apache.cassandra.db.rows.EncodingStats;
 import org.apache.cassandra.db.rows.UnfilteredRowIterator;
 import org.apache.cassandra.dht.*;
-import org.apache.cassandra.dht.Murmur3Partitioner.LongToken;
 import org.apache.cassandra.index.transactions.UpdateTransaction;
 import org.apache.cassandra.io.sstable.Descriptor;
 import org.apache.cassandra.io.sstable.SSTableMultiWriter;
 import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
 import org.apache.cassandra.io.util.FileUtils;
 import org.apache.cassandra.service.ActiveRepairService;
-import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.FBUtilities;
-import org.apache.cassandra.utils.ObjectSizes;
 import org.apache.cassandra.utils.concurrent.OpOrder;
 import org.apache.cassandra.utils.memory.HeapPool;
 import org.apache.cassandra.utils.memory.MemtableAllocator;
@@ -60,10 +58,22 @@ import org.apache.cassandra.utils.memory.MemtablePool;
 import org.apache.cassandra.utils.memory.NativePool;
 import org.apache.cassandra.utils.memory.SlabPool;
 
-public class Memtable implements Comparable<Memtable>
+/**
+ * The in-memory part of a table, where writes are buffered until they are flushed to an sstable.
+ * <p>
+ * This class implements the life-cycle, commit log bounds, accounting and flushing shared by all memtables;
+ * subclasses provide the structure indexing the partitions. The implementation used by a table is selected by its
+ * {@link MemtableParams}, which provide the {@link Factory} creating the memtables.
+ */
+public abstract class Memtable implements Comparable<Memtable>
 {
     private static final Logger logger = LoggerFactory.getLogger(Memtable.class);
 
+    public interface Factory
+    {
+        Memtable create(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs);
+    }
+
     public static final MemtablePool MEMORY_POOL = createMemtableAllocatorPool();
 
     private static MemtablePool createMemtableAllocatorPool()
@@ -85,11 +95,10 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
-    private static final int ROW_OVERHEAD_HEAP_SIZE = estimateRowOverhead(Integer.parseInt(System.getProperty("cassandra.memtable_row_overhead_computation_step", "100000")));
-
     private final MemtableAllocator allocator;
-    private final AtomicLong liveDataSize = new AtomicLong(0);
-    private final AtomicLong currentOperations = new AtomicLong(0);
+    // updated by every write, hence adders rather than atomics to avoid contention between concurrent writers
+    protected final LongAdder liveDataSize = new LongAdder();
+    private final LongAdder currentOperations = new LongAdder();
 
     // the write barrier for directing writes to this memtable or the next during a switch
     private volatile OpOrder.Barrier writeBarrier;
@@ -115,10 +124,6 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
-    // We index the memtable by PartitionPosition only for the purpose of being able
-    // to select key range using Token.KeyBound. However put() ensures that we
-    // actually only store DecoratedKey.
-    private final ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> partitions = new ConcurrentSkipListMap<>();
     public final ColumnFamilyStore cfs;
     private final long creationNano = System.nanoTime();
 
@@ -130,25 +135,30 @@ public class Memtable implements Comparable<Memtable>
     // memtable was created with the new or old comparator.
     public final ClusteringComparator initialComparator;
 
+    // Record the memtable parameters of the table at the creation of the memtable, to know if the memtable has to
+    // be switched when they are altered.
+    public final MemtableParams initialParams;
+
     private final ColumnsCollector columnsCollector;
     private final StatsCollector statsCollector = new StatsCollector();
 
-    // only to be used by init(), to setup the very first memtable for the cfs
-    public Memtable(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs)
+    protected Memtable(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs)
     {
         this.cfs = cfs;
         this.commitLogLowerBound = commitLogLowerBound;
         this.allocator = MEMORY_POOL.newAllocator();
         this.initialComparator = cfs.metadata().comparator;
+        this.initialParams = cfs.metadata().params.memtable;
         this.cfs.scheduleFlush();
         this.columnsCollector = new ColumnsCollector(cfs.metadata().regularAndStaticColumns());
     }
 
     // ONLY to be used for testing, to create a mock Memtable
     @VisibleForTesting
-    public Memtable(TableMetadata metadata)
+    protected Memtable(TableMetadata metadata)
     {
         this.initialComparator = metadata.comparator;
+        this.initialParams = metadata.params.memtable;
         this.cfs = null;
         this.allocator = null;
         this.columnsCollector = new ColumnsCollector(metadata.regularAndStaticColumns());
@@ -161,12 +171,12 @@ public class Memtable implements Comparable<Memtable>
 
     public long getLiveDataSize()
     {
-        return liveDataSize.get();
+        return liveDataSize.sum();
     }
 
     public long getOperations()
     {
-        return currentOperations.get();
+        return currentOperations.sum();
     }
 
     @VisibleForTesting
@@ -228,10 +238,7 @@ public class Memtable implements Comparable<Memtable>
         return allocator.isLive();
     }
 
-    public boolean isClean()
-    {
-        return partitions.isEmpty();
-    }
+    public abstract boolean isClean();
 
     public boolean mayContainDataBefore(CommitLogPosition position)
     {
@@ -255,39 +262,36 @@ public class Memtable implements Comparable<Memtable>
      */
     long put(PartitionUpdate update, UpdateTransaction indexer, OpOrder.Group opGroup)
     {
-        AtomicBTreePartition previous = partitions.get(update.partitionKey());
-
-        long initialSize = 0;
-        if (previous == null)
-        {
-            final DecoratedKey cloneKey = allocator.clone(update.partitionKey(), opGroup);
-            AtomicBTreePartition empty = new AtomicBTreePartition(cfs.metadata, cloneKey, allocator);
-            // We'll add the columns later. This avoids wasting works if we get beaten in the putIfAbsent
-            previous = partitions.putIfAbsent(cloneKey, empty);
-            if (previous == null)
-            {
-                previous = empty;
-                // allocate the row overhead after the fact; this saves over allocating and having to free after, but
-                // means we can overshoot our declared limit.
-                int overhead = (int) (cloneKey.getToken().getHeapSize() + ROW_OVERHEAD_HEAP_SIZE);
-                allocator.onHeap().allocate(overhead, opGroup);
-                initialSize = 8;
-            }
-        }
+        AtomicBTreePartition partition = getOrCreatePartition(update.partitionKey(), opGroup);
 
-        long[] pair = previous.addAllWithSizeDelta(update, opGroup, indexer);
-        minTimestamp = Math.min(minTimestamp, previous.stats().minTimestamp);
-        liveDataSize.addAndGet(initialSize + pair[0]);
+        long[] pair = partition.addAllWithSizeDelta(update, opGroup, indexer);
+        // only write the shared field when it changes, to not invalidate the cache line of other writers
+        long partitionMinTimestamp = partition.stats().minTimestamp;
+        if (partitionMinTimestamp < minTimestamp)
+            minTimestamp = partitionMinTimestamp;
+        liveDataSize.add(pair[0]);
         columnsCollector.update(update.columns());
         statsCollector.update(update.stats());
-        currentOperations.addAndGet(update.operationCount());
+        currentOperations.add(update.operationCount());
         return pair[1];
     }
 
-    public int partitionCount()
-    {
-        return partitions.size();
-    }
+    /**
+     * Returns the partition for the given key, adding a new empty partition (and accounting for its overhead in the
+     * allocator and in {@link #liveDataSize}) if there is none yet.
+     */
+    protected abstract AtomicBTreePartition getOrCreatePartition(DecoratedKey key, OpOrder.Group opGroup);
+
+    /**
+     * Returns the partitions whose keys are within the given positions, in key order. A null position stands for
+     * an unbounded side of the range.
+     */
+    protected abstract Iterator<AtomicBTreePartition> partitionIterator(PartitionPosition left,
+                                                                        boolean includeLeft,
+                                                                        PartitionPosition right,
+                                                                        boolean includeRight);
+
+    public abstract int partitionCount();
 
     public List<FlushRunnable> flushRunnables(LifecycleTransaction txn)
     {
@@ -331,7 +335,7 @@ public class Memtable implements Comparable<Memtable>
     public String toString()
     {
         return String.format("Memtable-%s@%s(%s serialized bytes, %s ops, %.0f%%/%.0f%% of on/off-heap limit)",
-                             cfs.name, hashCode(), FBUtilities.prettyPrintMemory(liveDataSize.get()), currentOperations,
+                             cfs.name, hashCode(), FBUtilities.prettyPrintMemory(liveDataSize.sum()), currentOperations.sum(),
                              100 * allocator.onHeap().ownershipRatio(), 100 * allocator.offHeap().ownershipRatio());
     }
 
@@ -345,40 +349,29 @@ public class Memtable implements Comparable<Memtable>
         boolean isBound = keyRange instanceof Bounds;
         boolean includeStart = isBound || keyRange instanceof IncludingExcludingBounds;
         boolean includeStop = isBound || keyRange instanceof Range;
-        Map<PartitionPosition, AtomicBTreePartition> subMap;
-        if (startIsMin)
-            subMap = stopIsMin ? partitions : partitions.headMap(keyRange.right, includeStop);
-        else
-            subMap = stopIsMin
-                   ? partitions.tailMap(keyRange.left, includeStart)
-                   : partitions.subMap(keyRange.left, includeStart, keyRange.right, includeStop);
+        PartitionPosition left = startIsMin ? null : keyRange.left;
+        PartitionPosition right = stopIsMin ? null : keyRange.right;
 
         int minLocalDeletionTime = Integer.MAX_VALUE;
 
         // avoid iterating over the memtable if we purge all tombstones
         if (cfs.getCompactionStrategyManager().onlyPurgeRepairedTombstones())
-            minLocalDeletionTime = findMinLocalDeletionTime(subMap.entrySet().iterator());
+            minLocalDeletionTime = findMinLocalDeletionTime(partitionIterator(left, includeStart, right, includeStop));
 
-        final Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iter = subMap.entrySet().iterator();
+        final Iterator<AtomicBTreePartition> iter = partitionIterator(left, includeStart, right, includeStop);
 
         return new MemtableUnfilteredPartitionIterator(cfs, iter, minLocalDeletionTime, columnFilter, dataRange);
     }
 
-    private int findMinLocalDeletionTime(Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iterator)
+    private int findMinLocalDeletionTime(Iterator<AtomicBTreePartition> iterator)
     {
         int minLocalDeletionTime = Integer.MAX_VALUE;
         while (iterator.hasNext())
-        {
-            Map.Entry<PartitionPosition, AtomicBTreePartition> entry = iterator.next();
-            minLocalDeletionTime = Math.min(minLocalDeletionTime, entry.getValue().stats().minLocalDeletionTime);
-        }
+            minLocalDeletionTime = Math.min(minLocalDeletionTime, iterator.next().stats().minLocalDeletionTime);
         return minLocalDeletionTime;
     }
 
-    public Partition getPartition(DecoratedKey key)
-    {
-        return partitions.get(key);
-    }
+    public abstract Partition getPartition(DecoratedKey key);
 
     public long getMinTimestamp()
     {
@@ -391,13 +384,13 @@ public class Memtable implements Comparable<Memtable>
     @VisibleForTesting
     public void makeUnflushable()
     {
-        liveDataSize.addAndGet(1L * 1024 * 1024 * 1024 * 1024 * 1024);
+        liveDataSize.add(1L * 1024 * 1024 * 1024 * 1024 * 1024);
     }
 
     class FlushRunnable implements Callable<SSTableMultiWriter>
     {
         private final long estimatedSize;
-        private final ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> toFlush;
+        private final int partitionCount;
 
         private final boolean isBatchLogTable;
         private final SSTableMultiWriter writer;
@@ -406,31 +399,23 @@ public class Memtable implements Comparable<Memtable>
         private final PartitionPosition from;
         private final PartitionPosition to;
 
-        FlushRunnable(PartitionPosition from, PartitionPosition to, Directories.DataDirectory flushLocation, LifecycleTransaction txn)
-        {
-            this(partitions.subMap(from, to), flushLocation, from, to, txn);
-        }
-
         FlushRunnable(LifecycleTransaction txn)
         {
-            this(partitions, null, null, null, txn);
+            this(null, null, null, txn);
         }
 
-        FlushRunnable(ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> toFlush, Directories.DataDirectory flushLocation, PartitionPosition from, PartitionPosition to, LifecycleTransaction txn)
+        FlushRunnable(PartitionPosition from, PartitionPosition to, Directories.DataDirectory flushLocation, LifecycleTransaction txn)
         {
-            this.toFlush = toFlush;
             this.from = from;
             this.to = to;
             long keySize = 0;
-            for (PartitionPosition key : toFlush.keySet())
-            {
-                //  make sure we don't write non-sensical keys
-                assert key instanceof DecoratedKey;
-                keySize += ((DecoratedKey) key).getKey().remaining();
-            }
+            int partitionCount = 0;
+            for (Iterator<AtomicBTreePartition> iter = toFlush(); iter.hasNext(); ++partitionCount)
+                keySize += iter.next().partitionKey().getKey().remaining();
+            this.partitionCount = partitionCount;
             estimatedSize = (long) ((keySize // index entries
                                     + keySize // keys in data file
-                                    + liveDataSize.get()) // data
+                                    + liveDataSize.sum()) // data
                                     * 1.2); // bloom filter and row index overhead
 
             this.isBatchLogTable = cfs.name.equals(SystemKeyspace.BATCHES) && cfs.keyspace.getName().equals(SchemaConstants.SYSTEM_KEYSPACE_NAME);
@@ -447,6 +432,11 @@ public class Memtable implements Comparable<Memtable>
             return cfs.getDirectories();
         }
 
+        private Iterator<AtomicBTreePartition> toFlush()
+        {
+            return partitionIterator(from, true, to, false);
+        }
+
         private void writeSortedContents()
         {
             logger.info("Writing {}, flushed range = ({}, {}]", Memtable.this.toString(), from, to);
@@ -455,8 +445,9 @@ public class Memtable implements Comparable<Memtable>
             int heavilyContendedRowCount = 0;
             // (we can't clear out the map as-we-go to free up memory,
             //  since the memtable is being used for queries in the "pending flush" category)
-            for (AtomicBTreePartition partition : toFlush.values())
+            for (Iterator<AtomicBTreePartition> partitions = toFlush(); partitions.hasNext(); )
             {
+                AtomicBTreePartition partition = partitions.next();
                 // Each batchlog partition is a separate entry in the log. And for an entry, we only do 2
                 // operations: 1) we insert the entry and 2) we delete it. Further, BL data is strictly local,
                 // we don't need to preserve tombstones for repair. So if both operation are in this
@@ -486,7 +477,7 @@ public class Memtable implements Comparable<Memtable>
             cfs.metric.bytesFlushed.inc(bytesFlushed);
 
             if (heavilyContendedRowCount > 0)
-                logger.trace("High update contention in {}/{} partitions of {} ", heavilyContendedRowCount, toFlush.size(), Memtable.this);
+                logger.trace("High update contention in {}/{} partitions of {} ", heavilyContendedRowCount, partitionCount, Memtable.this);
         }
 
         public SSTableMultiWriter createFlushWriter(LifecycleTransaction txn,
@@ -498,7 +489,7 @@ public class Memtable implements Comparable<Memtable>
                     .commitLogIntervals(new IntervalSet<>(commitLogLowerBound.get(), commitLogUpperBound.get()));
 
             return cfs.createSSTableMultiWriter(descriptor,
-                                                toFlush.size(),
+                                                partitionCount,
                                                 ActiveRepairService.UNREPAIRED_SSTABLE,
                                                 ActiveRepairService.NO_PENDING_REPAIR,
                                                 false,
@@ -514,36 +505,15 @@ public class Memtable implements Comparable<Memtable>
         }
     }
 
-    private static int estimateRowOverhead(final int count)
-    {
-        // calculate row overhead
-        try (final OpOrder.Group group = new OpOrder().start())
-        {
-            int rowOverhead;
-            MemtableAllocator allocator = MEMORY_POOL.newAllocator();
-            ConcurrentNavigableMap<PartitionPosition, Object> partitions = new ConcurrentSkipListMap<>();
-            final Object val = new Object();
-            for (int i = 0 ; i < count ; i++)
-                partitions.put(allocator.clone(new BufferDecoratedKey(new LongToken(i), ByteBufferUtil.EMPTY_BYTE_BUFFER), group), val);
-            double avgSize = ObjectSizes.measureDeep(partitions) / (double) count;
-            rowOverhead = (int) ((avgSize - Math.floor(avgSize)) < 0.05 ? Math.floor(avgSize) : Math.ceil(avgSize));
-            rowOverhead -= ObjectSizes.measureDeep(new LongToken(0));
-            rowOverhead += AtomicBTreePartition.EMPTY_SIZE;
-            allocator.setDiscarding();
-            allocator.setDiscarded();
-            return rowOverhead;
-        }
-    }
-
     public static class MemtableUnfilteredPartitionIterator extends AbstractUnfilteredPartitionIterator
     {
         private final ColumnFamilyStore cfs;
-        private final Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iter;
+        private final Iterator<AtomicBTreePartition> iter;
         private final int minLocalDeletionTime;
         private final ColumnFilter columnFilter;
         private final DataRange dataRange;
 
-        public MemtableUnfilteredPartitionIterator(ColumnFamilyStore cfs, Iterator<Map.Entry<PartitionPosition, AtomicBTreePartition>> iter, int minLocalDeletionTime, ColumnFilter columnFilter, DataRange dataRange)
+        public MemtableUnfilteredPartitionIterator(ColumnFamilyStore cfs, Iterator<AtomicBTreePartition> iter, int minLocalDeletionTime, ColumnFilter columnFilter, DataRange dataRange)
         {
             this.cfs = cfs;
             this.iter = iter;
@@ -569,13 +539,10 @@ public class Memtable implements Comparable<Memtable>
 
         public UnfilteredRowIterator next()
         {
-            Map.Entry<PartitionPosition, AtomicBTreePartition> entry = iter.next();
-            // Actual stored key should be true DecoratedKey
-            assert entry.getKey() instanceof DecoratedKey;
-            DecoratedKey key = (DecoratedKey)entry.getKey();
-            ClusteringIndexFilter filter = dataRange.clusteringIndexFilter(key);
+            AtomicBTreePartition partition = iter.next();
+            ClusteringIndexFilter filter = dataRange.clusteringIndexFilter(partition.partitionKey());
 
-            return filter.getUnfilteredRowIterator(columnFilter, entry.getValue());
+            return filter.getUnfilteredRowIterator(columnFilter, partition);
         }
     }
 
@@ -633,7 +600,8 @@ public class Memtable implements Comparable<Memtable>
             {
                 EncodingStats current = stats.get();
                 EncodingStats updated = current.mergeWith(newStats);
-                if (stats.compareAndSet(current, updated))
+                // most updates don't change the stats, don't contend on them if so
+                if (updated.equals(current) || stats.compareAndSet(current, updated))
                     return;
             }
         }
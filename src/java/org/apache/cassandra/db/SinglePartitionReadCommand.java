@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Sets;
@@ -59,6 +61,13 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
 {
     protected static final SelectionDeserializer selectionDeserializer = new Deserializer();
 
+    /**
+     * The maximum number of prefetches queued or running per prefetch thread. Prefetches further down the queue
+     * would mostly run after their read has already read the sstable itself, so they are not issued.
+     */
+    private static final int MAX_QUEUED_PREFETCHES_PER_THREAD = 4;
+    private static final AtomicInteger queuedPrefetches = new AtomicInteger();
+
     private final DecoratedKey partitionKey;
     private final ClusteringIndexFilter clusteringIndexFilter;
 
@@ -588,6 +597,7 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
         long minTimestamp = Long.MAX_VALUE;
         long mostRecentPartitionTombstone = Long.MIN_VALUE;
         InputCollector<UnfilteredRowIterator> inputCollector = iteratorsForPartition(view);
+        Map<SSTableReader, Prefetch> prefetches = Collections.emptyMap();
         try
         {
             for (Memtable memtable : view.memtables)
@@ -622,6 +632,7 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
              * elimination in one pass, and minimize the number of sstables for which we read a partition tombstone.
             */
             Collections.sort(view.sstables, SSTableReader.maxTimestampDescending);
+            prefetches = prefetch(view.sstables, mostRecentPartitionTombstone);
             int nonIntersectingSSTables = 0;
             int includedDueToTombstones = 0;
 
@@ -640,9 +651,15 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
                 if (sstable.getMaxTimestamp() < mostRecentPartitionTombstone)
                 {
                     inputCollector.markInconclusive();
+                    cancel(prefetches.values());
                     break;
                 }
 
+                // the partition deletion of sstables that may have tombstones is read right away below, so there
+                // is no point in prefetching them anymore
+                if (sstable.mayHaveTombstones())
+                    cancel(prefetches.get(sstable));
+
                 if (shouldInclude(sstable))
                 {
                     if (!sstable.isRepaired())
@@ -696,6 +713,7 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
         }
         catch (RuntimeException | Error e)
         {
+            cancel(prefetches.values());
             try
             {
                 inputCollector.close();
@@ -719,6 +737,98 @@ public class SinglePartitionReadCommand extends ReadCommand implements SinglePar
         return clusteringIndexFilter().shouldInclude(sstable);
     }
 
+    /**
+     * Issues the reads of the partition in the given sstables, which must be sorted by descending max timestamp, on
+     * the read prefetch stage, so that they are done concurrently rather than one after the other while merging.
+     * Only the sstables the read will open are prefetched: the ones not shadowed by the given partition tombstone
+     * that may contain the partition according to their bloom filter, and that may contain queried rows or a
+     * partition deletion. The first of them is skipped as the calling thread is about to read it, and no prefetch
+     * is issued once {@link #MAX_QUEUED_PREFETCHES_PER_THREAD} per thread are queued.
+     *
+     * @return the issued prefetches, by sstable
+     */
+    private Map<SSTableReader, Prefetch> prefetch(List<SSTableReader> sstables, long mostRecentPartitionTombstone)
+    {
+        int maxQueuedPrefetches = DatabaseDescriptor.getConcurrentSSTablePrefetches() * MAX_QUEUED_PREFETCHES_PER_THREAD;
+        if (sstables.size() < 2 || maxQueuedPrefetches == 0)
+            return Collections.emptyMap();
+
+        DecoratedKey key = partitionKey();
+        Map<SSTableReader, Prefetch> prefetches = new HashMap<>();
+        boolean first = true;
+        for (SSTableReader sstable : sstables)
+        {
+            if (sstable.getMaxTimestamp() < mostRecentPartitionTombstone)
+                break;
+
+            if (!(shouldInclude(sstable) || sstable.mayHaveTombstones()) || !sstable.getBloomFilter().isPresent(key))
+                continue;
+
+            if (first)
+            {
+                first = false;
+                continue;
+            }
+
+            if (queuedPrefetches.incrementAndGet() > maxQueuedPrefetches)
+            {
+                queuedPrefetches.decrementAndGet();
+                break;
+            }
+
+            Prefetch prefetch = new Prefetch(sstable, key);
+            prefetches.put(sstable, prefetch);
+            Stage.READ_PREFETCH.execute(prefetch);
+        }
+        return prefetches;
+    }
+
+    private static void cancel(Collection<Prefetch> prefetches)
+    {
+        for (Prefetch prefetch : prefetches)
+            prefetch.cancel();
+    }
+
+    private static void cancel(Prefetch prefetch)
+    {
+        if (prefetch != null)
+            prefetch.cancel();
+    }
+
+    /**
+     * A prefetch of a partition in a sstable, which is dropped if it is cancelled before it starts.
+     */
+    private static final class Prefetch implements Runnable
+    {
+        private final SSTableReader sstable;
+        private final DecoratedKey key;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Prefetch(SSTableReader sstable, DecoratedKey key)
+        {
+            this.sstable = sstable;
+            this.key = key;
+        }
+
+        public void run()
+        {
+            try
+            {
+                if (claimed.compareAndSet(false, true))
+                    sstable.prefetch(key);
+            }
+            finally
+            {
+                queuedPrefetches.decrementAndGet();
+            }
+        }
+
+        private void cancel()
+        {
+            claimed.set(true);
+        }
+    }
+
     private UnfilteredRowIteratorWithLowerBound makeIterator(ColumnFamilyStore cfs,
                                                              SSTableReader sstable,
                                                              SSTableReadsListener listener)
@@ -1313,6 +1313,21 @@ public final class SystemKeyspace
         new Mutation(update.build()).apply();
     }
 
+    /**
+     * Reads the partition count and mean partition size estimates of a table from table_estimates
+     */
+    public static Map<Range<Token>, Pair<Long, Long>> getTableEstimates(String keyspace, String table, String type, IPartitioner partitioner)
+    {
+        String cql = "SELECT range_start, range_end, partitions_count, mean_partition_size FROM system.%s WHERE keyspace_name = ? AND table_name = ? AND range_type = ?";
+        Map<Range<Token>, Pair<Long, Long>> estimates = new HashMap<>();
+        for (UntypedResultSet.Row row : executeInternal(format(cql, TABLE_ESTIMATES), keyspace, table, type))
+        {
+            Token left = partitioner.getTokenFactory().fromString(row.getString("range_start"));
+            Token right = partitioner.getTokenFactory().fromString(row.getString("range_end"));
+            estimates.put(new Range<>(left, right), Pair.create(row.getLong("partitions_count"), row.getLong("mean_partition_size")));
+        }
+        return estimates;
+    }
 
     /**
      * Clears size estimates for a table (on table drop)
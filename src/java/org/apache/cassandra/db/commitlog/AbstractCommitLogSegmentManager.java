@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BooleanSupplier;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -30,6 +31,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.nicoulaj.compilecommand.annotations.DontInline;
+import org.apache.cassandra.concurrent.DebuggableThreadPoolExecutor;
 import org.apache.cassandra.concurrent.NamedThreadFactory;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.io.util.FileUtils;
@@ -62,15 +64,26 @@ public abstract class AbstractCommitLogSegmentManager
 
     private final WaitQueue segmentPrepared = new WaitQueue();
 
-    /** Active segments, containing unflushed data. The tail of this queue is the one we allocate writes to */
+    /**
+     * Active segments, containing unflushed data, in the order of their ids. The segments we allocate writes to are
+     * the most recent ones.
+     */
     private final ConcurrentLinkedQueue<CommitLogSegment> activeSegments = new ConcurrentLinkedQueue<>();
 
     /**
-     * The segment we are currently allocating commit log records to.
+     * The segments we are currently allocating commit log records to, one per stripe (see commitlog_stripes). Writing
+     * threads allocate from the segment of their stripe, so that with several stripes they contend on, and wait for
+     * the sync of, several segments.
      *
-     * Written by advanceAllocatingFrom which synchronizes on 'this'. Volatile to ensure reads get current value.
+     * Written by advanceAllocatingFrom which synchronizes on 'this'.
      */
-    private volatile CommitLogSegment allocatingFrom = null;
+    private volatile AtomicReferenceArray<CommitLogSegment> allocatingFrom = new AtomicReferenceArray<>(1);
+
+    // the id of the segment each stripe allocated from before its current one, guarded by 'this'
+    private long[] previousIds = new long[1];
+
+    // syncs the segments of the different stripes in parallel, null with a single stripe
+    private volatile ExecutorService stripeSyncExecutor;
 
     final String storageDirectory;
 
@@ -86,7 +99,9 @@ public abstract class AbstractCommitLogSegmentManager
     Thread managerThread;
     protected final CommitLog commitLog;
     private volatile boolean shutdown;
-    private final BooleanSupplier managerThreadWaitCondition = () -> (availableSegment == null && !atSegmentBufferLimit()) || shutdown;
+    private final BooleanSupplier managerThreadWaitCondition = () -> (availableSegment == null && !atSegmentBufferLimit())
+                                                                     || (availableSegment != null && hasSharedStripes())
+                                                                     || shutdown;
     private final WaitQueue managerThreadWaitQueue = new WaitQueue();
 
     private static final SimpleCachedBufferPool bufferPool =
@@ -109,19 +124,25 @@ public abstract class AbstractCommitLogSegmentManager
                 {
                     try
                     {
-                        assert availableSegment == null;
-                        logger.trace("No segments in reserve; creating a fresh one");
-                        availableSegment = createSegment();
-                        if (shutdown)
+                        // We may have been woken up with a segment in reserve to spread the stripes below.
+                        if (availableSegment == null)
                         {
-                            // If shutdown() started and finished during segment creation, we are now left with a
-                            // segment that no one will consume. Discard it.
-                            discardAvailableSegment();
-                            return;
+                            logger.trace("No segments in reserve; creating a fresh one");
+                            availableSegment = createSegment();
+                            if (shutdown)
+                            {
+                                // If shutdown() started and finished during segment creation, we are now left with a
+                                // segment that no one will consume. Discard it.
+                                discardAvailableSegment();
+                                return;
+                            }
+
+                            segmentPrepared.signalAll();
+                            Thread.yield();
                         }
 
-                        segmentPrepared.signalAll();
-                        Thread.yield();
+                        // Give its own segment back to a stripe moved to the segment of another one by a flush.
+                        spreadSharedStripe();
 
                         if (availableSegment == null && !atSegmentBufferLimit())
                             // Writing threads need another segment now.
@@ -149,12 +170,20 @@ public abstract class AbstractCommitLogSegmentManager
             }
         };
 
+        int stripes = DatabaseDescriptor.getCommitLogStripes();
+        allocatingFrom = new AtomicReferenceArray<>(stripes);
+        previousIds = new long[stripes];
+        Arrays.fill(previousIds, -1);
+        if (stripes > 1)
+            stripeSyncExecutor = DebuggableThreadPoolExecutor.createWithFixedPoolSize("COMMIT-LOG-STRIPE-SYNC", stripes);
+
         shutdown = false;
         managerThread = NamedThreadFactory.createThread(runnable, "COMMIT-LOG-ALLOCATOR");
         managerThread.start();
 
-        // for simplicity, ensure the first segment is allocated before continuing
-        advanceAllocatingFrom(null);
+        // for simplicity, ensure the first segment of each stripe is allocated before continuing
+        for (int stripe = 0; stripe < stripes; stripe++)
+            advanceAllocatingFrom(stripe, null);
     }
 
     private boolean atSegmentBufferLimit()
@@ -171,7 +200,7 @@ public abstract class AbstractCommitLogSegmentManager
             List<CommitLogSegment> segmentsToRecycle = new ArrayList<>();
             for (CommitLogSegment segment : activeSegments)
             {
-                if (segment == allocatingFrom)
+                if (isAllocatingFrom(segment))
                     break;
                 flushingSize += segment.onDiskSize();
                 segmentsToRecycle.add(segment);
@@ -204,63 +233,120 @@ public abstract class AbstractCommitLogSegmentManager
     abstract void discard(CommitLogSegment segment, boolean delete);
 
     /**
-     * Advances the allocatingFrom pointer to the next prepared segment, but only if it is currently the segment provided.
+     * Advances the allocatingFrom pointer of the stripe of the current thread to the next prepared segment, but only
+     * if it is currently the segment provided.
      *
      * WARNING: Assumes segment management thread always succeeds in allocating a new segment or kills the JVM.
      */
-    @DontInline
     void advanceAllocatingFrom(CommitLogSegment old)
     {
-        while (true)
-        {
-            synchronized (this)
-            {
-                // do this in a critical section so we can maintain the order of segment construction when moving to allocatingFrom/activeSegments
-                if (allocatingFrom != old)
-                    return;
+        advanceAllocatingFrom(stripe(), old);
+    }
 
-                // If a segment is ready, take it now, otherwise wait for the management thread to construct it.
-                if (availableSegment != null)
-                {
-                    // Success! Change allocatingFrom and activeSegments (which must be kept in order) before leaving
-                    // the critical section.
-                    activeSegments.add(allocatingFrom = availableSegment);
-                    availableSegment = null;
-                    break;
-                }
-            }
+    @DontInline
+    private void advanceAllocatingFrom(int stripe, CommitLogSegment old)
+    {
+        while (!tryAdvanceAllocatingFrom(stripe, old))
+            awaitAvailableSegment(stripe, old);
+    }
+
+    /**
+     * Advances the allocatingFrom pointer of the given stripe like {@link #advanceAllocatingFrom(CommitLogSegment)},
+     * without waiting for the management thread to prepare a segment.
+     *
+     * @return false if no segment was ready, true otherwise
+     */
+    private boolean tryAdvanceAllocatingFrom(int stripe, CommitLogSegment old)
+    {
+        boolean retire;
+        synchronized (this)
+        {
+            // do this in a critical section so we can maintain the order of segment construction when moving to allocatingFrom/activeSegments
+            if (allocatingFrom.get(stripe) != old)
+                return true;
+
+            // If a segment is ready, take it now, otherwise wait for the management thread to construct it.
+            if (availableSegment == null)
+                return false;
+
+            // Success! Change allocatingFrom and activeSegments (which must be kept in order) before leaving
+            // the critical section.
+            if (old != null)
+                previousIds[stripe] = old.id;
+            allocatingFrom.set(stripe, availableSegment);
+            activeSegments.add(availableSegment);
+            availableSegment = null;
 
-            awaitAvailableSegment(old);
+            // the old segment may still be allocated from by other stripes, see getCurrentPosition()
+            retire = old != null && !isAllocatingFrom(old);
         }
 
         // Signal the management thread to prepare a new segment.
         wakeManager();
 
-        if (old != null)
-        {
-            // Now we can run the user defined command just after switching to the new commit log.
-            // (Do this here instead of in the recycle call so we can get a head start on the archive.)
-            commitLog.archiver.maybeArchive(old);
-
-            // ensure we don't continue to use the old file; not strictly necessary, but cleaner to enforce it
-            old.discardUnusedTail();
-        }
+        if (retire)
+            retire(old);
 
         // request that the CL be synced out-of-band, as we've finished a segment
         commitLog.requestExtraSync();
+        return true;
+    }
+
+    private void retire(CommitLogSegment segment)
+    {
+        // Now we can run the user defined command just after switching to the new commit log.
+        // (Do this here instead of in the recycle call so we can get a head start on the archive.)
+        commitLog.archiver.maybeArchive(segment);
+
+        // ensure we don't continue to use the old file; not strictly necessary, but cleaner to enforce it
+        segment.discardUnusedTail();
+    }
+
+    /**
+     * Moves one of the stripes moved to the segment of another stripe by getCurrentPosition(), if any, to the prepared
+     * segment. Only called by the management thread.
+     */
+    private void spreadSharedStripe()
+    {
+        int stripe = sharedStripe();
+        if (stripe >= 0)
+            tryAdvanceAllocatingFrom(stripe, allocatingFrom.get(stripe));
+    }
+
+    private boolean hasSharedStripes()
+    {
+        return sharedStripe() >= 0;
+    }
+
+    /**
+     * @return a stripe allocating from the same segment as a stripe before it, or -1 if there is none
+     */
+    private int sharedStripe()
+    {
+        AtomicReferenceArray<CommitLogSegment> allocatingFrom = this.allocatingFrom;
+        for (int stripe = 1; stripe < allocatingFrom.length(); stripe++)
+        {
+            CommitLogSegment segment = allocatingFrom.get(stripe);
+            for (int other = 0; segment != null && other < stripe; other++)
+            {
+                if (allocatingFrom.get(other) == segment)
+                    return stripe;
+            }
+        }
+        return -1;
     }
 
-    void awaitAvailableSegment(CommitLogSegment currentAllocatingFrom)
+    private void awaitAvailableSegment(int stripe, CommitLogSegment currentAllocatingFrom)
     {
         do
         {
             WaitQueue.Signal prepared = segmentPrepared.register(commitLog.metrics.waitingOnSegmentAllocation.time());
-            if (availableSegment == null && allocatingFrom == currentAllocatingFrom)
+            if (availableSegment == null && allocatingFrom.get(stripe) == currentAllocatingFrom)
                 prepared.awaitUninterruptibly();
             else
                 prepared.cancel();
         }
-        while (availableSegment == null && allocatingFrom == currentAllocatingFrom);
+        while (availableSegment == null && allocatingFrom.get(stripe) == currentAllocatingFrom);
     }
 
     /**
@@ -272,10 +358,17 @@ public abstract class AbstractCommitLogSegmentManager
     {
         List<CommitLogSegment> segmentsToRecycle = new ArrayList<>(activeSegments);
         CommitLogSegment last = segmentsToRecycle.get(segmentsToRecycle.size() - 1);
-        advanceAllocatingFrom(last);
+        for (int stripe = 0; stripe < allocatingFrom.length(); stripe++)
+        {
+            CommitLogSegment segment = allocatingFrom.get(stripe);
+            if (segment.id > last.id)
+                continue;
 
-        // wait for the commit log modifications
-        last.waitForModifications();
+            advanceAllocatingFrom(stripe, segment);
+
+            // wait for the commit log modifications
+            segment.waitForModifications();
+        }
 
         // make sure the writes have materialized inside of the memtables by waiting for all outstanding writes
         // to complete
@@ -436,7 +529,8 @@ public abstract class AbstractCommitLogSegmentManager
     {
         if (availableSegment == null && !atSegmentBufferLimit())
         {
-            awaitAvailableSegment(allocatingFrom);
+            int stripe = stripe();
+            awaitAvailableSegment(stripe, allocatingFrom.get(stripe));
         }
     }
 
@@ -492,6 +586,13 @@ public abstract class AbstractCommitLogSegmentManager
             managerThread = null;
         }
 
+        if (stripeSyncExecutor != null)
+        {
+            stripeSyncExecutor.shutdown();
+            stripeSyncExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            stripeSyncExecutor = null;
+        }
+
         for (CommitLogSegment segment : activeSegments)
             segment.close();
 
@@ -508,11 +609,67 @@ public abstract class AbstractCommitLogSegmentManager
     }
 
     /**
-     * @return the current CommitLogPosition of the active segment we're allocating from
+     * @return the current CommitLogPosition of the active segment we're allocating from. All the records allocated
+     * before this call are at or before the returned position, and all the records allocated after it are after it.
      */
     CommitLogPosition getCurrentPosition()
     {
-        return allocatingFrom.getCurrentCommitLogPosition();
+        if (allocatingFrom.length() == 1)
+            return allocatingFrom.get(0).getCurrentCommitLogPosition();
+
+        // Positions are ordered by segment first, so the position of a record allocated later in the segment of a
+        // stripe that is older than the one of another stripe would be before the current position of the latter.
+        // Memtables rely on the above guarantee to pick the commit log boundaries of a flush, so we return the
+        // position of the oldest stripe segment that follows all the allocated records, and move the stripes with
+        // older segments to that segment. We can't wait for new segments here, as this is also called by the
+        // management thread when flushing to reclaim space, which gives the moved stripes new segments afterwards.
+        List<CommitLogSegment> retired = new ArrayList<>();
+        boolean moved = false;
+        CommitLogSegment reference = null;
+        synchronized (this)
+        {
+            CommitLogPosition lastAllocated = CommitLogPosition.NONE;
+            for (int stripe = 0; stripe < allocatingFrom.length(); stripe++)
+            {
+                CommitLogSegment segment = allocatingFrom.get(stripe);
+                CommitLogPosition position;
+                if (!segment.isEmpty())
+                    position = segment.getCurrentCommitLogPosition();
+                else if (!isAllocatingFrom(previousIds[stripe]))
+                    position = new CommitLogPosition(previousIds[stripe], Integer.MAX_VALUE);
+                else
+                    continue; // the records of the previous segment are accounted for by the stripes still using it
+
+                if (position.compareTo(lastAllocated) > 0)
+                    lastAllocated = position;
+            }
+
+            for (int stripe = 0; stripe < allocatingFrom.length(); stripe++)
+            {
+                CommitLogSegment segment = allocatingFrom.get(stripe);
+                if (segment.getCurrentCommitLogPosition().compareTo(lastAllocated) >= 0 && (reference == null || segment.id < reference.id))
+                    reference = segment;
+            }
+
+            for (int stripe = 0; stripe < allocatingFrom.length(); stripe++)
+            {
+                CommitLogSegment segment = allocatingFrom.get(stripe);
+                if (segment.id >= reference.id)
+                    continue;
+
+                previousIds[stripe] = segment.id;
+                allocatingFrom.set(stripe, reference);
+                moved = true;
+                if (!isAllocatingFrom(segment))
+                    retired.add(segment);
+            }
+        }
+
+        for (CommitLogSegment segment : retired)
+            retire(segment);
+        if (moved)
+            wakeManager();
+        return reference.getCurrentCommitLogPosition();
     }
 
     /**
@@ -522,14 +679,60 @@ public abstract class AbstractCommitLogSegmentManager
      */
     public void sync(boolean flush) throws IOException
     {
-        CommitLogSegment current = allocatingFrom;
+        long current = newestAllocatingFromId();
+        ExecutorService executor = stripeSyncExecutor;
+        List<Future<?>> syncs = executor == null ? null : new ArrayList<>();
         for (CommitLogSegment segment : getActiveSegments())
         {
             // Do not sync segments that became active after sync started.
-            if (segment.id > current.id)
-                return;
-            segment.sync(flush);
+            if (segment.id > current)
+                break;
+
+            if (executor == null)
+                segment.sync(flush);
+            else
+                syncs.add(executor.submit(() -> segment.sync(flush)));
+        }
+
+        if (syncs != null)
+            FBUtilities.waitOnFutures(syncs);
+    }
+
+    private long newestAllocatingFromId()
+    {
+        long newest = Long.MIN_VALUE;
+        for (int stripe = 0; stripe < allocatingFrom.length(); stripe++)
+            newest = Math.max(newest, allocatingFrom.get(stripe).id);
+        return newest;
+    }
+
+    private boolean isAllocatingFrom(CommitLogSegment segment)
+    {
+        for (int stripe = 0; stripe < allocatingFrom.length(); stripe++)
+        {
+            if (allocatingFrom.get(stripe) == segment)
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isAllocatingFrom(long segmentId)
+    {
+        for (int stripe = 0; stripe < allocatingFrom.length(); stripe++)
+        {
+            if (allocatingFrom.get(stripe).id == segmentId)
+                return true;
         }
+        return false;
+    }
+
+    /**
+     * @return the stripe the current thread allocates its commit log records from
+     */
+    private int stripe()
+    {
+        int stripes = allocatingFrom.length();
+        return stripes == 1 ? 0 : (int) (Thread.currentThread().getId() % stripes);
     }
 
     /**
@@ -554,10 +757,10 @@ public abstract class AbstractCommitLogSegmentManager
         wakeManager();
     }
 
-    /** Read-only access to current segment for subclasses. */
+    /** Read-only access to the current segment of the stripe of the current thread for subclasses. */
     CommitLogSegment allocatingFrom()
     {
-        return allocatingFrom;
+        return allocatingFrom.get(stripe());
     }
 }
 
@@ -28,6 +28,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.config.ParameterizedClass;
 import org.apache.cassandra.db.*;
@@ -67,7 +68,7 @@ public class CommitLog implements CommitLogMBean
     final public AbstractCommitLogSegmentManager segmentManager;
 
     public final CommitLogArchiver archiver;
-    final CommitLogMetrics metrics;
+    public final CommitLogMetrics metrics;
     final AbstractCommitLogService executor;
 
     volatile Configuration configuration;
@@ -91,7 +92,8 @@ public class CommitLog implements CommitLogMBean
     CommitLog(CommitLogArchiver archiver, Function<CommitLog, AbstractCommitLogSegmentManager> segmentManagerProvider)
     {
         this.configuration = new Configuration(DatabaseDescriptor.getCommitLogCompression(),
-                                               DatabaseDescriptor.getEncryptionContext());
+                                               DatabaseDescriptor.getEncryptionContext(),
+                                               DatabaseDescriptor.getCommitLogDiskAccessMode());
         DatabaseDescriptor.createAllDirectories();
 
         this.archiver = archiver;
@@ -445,7 +447,8 @@ public class CommitLog implements CommitLogMBean
     synchronized public void resetConfiguration()
     {
         configuration = new Configuration(DatabaseDescriptor.getCommitLogCompression(),
-                                          DatabaseDescriptor.getEncryptionContext());
+                                          DatabaseDescriptor.getEncryptionContext(),
+                                          DatabaseDescriptor.getCommitLogDiskAccessMode());
     }
 
     /**
@@ -520,11 +523,22 @@ public class CommitLog implements CommitLogMBean
          */
         private EncryptionContext encryptionContext;
 
+        /**
+         * How the uncompressed and unencrypted segments are written out.
+         */
+        private final Config.CommitLogDiskAccessMode diskAccessMode;
+
         public Configuration(ParameterizedClass compressorClass, EncryptionContext encryptionContext)
+        {
+            this(compressorClass, encryptionContext, Config.CommitLogDiskAccessMode.mmap);
+        }
+
+        public Configuration(ParameterizedClass compressorClass, EncryptionContext encryptionContext, Config.CommitLogDiskAccessMode diskAccessMode)
         {
             this.compressorClass = compressorClass;
             this.compressor = compressorClass != null ? CompressionParams.createCompressor(compressorClass) : null;
             this.encryptionContext = encryptionContext;
+            this.diskAccessMode = diskAccessMode;
         }
 
         /**
@@ -545,6 +559,16 @@ public class CommitLog implements CommitLogMBean
             return encryptionContext.isEnabled();
         }
 
+        /**
+         * Checks if the segments must be written with direct I/O. Compressed and encrypted segments are always
+         * written from their own buffers, so the disk access mode only applies to the plain ones.
+         * @return <code>true</code> if the segments must be written with direct I/O, <code>false</code> otherwise.
+         */
+        public boolean useDirectIO()
+        {
+            return diskAccessMode == Config.CommitLogDiskAccessMode.direct && !useCompression() && !useEncryption();
+        }
+
         /**
          * Returns the compressor used to compress the segments.
          * @return the compressor used to compress the segments
@@ -71,6 +71,15 @@ public class CommitLogReader
         return invalidMutations.entrySet();
     }
 
+    /**
+     * Adds the mutations from unknown tables skipped by another reader to the ones skipped by this one.
+     */
+    void mergeInvalidMutations(CommitLogReader other)
+    {
+        for (Map.Entry<TableId, AtomicInteger> entry : other.getInvalidMutations())
+            invalidMutations.computeIfAbsent(entry.getKey(), id -> new AtomicInteger()).addAndGet(entry.getValue().get());
+    }
+
     /**
      * Reads all passed in files with no minimum, no start, and no mutation limit.
      */
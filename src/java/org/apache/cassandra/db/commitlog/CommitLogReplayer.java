@@ -21,7 +21,9 @@ package org.apache.cassandra.db.commitlog;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -36,6 +38,7 @@ import org.cliffc.high_scale_lib.NonBlockingHashSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.concurrent.DebuggableThreadPoolExecutor;
 import org.apache.cassandra.concurrent.Stage;
 import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.DatabaseDescriptor;
@@ -47,6 +50,7 @@ import org.apache.cassandra.db.partitions.PartitionUpdate;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.util.FileUtils;
 import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.metrics.CommitLogMetrics;
 import org.apache.cassandra.schema.Schema;
 import org.apache.cassandra.schema.SchemaConstants;
 import org.apache.cassandra.schema.TableId;
@@ -63,6 +67,14 @@ public class CommitLogReplayer implements CommitLogReadHandler
     static final String IGNORE_REPLAY_ERRORS_PROPERTY = Config.PROPERTY_PREFIX + "commitlog.ignorereplayerrors";
     private static final Logger logger = LoggerFactory.getLogger(CommitLogReplayer.class);
     private static final int MAX_OUTSTANDING_REPLAY_COUNT = Integer.getInteger(Config.PROPERTY_PREFIX + "commitlog_max_outstanding_replay_count", 1024);
+    /**
+     * The number of commit log segments decoded concurrently on replay. With the default of 1 the segments are read
+     * sequentially by the replaying thread and their mutations are applied unordered on the mutation stage; with more,
+     * the decoded mutations are applied by single threaded lanes so that the mutations of a partition are applied in
+     * the order they were written.
+     */
+    @VisibleForTesting
+    public static int REPLAY_PARALLELISM = Integer.getInteger(Config.PROPERTY_PREFIX + "commitlog_replay_parallelism", 1);
 
     private final Set<Keyspace> keyspacesReplayed;
     private final Queue<Future<Integer>> futures;
@@ -76,6 +88,10 @@ public class CommitLogReplayer implements CommitLogReadHandler
 
     private final ReplayFilter replayFilter;
     private final CommitLogArchiver archiver;
+    private final CommitLogMetrics metrics;
+
+    // The executors applying the mutations of a parallel replay, each partition key being mapped to a single lane
+    private ExecutorService[] lanes;
 
     @VisibleForTesting
     protected boolean sawCDCMutation;
@@ -96,6 +112,7 @@ public class CommitLogReplayer implements CommitLogReadHandler
         this.globalPosition = globalPosition;
         this.replayFilter = replayFilter;
         this.archiver = commitLog.archiver;
+        this.metrics = commitLog.metrics;
         this.commitLogReader = new CommitLogReader();
     }
 
@@ -148,17 +165,141 @@ public class CommitLogReplayer implements CommitLogReadHandler
     public void replayFiles(File[] clogs) throws IOException
     {
         List<File> filteredLogs = CommitLogReader.filterCommitLogFiles(clogs);
+        if (REPLAY_PARALLELISM > 1 && filteredLogs.size() > 1)
+        {
+            replayFilesInParallel(filteredLogs);
+            return;
+        }
+
         int i = 0;
         for (File file: filteredLogs)
         {
             i++;
             sawCDCMutation = false;
+            long start = System.nanoTime();
             commitLogReader.readCommitLogSegment(this, file, globalPosition, i == filteredLogs.size());
+            metrics.segmentReplayTime.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             if (sawCDCMutation)
                 handleCDCReplayCompletion(file);
         }
     }
 
+    /**
+     * Decodes up to {@link #REPLAY_PARALLELISM} segments concurrently, each with its own reader, while this thread
+     * submits their mutations segment after segment, in the order of the files. The mutations are applied by lanes
+     * picked by partition key, so the mutations of a partition are applied in the order they were written, as they are
+     * when replaying the segments sequentially.
+     */
+    private void replayFilesInParallel(List<File> files) throws IOException
+    {
+        logger.info("Replaying {} commit log segments with a parallelism of {}", files.size(), REPLAY_PARALLELISM);
+        lanes = new ExecutorService[DatabaseDescriptor.getConcurrentWriters()];
+        for (int i = 0; i < lanes.length; i++)
+            lanes[i] = DebuggableThreadPoolExecutor.createWithFixedPoolSize("CommitLogReplayLane:" + i, 1);
+
+        ExecutorService decoders = DebuggableThreadPoolExecutor.createWithFixedPoolSize("CommitLogReplayDecoder", REPLAY_PARALLELISM);
+        try
+        {
+            // only the segments being submitted or decoded are kept in memory
+            Queue<Future<DecodedSegment>> decoding = new ArrayDeque<>();
+            int submitted = 0;
+            for (int i = 0; i < files.size(); i++)
+            {
+                while (submitted < files.size() && submitted < i + REPLAY_PARALLELISM)
+                {
+                    DecodedSegment segment = new DecodedSegment(files.get(submitted), ++submitted == files.size());
+                    decoding.add(decoders.submit(segment::decode));
+                }
+                FBUtilities.waitOnFuture(decoding.poll()).replay();
+            }
+        }
+        finally
+        {
+            decoders.shutdownNow();
+        }
+    }
+
+    /**
+     * A commit log segment decoded by its own reader, which buffers its mutations until they are submitted in file
+     * order by the replaying thread. Errors are handled by the replayer as they are found, but the ones it rethrows
+     * are only propagated once the mutations preceding them have been submitted.
+     */
+    private class DecodedSegment implements CommitLogReadHandler
+    {
+        private final File file;
+        private final boolean tolerateTruncation;
+        private final CommitLogReader reader = new CommitLogReader();
+        private final List<DecodedMutation> mutations = new ArrayList<>();
+        private long startNanos;
+        private IOException failure;
+
+        private DecodedSegment(File file, boolean tolerateTruncation)
+        {
+            this.file = file;
+            this.tolerateTruncation = tolerateTruncation;
+        }
+
+        private DecodedSegment decode()
+        {
+            startNanos = System.nanoTime();
+            try
+            {
+                reader.readCommitLogSegment(this, file, globalPosition, CommitLogReader.ALL_MUTATIONS, tolerateTruncation);
+            }
+            catch (IOException e)
+            {
+                failure = e;
+            }
+            return this;
+        }
+
+        private void replay() throws IOException
+        {
+            sawCDCMutation = false;
+            for (DecodedMutation mutation : mutations)
+                CommitLogReplayer.this.handleMutation(mutation.mutation, mutation.size, mutation.entryLocation, mutation.desc);
+            mutations.clear();
+            commitLogReader.mergeInvalidMutations(reader);
+            metrics.segmentReplayTime.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+
+            if (failure != null)
+                throw failure;
+            if (sawCDCMutation)
+                handleCDCReplayCompletion(file);
+        }
+
+        public boolean shouldSkipSegmentOnError(CommitLogReadException exception) throws IOException
+        {
+            return CommitLogReplayer.this.shouldSkipSegmentOnError(exception);
+        }
+
+        public void handleUnrecoverableError(CommitLogReadException exception) throws IOException
+        {
+            CommitLogReplayer.this.handleUnrecoverableError(exception);
+        }
+
+        public void handleMutation(Mutation m, int size, int entryLocation, CommitLogDescriptor desc)
+        {
+            mutations.add(new DecodedMutation(m, size, entryLocation, desc));
+        }
+    }
+
+    private static class DecodedMutation
+    {
+        private final Mutation mutation;
+        private final int size;
+        private final int entryLocation;
+        private final CommitLogDescriptor desc;
+
+        private DecodedMutation(Mutation mutation, int size, int entryLocation, CommitLogDescriptor desc)
+        {
+            this.mutation = mutation;
+            this.size = size;
+            this.entryLocation = entryLocation;
+            this.desc = desc;
+        }
+    }
+
 
     /**
      * Upon replay completion, CDC needs to hard-link files in the CDC folder and calculate index files so consumers can
@@ -200,6 +341,12 @@ public class CommitLogReplayer implements CommitLogReadHandler
         // wait for all the writes to finish on the mutation stage
         FBUtilities.waitOnFutures(futures);
         logger.trace("Finished waiting on mutations from recovery");
+        if (lanes != null)
+        {
+            for (ExecutorService lane : lanes)
+                lane.shutdown();
+            lanes = null;
+        }
 
         // flush replayed keyspaces
         futures.clear();
@@ -235,6 +382,27 @@ public class CommitLogReplayer implements CommitLogReadHandler
                                                    final int serializedSize,
                                                    final int entryLocation,
                                                    final CommitLogReplayer commitLogReplayer)
+        {
+            return Stage.MUTATION.submit(replayRunnable(mutation, segmentId, entryLocation, commitLogReplayer), serializedSize);
+        }
+
+        /**
+         * Applies the mutation on the given executor rather than on the mutation stage.
+         */
+        protected Future<Integer> initiateMutation(final Mutation mutation,
+                                                   final long segmentId,
+                                                   final int serializedSize,
+                                                   final int entryLocation,
+                                                   final CommitLogReplayer commitLogReplayer,
+                                                   final ExecutorService executor)
+        {
+            return executor.submit(replayRunnable(mutation, segmentId, entryLocation, commitLogReplayer), serializedSize);
+        }
+
+        private static Runnable replayRunnable(final Mutation mutation,
+                                               final long segmentId,
+                                               final int entryLocation,
+                                               final CommitLogReplayer commitLogReplayer)
         {
             Runnable runnable = new WrappedRunnable()
             {
@@ -277,7 +445,7 @@ public class CommitLogReplayer implements CommitLogReadHandler
                     }
                 }
             };
-            return Stage.MUTATION.submit(runnable, serializedSize);
+            return runnable;
         }
     }
 
@@ -420,11 +588,12 @@ public class CommitLogReplayer implements CommitLogReadHandler
             sawCDCMutation = true;
 
         pendingMutationBytes += size;
-        futures.offer(mutationInitiator.initiateMutation(m,
-                                                         desc.id,
-                                                         size,
-                                                         entryLocation,
-                                                         this));
+        metrics.replayedMutations.mark();
+        metrics.replayedBytes.mark(size);
+        if (lanes == null)
+            futures.offer(mutationInitiator.initiateMutation(m, desc.id, size, entryLocation, this));
+        else
+            futures.offer(mutationInitiator.initiateMutation(m, desc.id, size, entryLocation, this, laneFor(m)));
         // If there are finished mutations, or too many outstanding bytes/mutations
         // drain the futures in the queue
         while (futures.size() > MAX_OUTSTANDING_REPLAY_COUNT
@@ -435,6 +604,11 @@ public class CommitLogReplayer implements CommitLogReadHandler
         }
     }
 
+    private ExecutorService laneFor(Mutation m)
+    {
+        return lanes[Math.floorMod(m.key().hashCode(), lanes.length)];
+    }
+
     public boolean shouldSkipSegmentOnError(CommitLogReadException exception) throws IOException
     {
         if (exception.permissible)
@@ -135,7 +135,8 @@ public abstract class CommitLogSegment
         Configuration config = commitLog.configuration;
         CommitLogSegment segment = config.useEncryption() ? new EncryptedSegment(commitLog, manager)
                                                           : config.useCompression() ? new CompressedSegment(commitLog, manager)
-                                                                                    : new MemoryMappedSegment(commitLog, manager);
+                                                                                    : config.useDirectIO() ? new DirectIOSegment(commitLog, manager)
+                                                                                                           : new MemoryMappedSegment(commitLog, manager);
         segment.writeLogHeader();
         return segment;
     }
@@ -149,7 +150,7 @@ public abstract class CommitLogSegment
     static boolean usesBufferPool(CommitLog commitLog)
     {
         Configuration config = commitLog.configuration;
-        return config.useEncryption() || config.useCompression();
+        return config.useEncryption() || config.useCompression() || config.useDirectIO();
     }
 
     static long getNextId()
@@ -430,6 +431,14 @@ public abstract class CommitLogSegment
         return allocatePosition.get() < endOfBuffer;
     }
 
+    /**
+     * @return true if no record was allocated in this segment yet, which may miss the allocations still in progress
+     */
+    boolean isEmpty()
+    {
+        return tableDirty.isEmpty();
+    }
+
     /**
      * Discards a segment file when the log no longer requires it. The file may be left on disk if the archive script
      * requires it. (Potentially blocking operation)
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.utils.NativeLibrary;
+import org.apache.cassandra.utils.NoSpamLogger;
+import org.apache.cassandra.utils.SyncUtil;
+import org.apache.cassandra.utils.memory.MemoryUtil;
+
+/**
+ * Direct I/O segment. Provides a page aligned buffer for the mutation threads, of which the synced sections are
+ * written to the destination channel with direct I/O, bypassing the page cache, so that the commit log does not
+ * evict the pages of the sstables.
+ *
+ * Direct I/O requires page aligned writes, so the page holding the end of a section is written again with the
+ * next one. If direct I/O is not supported, the segment falls back to buffered writes, and drops the written
+ * pages from the page cache on sync.
+ */
+public class DirectIOSegment extends CommitLogSegment
+{
+    private static final Logger logger = LoggerFactory.getLogger(DirectIOSegment.class);
+
+    static final int ALIGNMENT = MemoryUtil.pageSize();
+
+    private final boolean directIO;
+
+    // Everything before this offset of the buffer has been written to the channel, and will not change anymore, as it
+    // is the position of the last written sync marker. Only accessed by the thread creating the segment and then by
+    // the one syncing it.
+    private int writtenOffset = 0;
+
+    // The size of the file, which always ends on a page boundary.
+    private volatile long lastWrittenPos = 0;
+
+    DirectIOSegment(CommitLog commitLog, AbstractCommitLogSegmentManager manager)
+    {
+        super(commitLog, manager);
+        directIO = NativeLibrary.tryEnableDirectIO(fd);
+        if (!directIO)
+            NoSpamLogger.log(logger, NoSpamLogger.Level.WARN, 1, TimeUnit.HOURS,
+                             "Direct I/O is not supported for commit log segment {}, falling back to buffered writes",
+                             logFile);
+    }
+
+    ByteBuffer createBuffer(CommitLog commitLog)
+    {
+        return manager.getBufferPool().createAlignedBuffer(ALIGNMENT);
+    }
+
+    @Override
+    void writeLogHeader()
+    {
+        super.writeLogHeader();
+        // mark the initial sync marker as uninitialised, as the buffer may have been used by a previous segment
+        int firstSync = buffer.position();
+        buffer.putInt(firstSync + 0, 0);
+        buffer.putInt(firstSync + 4, 0);
+        writeOut(firstSync);
+    }
+
+    @Override
+    void write(int startMarker, int nextMarker)
+    {
+        // if there's room in the discard section to write an empty header,
+        // zero out the next sync marker so replayer can cleanly exit
+        if (nextMarker <= buffer.capacity() - SYNC_MARKER_SIZE)
+        {
+            buffer.putInt(nextMarker, 0);
+            buffer.putInt(nextMarker + 4, 0);
+        }
+
+        // write previous sync marker to point to next sync marker
+        // we don't chain the crcs here to ensure this method is idempotent if it fails
+        writeSyncMarker(id, buffer, startMarker, startMarker, nextMarker);
+    }
+
+    @Override
+    protected void flush(int startMarker, int nextMarker)
+    {
+        // the sections marked by the previous syncs that did not flush are written out as well
+        writeOut(nextMarker);
+        try
+        {
+            SyncUtil.force(channel, false);
+        }
+        catch (Exception e)
+        {
+            throw new FSWriteError(e, getPath());
+        }
+        if (!directIO)
+            NativeLibrary.trySkipCache(fd, 0, lastWrittenPos, logFile.getAbsolutePath());
+    }
+
+    /**
+     * Writes the pages of the buffer from the one holding {@link #writtenOffset} to the one holding the end of the
+     * sync marker at the given offset.
+     */
+    private void writeOut(int marker)
+    {
+        int end = Math.min(marker + SYNC_MARKER_SIZE, buffer.capacity());
+        if (end <= writtenOffset)
+            return;
+
+        int start = writtenOffset & -ALIGNMENT;
+        int alignedEnd = Math.min((end + ALIGNMENT - 1) & -ALIGNMENT, buffer.capacity());
+        ByteBuffer toWrite = buffer.duplicate();
+        toWrite.limit(alignedEnd).position(start);
+        try
+        {
+            while (toWrite.hasRemaining())
+                channel.write(toWrite, toWrite.position());
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, getPath());
+        }
+
+        writtenOffset = marker;
+        if (alignedEnd > lastWrittenPos)
+        {
+            manager.addSize(alignedEnd - lastWrittenPos);
+            lastWrittenPos = alignedEnd;
+        }
+    }
+
+    @Override
+    public long onDiskSize()
+    {
+        return lastWrittenPos;
+    }
+
+    @Override
+    protected void internalClose()
+    {
+        try
+        {
+            manager.getBufferPool().releaseBuffer(buffer);
+            super.internalClose();
+        }
+        finally
+        {
+            manager.notifyBufferFreed();
+        }
+    }
+}
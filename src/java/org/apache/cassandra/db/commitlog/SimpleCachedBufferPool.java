@@ -26,6 +26,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import io.netty.util.concurrent.FastThreadLocal;
 import org.apache.cassandra.io.compress.BufferType;
 import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.utils.memory.MemoryUtil;
 
 /**
  * A very simple Bytebuffer pool with a fixed allocation size and a cached max allocation count. Will allow
@@ -77,6 +78,27 @@ public class SimpleCachedBufferPool
         return bufferType.allocate(bufferSize);
     }
 
+    /**
+     * Same as {@link #createBuffer}, but returns a direct buffer whose address is a multiple of the given alignment,
+     * as required by direct I/O.
+     */
+    public ByteBuffer createAlignedBuffer(int alignment)
+    {
+        usedBuffers.incrementAndGet();
+        ByteBuffer buf;
+        while ((buf = bufferPool.poll()) != null)
+        {
+            if (MemoryUtil.isExactlyDirect(buf) && (MemoryUtil.getAddress(buf) & (alignment - 1)) == 0)
+            {
+                buf.clear();
+                return buf;
+            }
+            // released by segments of another kind, which do not need aligned buffers
+            clean(buf);
+        }
+        return MemoryUtil.allocateDirectAligned(bufferSize, alignment);
+    }
+
     public ByteBuffer getThreadLocalReusableBuffer(int size)
     {
         ByteBuffer result = reusableBufferHolder.get();
@@ -101,7 +123,14 @@ public class SimpleCachedBufferPool
         if (bufferPool.size() < maxBufferPoolSize)
             bufferPool.add(buffer);
         else
-            FileUtils.clean(buffer);
+            clean(buffer);
+    }
+
+    private static void clean(ByteBuffer buffer)
+    {
+        // aligned buffers are slices, only the buffer they have been sliced from can be cleaned
+        Object attachment = MemoryUtil.isExactlyDirect(buffer) ? MemoryUtil.getAttachment(buffer) : null;
+        FileUtils.clean(attachment instanceof ByteBuffer ? (ByteBuffer) attachment : buffer);
     }
 
     public void shutdown()
@@ -347,6 +347,6 @@ public class CompactionController extends AbstractCompactionController
 
     private FileDataInput openDataFile(SSTableReader reader)
     {
-        return limiter != null ? reader.openDataReader(limiter) : reader.openDataReader();
+        return reader.openDataScanReader(limiter);
     }
 }
@@ -1077,6 +1077,15 @@ public class CompactionManager implements CompactionManagerMBean
         return executor.submitIfRunning(runnable, "user defined task");
     }
 
+    /**
+     * Submits a helper of a compaction split in token sub-ranges, that will compact the sub-ranges not yet picked
+     * by the task itself if a compaction thread becomes available before it is done.
+     */
+    Future<?> submitSubRangeCompaction(Runnable runnable)
+    {
+        return executor.submitIfRunning(runnable, "sub-range compaction");
+    }
+
     // This acquire a reference on the sstable
     // This is not efficient, do not use in any critical path
     private SSTableReader lookupSSTable(final ColumnFamilyStore cfs, Descriptor descriptor)
@@ -17,18 +17,28 @@
  */
 package org.apache.cassandra.db.compaction;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,7 +49,13 @@ import org.apache.cassandra.db.Directories;
 import org.apache.cassandra.db.SystemKeyspace;
 import org.apache.cassandra.db.compaction.writers.CompactionAwareWriter;
 import org.apache.cassandra.db.compaction.writers.DefaultCompactionWriter;
+import org.apache.cassandra.db.lifecycle.CompositeLifecycleTransaction;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
 import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Splitter;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
 import org.apache.cassandra.service.ActiveRepairService;
@@ -53,6 +69,7 @@ public class CompactionTask extends AbstractCompactionTask
     protected final boolean keepOriginals;
     protected static long totalBytesCompacted = 0;
     private ActiveCompactionsTracker activeCompactions;
+    private boolean subRangeCompaction = false;
 
     public CompactionTask(ColumnFamilyStore cfs, LifecycleTransaction txn, int gcBefore)
     {
@@ -168,60 +185,76 @@ public class CompactionTask extends AbstractCompactionTask
             long[] mergedRowCounts;
             long totalSourceCQLRows;
 
-            // SSTableScanners need to be closed before markCompactedSSTablesReplaced call as scanners contain references
-            // to both ifile and dfile and SSTR will throw deletion errors on Windows if it tries to delete before scanner is closed.
-            // See CASSANDRA-8019 and CASSANDRA-8399
             int nowInSec = FBUtilities.nowInSeconds();
-            try (Refs<SSTableReader> refs = Refs.ref(actuallyCompact);
-                 AbstractCompactionStrategy.ScannerList scanners = strategy.getScanners(actuallyCompact);
-                 CompactionIterator ci = new CompactionIterator(compactionType, scanners.scanners, controller, nowInSec, taskId))
+            List<Range<Token>> subRanges = getSubRanges(actuallyCompact);
+            if (subRanges.size() > 1)
             {
-                long lastCheckObsoletion = start;
-                inputSizeBytes = scanners.getTotalCompressedSize();
-                double compressionRatio = scanners.getCompressionRatio();
-                if (compressionRatio == MetadataCollector.NO_COMPRESSION_RATIO)
-                    compressionRatio = 1.0;
+                logger.debug("Compacting ({}) in {} sub-ranges: {}", taskId, subRanges.size(), subRanges);
+                SubRangeCompaction compaction = new SubRangeCompaction(actuallyCompact, subRanges, nowInSec, taskId);
+                compaction.run();
+                inputSizeBytes = SSTableReader.getTotalBytes(actuallyCompact);
+                totalKeysWritten = compaction.keysWritten;
+                estimatedKeys = SSTableReader.getApproximateKeyCount(actuallyCompact);
+                newSStables = compaction.newSSTables;
+                mergedRowCounts = compaction.mergedRowCounts;
+                totalSourceCQLRows = compaction.totalSourceCQLRows;
+            }
+            else
+            {
+                // SSTableScanners need to be closed before markCompactedSSTablesReplaced call as scanners contain references
+                // to both ifile and dfile and SSTR will throw deletion errors on Windows if it tries to delete before scanner is closed.
+                // See CASSANDRA-8019 and CASSANDRA-8399
+                try (Refs<SSTableReader> refs = Refs.ref(actuallyCompact);
+                     AbstractCompactionStrategy.ScannerList scanners = strategy.getScanners(actuallyCompact);
+                     CompactionIterator ci = new CompactionIterator(compactionType, scanners.scanners, controller, nowInSec, taskId))
+                {
+                    long lastCheckObsoletion = start;
+                    inputSizeBytes = scanners.getTotalCompressedSize();
+                    double compressionRatio = scanners.getCompressionRatio();
+                    if (compressionRatio == MetadataCollector.NO_COMPRESSION_RATIO)
+                        compressionRatio = 1.0;
 
-                long lastBytesScanned = 0;
+                    long lastBytesScanned = 0;
 
-                activeCompactions.beginCompaction(ci);
-                try (CompactionAwareWriter writer = getCompactionAwareWriter(cfs, getDirectories(), transaction, actuallyCompact))
-                {
-                    // Note that we need to re-check this flag after calling beginCompaction above to avoid a window
-                    // where the compaction does not exist in activeCompactions but the CSM gets paused.
-                    // We already have the sstables marked compacting here so CompactionManager#waitForCessation will
-                    // block until the below exception is thrown and the transaction is cancelled.
-                    if (!controller.cfs.getCompactionStrategyManager().isActive())
-                        throw new CompactionInterruptedException(ci.getCompactionInfo());
-                    estimatedKeys = writer.estimatedKeys();
-                    while (ci.hasNext())
+                    activeCompactions.beginCompaction(ci);
+                    try (CompactionAwareWriter writer = getCompactionAwareWriter(cfs, getDirectories(), transaction, actuallyCompact))
                     {
-                        if (writer.append(ci.next()))
-                            totalKeysWritten++;
+                        // Note that we need to re-check this flag after calling beginCompaction above to avoid a window
+                        // where the compaction does not exist in activeCompactions but the CSM gets paused.
+                        // We already have the sstables marked compacting here so CompactionManager#waitForCessation will
+                        // block until the below exception is thrown and the transaction is cancelled.
+                        if (!controller.cfs.getCompactionStrategyManager().isActive())
+                            throw new CompactionInterruptedException(ci.getCompactionInfo());
+                        estimatedKeys = writer.estimatedKeys();
+                        while (ci.hasNext())
+                        {
+                            if (writer.append(ci.next()))
+                                totalKeysWritten++;
 
 
-                        long bytesScanned = scanners.getTotalBytesScanned();
+                            long bytesScanned = scanners.getTotalBytesScanned();
 
-                        //Rate limit the scanners, and account for compression
-                        CompactionManager.compactionRateLimiterAcquire(limiter, bytesScanned, lastBytesScanned, compressionRatio);
+                            //Rate limit the scanners, and account for compression
+                            CompactionManager.compactionRateLimiterAcquire(limiter, bytesScanned, lastBytesScanned, compressionRatio);
 
-                        lastBytesScanned = bytesScanned;
+                            lastBytesScanned = bytesScanned;
 
-                        if (System.nanoTime() - lastCheckObsoletion > TimeUnit.MINUTES.toNanos(1L))
-                        {
-                            controller.maybeRefreshOverlaps();
-                            lastCheckObsoletion = System.nanoTime();
+                            if (System.nanoTime() - lastCheckObsoletion > TimeUnit.MINUTES.toNanos(1L))
+                            {
+                                controller.maybeRefreshOverlaps();
+                                lastCheckObsoletion = System.nanoTime();
+                            }
                         }
-                    }
 
-                    // point of no return
-                    newSStables = writer.finish();
-                }
-                finally
-                {
-                    activeCompactions.finishCompaction(ci);
-                    mergedRowCounts = ci.getMergedRowCounts();
-                    totalSourceCQLRows = ci.getTotalSourceCQLRows();
+                        // point of no return
+                        newSStables = writer.finish();
+                    }
+                    finally
+                    {
+                        activeCompactions.finishCompaction(ci);
+                        mergedRowCounts = ci.getMergedRowCounts();
+                        totalSourceCQLRows = ci.getTotalSourceCQLRows();
+                    }
                 }
             }
 
@@ -279,7 +312,7 @@ public class CompactionTask extends AbstractCompactionTask
     @Override
     public CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs,
                                                           Directories directories,
-                                                          LifecycleTransaction transaction,
+                                                          ILifecycleTransaction transaction,
                                                           Set<SSTableReader> nonExpiredSSTables)
     {
         return new DefaultCompactionWriter(cfs, directories, transaction, nonExpiredSSTables, keepOriginals, getLevel());
@@ -425,6 +458,85 @@ public class CompactionTask extends AbstractCompactionTask
         return !isUserDefined;
     }
 
+    /**
+     * Allows this task to be split in token sub-ranges compacted in parallel, when it is large enough (see
+     * {@link DatabaseDescriptor#getCompactionSubRangeParallelism()}). Only strategies that are not affected by the
+     * number of sstables a compaction writes should allow it.
+     */
+    public CompactionTask setSubRangeCompaction(boolean subRangeCompaction)
+    {
+        this.subRangeCompaction = subRangeCompaction;
+        return this;
+    }
+
+    /**
+     * @return the token sub-ranges in which to split the compaction of the given sstables, or a single range
+     * covering the whole ring if it should not be split
+     */
+    protected List<Range<Token>> getSubRanges(Set<SSTableReader> sstables)
+    {
+        int parallelism = DatabaseDescriptor.getCompactionSubRangeParallelism();
+        if (!subRangeCompaction
+            || parallelism <= 1
+            || transaction.isOffline()
+            || sstables.isEmpty()
+            || SSTableReader.getTotalBytes(sstables) < DatabaseDescriptor.getCompactionSubRangeMinSize()
+            // disjoint sstables, such as the output of a split compaction, are merged rather than split again in the
+            // same sub-ranges, which would leave sstables of similar sizes to compact together again
+            || !SSTableReader.hasOverlap(sstables))
+            return coveringRanges(cfs.getPartitioner(), Collections.emptyList());
+
+        return splitInSubRanges(sstables, parallelism);
+    }
+
+    /**
+     * Splits the token range spanned by the given sstables in ranges of equal width.
+     */
+    protected List<Range<Token>> splitInSubRanges(Set<SSTableReader> sstables, int parts)
+    {
+        IPartitioner partitioner = cfs.getPartitioner();
+        Optional<Splitter> splitter = partitioner.splitter();
+        if (!splitter.isPresent())
+            return coveringRanges(partitioner, Collections.emptyList());
+
+        Token first = null;
+        Token last = null;
+        for (SSTableReader sstable : sstables)
+        {
+            if (first == null || sstable.first.getToken().compareTo(first) < 0)
+                first = sstable.first.getToken();
+            if (last == null || sstable.last.getToken().compareTo(last) > 0)
+                last = sstable.last.getToken();
+        }
+        if (first.compareTo(last) >= 0)
+            return coveringRanges(partitioner, Collections.emptyList());
+
+        List<Token> boundaries = splitter.get().splitOwnedRanges(parts,
+                                                                 Collections.singletonList(new Splitter.WeightedRange(1.0, new Range<>(first, last))),
+                                                                 false);
+        // the last boundary is the maximum token
+        return coveringRanges(partitioner, boundaries.subList(0, boundaries.size() - 1));
+    }
+
+    /**
+     * @return the contiguous ranges, covering the whole ring, delimited by the given sorted tokens
+     */
+    protected static List<Range<Token>> coveringRanges(IPartitioner partitioner, List<Token> boundaries)
+    {
+        Token minimum = partitioner.getMinimumToken();
+        List<Range<Token>> ranges = new ArrayList<>(boundaries.size() + 1);
+        Token left = minimum;
+        for (Token boundary : boundaries)
+        {
+            if (boundary.compareTo(left) <= 0)
+                continue;
+            ranges.add(new Range<>(left, boundary));
+            left = boundary;
+        }
+        ranges.add(new Range<>(left, minimum));
+        return ranges;
+    }
+
     public static long getMaxDataAge(Collection<SSTableReader> sstables)
     {
         long max = 0;
@@ -435,4 +547,144 @@ public class CompactionTask extends AbstractCompactionTask
         }
         return max;
     }
+
+    /**
+     * Compacts the sub-ranges of a compaction in parallel, each of them with its own scanners, controller and writer.
+     * The task compacts sub-ranges until all of them have been picked, helped by the compaction threads that become
+     * available in the meantime, so that it never waits for a sub-range that has not started yet.
+     */
+    private class SubRangeCompaction
+    {
+        private final Set<SSTableReader> actuallyCompact;
+        private final List<Range<Token>> subRanges;
+        private final int nowInSec;
+        private final UUID taskId;
+        private final CompositeLifecycleTransaction composite;
+        private final AtomicInteger nextSubRange = new AtomicInteger();
+        private final CountDownLatch completed;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private final List<SSTableReader> newSSTables = new ArrayList<>();
+        private long[] mergedRowCounts = new long[0];
+        private long totalSourceCQLRows = 0;
+        private long keysWritten = 0;
+
+        SubRangeCompaction(Set<SSTableReader> actuallyCompact, List<Range<Token>> subRanges, int nowInSec, UUID taskId)
+        {
+            this.actuallyCompact = actuallyCompact;
+            this.subRanges = subRanges;
+            this.nowInSec = nowInSec;
+            this.taskId = taskId;
+            this.composite = new CompositeLifecycleTransaction(transaction);
+            this.completed = new CountDownLatch(subRanges.size());
+        }
+
+        void run()
+        {
+            try (Refs<SSTableReader> refs = Refs.ref(actuallyCompact))
+            {
+                for (int i = 1; i < subRanges.size(); i++)
+                    CompactionManager.instance.submitSubRangeCompaction(this::compactRemainingSubRanges);
+                compactRemainingSubRanges();
+                Uninterruptibles.awaitUninterruptibly(completed);
+            }
+
+            Throwable t = failure.get();
+            if (t != null)
+                throw Throwables.propagate(t);
+
+            // point of no return
+            composite.prepareToCommit();
+            transaction.commit();
+        }
+
+        private void compactRemainingSubRanges()
+        {
+            int index;
+            while ((index = nextSubRange.getAndIncrement()) < subRanges.size())
+            {
+                try
+                {
+                    if (failure.get() == null)
+                        compact(subRanges.get(index));
+                }
+                catch (Throwable t)
+                {
+                    if (!failure.compareAndSet(null, t))
+                        failure.get().addSuppressed(t);
+                }
+                finally
+                {
+                    completed.countDown();
+                }
+            }
+        }
+
+        private void compact(Range<Token> subRange)
+        {
+            CompactionStrategyManager strategy = cfs.getCompactionStrategyManager();
+            RateLimiter limiter = CompactionManager.instance.getRateLimiter();
+            try (CompactionController controller = getCompactionController(transaction.originals());
+                 AbstractCompactionStrategy.ScannerList scanners = strategy.getScanners(actuallyCompact, Collections.singleton(subRange));
+                 CompactionIterator ci = new CompactionIterator(compactionType, scanners.scanners, controller, nowInSec, taskId))
+            {
+                long lastCheckObsoletion = System.nanoTime();
+                double compressionRatio = scanners.getCompressionRatio();
+                if (compressionRatio == MetadataCollector.NO_COMPRESSION_RATIO)
+                    compressionRatio = 1.0;
+
+                long lastBytesScanned = 0;
+                long subRangeKeysWritten = 0;
+
+                activeCompactions.beginCompaction(ci);
+                try (CompactionAwareWriter writer = getCompactionAwareWriter(cfs, getDirectories(), composite.newPart(), actuallyCompact))
+                {
+                    if (!controller.cfs.getCompactionStrategyManager().isActive())
+                        throw new CompactionInterruptedException(ci.getCompactionInfo());
+                    while (ci.hasNext())
+                    {
+                        // stop early if another sub-range failed
+                        if (failure.get() != null)
+                            throw new CompactionInterruptedException(ci.getCompactionInfo());
+
+                        if (writer.append(ci.next()))
+                            subRangeKeysWritten++;
+
+                        long bytesScanned = scanners.getTotalBytesScanned();
+                        CompactionManager.compactionRateLimiterAcquire(limiter, bytesScanned, lastBytesScanned, compressionRatio);
+                        lastBytesScanned = bytesScanned;
+
+                        if (System.nanoTime() - lastCheckObsoletion > TimeUnit.MINUTES.toNanos(1L))
+                        {
+                            controller.maybeRefreshOverlaps();
+                            lastCheckObsoletion = System.nanoTime();
+                        }
+                    }
+
+                    // the new sstables are only staged in the main transaction, which is committed once all the
+                    // sub-ranges are done
+                    Collection<SSTableReader> written = writer.finish();
+                    synchronized (this)
+                    {
+                        newSSTables.addAll(written);
+                        keysWritten += subRangeKeysWritten;
+                    }
+                }
+                finally
+                {
+                    activeCompactions.finishCompaction(ci);
+                    addMergedRowCounts(ci.getMergedRowCounts(), ci.getTotalSourceCQLRows());
+                }
+            }
+        }
+
+        private synchronized void addMergedRowCounts(long[] counts, long sourceCQLRows)
+        {
+            if (counts.length > mergedRowCounts.length)
+                mergedRowCounts = Arrays.copyOf(mergedRowCounts, counts.length);
+            for (int i = 0; i < counts.length; i++)
+                mergedRowCounts[i] += counts[i];
+            totalSourceCQLRows += sourceCQLRows;
+        }
+    }
 }
@@ -162,7 +162,7 @@ public class LeveledCompactionStrategy extends AbstractCompactionStrategy
             if (txn != null)
             {
                 AbstractCompactionTask newTask;
-                if (!singleSSTableUplevel || op == OperationType.TOMBSTONE_COMPACTION || txn.originals().size() > 1)
+                if (!singleSSTableUplevel || op == OperationType.TOMBSTONE_COMPACTION || !canUplevelWithoutRewrite(txn.originals(), candidate, gcBefore))
                     newTask = new LeveledCompactionTask(cfs, txn, candidate.level, gcBefore, candidate.maxSSTableBytes, false);
                 else
                     newTask = new SingleSSTableLCSTask(cfs, txn, candidate.level);
@@ -174,6 +174,27 @@ public class LeveledCompactionStrategy extends AbstractCompactionStrategy
         }
     }
 
+    /**
+     * Whether the sstables of a candidate can be moved to the level of the candidate by only changing their metadata,
+     * instead of being rewritten: rewriting them would produce the same data if they don't overlap (nothing to merge)
+     * and have no tombstones that could be purged. Sstables from L0 must also not be larger than the sstables of the
+     * other levels.
+     */
+    @VisibleForTesting
+    static boolean canUplevelWithoutRewrite(Collection<SSTableReader> sstables, LeveledManifest.CompactionCandidate candidate, int gcBefore)
+    {
+        for (SSTableReader sstable : sstables)
+        {
+            if (sstable.getSSTableLevel() >= candidate.level)
+                return false;
+            if (sstable.getSSTableLevel() == 0 && sstable.onDiskLength() > candidate.maxSSTableBytes)
+                return false;
+            if (sstable.mayHaveTombstones() && sstable.getMinLocalDeletionTime() < gcBefore)
+                return false;
+        }
+        return !SSTableReader.hasOverlap(sstables);
+    }
+
     @SuppressWarnings("resource") // transaction is closed by AbstractCompactionTask::execute
     public synchronized Collection<AbstractCompactionTask> getMaximalTask(int gcBefore, boolean splitOutput)
     {
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeSet;
+
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Splitter;
+import org.apache.cassandra.dht.Token;
+
+/**
+ * Splits the token range in contiguous shards. Shard {@code i} covers the tokens in
+ * {@code (boundary(i - 1), boundary(i)]}, the first shard starting at the minimum token and the last one ending
+ * at the maximum token.
+ */
+public class ShardBoundaries
+{
+    private final Token minimumToken;
+    // the inclusive upper bound of every shard but the last one
+    private final Token[] boundaries;
+    private final List<PartitionPosition> diskPositions;
+
+    private ShardBoundaries(Token minimumToken, Token[] boundaries, List<PartitionPosition> diskPositions)
+    {
+        this.minimumToken = minimumToken;
+        this.boundaries = boundaries;
+        this.diskPositions = diskPositions;
+    }
+
+    /**
+     * Splits the token range in {@code baseShardCount} shards of equal width, and further splits the shards that
+     * span a disk boundary so that no shard spans two disks. Partitioners that can't split the token range only
+     * get split at the disk boundaries.
+     *
+     * @param diskPositions the upper bounds of the token ranges of the disks as given by
+     * {@link org.apache.cassandra.db.DiskBoundaries}, or null if there is a single disk
+     */
+    public static ShardBoundaries create(IPartitioner partitioner, int baseShardCount, List<PartitionPosition> diskPositions)
+    {
+        Token minimumToken = partitioner.getMinimumToken();
+        Token maximumToken = partitioner.getMaximumToken();
+        TreeSet<Token> boundaries = new TreeSet<>();
+
+        Optional<Splitter> splitter = partitioner.splitter();
+        if (baseShardCount > 1 && splitter.isPresent())
+        {
+            Range<Token> fullRange = new Range<>(minimumToken, maximumToken);
+            boundaries.addAll(splitter.get().splitOwnedRanges(baseShardCount,
+                                                              Collections.singletonList(new Splitter.WeightedRange(1.0, fullRange)),
+                                                              false));
+        }
+        if (diskPositions != null)
+        {
+            for (PartitionPosition position : diskPositions)
+                boundaries.add(position.getToken());
+        }
+        boundaries.remove(minimumToken);
+        boundaries.remove(maximumToken);
+        return new ShardBoundaries(minimumToken, boundaries.toArray(new Token[0]), diskPositions);
+    }
+
+    public int count()
+    {
+        return boundaries.length + 1;
+    }
+
+    public int shardFor(Token token)
+    {
+        int index = Arrays.binarySearch(boundaries, token);
+        // a boundary is the inclusive end of its shard
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * @return the share of the token range covered by the given shard
+     */
+    public double fraction(int shard)
+    {
+        Token left = shard == 0 ? minimumToken : boundaries[shard - 1];
+        Token right = shard == boundaries.length ? minimumToken : boundaries[shard];
+        try
+        {
+            return left.size(right);
+        }
+        catch (UnsupportedOperationException e)
+        {
+            // partitioners that can't measure their tokens
+            return 1.0 / count();
+        }
+    }
+
+    /**
+     * @return the share of the token range covered by the shards that contain the given tokens
+     */
+    public double fraction(Token first, Token last)
+    {
+        double fraction = 0;
+        for (int shard = shardFor(first), lastShard = shardFor(last); shard <= lastShard; shard++)
+            fraction += fraction(shard);
+        return fraction;
+    }
+
+    /**
+     * Whether the boundaries were computed for the given disk boundaries, and can still be used.
+     */
+    public boolean isFor(List<PartitionPosition> diskPositions)
+    {
+        return this.diskPositions == null ? diskPositions == null : this.diskPositions.equals(diskPositions);
+    }
+
+    public List<Token> boundaries()
+    {
+        return Collections.unmodifiableList(Arrays.asList(boundaries));
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.toString(boundaries);
+    }
+}
@@ -20,12 +20,15 @@ package org.apache.cassandra.db.compaction;
 
 import java.util.Set;
 
+import com.google.common.collect.ImmutableSet;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.Directories;
 import org.apache.cassandra.db.compaction.writers.CompactionAwareWriter;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
 import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
 import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.CorruptSSTableException;
@@ -34,8 +37,11 @@ import org.apache.cassandra.io.sstable.metadata.StatsMetadata;
 
 /**
  * Special compaction task that does not do any compaction, instead it
- * just mutates the level metadata on the sstable and notifies the compaction
+ * just mutates the level metadata on the sstables and notifies the compaction
  * strategy.
+ *
+ * The sstables must not overlap, as rewriting them would then just copy their
+ * content (see {@link LeveledCompactionStrategy#canUplevelWithoutRewrite}).
  */
 public class SingleSSTableLCSTask extends AbstractCompactionTask
 {
@@ -46,12 +52,12 @@ public class SingleSSTableLCSTask extends AbstractCompactionTask
     public SingleSSTableLCSTask(ColumnFamilyStore cfs, LifecycleTransaction txn, int level)
     {
         super(cfs, txn);
-        assert txn.originals().size() == 1;
+        assert !SSTableReader.hasOverlap(txn.originals());
         this.level = level;
     }
 
     @Override
-    public CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs, Directories directories, LifecycleTransaction txn, Set<SSTableReader> nonExpiredSSTables)
+    public CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs, Directories directories, ILifecycleTransaction txn, Set<SSTableReader> nonExpiredSSTables)
     {
         throw new UnsupportedOperationException("This method should never be called on SingleSSTableLCSTask");
     }
@@ -60,13 +66,19 @@ public class SingleSSTableLCSTask extends AbstractCompactionTask
     protected int executeInternal(ActiveCompactionsTracker activeCompactions)
     {
         run();
-        return 1;
+        return transaction.originals().size();
     }
 
     @Override
     protected void runMayThrow()
     {
-        SSTableReader sstable = transaction.onlyOne();
+        for (SSTableReader sstable : transaction.originals())
+            changeLevel(sstable);
+        finishTransaction();
+    }
+
+    private void changeLevel(SSTableReader sstable)
+    {
         StatsMetadata metadataBefore = sstable.getSSTableMetadata();
         if (level == metadataBefore.sstableLevel)
         {
@@ -87,14 +99,13 @@ public class SingleSSTableLCSTask extends AbstractCompactionTask
             }
             cfs.getTracker().notifySSTableMetadataChanged(sstable, metadataBefore);
         }
-        finishTransaction(sstable);
     }
 
-    private void finishTransaction(SSTableReader sstable)
+    private void finishTransaction()
     {
         // we simply cancel the transaction since no sstables are added or removed - we just
         // write a new sstable metadata above and then atomically move the new file on top of the old
-        transaction.cancel(sstable);
+        transaction.cancel(ImmutableSet.copyOf(transaction.originals()));
         transaction.prepareToCommit();
         transaction.commit();
     }
@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.*;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Directories;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.db.SerializationHeader;
+import org.apache.cassandra.db.compaction.writers.CompactionAwareWriter;
+import org.apache.cassandra.db.compaction.writers.ShardedCompactionWriter;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
+import org.apache.cassandra.db.lifecycle.LifecycleNewTracker;
+import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.index.Index;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.SSTableMultiWriter;
+import org.apache.cassandra.io.sstable.ShardedSSTableMultiWriter;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
+import org.apache.cassandra.schema.CompactionParams;
+
+import static com.google.common.collect.Iterables.filter;
+
+/**
+ * A compaction strategy that can be tuned continuously from tiered to leveled compaction with a single scaling
+ * parameter W (see {@link UnifiedCompactionStrategyOptions}).
+ *
+ * The token range is split in shards, aligned with the disk boundaries, and every sstable written by flushes and
+ * compactions covers at most one shard. SSTables are organised in levels by density, i.e. their size divided by
+ * the share of the token range they cover: level {@code i} holds the sstables whose density is between
+ * {@code min_sstable_size * fanout^i} and {@code min_sstable_size * fanout^(i+1)}. A level of a shard is
+ * compacted once it holds {@code threshold} sstables; as every shard is compacted independently, there can be
+ * as many concurrent compactions as there are shards.
+ */
+public class UnifiedCompactionStrategy extends AbstractCompactionStrategy
+{
+    private static final Logger logger = LoggerFactory.getLogger(UnifiedCompactionStrategy.class);
+
+    protected UnifiedCompactionStrategyOptions unifiedOptions;
+    protected volatile int estimatedRemainingTasks;
+    @VisibleForTesting
+    protected final Set<SSTableReader> sstables = new HashSet<>();
+    private volatile ShardBoundaries shardBoundaries;
+
+    public UnifiedCompactionStrategy(ColumnFamilyStore cfs, Map<String, String> options)
+    {
+        super(cfs, options);
+        this.estimatedRemainingTasks = 0;
+        this.unifiedOptions = new UnifiedCompactionStrategyOptions(options);
+    }
+
+    /**
+     * @return the shards of the table, recomputed whenever the disk boundaries change
+     */
+    public ShardBoundaries getShardBoundaries()
+    {
+        List<PartitionPosition> diskPositions = cfs.getDiskBoundaries().positions;
+        ShardBoundaries current = shardBoundaries;
+        if (current == null || !current.isFor(diskPositions))
+        {
+            current = ShardBoundaries.create(cfs.getPartitioner(), unifiedOptions.baseShardCount, diskPositions);
+            shardBoundaries = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return the level of the given sstable, based on its density in the given shards
+     */
+    @VisibleForTesting
+    int levelOf(SSTableReader sstable, ShardBoundaries shards)
+    {
+        double density = sstable.onDiskLength() / shards.fraction(sstable.first.getToken(), sstable.last.getToken());
+        if (density < unifiedOptions.minSSTableSize)
+            return 0;
+        return (int) Math.floor(Math.log(density / unifiedOptions.minSSTableSize) / Math.log(unifiedOptions.fanout()));
+    }
+
+    /**
+     * Groups the given sstables by shard and level. SSTables that span several shards, which can only be written by
+     * other strategies or before a change of the disk boundaries, are put in all of them.
+     */
+    @VisibleForTesting
+    List<List<SSTableReader>> getBuckets(Iterable<SSTableReader> candidates, ShardBoundaries shards)
+    {
+        Map<Long, List<SSTableReader>> buckets = new TreeMap<>();
+        for (SSTableReader sstable : candidates)
+        {
+            long level = levelOf(sstable, shards);
+            for (int shard = shards.shardFor(sstable.first.getToken()), lastShard = shards.shardFor(sstable.last.getToken()); shard <= lastShard; shard++)
+                buckets.computeIfAbsent(((long) shard << 32) | level, k -> new ArrayList<>()).add(sstable);
+        }
+        return new ArrayList<>(buckets.values());
+    }
+
+    private synchronized List<SSTableReader> getNextBackgroundSSTables(final int gcBefore)
+    {
+        int threshold = unifiedOptions.threshold();
+        int maxThreshold = Math.max(threshold, cfs.getMaximumCompactionThreshold());
+
+        Iterable<SSTableReader> candidates = filterSuspectSSTables(filter(cfs.getUncompactingSSTables(), sstables::contains));
+
+        List<List<SSTableReader>> buckets = getBuckets(candidates, getShardBoundaries());
+        logger.trace("Compaction buckets are {}", buckets);
+
+        List<SSTableReader> mostInteresting = Collections.emptyList();
+        int pending = 0;
+        for (List<SSTableReader> bucket : buckets)
+        {
+            if (bucket.size() < threshold)
+                continue;
+            pending += Math.ceil((double) bucket.size() / maxThreshold);
+            // buckets are sorted by level within a shard, so ties go to the lowest level
+            if (bucket.size() > mostInteresting.size())
+                mostInteresting = bucket;
+        }
+        estimatedRemainingTasks = pending;
+        cfs.getCompactionStrategyManager().compactionLogger.pending(this, estimatedRemainingTasks);
+
+        if (!mostInteresting.isEmpty())
+        {
+            if (mostInteresting.size() <= maxThreshold)
+                return mostInteresting;
+            List<SSTableReader> smallest = new ArrayList<>(mostInteresting);
+            smallest.sort(SSTableReader.sizeComparator);
+            return smallest.subList(0, maxThreshold);
+        }
+
+        // if there is no level to compact, try compacting the single sstable whose droppable tombstone ratio is
+        // greater than threshold.
+        List<SSTableReader> sstablesWithTombstones = new ArrayList<>();
+        for (SSTableReader sstable : candidates)
+        {
+            if (worthDroppingTombstones(sstable, gcBefore))
+                sstablesWithTombstones.add(sstable);
+        }
+        if (sstablesWithTombstones.isEmpty())
+            return Collections.emptyList();
+
+        return Collections.singletonList(Collections.max(sstablesWithTombstones, SSTableReader.sizeComparator));
+    }
+
+    @SuppressWarnings("resource")
+    public AbstractCompactionTask getNextBackgroundTask(int gcBefore)
+    {
+        List<SSTableReader> previousCandidate = null;
+        while (true)
+        {
+            List<SSTableReader> candidate = getNextBackgroundSSTables(gcBefore);
+
+            if (candidate.isEmpty())
+                return null;
+
+            // Already tried acquiring references without success. It means there is a race with
+            // the tracker but candidate SSTables were not yet replaced in the compaction strategy manager
+            if (candidate.equals(previousCandidate))
+            {
+                logger.warn("Could not acquire references for compacting SSTables {} which is not a problem per se," +
+                            "unless it happens frequently, in which case it must be reported. Will retry later.",
+                            candidate);
+                return null;
+            }
+
+            LifecycleTransaction transaction = cfs.getTracker().tryModify(candidate, OperationType.COMPACTION);
+            if (transaction != null)
+                return new ShardedCompactionTask(cfs, transaction, gcBefore, getShardBoundaries());
+            previousCandidate = candidate;
+        }
+    }
+
+    @SuppressWarnings("resource")
+    public synchronized Collection<AbstractCompactionTask> getMaximalTask(final int gcBefore, boolean splitOutput)
+    {
+        Iterable<SSTableReader> filteredSSTables = filterSuspectSSTables(sstables);
+        if (Iterables.isEmpty(filteredSSTables))
+            return null;
+        LifecycleTransaction txn = cfs.getTracker().tryModify(filteredSSTables, OperationType.COMPACTION);
+        if (txn == null)
+            return null;
+        // the output is always split by shard
+        return Collections.singletonList(new ShardedCompactionTask(cfs, txn, gcBefore, getShardBoundaries()));
+    }
+
+    @SuppressWarnings("resource")
+    public AbstractCompactionTask getUserDefinedTask(Collection<SSTableReader> sstables, final int gcBefore)
+    {
+        assert !sstables.isEmpty(); // checked for by CM.submitUserDefined
+
+        LifecycleTransaction transaction = cfs.getTracker().tryModify(sstables, OperationType.COMPACTION);
+        if (transaction == null)
+        {
+            logger.trace("Unable to mark {} for compaction; probably a background compaction got to it first.  You can disable background compactions temporarily if this is a problem", sstables);
+            return null;
+        }
+
+        return new ShardedCompactionTask(cfs, transaction, gcBefore, getShardBoundaries()).setUserDefined(true);
+    }
+
+    public int getEstimatedRemainingTasks()
+    {
+        return estimatedRemainingTasks;
+    }
+
+    public long getMaxSSTableBytes()
+    {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public SSTableMultiWriter createSSTableMultiWriter(Descriptor descriptor,
+                                                       long keyCount,
+                                                       long repairedAt,
+                                                       UUID pendingRepair,
+                                                       boolean isTransient,
+                                                       MetadataCollector meta,
+                                                       SerializationHeader header,
+                                                       Collection<Index> indexes,
+                                                       LifecycleNewTracker lifecycleNewTracker)
+    {
+        return new ShardedSSTableMultiWriter(cfs, descriptor, keyCount, repairedAt, pendingRepair, isTransient, meta, header, indexes, lifecycleNewTracker, getShardBoundaries());
+    }
+
+    public static Map<String, String> validateOptions(Map<String, String> options) throws ConfigurationException
+    {
+        Map<String, String> uncheckedOptions = AbstractCompactionStrategy.validateOptions(options);
+        uncheckedOptions = UnifiedCompactionStrategyOptions.validateOptions(options, uncheckedOptions);
+
+        uncheckedOptions.remove(CompactionParams.Option.MIN_THRESHOLD.toString());
+        uncheckedOptions.remove(CompactionParams.Option.MAX_THRESHOLD.toString());
+
+        return uncheckedOptions;
+    }
+
+    @Override
+    public synchronized void addSSTable(SSTableReader added)
+    {
+        sstables.add(added);
+    }
+
+    @Override
+    public synchronized void removeSSTable(SSTableReader sstable)
+    {
+        sstables.remove(sstable);
+    }
+
+    @Override
+    protected Set<SSTableReader> getSSTables()
+    {
+        return ImmutableSet.copyOf(sstables);
+    }
+
+    public String toString()
+    {
+        return String.format("UnifiedCompactionStrategy[%s]", unifiedOptions);
+    }
+
+    private static class ShardedCompactionTask extends CompactionTask
+    {
+        private final ShardBoundaries shards;
+
+        public ShardedCompactionTask(ColumnFamilyStore cfs, LifecycleTransaction txn, int gcBefore, ShardBoundaries shards)
+        {
+            super(cfs, txn, gcBefore);
+            this.shards = shards;
+            setSubRangeCompaction(true);
+        }
+
+        /**
+         * Splits the compaction at shard boundaries, so that it writes the same sstables as if it wasn't split.
+         */
+        @Override
+        protected List<Range<Token>> splitInSubRanges(Set<SSTableReader> sstables, int parts)
+        {
+            int firstShard = Integer.MAX_VALUE;
+            int lastShard = 0;
+            for (SSTableReader sstable : sstables)
+            {
+                firstShard = Math.min(firstShard, shards.shardFor(sstable.first.getToken()));
+                lastShard = Math.max(lastShard, shards.shardFor(sstable.last.getToken()));
+            }
+            int shardCount = lastShard - firstShard + 1;
+            parts = Math.min(parts, shardCount);
+
+            // the last shard of every part but the last one delimits the sub-ranges
+            List<Token> boundaries = new ArrayList<>(parts - 1);
+            for (int i = 1; i < parts; i++)
+                boundaries.add(shards.boundaries().get(firstShard + i * shardCount / parts - 1));
+            return coveringRanges(cfs.getPartitioner(), boundaries);
+        }
+
+        @Override
+        public CompactionAwareWriter getCompactionAwareWriter(ColumnFamilyStore cfs,
+                                                              Directories directories,
+                                                              ILifecycleTransaction txn,
+                                                              Set<SSTableReader> nonExpiredSSTables)
+        {
+            return new ShardedCompactionWriter(cfs, directories, txn, nonExpiredSSTables, keepOriginals, shards);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.Map;
+
+import org.apache.cassandra.exceptions.ConfigurationException;
+
+public final class UnifiedCompactionStrategyOptions
+{
+    protected static final String DEFAULT_SCALING_PARAMETER = "T4";
+    protected static final int DEFAULT_BASE_SHARD_COUNT = 4;
+    protected static final long DEFAULT_MIN_SSTABLE_SIZE = 100L * 1024L * 1024L;
+    protected static final String SCALING_PARAMETER_KEY = "scaling_parameter";
+    protected static final String BASE_SHARD_COUNT_KEY = "base_shard_count";
+    protected static final String MIN_SSTABLE_SIZE_KEY = "min_sstable_size";
+
+    /**
+     * The scaling parameter W: negative values make the strategy leveled, positive ones tiered, and 0 is the
+     * middle ground where both behave the same.
+     */
+    protected final int scalingParameter;
+    protected final int baseShardCount;
+    protected final long minSSTableSize;
+
+    public UnifiedCompactionStrategyOptions(Map<String, String> options)
+    {
+        String optionValue = options.get(SCALING_PARAMETER_KEY);
+        scalingParameter = parseScalingParameter(optionValue == null ? DEFAULT_SCALING_PARAMETER : optionValue);
+        optionValue = options.get(BASE_SHARD_COUNT_KEY);
+        baseShardCount = optionValue == null ? DEFAULT_BASE_SHARD_COUNT : Integer.parseInt(optionValue);
+        optionValue = options.get(MIN_SSTABLE_SIZE_KEY);
+        minSSTableSize = optionValue == null ? DEFAULT_MIN_SSTABLE_SIZE : Long.parseLong(optionValue);
+    }
+
+    /**
+     * Parses a scaling parameter, given either as the integer W, or as {@code T<f>} (tiered with fanout f, i.e.
+     * W = f - 2), {@code L<f>} (leveled with fanout f, i.e. W = 2 - f) or {@code N} (W = 0).
+     */
+    static int parseScalingParameter(String value)
+    {
+        value = value.trim();
+        if (value.equalsIgnoreCase("N"))
+            return 0;
+
+        char first = Character.toUpperCase(value.charAt(0));
+        if (first == 'T' || first == 'L')
+        {
+            int fanout = Integer.parseInt(value.substring(1));
+            if (fanout < 2)
+                throw new NumberFormatException("Fanout must be at least 2, but was " + fanout);
+            return first == 'T' ? fanout - 2 : 2 - fanout;
+        }
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * The number of times the density of the sstables grows from one level to the next.
+     */
+    public int fanout()
+    {
+        return 2 + Math.abs(scalingParameter);
+    }
+
+    /**
+     * The number of sstables a level must have to be compacted: 2 when leveled, the fanout when tiered.
+     */
+    public int threshold()
+    {
+        return scalingParameter <= 0 ? 2 : fanout();
+    }
+
+    public static Map<String, String> validateOptions(Map<String, String> options, Map<String, String> uncheckedOptions) throws ConfigurationException
+    {
+        String optionValue = options.get(SCALING_PARAMETER_KEY);
+        if (optionValue != null)
+        {
+            try
+            {
+                parseScalingParameter(optionValue);
+            }
+            catch (NumberFormatException | StringIndexOutOfBoundsException e)
+            {
+                throw new ConfigurationException(String.format("%s is not a valid %s: expected an integer, T<fanout>, L<fanout> or N", optionValue, SCALING_PARAMETER_KEY), e);
+            }
+        }
+
+        optionValue = options.get(BASE_SHARD_COUNT_KEY);
+        try
+        {
+            int baseShardCount = optionValue == null ? DEFAULT_BASE_SHARD_COUNT : Integer.parseInt(optionValue);
+            if (baseShardCount <= 0)
+                throw new ConfigurationException(String.format("%s must be positive: %d", BASE_SHARD_COUNT_KEY, baseShardCount));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ConfigurationException(String.format("%s is not a parsable int (base10) for %s", optionValue, BASE_SHARD_COUNT_KEY), e);
+        }
+
+        optionValue = options.get(MIN_SSTABLE_SIZE_KEY);
+        try
+        {
+            long minSSTableSize = optionValue == null ? DEFAULT_MIN_SSTABLE_SIZE : Long.parseLong(optionValue);
+            if (minSSTableSize <= 0)
+                throw new ConfigurationException(String.format("%s must be positive: %d", MIN_SSTABLE_SIZE_KEY, minSSTableSize));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ConfigurationException(String.format("%s is not a parsable int (base10) for %s", optionValue, MIN_SSTABLE_SIZE_KEY), e);
+        }
+
+        uncheckedOptions.remove(SCALING_PARAMETER_KEY);
+        uncheckedOptions.remove(BASE_SHARD_COUNT_KEY);
+        uncheckedOptions.remove(MIN_SSTABLE_SIZE_KEY);
+
+        return uncheckedOptions;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("Scaling parameter: %d, base shard count: %d, min sstable size: %d", scalingParameter, baseShardCount, minSSTableSize);
+    }
+}
@@ -102,9 +102,7 @@ public class Verifier implements Closeable
 
         this.controller = new VerifyController(cfs);
 
-        this.dataFile = isOffline
-                        ? sstable.openDataReader()
-                        : sstable.openDataReader(CompactionManager.instance.getRateLimiter());
+        this.dataFile = sstable.openDataScanReader(isOffline ? null : CompactionManager.instance.getRateLimiter());
         this.indexFile = RandomAccessReader.open(new File(sstable.descriptor.filenameFor(Component.PRIMARY_INDEX)));
         this.verifyInfo = new VerifyInfo(dataFile, sstable);
         this.options = options;
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction.writers;
+
+import java.util.Set;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Directories;
+import org.apache.cassandra.db.RowIndexEntry;
+import org.apache.cassandra.db.SerializationHeader;
+import org.apache.cassandra.db.compaction.ShardBoundaries;
+import org.apache.cassandra.db.lifecycle.ILifecycleTransaction;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.format.SSTableWriter;
+import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
+
+/**
+ * CompactionAwareWriter that starts a new sstable at every shard boundary, so that every sstable it writes covers
+ * at most one shard.
+ */
+public class ShardedCompactionWriter extends CompactionAwareWriter
+{
+    private final ShardBoundaries shards;
+    private final long estimatedSSTables;
+    private final Set<SSTableReader> allSSTables;
+    private Directories.DataDirectory sstableDirectory;
+    private int currentShard = -1;
+
+    public ShardedCompactionWriter(ColumnFamilyStore cfs,
+                                   Directories directories,
+                                   ILifecycleTransaction txn,
+                                   Set<SSTableReader> nonExpiredSSTables,
+                                   boolean keepOriginals,
+                                   ShardBoundaries shards)
+    {
+        super(cfs, directories, txn, nonExpiredSSTables, keepOriginals);
+        this.shards = shards;
+        this.allSSTables = txn.originals();
+
+        int firstShard = Integer.MAX_VALUE;
+        int lastShard = 0;
+        for (SSTableReader sstable : nonExpiredSSTables)
+        {
+            firstShard = Math.min(firstShard, shards.shardFor(sstable.first.getToken()));
+            lastShard = Math.max(lastShard, shards.shardFor(sstable.last.getToken()));
+        }
+        estimatedSSTables = Math.max(1, lastShard - firstShard + 1);
+    }
+
+    protected boolean realAppend(UnfilteredRowIterator partition)
+    {
+        int shard = shards.shardFor(partition.partitionKey().getToken());
+        if (shard != currentShard)
+        {
+            // the first partition goes to the writer opened by maybeSwitchWriter
+            if (currentShard >= 0 && sstableWriter.currentWriter().getFilePointer() > 0)
+                switchCompactionLocation(sstableDirectory);
+            currentShard = shard;
+        }
+        RowIndexEntry rie = sstableWriter.append(partition);
+        return rie != null;
+    }
+
+    @Override
+    public void switchCompactionLocation(Directories.DataDirectory location)
+    {
+        sstableDirectory = location;
+        @SuppressWarnings("resource")
+        SSTableWriter writer = SSTableWriter.create(cfs.newSSTableDescriptor(getDirectories().getLocationForDisk(sstableDirectory)),
+                                                    estimatedTotalKeys / estimatedSSTables,
+                                                    minRepairedAt,
+                                                    pendingRepair,
+                                                    isTransient,
+                                                    cfs.metadata,
+                                                    new MetadataCollector(allSSTables, cfs.metadata().comparator, 0),
+                                                    SerializationHeader.make(cfs.metadata(), nonExpiredSSTables),
+                                                    cfs.indexManager.listIndexes(),
+                                                    txn);
+
+        sstableWriter.switchWriter(writer);
+    }
+}
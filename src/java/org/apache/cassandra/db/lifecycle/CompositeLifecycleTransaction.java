@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.lifecycle;
+
+import java.util.Collection;
+
+import org.apache.cassandra.io.sstable.SSTable;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+
+/**
+ * Splits a LifecycleTransaction in parts that can be used concurrently by several writers, each of them writing
+ * the sstables of a part of the operation (e.g. a token sub-range of a compaction).
+ *
+ * The new sstables of all the parts are staged in the main transaction as they are finished, but the parts never
+ * checkpoint, prepare or commit it: once all the parts are done, the owner of the main transaction calls
+ * {@link #prepareToCommit()} and commits it, or aborts it if any part failed.
+ */
+public class CompositeLifecycleTransaction
+{
+    final LifecycleTransaction mainTransaction;
+    private volatile boolean obsoleteOriginals = false;
+    private volatile boolean aborted = false;
+
+    public CompositeLifecycleTransaction(LifecycleTransaction mainTransaction)
+    {
+        this.mainTransaction = mainTransaction;
+    }
+
+    public PartialLifecycleTransaction newPart()
+    {
+        return new PartialLifecycleTransaction(this);
+    }
+
+    /**
+     * Checkpoints the sstables written by all the parts and prepares the main transaction for commit.
+     */
+    public void prepareToCommit()
+    {
+        assert !aborted;
+        mainTransaction.checkpoint();
+        if (obsoleteOriginals)
+            mainTransaction.obsoleteOriginals();
+        mainTransaction.prepareToCommit();
+    }
+
+    void trackNew(SSTable table)
+    {
+        synchronized (mainTransaction)
+        {
+            mainTransaction.trackNew(table);
+        }
+    }
+
+    void untrackNew(SSTable table)
+    {
+        synchronized (mainTransaction)
+        {
+            mainTransaction.untrackNew(table);
+        }
+    }
+
+    void update(Collection<SSTableReader> readers, boolean original)
+    {
+        synchronized (mainTransaction)
+        {
+            mainTransaction.update(readers, original);
+        }
+    }
+
+    void requestObsoleteOriginals()
+    {
+        obsoleteOriginals = true;
+    }
+
+    void abort()
+    {
+        aborted = true;
+    }
+}
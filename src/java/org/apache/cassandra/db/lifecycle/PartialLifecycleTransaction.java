@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.lifecycle;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+import org.apache.cassandra.db.compaction.OperationType;
+import org.apache.cassandra.io.sstable.SSTable;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+
+/**
+ * A part of a {@link CompositeLifecycleTransaction}: new sstables are tracked and staged in the main transaction,
+ * while checkpointing, obsoleting the originals and committing are left to the owner of the composite transaction.
+ * The writers using a part must not open their sstables early, as the originals are shared with the other parts.
+ */
+public class PartialLifecycleTransaction implements ILifecycleTransaction
+{
+    private final CompositeLifecycleTransaction composite;
+
+    PartialLifecycleTransaction(CompositeLifecycleTransaction composite)
+    {
+        this.composite = composite;
+    }
+
+    public void checkpoint()
+    {
+        // done once for all the parts by the composite transaction
+    }
+
+    public void update(SSTableReader reader, boolean original)
+    {
+        update(Collections.singleton(reader), original);
+    }
+
+    public void update(Collection<SSTableReader> readers, boolean original)
+    {
+        assert !original : "only new sstables can be added by a partial transaction";
+        composite.update(readers, original);
+    }
+
+    public SSTableReader current(SSTableReader reader)
+    {
+        return composite.mainTransaction.current(reader);
+    }
+
+    public void obsolete(SSTableReader reader)
+    {
+        throw new UnsupportedOperationException("Partial transactions can't obsolete sstables");
+    }
+
+    public void obsoleteOriginals()
+    {
+        composite.requestObsoleteOriginals();
+    }
+
+    public Set<SSTableReader> originals()
+    {
+        return composite.mainTransaction.originals();
+    }
+
+    public boolean isObsolete(SSTableReader reader)
+    {
+        return composite.mainTransaction.isObsolete(reader);
+    }
+
+    public Throwable commit(Throwable accumulate)
+    {
+        // the main transaction is committed by the owner of the composite transaction
+        return accumulate;
+    }
+
+    public Throwable abort(Throwable accumulate)
+    {
+        // the main transaction, and the sstables staged in it, are aborted by the owner of the composite transaction
+        composite.abort();
+        return accumulate;
+    }
+
+    public void prepareToCommit()
+    {
+    }
+
+    public void close()
+    {
+    }
+
+    public void trackNew(SSTable table)
+    {
+        composite.trackNew(table);
+    }
+
+    public void untrackNew(SSTable table)
+    {
+        composite.untrackNew(table);
+    }
+
+    public OperationType opType()
+    {
+        return composite.mainTransaction.opType();
+    }
+
+    public boolean isOffline()
+    {
+        return composite.mainTransaction.isOffline();
+    }
+}
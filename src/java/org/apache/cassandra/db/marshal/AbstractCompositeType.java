@@ -29,6 +29,7 @@ import org.apache.cassandra.serializers.BytesSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 /**
  * A class avoiding class duplication between CompositeType and
@@ -88,6 +89,43 @@ public abstract class AbstractCompositeType extends AbstractType<ByteBuffer>
         return 1;
     }
 
+    /**
+     * Composites are written as their components, each followed by its end-of-component byte shifted to sort between
+     * the escape bytes and the continuations of escaped values, and a terminator that sorts a composite before the
+     * longer ones it is a prefix of. Static composites start with a marker that sorts before any component.
+     */
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        ByteBuffer bb = value.duplicate();
+        List<ByteSource> sources = new ArrayList<>();
+        if (readIsStatic(bb))
+            sources.add(ByteSource.oneByte(ByteSource.LT_NEXT_COMPONENT));
+
+        int i = 0;
+        while (bb.remaining() > 0)
+        {
+            AbstractType<?> comparator = getComparator(i, bb);
+            ByteSource comparatorBytes = comparatorAsComparableBytes(comparator);
+            if (comparatorBytes != null)
+                sources.add(comparatorBytes);
+            sources.add(comparator.asComparableComponent(ByteBufferUtil.readBytesWithShortLength(bb)));
+            sources.add(ByteSource.oneByte(0x80 + bb.get()));
+            ++i;
+        }
+        sources.add(ByteSource.oneByte(ByteSource.TERMINATOR));
+        return ByteSource.concat(sources.toArray(new ByteSource[0]));
+    }
+
+    /**
+     * The byte-comparable representation of the comparator of a component, for composites whose components are
+     * ordered by type first, or null.
+     */
+    protected ByteSource comparatorAsComparableBytes(AbstractType<?> comparator)
+    {
+        return null;
+    }
+
     // Check if the provided BB represents a static name and advance the
     // buffer to the real beginning if so.
     protected abstract boolean readIsStatic(ByteBuffer bb);
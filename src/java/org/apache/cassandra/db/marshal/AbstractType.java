@@ -45,6 +45,7 @@ import org.github.jamm.Unmetered;
 import org.apache.cassandra.io.util.DataOutputPlus;
 import org.apache.cassandra.io.util.DataInputPlus;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 import static org.apache.cassandra.db.marshal.AbstractType.ComparisonType.CUSTOM;
 
@@ -183,6 +184,52 @@ public abstract class AbstractType<T> implements Comparator<ByteBuffer>, Assignm
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Produce a byte-comparable representation of the given value, i.e. a sequence of bytes whose unsigned
+     * lexicographic order is the same as the order defined by {@link #compare}.
+     * <p>
+     * The value must not be empty: empty (and null) values have no content and are told apart by the separator that
+     * precedes them, see {@link #asComparableComponent}. The encoding may be a prefix of the encoding of a greater
+     * value only if the next byte of the latter is greater than all separators, so it must be followed by a
+     * separator or terminator when used as part of a larger source.
+     * <p>
+     * Byte-order comparable types are escaped, or written as they are if their values have a fixed length. Types with
+     * a custom comparison must override this method, and {@link #supportsComparableBytes}.
+     *
+     * @throws UnsupportedOperationException if the type doesn't define an order, see {@link #supportsComparableBytes}
+     */
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        if (comparisonType != ComparisonType.BYTE_ORDER)
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " has no byte-comparable representation");
+        return valueLengthIfFixed() > 0 ? ByteSource.fixedLength(value) : ByteSource.of(value);
+    }
+
+    /**
+     * Whether the values of this type have a byte-comparable representation, in which case
+     * {@link #asComparableBytes} doesn't throw for any of them.
+     */
+    public boolean supportsComparableBytes()
+    {
+        return comparisonType == ComparisonType.BYTE_ORDER;
+    }
+
+    /**
+     * Produce the byte-comparable representation of the given value as a component of a multi-component value: a
+     * separator that orders null, empty and non-empty values (see {@link ByteSource#NEXT_COMPONENT_NULL}) followed
+     * by the {@link #asComparableBytes} of non-empty values.
+     *
+     * @param value the value, which may be null or empty
+     */
+    public final ByteSource asComparableComponent(ByteBuffer value)
+    {
+        if (value == null)
+            return ByteSource.oneByte(ByteSource.NEXT_COMPONENT_NULL);
+        if (!value.hasRemaining())
+            return ByteSource.oneByte(isReversed() ? ByteSource.NEXT_COMPONENT_EMPTY_REVERSED : ByteSource.NEXT_COMPONENT_EMPTY);
+        return ByteSource.concat(ByteSource.oneByte(ByteSource.NEXT_COMPONENT), asComparableBytes(value));
+    }
+
     /**
      * Validate cell value. Unlike {@linkplain #validate(java.nio.ByteBuffer)},
      * cell value is passed to validate its content.
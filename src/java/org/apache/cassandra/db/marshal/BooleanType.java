@@ -26,6 +26,7 @@ import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.serializers.BooleanSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +57,19 @@ public class BooleanType extends AbstractType<Boolean>
         return b2 == 0 ? 1 : 0;
     }
 
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        // false is 0, true is anything else
+        return ByteSource.oneByte(value.get(value.position()) == 0 ? 0 : 1);
+    }
+
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return true;
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
 
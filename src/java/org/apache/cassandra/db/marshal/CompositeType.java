@@ -138,6 +138,12 @@ public class CompositeType extends AbstractCompositeType
         return getComparator(i, bb1);
     }
 
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return types.stream().allMatch(AbstractType::supportsComparableBytes);
+    }
+
     protected AbstractType<?> getAndAppendComparator(int i, ByteBuffer bb, StringBuilder sb)
     {
         return types.get(i);
@@ -31,10 +31,15 @@ import org.apache.cassandra.serializers.DecimalSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class DecimalType extends NumberType<BigDecimal>
 {
     public static final DecimalType instance = new DecimalType();
+
+    private static final int DECIMAL_NEGATIVE = 0x40;
+    private static final int DECIMAL_ZERO = 0x80;
+    private static final int DECIMAL_POSITIVE = 0xC0;
     private static final int MIN_SCALE = 32;
     private static final int MIN_SIGNIFICANT_DIGITS = MIN_SCALE;
     private static final int MAX_SCALE = 1000;
@@ -61,6 +66,37 @@ public class DecimalType extends NumberType<BigDecimal>
         return compose(o1).compareTo(compose(o2));
     }
 
+    /**
+     * Decimals are written as a sign byte, followed for non-zero values by the exponent {@code e} and the digits
+     * {@code d1 d2 ... dn} (without trailing zeros, {@code d1} non-zero) of their absolute value
+     * {@code 0.d1d2...dn * 10^e}. The digits are written one per byte, shifted by one so that the terminating 0 sorts
+     * before them, and negative values invert the bytes of their absolute value.
+     */
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        BigDecimal decimal = compose(value);
+        if (decimal.signum() == 0)
+            return ByteSource.oneByte(DECIMAL_ZERO);
+
+        BigDecimal abs = decimal.abs().stripTrailingZeros();
+        String digits = abs.unscaledValue().toString();
+        byte[] mantissa = new byte[digits.length() + 1];
+        for (int i = 0; i < digits.length(); i++)
+            mantissa[i] = (byte) (digits.charAt(i) - '0' + 1);
+
+        ByteSource magnitude = ByteSource.concat(ByteSource.of((long) abs.precision() - abs.scale()), ByteSource.fixedLength(mantissa));
+        return decimal.signum() > 0
+               ? ByteSource.concat(ByteSource.oneByte(DECIMAL_POSITIVE), magnitude)
+               : ByteSource.concat(ByteSource.oneByte(DECIMAL_NEGATIVE), ByteSource.invert(magnitude));
+    }
+
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return true;
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
         // Return an empty ByteBuffer for an empty string.
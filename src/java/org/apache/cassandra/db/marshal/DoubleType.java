@@ -27,6 +27,7 @@ import org.apache.cassandra.serializers.DoubleSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class DoubleType extends NumberType<Double>
 {
@@ -53,6 +54,20 @@ public class DoubleType extends NumberType<Double>
         return compose(o1).compareTo(compose(o2));
     }
 
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        // see FloatType
+        long bits = Double.doubleToLongBits(compose(value));
+        return ByteSource.of(bits ^ ((bits >> 63) & Long.MAX_VALUE));
+    }
+
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return true;
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
       // Return an empty ByteBuffer for an empty string.
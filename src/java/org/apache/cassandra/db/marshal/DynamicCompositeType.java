@@ -19,6 +19,8 @@ package org.apache.cassandra.db.marshal;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.CharacterCodingException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -33,6 +35,7 @@ import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 import static com.google.common.collect.Iterables.any;
 
@@ -154,6 +157,30 @@ public class DynamicCompositeType extends AbstractCompositeType
         return rawComp;
     }
 
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        // the components may be of any type, including the ones that have no byte-comparable representation
+        return false;
+    }
+
+    @Override
+    protected ByteSource comparatorAsComparableBytes(AbstractType<?> comparator)
+    {
+        // components of different types are ordered by the simple, then full class name of their types, looking
+        // through ReversedType when both types are reversed
+        List<ByteSource> sources = new ArrayList<>(6);
+        if (comparator instanceof ReversedType)
+        {
+            sources.add(ByteSource.of(ReversedType.class.getSimpleName()));
+            sources.add(ByteSource.of(ReversedType.class.getName()));
+            comparator = ((ReversedType<?>) comparator).baseType;
+        }
+        sources.add(ByteSource.of(comparator.getClass().getSimpleName()));
+        sources.add(ByteSource.of(comparator.getClass().getName()));
+        return ByteSource.withTerminator(ByteSource.TERMINATOR, sources.toArray(new ByteSource[0]));
+    }
+
     protected AbstractType<?> getAndAppendComparator(int i, ByteBuffer bb, StringBuilder sb)
     {
         try
@@ -34,6 +34,7 @@ import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.NoSpamLogger;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 /**
  * A type that only accept empty data.
@@ -73,6 +74,18 @@ public class EmptyType extends AbstractType<Void>
         return 0;
     }
 
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        return ByteSource.EMPTY;
+    }
+
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return true;
+    }
+
     public String getString(ByteBuffer bytes)
     {
         return "";
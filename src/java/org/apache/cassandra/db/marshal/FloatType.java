@@ -27,6 +27,7 @@ import org.apache.cassandra.serializers.FloatSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 
 public class FloatType extends NumberType<Float>
@@ -54,6 +55,21 @@ public class FloatType extends NumberType<Float>
         return compose(o1).compareTo(compose(o2));
     }
 
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        // negative numbers have their sign bit set and grow with their magnitude, flipping their other bits makes
+        // all numbers sort like ints; -0.0 sorts before 0.0 and NaN last, like Float.compare
+        int bits = Float.floatToIntBits(compose(value));
+        return ByteSource.of(bits ^ ((bits >> 31) & Integer.MAX_VALUE));
+    }
+
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return true;
+    }
+
     public ByteBuffer fromString(String source) throws MarshalException
     {
       // Return an empty ByteBuffer for an empty string.
@@ -29,6 +29,7 @@ import org.apache.cassandra.serializers.IntegerSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public final class IntegerType extends NumberType<BigInteger>
 {
@@ -72,6 +73,19 @@ public final class IntegerType extends NumberType<BigInteger>
         return IntegerType.compareIntegers(lhs, rhs);
     }
 
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        // the minimal representation, as values may be padded
+        return ByteSource.of(compose(value));
+    }
+
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return true;
+    }
+
     public static int compareIntegers(ByteBuffer lhs, ByteBuffer rhs)
     {
         int lhsLen = lhs.remaining();
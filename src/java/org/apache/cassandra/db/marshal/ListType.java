@@ -31,6 +31,7 @@ import org.apache.cassandra.serializers.CollectionSerializer;
 import org.apache.cassandra.serializers.ListSerializer;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.transport.ProtocolVersion;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class ListType<T> extends CollectionType<List<T>>
 {
@@ -188,6 +189,30 @@ public class ListType<T> extends CollectionType<List<T>>
         return size1 == size2 ? 0 : (size1 < size2 ? -1 : 1);
     }
 
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        return asComparableBytesListOrSet(elements, value);
+    }
+
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return elements.supportsComparableBytes();
+    }
+
+    static ByteSource asComparableBytesListOrSet(AbstractType<?> elementsComparator, ByteBuffer value)
+    {
+        ByteBuffer bb = value.duplicate();
+        int size = CollectionSerializer.readCollectionSize(bb, ProtocolVersion.V3);
+        // the terminator sorts a list before the longer lists it is a prefix of
+        ByteSource[] sources = new ByteSource[size + 1];
+        for (int i = 0; i < size; i++)
+            sources[i] = elementsComparator.asComparableComponent(CollectionSerializer.readValue(bb, ProtocolVersion.V3));
+        sources[size] = ByteSource.oneByte(ByteSource.TERMINATOR);
+        return ByteSource.concat(sources);
+    }
+
     @Override
     public String toString(boolean ignoreFreezing)
     {
@@ -32,6 +32,7 @@ import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.MapSerializer;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.Pair;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class MapType<K, V> extends CollectionType<Map<K, V>>
 {
@@ -206,6 +207,28 @@ public class MapType<K, V> extends CollectionType<Map<K, V>>
         return size1 == size2 ? 0 : (size1 < size2 ? -1 : 1);
     }
 
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        ByteBuffer bb = value.duplicate();
+        ProtocolVersion protocolVersion = ProtocolVersion.V3;
+        int size = CollectionSerializer.readCollectionSize(bb, protocolVersion);
+        ByteSource[] sources = new ByteSource[2 * size + 1];
+        for (int i = 0; i < size; i++)
+        {
+            sources[2 * i] = keys.asComparableComponent(CollectionSerializer.readValue(bb, protocolVersion));
+            sources[2 * i + 1] = values.asComparableComponent(CollectionSerializer.readValue(bb, protocolVersion));
+        }
+        sources[2 * size] = ByteSource.oneByte(ByteSource.TERMINATOR);
+        return ByteSource.concat(sources);
+    }
+
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return keys.supportsComparableBytes() && values.supportsComparableBytes();
+    }
+
     @Override
     public MapSerializer<K, V> getSerializer()
     {
@@ -29,6 +29,7 @@ import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 /** for sorting columns representing row keys in the row ordering as determined by a partitioner.
  * Not intended for user-defined CFs, and will in fact error out if used with such. */
@@ -94,6 +95,21 @@ public class PartitionerDefinedOrder extends AbstractType<ByteBuffer>
         return PartitionPosition.ForKey.get(o1, partitioner).compareTo(PartitionPosition.ForKey.get(o2, partitioner));
     }
 
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        // empty values are the minimum key bound, which sorts first like empty components do
+        if (partitioner.getMinimumToken().asComparableBytes() == null)
+            throw new UnsupportedOperationException(partitioner.getClass().getSimpleName() + " has no byte-comparable tokens");
+        return partitioner.decorateKey(value).asComparableBytes();
+    }
+
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return partitioner.getMinimumToken().asComparableBytes() != null;
+    }
+
     @Override
     public void validate(ByteBuffer bytes) throws MarshalException
     {
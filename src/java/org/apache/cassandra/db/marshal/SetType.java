@@ -30,6 +30,7 @@ import org.apache.cassandra.exceptions.SyntaxException;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.SetSerializer;
 import org.apache.cassandra.transport.ProtocolVersion;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class SetType<T> extends CollectionType<Set<T>>
 {
@@ -152,6 +153,18 @@ public class SetType<T> extends CollectionType<Set<T>>
         return ListType.compareListOrSet(elements, o1, o2);
     }
 
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        return ListType.asComparableBytesListOrSet(elements, value);
+    }
+
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return elements.supportsComparableBytes();
+    }
+
     public SetSerializer<T> getSerializer()
     {
         return serializer;
@@ -28,6 +28,7 @@ import org.apache.cassandra.serializers.TypeSerializer;
 import org.apache.cassandra.utils.UUIDGen;
 import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.TimeUUIDSerializer;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public class TimeUUIDType extends TemporalType<UUID>
 {
@@ -77,6 +78,24 @@ public class TimeUUIDType extends TemporalType<UUID>
         return Long.compare(lsb1, lsb2);
     }
 
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        // the reordered timestamp is positive; the least significant bits are compared as signed bytes, so we flip
+        // the sign bit of each of them
+        ByteBuffer bytes = ByteBuffer.allocate(16);
+        bytes.putLong(reorderTimestampBytes(value.getLong(value.position())))
+             .putLong(value.getLong(value.position() + 8) ^ 0x8080808080808080L);
+        bytes.flip();
+        return ByteSource.fixedLength(bytes);
+    }
+
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return true;
+    }
+
     // takes as input 8 signed bytes in native machine order
     // returns the first byte unchanged, and the following 7 bytes converted to an unsigned representation
     // which is the same as a 2's complement long in native format
@@ -34,6 +34,7 @@ import org.apache.cassandra.exceptions.SyntaxException;
 import org.apache.cassandra.serializers.*;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 import static com.google.common.collect.Iterables.any;
 import static com.google.common.collect.Iterables.transform;
@@ -186,6 +187,28 @@ public class TupleType extends AbstractType<ByteBuffer>
         return 0;
     }
 
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        ByteBuffer[] components = split(value);
+        // trailing nulls compare equal to missing components
+        int length = components.length;
+        while (length > 0 && components[length - 1] == null)
+            --length;
+
+        ByteSource[] sources = new ByteSource[length + 1];
+        for (int i = 0; i < length; i++)
+            sources[i] = types.get(i).asComparableComponent(components[i]);
+        sources[length] = ByteSource.oneByte(ByteSource.TERMINATOR);
+        return ByteSource.concat(sources);
+    }
+
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return types.stream().allMatch(AbstractType::supportsComparableBytes);
+    }
+
     /**
      * Split a tuple value into its component values.
      */
@@ -31,6 +31,7 @@ import org.apache.cassandra.serializers.MarshalException;
 import org.apache.cassandra.serializers.UUIDSerializer;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.UUIDGen;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 /**
  * Compares UUIDs using the following criteria:<br>
@@ -101,6 +102,27 @@ public class UUIDType extends AbstractType<UUID>
         return UnsignedLongs.compare(b1.getLong(s1 + 8), b2.getLong(s2 + 8));
     }
 
+    @Override
+    public ByteSource asComparableBytes(ByteBuffer value)
+    {
+        // the version, then the timestamp for time-based UUIDs or the raw most significant bits for the others,
+        // then the least significant bits, all compared unsigned
+        long msb = value.getLong(value.position());
+        int version = (int) ((msb >>> 12) & 0xf);
+        ByteBuffer bytes = ByteBuffer.allocate(17);
+        bytes.put((byte) version)
+             .putLong(version == 1 ? TimeUUIDType.reorderTimestampBytes(msb) : msb)
+             .putLong(value.getLong(value.position() + 8));
+        bytes.flip();
+        return ByteSource.fixedLength(bytes);
+    }
+
+    @Override
+    public boolean supportsComparableBytes()
+    {
+        return true;
+    }
+
     @Override
     public boolean isValueCompatibleWithInternal(AbstractType<?> otherType)
     {
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.memtable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterators;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Memtable;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.db.commitlog.CommitLogPosition;
+import org.apache.cassandra.db.partitions.AtomicBTreePartition;
+import org.apache.cassandra.db.partitions.Partition;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Splitter;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.utils.FBUtilities;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+import org.apache.cassandra.utils.memory.MemtableAllocator;
+
+import static java.lang.String.format;
+
+/**
+ * A skip list memtable that splits the token range in a number of shards, each indexing its partitions in its own
+ * {@link ConcurrentSkipListMap}.
+ * <p>
+ * Concurrent writers to different parts of the token range thus modify separate, smaller skip lists, which reduces
+ * the contention between them on many-core machines. As the shards cover contiguous token ranges, iterating over
+ * the memtable in key order (for reads and flushes) simply concatenates the iterators of the shards.
+ * <p>
+ * CQL: {'class': 'ShardedSkipListMemtable', 'shards': &lt;number of shards, defaults to the number of cores&gt;}
+ */
+public class ShardedSkipListMemtable extends Memtable
+{
+    public static final String SHARDS_OPTION = "shards";
+
+    private final List<Token> shardBoundaries;
+    private final ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition>[] shards;
+
+    @SuppressWarnings("unchecked")
+    @VisibleForTesting
+    ShardedSkipListMemtable(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs, int shardCount)
+    {
+        super(commitLogLowerBound, cfs);
+        this.shardBoundaries = shardBoundaries(cfs.getPartitioner(), shardCount);
+        this.shards = new ConcurrentNavigableMap[shardBoundaries.size() + 1];
+        for (int i = 0; i < shards.length; i++)
+            shards[i] = new ConcurrentSkipListMap<>();
+    }
+
+    public static Factory factory(Map<String, String> options)
+    {
+        Map<String, String> unknown = new HashMap<>(options);
+        String shardsOption = unknown.remove(SHARDS_OPTION);
+        if (!unknown.isEmpty())
+            throw new ConfigurationException(format("Memtable options %s are not understood by %s", unknown.keySet(), ShardedSkipListMemtable.class.getSimpleName()));
+
+        int shardCount = FBUtilities.getAvailableProcessors();
+        if (shardsOption != null)
+        {
+            try
+            {
+                shardCount = Integer.parseInt(shardsOption);
+            }
+            catch (NumberFormatException e)
+            {
+                throw new ConfigurationException(format("Invalid value '%s' for memtable option '%s'", shardsOption, SHARDS_OPTION));
+            }
+            if (shardCount <= 0)
+                throw new ConfigurationException(format("Memtable option '%s' must be positive, but was %d", SHARDS_OPTION, shardCount));
+        }
+
+        int shards = shardCount;
+        return (commitLogLowerBound, cfs) -> new ShardedSkipListMemtable(commitLogLowerBound, cfs, shards);
+    }
+
+    /**
+     * Splits the whole token range in the requested number of shards of equal width, returning the upper bound
+     * (inclusive) of every shard but the last one. Partitioners that can't split the token range use a single shard.
+     */
+    @VisibleForTesting
+    static List<Token> shardBoundaries(IPartitioner partitioner, int shardCount)
+    {
+        Optional<Splitter> splitter = partitioner.splitter();
+        if (shardCount == 1 || !splitter.isPresent())
+            return Collections.emptyList();
+
+        Range<Token> fullRange = new Range<>(partitioner.getMinimumToken(), partitioner.getMaximumToken());
+        List<Token> boundaries = splitter.get().splitOwnedRanges(shardCount,
+                                                                 Collections.singletonList(new Splitter.WeightedRange(1.0, fullRange)),
+                                                                 false);
+        // the last boundary is the maximum token
+        return new ArrayList<>(boundaries.subList(0, boundaries.size() - 1));
+    }
+
+    @VisibleForTesting
+    int shardCount()
+    {
+        return shards.length;
+    }
+
+    private int shardFor(PartitionPosition position)
+    {
+        Token token = position.getToken();
+        int low = 0;
+        int high = shardBoundaries.size();
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (token.compareTo(shardBoundaries.get(mid)) <= 0)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        return low;
+    }
+
+    public boolean isClean()
+    {
+        for (ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> shard : shards)
+            if (!shard.isEmpty())
+                return false;
+        return true;
+    }
+
+    protected AtomicBTreePartition getOrCreatePartition(DecoratedKey key, OpOrder.Group opGroup)
+    {
+        ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> partitions = shards[shardFor(key)];
+        AtomicBTreePartition previous = partitions.get(key);
+        if (previous != null)
+            return previous;
+
+        MemtableAllocator allocator = getAllocator();
+        final DecoratedKey cloneKey = allocator.clone(key, opGroup);
+        AtomicBTreePartition empty = new AtomicBTreePartition(cfs.metadata, cloneKey, allocator);
+        // We'll add the columns later. This avoids wasting works if we get beaten in the putIfAbsent
+        previous = partitions.putIfAbsent(cloneKey, empty);
+        if (previous != null)
+            return previous;
+
+        // allocate the row overhead after the fact; this saves over allocating and having to free after, but
+        // means we can overshoot our declared limit.
+        int overhead = (int) (cloneKey.getToken().getHeapSize() + SkipListMemtable.ROW_OVERHEAD_HEAP_SIZE);
+        allocator.onHeap().allocate(overhead, opGroup);
+        liveDataSize.add(8);
+        return empty;
+    }
+
+    public int partitionCount()
+    {
+        int count = 0;
+        for (ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> shard : shards)
+            count += shard.size();
+        return count;
+    }
+
+    protected Iterator<AtomicBTreePartition> partitionIterator(PartitionPosition left, boolean includeLeft, PartitionPosition right, boolean includeRight)
+    {
+        int firstShard = left == null ? 0 : shardFor(left);
+        int lastShard = right == null ? shards.length - 1 : shardFor(right);
+        if (firstShard > lastShard)
+            return Collections.emptyIterator();
+        if (firstShard == lastShard)
+            return SkipListMemtable.subMap(shards[firstShard], left, includeLeft, right, includeRight).values().iterator();
+
+        List<Iterator<AtomicBTreePartition>> iterators = new ArrayList<>(lastShard - firstShard + 1);
+        iterators.add(SkipListMemtable.subMap(shards[firstShard], left, includeLeft, null, false).values().iterator());
+        for (int i = firstShard + 1; i < lastShard; i++)
+            iterators.add(shards[i].values().iterator());
+        iterators.add(SkipListMemtable.subMap(shards[lastShard], null, false, right, includeRight).values().iterator());
+        return Iterators.concat(iterators.iterator());
+    }
+
+    public Partition getPartition(DecoratedKey key)
+    {
+        return shards[shardFor(key)].get(key);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.memtable;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import org.apache.cassandra.db.BufferDecoratedKey;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Memtable;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.db.commitlog.CommitLogPosition;
+import org.apache.cassandra.db.partitions.AtomicBTreePartition;
+import org.apache.cassandra.db.partitions.Partition;
+import org.apache.cassandra.dht.Murmur3Partitioner.LongToken;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.ObjectSizes;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+import org.apache.cassandra.utils.memory.MemtableAllocator;
+
+import static java.lang.String.format;
+
+/**
+ * The default memtable, indexing partitions in a {@link ConcurrentSkipListMap}.
+ */
+public class SkipListMemtable extends Memtable
+{
+    private static final Factory FACTORY = SkipListMemtable::new;
+
+    static final int ROW_OVERHEAD_HEAP_SIZE = estimateRowOverhead(Integer.parseInt(System.getProperty("cassandra.memtable_row_overhead_computation_step", "100000")));
+
+    // We index the memtable by PartitionPosition only for the purpose of being able
+    // to select key range using Token.KeyBound. However put() ensures that we
+    // actually only store DecoratedKey.
+    private final ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> partitions = new ConcurrentSkipListMap<>();
+
+    public SkipListMemtable(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs)
+    {
+        super(commitLogLowerBound, cfs);
+    }
+
+    // ONLY to be used for testing, to create a mock Memtable
+    @VisibleForTesting
+    public SkipListMemtable(TableMetadata metadata)
+    {
+        super(metadata);
+    }
+
+    public static Factory factory(Map<String, String> options)
+    {
+        if (!options.isEmpty())
+            throw new ConfigurationException(format("Memtable options %s are not understood by %s", options.keySet(), SkipListMemtable.class.getSimpleName()));
+        return FACTORY;
+    }
+
+    public boolean isClean()
+    {
+        return partitions.isEmpty();
+    }
+
+    protected AtomicBTreePartition getOrCreatePartition(DecoratedKey key, OpOrder.Group opGroup)
+    {
+        AtomicBTreePartition previous = partitions.get(key);
+        if (previous != null)
+            return previous;
+
+        MemtableAllocator allocator = getAllocator();
+        final DecoratedKey cloneKey = allocator.clone(key, opGroup);
+        AtomicBTreePartition empty = new AtomicBTreePartition(cfs.metadata, cloneKey, allocator);
+        // We'll add the columns later. This avoids wasting works if we get beaten in the putIfAbsent
+        previous = partitions.putIfAbsent(cloneKey, empty);
+        if (previous != null)
+            return previous;
+
+        // allocate the row overhead after the fact; this saves over allocating and having to free after, but
+        // means we can overshoot our declared limit.
+        int overhead = (int) (cloneKey.getToken().getHeapSize() + ROW_OVERHEAD_HEAP_SIZE);
+        allocator.onHeap().allocate(overhead, opGroup);
+        liveDataSize.add(8);
+        return empty;
+    }
+
+    public int partitionCount()
+    {
+        return partitions.size();
+    }
+
+    protected Iterator<AtomicBTreePartition> partitionIterator(PartitionPosition left, boolean includeLeft, PartitionPosition right, boolean includeRight)
+    {
+        return subMap(partitions, left, includeLeft, right, includeRight).values().iterator();
+    }
+
+    static Map<PartitionPosition, AtomicBTreePartition> subMap(ConcurrentNavigableMap<PartitionPosition, AtomicBTreePartition> partitions,
+                                                               PartitionPosition left,
+                                                               boolean includeLeft,
+                                                               PartitionPosition right,
+                                                               boolean includeRight)
+    {
+        if (left == null)
+            return right == null ? partitions : partitions.headMap(right, includeRight);
+
+        return right == null
+             ? partitions.tailMap(left, includeLeft)
+             : partitions.subMap(left, includeLeft, right, includeRight);
+    }
+
+    public Partition getPartition(DecoratedKey key)
+    {
+        return partitions.get(key);
+    }
+
+    private static int estimateRowOverhead(final int count)
+    {
+        // calculate row overhead
+        try (final OpOrder.Group group = new OpOrder().start())
+        {
+            int rowOverhead;
+            MemtableAllocator allocator = MEMORY_POOL.newAllocator();
+            ConcurrentNavigableMap<PartitionPosition, Object> partitions = new ConcurrentSkipListMap<>();
+            final Object val = new Object();
+            for (int i = 0 ; i < count ; i++)
+                partitions.put(allocator.clone(new BufferDecoratedKey(new LongToken(i), ByteBufferUtil.EMPTY_BYTE_BUFFER), group), val);
+            double avgSize = ObjectSizes.measureDeep(partitions) / (double) count;
+            rowOverhead = (int) ((avgSize - Math.floor(avgSize)) < 0.05 ? Math.floor(avgSize) : Math.ceil(avgSize));
+            rowOverhead -= ObjectSizes.measureDeep(new LongToken(0));
+            rowOverhead += AtomicBTreePartition.EMPTY_SIZE;
+            allocator.setDiscarding();
+            allocator.setDiscarded();
+            return rowOverhead;
+        }
+    }
+}
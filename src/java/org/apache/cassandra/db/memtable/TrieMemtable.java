@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.memtable;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.collect.AbstractIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.db.BufferDecoratedKey;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Memtable;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.db.commitlog.CommitLogPosition;
+import org.apache.cassandra.db.partitions.AtomicBTreePartition;
+import org.apache.cassandra.db.partitions.Partition;
+import org.apache.cassandra.db.tries.InMemoryTrie;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Murmur3Partitioner.LongToken;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.NoSpamLogger;
+import org.apache.cassandra.utils.ObjectSizes;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+import org.apache.cassandra.utils.memory.MemoryUtil;
+import org.apache.cassandra.utils.memory.MemtableAllocator;
+import org.apache.cassandra.utils.memory.MemtableBufferAllocator;
+import org.apache.cassandra.utils.memory.NativeAllocator;
+
+import static java.lang.String.format;
+
+/**
+ * A memtable indexing its partitions in a byte-comparable {@link InMemoryTrie}.
+ * <p>
+ * The trie nodes are allocated in blocks from the memtable allocator, so with {@code offheap_objects} both the
+ * index and the partition contents live off-heap, and with the other allocation types the index is made of a few
+ * large buffers rather than of many small objects. What remains on heap for each partition is the partition object
+ * itself, its key object and a reference to it, which is significantly less than the nodes of a skip list.
+ * <p>
+ * Updates of existing partitions, and all reads, are lock-free. Adding a new partition to the trie is serialised,
+ * but only covers the insertion of the key in the index; the update itself is applied outside of the lock.
+ * <p>
+ * The trie requires the tokens of the partitioner to have a byte-comparable representation. For partitioners that
+ * don't provide one, the factory falls back to a {@link SkipListMemtable}.
+ */
+public class TrieMemtable extends Memtable
+{
+    private static final Logger logger = LoggerFactory.getLogger(TrieMemtable.class);
+    private static final NoSpamLogger noSpamLogger = NoSpamLogger.getLogger(logger, 1, TimeUnit.HOURS);
+
+    private static final Factory FACTORY = TrieMemtable::create;
+
+    // everything a partition adds on heap, except its token: the partition and key objects, and the content reference
+    private static final long PARTITION_OVERHEAD_HEAP_SIZE = AtomicBTreePartition.EMPTY_SIZE
+                                                             + ObjectSizes.measure(new BufferDecoratedKey(new LongToken(0), ByteBufferUtil.EMPTY_BYTE_BUFFER))
+                                                             + ObjectSizes.sizeOnHeapExcludingData(ByteBufferUtil.EMPTY_BYTE_BUFFER)
+                                                             + ObjectSizes.sizeOfReferenceArray(1) - ObjectSizes.sizeOfReferenceArray(0);
+
+    private final InMemoryTrie<AtomicBTreePartition> partitions;
+    private final Lock writeLock = new ReentrantLock();
+
+    TrieMemtable(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs)
+    {
+        super(commitLogLowerBound, cfs);
+        this.partitions = new InMemoryTrie<>(this::allocateBlock);
+    }
+
+    public static Factory factory(Map<String, String> options)
+    {
+        if (!options.isEmpty())
+            throw new ConfigurationException(format("Memtable options %s are not understood by %s", options.keySet(), TrieMemtable.class.getSimpleName()));
+        return FACTORY;
+    }
+
+    private static Memtable create(AtomicReference<CommitLogPosition> commitLogLowerBound, ColumnFamilyStore cfs)
+    {
+        if (supportsPartitioner(cfs.getPartitioner()))
+            return new TrieMemtable(commitLogLowerBound, cfs);
+
+        noSpamLogger.warn("Partitioner {} of {}.{} does not support byte-comparable keys, using a {} instead of a {}",
+                          cfs.getPartitioner().getClass().getSimpleName(), cfs.keyspace.getName(), cfs.name,
+                          SkipListMemtable.class.getSimpleName(), TrieMemtable.class.getSimpleName());
+        return new SkipListMemtable(commitLogLowerBound, cfs);
+    }
+
+    static boolean supportsPartitioner(IPartitioner partitioner)
+    {
+        return partitioner.getMinimumToken().asComparableBytes() != null;
+    }
+
+    private ByteBuffer allocateBlock(int size, OpOrder.Group opGroup)
+    {
+        MemtableAllocator allocator = getAllocator();
+        if (allocator instanceof NativeAllocator)
+            return MemoryUtil.getByteBuffer(((NativeAllocator) allocator).allocate(size, opGroup), size);
+        return ((MemtableBufferAllocator) allocator).allocate(size, opGroup);
+    }
+
+    public boolean isClean()
+    {
+        return partitions.isEmpty();
+    }
+
+    protected AtomicBTreePartition getOrCreatePartition(DecoratedKey key, OpOrder.Group opGroup)
+    {
+        AtomicBTreePartition partition = partitions.get(key);
+        if (partition != null)
+            return partition;
+
+        writeLock.lock();
+        try
+        {
+            return partitions.putIfAbsent(key, () -> newPartition(key, opGroup), opGroup);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    private AtomicBTreePartition newPartition(DecoratedKey key, OpOrder.Group opGroup)
+    {
+        MemtableAllocator allocator = getAllocator();
+        DecoratedKey cloneKey = allocator.clone(key, opGroup);
+        allocator.onHeap().allocate(cloneKey.getToken().getHeapSize() + PARTITION_OVERHEAD_HEAP_SIZE, opGroup);
+        liveDataSize.add(8);
+        return new AtomicBTreePartition(cfs.metadata, cloneKey, allocator);
+    }
+
+    public int partitionCount()
+    {
+        return partitions.size();
+    }
+
+    protected Iterator<AtomicBTreePartition> partitionIterator(PartitionPosition left, boolean includeLeft, PartitionPosition right, boolean includeRight)
+    {
+        // the trie gives us the partitions starting from the left position, we only need to exclude it if
+        // requested, and to stop at the right position
+        Iterator<AtomicBTreePartition> iter = left == null ? partitions.values() : partitions.valuesFrom(left);
+        return new AbstractIterator<AtomicBTreePartition>()
+        {
+            boolean checkLeft = left != null && !includeLeft;
+
+            protected AtomicBTreePartition computeNext()
+            {
+                while (iter.hasNext())
+                {
+                    AtomicBTreePartition partition = iter.next();
+                    DecoratedKey key = partition.partitionKey();
+                    if (checkLeft)
+                    {
+                        if (key.compareTo(left) <= 0)
+                            continue;
+                        checkLeft = false;
+                    }
+                    if (right != null)
+                    {
+                        int cmp = key.compareTo(right);
+                        if (cmp > 0 || (cmp == 0 && !includeRight))
+                            return endOfData();
+                    }
+                    return partition;
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    public Partition getPartition(DecoratedKey key)
+    {
+        return partitions.get(key);
+    }
+
+    @Override
+    public String toString()
+    {
+        return format("%s, %s trie", super.toString(), partitions.sizeInBytes());
+    }
+}
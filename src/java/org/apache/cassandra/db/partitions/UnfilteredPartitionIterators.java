@@ -139,6 +139,15 @@ public abstract class UnfilteredPartitionIterators
             {
                 UnfilteredRowIterators.MergeListener rowListener = listener.getRowMergeListener(partitionKey, toMerge);
 
+                // Without a row listener the index of the versions doesn't matter, so we only merge the iterators
+                // that have the partition. When there is only one (non-overlapping sources), it is returned as is,
+                // which avoids the per-row merging overhead entirely.
+                if (rowListener == null)
+                {
+                    toMerge.removeIf(Objects::isNull);
+                    return UnfilteredRowIterators.merge(toMerge);
+                }
+
                 // Make a single empty iterator object to merge, we don't need toMerge.size() copiess
                 UnfilteredRowIterator empty = null;
 
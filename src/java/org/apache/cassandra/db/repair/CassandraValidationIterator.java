@@ -19,9 +19,11 @@
 package org.apache.cassandra.db.repair;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -35,6 +37,7 @@ import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.compaction.AbstractCompactionStrategy;
@@ -167,6 +170,7 @@ public class CassandraValidationIterator extends ValidationPartitionIterator
 
     private final boolean isSnapshotValidation;
     private final AbstractCompactionStrategy.ScannerList scanners;
+    private final ValidationPartitionDigests digests;
     private final ValidationCompactionController controller;
 
     private final CompactionIterator ci;
@@ -216,7 +220,19 @@ public class CassandraValidationIterator extends ValidationPartitionIterator
         }
 
         controller = new ValidationCompactionController(cfs, getDefaultGcBefore(cfs, nowInSec));
-        scanners = cfs.getCompactionStrategyManager().getScanners(sstables, ranges);
+        if (DatabaseDescriptor.isRepairPartitionDigestsEnabled())
+        {
+            // the partitions found in a single sstable with hashes are not read, see precomputedHashes()
+            digests = new ValidationPartitionDigests(sstables, ranges);
+            List<ISSTableScanner> scannerList = new ArrayList<>(cfs.getCompactionStrategyManager().getScanners(digests.undigested(), ranges).scanners);
+            scannerList.addAll(digests.scanners());
+            scanners = new AbstractCompactionStrategy.ScannerList(scannerList);
+        }
+        else
+        {
+            digests = null;
+            scanners = cfs.getCompactionStrategyManager().getScanners(sstables, ranges);
+        }
         ci = new ValidationCompactionIterator(scanners.scanners, controller, nowInSec, CompactionManager.instance.active);
 
         long allPartitions = 0;
@@ -252,6 +268,9 @@ public class CassandraValidationIterator extends ValidationPartitionIterator
         if (scanners != null)
             scanners.close();
 
+        if (digests != null)
+            digests.close();
+
         if (controller != null)
             controller.close();
 
@@ -266,6 +285,12 @@ public class CassandraValidationIterator extends ValidationPartitionIterator
             sstables.release();
     }
 
+    @Override
+    public Iterator<PartitionHash> precomputedHashes() throws IOException
+    {
+        return digests == null ? super.precomputedHashes() : digests.hashes();
+    }
+
     @Override
     public TableMetadata metadata()
     {
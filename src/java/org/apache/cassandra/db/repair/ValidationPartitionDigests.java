@@ -0,0 +1,321 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.repair;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableSet;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.lifecycle.SSTableIntervalTree;
+import org.apache.cassandra.db.partitions.AbstractUnfilteredPartitionIterator;
+import org.apache.cassandra.db.rows.LazilyInitializedUnfilteredRowIterator;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.CorruptSSTableException;
+import org.apache.cassandra.io.sstable.ISSTableScanner;
+import org.apache.cassandra.io.sstable.PartitionDigests;
+import org.apache.cassandra.io.sstable.SSTableIdentityIterator;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.repair.ValidationPartitionIterator.PartitionHash;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.MergeIterator;
+
+/**
+ * Splits the validation of the sstables that have {@link PartitionDigests partition hashes} between the partitions
+ * whose hash can be used as is and the partitions that must still be read.
+ * <p>
+ * The hash of a partition can be used when the partition has a hash, meaning it only has live data, and is not in
+ * any other of the validated sstables, which the bloom filters of these sstables tell. Otherwise validation has to
+ * merge the partition with the other versions of it, and possibly purge it, so it is read by {@link #scanners}, along
+ * with the partitions of the sstables without hashes. The hashes that can be used are returned by {@link #hashes},
+ * which reads the hashes again rather than buffering them.
+ * <p>
+ * As a partition is either read or hashed consistently by both, and as the bloom filters have no false negatives,
+ * the partitions read and the hashes used never overlap.
+ */
+class ValidationPartitionDigests implements AutoCloseable
+{
+    private final Collection<Range<Token>> ranges;
+    private final SSTableIntervalTree intervals;
+    // the sstables with usable hashes
+    private final List<SSTableReader> digested = new ArrayList<>();
+    private final List<SSTableReader> undigested = new ArrayList<>();
+    private final List<PartitionDigests> opened = new ArrayList<>();
+
+    ValidationPartitionDigests(Collection<SSTableReader> sstables, Collection<Range<Token>> ranges) throws IOException
+    {
+        this.ranges = ranges;
+        this.intervals = SSTableIntervalTree.build(sstables);
+
+        for (SSTableReader sstable : sstables)
+        {
+            // the hashes are only checked for now, and opened again by scanners() and hashes()
+            try (PartitionDigests digests = PartitionDigests.open(sstable))
+            {
+                (digests == null ? undigested : digested).add(sstable);
+            }
+        }
+    }
+
+    /**
+     * @return the sstables without usable hashes, to validate as usual
+     */
+    List<SSTableReader> undigested()
+    {
+        return undigested;
+    }
+
+    /**
+     * @return the scanners of the partitions of the sstables with hashes that must be read
+     */
+    @SuppressWarnings("resource")
+    List<ISSTableScanner> scanners() throws IOException
+    {
+        List<ISSTableScanner> scanners = new ArrayList<>(digested.size());
+        for (SSTableReader sstable : digested)
+            scanners.add(new Scanner(open(sstable)));
+        return scanners;
+    }
+
+    /**
+     * @return the hashes of the partitions of the sstables with hashes that don't have to be read, in key order
+     */
+    Iterator<PartitionHash> hashes() throws IOException
+    {
+        if (digested.isEmpty())
+            return Collections.emptyIterator();
+
+        List<Iterator<PartitionHash>> hashes = new ArrayList<>(digested.size());
+        for (SSTableReader sstable : digested)
+            hashes.add(new Hashes(open(sstable)));
+        return MergeIterator.get(hashes, (l, r) -> l.key.compareTo(r.key), new MergeIterator.Reducer<PartitionHash, PartitionHash>()
+        {
+            private PartitionHash hash;
+
+            public boolean trivialReduceIsTrivial()
+            {
+                return true;
+            }
+
+            public void reduce(int idx, PartitionHash current)
+            {
+                hash = current;
+            }
+
+            protected PartitionHash getReduced()
+            {
+                return hash;
+            }
+        });
+    }
+
+    private PartitionDigests open(SSTableReader sstable) throws IOException
+    {
+        PartitionDigests digests = PartitionDigests.open(sstable);
+        if (digests == null)
+            throw new IOException("The partition hashes of " + sstable + " cannot be opened anymore");
+        opened.add(digests);
+        return digests;
+    }
+
+    /**
+     * Moves to the next partition of the validated ranges.
+     */
+    private boolean advance(PartitionDigests digests) throws IOException
+    {
+        while (digests.advance())
+        {
+            if (Range.isInRanges(digests.key().getToken(), ranges))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean mustRead(PartitionDigests digests)
+    {
+        if (!digests.hasDigest())
+            return true;
+
+        DecoratedKey key = digests.key();
+        for (SSTableReader sstable : intervals.search(key))
+        {
+            if (sstable != digests.sstable() && sstable.getBloomFilter().isPresent(key))
+                return true;
+        }
+        return false;
+    }
+
+    public void close()
+    {
+        opened.forEach(PartitionDigests::close);
+        opened.clear();
+    }
+
+    private class Hashes extends AbstractIterator<PartitionHash>
+    {
+        private final PartitionDigests digests;
+
+        private Hashes(PartitionDigests digests)
+        {
+            this.digests = digests;
+        }
+
+        protected PartitionHash computeNext()
+        {
+            try
+            {
+                while (advance(digests))
+                {
+                    if (!mustRead(digests))
+                        return new PartitionHash(digests.key(), digests.digest().clone(), digests.size());
+                }
+                return endOfData();
+            }
+            catch (IOException e)
+            {
+                digests.sstable().markSuspect();
+                throw new CorruptSSTableException(e, digests.sstable().getFilename());
+            }
+        }
+    }
+
+    /**
+     * Reads the partitions that must be read from an sstable with hashes, in the same way as the scanners of
+     * validation read the partitions of the sstables without hashes.
+     */
+    private class Scanner extends AbstractUnfilteredPartitionIterator implements ISSTableScanner
+    {
+        private final PartitionDigests digests;
+        private final SSTableReader sstable;
+        private final RandomAccessReader dfile;
+        private final Iterator<UnfilteredRowIterator> iterator;
+        private long startScan = -1;
+        private long bytesScanned;
+
+        private Scanner(PartitionDigests digests)
+        {
+            this.digests = digests;
+            this.sstable = digests.sstable();
+            // like the other scans that aren't reads, don't evict the cached chunks
+            this.dfile = sstable.openDataScanReader(null);
+            this.iterator = new AbstractIterator<UnfilteredRowIterator>()
+            {
+                protected UnfilteredRowIterator computeNext()
+                {
+                    try
+                    {
+                        while (advance(digests))
+                        {
+                            if (mustRead(digests))
+                                return partition(digests.key(), digests.position());
+                        }
+                        return endOfData();
+                    }
+                    catch (IOException e)
+                    {
+                        sstable.markSuspect();
+                        throw new CorruptSSTableException(e, sstable.getFilename());
+                    }
+                }
+            };
+        }
+
+        private UnfilteredRowIterator partition(DecoratedKey key, long position)
+        {
+            return new LazilyInitializedUnfilteredRowIterator(key)
+            {
+                protected UnfilteredRowIterator initializeIterator()
+                {
+                    if (startScan != -1)
+                        bytesScanned += dfile.getFilePointer() - startScan;
+
+                    try
+                    {
+                        dfile.seek(position);
+                        startScan = dfile.getFilePointer();
+                        ByteBufferUtil.skipShortLength(dfile); // key
+                        return SSTableIdentityIterator.create(sstable, dfile, partitionKey());
+                    }
+                    catch (CorruptSSTableException | IOException e)
+                    {
+                        sstable.markSuspect();
+                        throw new CorruptSSTableException(e, sstable.getFilename());
+                    }
+                }
+            };
+        }
+
+        public TableMetadata metadata()
+        {
+            return sstable.metadata();
+        }
+
+        public boolean hasNext()
+        {
+            return iterator.hasNext();
+        }
+
+        public UnfilteredRowIterator next()
+        {
+            return iterator.next();
+        }
+
+        public long getLengthInBytes()
+        {
+            return dfile.length();
+        }
+
+        public long getCompressedLengthInBytes()
+        {
+            return sstable.onDiskLength();
+        }
+
+        public long getCurrentPosition()
+        {
+            return dfile.getFilePointer();
+        }
+
+        public long getBytesScanned()
+        {
+            return bytesScanned;
+        }
+
+        public Set<SSTableReader> getBackingSSTables()
+        {
+            return ImmutableSet.of(sstable);
+        }
+
+        @Override
+        public void close()
+        {
+            FileUtils.closeQuietly(dfile);
+        }
+    }
+}
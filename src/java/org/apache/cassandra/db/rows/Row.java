@@ -707,8 +707,10 @@ public interface Row extends Unfiltered, Iterable<ColumnData>
             if (activeDeletion.deletes(rowInfo))
                 rowInfo = LivenessInfo.EMPTY;
 
+            // the reducer doesn't care about the index of the versions, so only the rows to merge take part
             for (Row row : rows)
-                columnDataIterators.add(row == null ? Collections.emptyIterator() : row.iterator());
+                if (row != null)
+                    columnDataIterators.add(row.iterator());
 
             columnDataReducer.setActiveDeletion(activeDeletion);
             Iterator<ColumnData> merged = MergeIterator.get(columnDataIterators, ColumnData.comparator, columnDataReducer);
@@ -184,9 +184,34 @@ public abstract class UnfilteredRowIterators
      */
     public static void digest(UnfilteredRowIterator iterator, Digest digest, int version)
     {
-        digest.update(iterator.partitionKey().getKey());
-        iterator.partitionLevelDeletion().digest(digest);
-        iterator.columns().regulars.digest(digest);
+        digestHeader(iterator.partitionKey(),
+                     iterator.partitionLevelDeletion(),
+                     iterator.columns(),
+                     iterator.staticRow(),
+                     iterator.isReverseOrder(),
+                     digest);
+
+        while (iterator.hasNext())
+        {
+            Unfiltered unfiltered = iterator.next();
+            unfiltered.digest(digest);
+        }
+    }
+
+    /**
+     * Digests everything of a partition that comes before its rows and markers, as done by
+     * {@link #digest(UnfilteredRowIterator, Digest, int)}, for the callers that digest the rows as they go.
+     */
+    public static void digestHeader(DecoratedKey partitionKey,
+                                    DeletionTime partitionLevelDeletion,
+                                    RegularAndStaticColumns columns,
+                                    Row staticRow,
+                                    boolean isReverseOrder,
+                                    Digest digest)
+    {
+        digest.update(partitionKey.getKey());
+        partitionLevelDeletion.digest(digest);
+        columns.regulars.digest(digest);
         // When serializing an iterator, we skip the static columns if the iterator has not static row, even if the
         // columns() object itself has some (the columns() is a superset of what the iterator actually contains, and
         // will correspond to the queried columns pre-serialization). So we must avoid taking the satic column names
@@ -197,16 +222,10 @@ public abstract class UnfilteredRowIterators
         // (since again, the columns could be different without the information represented by the iterator being
         // different), but removing them entirely is stricly speaking a breaking change (it would create mismatches on
         // upgrade) so we can only do on the next protocol version bump.
-        if (iterator.staticRow() != Rows.EMPTY_STATIC_ROW)
-            iterator.columns().statics.digest(digest);
-        digest.updateWithBoolean(iterator.isReverseOrder());
-        iterator.staticRow().digest(digest);
-
-        while (iterator.hasNext())
-        {
-            Unfiltered unfiltered = iterator.next();
-            unfiltered.digest(digest);
-        }
+        if (staticRow != Rows.EMPTY_STATIC_ROW)
+            columns.statics.digest(digest);
+        digest.updateWithBoolean(isReverseOrder);
+        staticRow.digest(digest);
     }
 
     /**
@@ -49,7 +49,8 @@ public class CassandraOutgoingFile implements OutgoingStream
 {
     public static final List<Component> STREAM_COMPONENTS = ImmutableList.of(Component.DATA, Component.PRIMARY_INDEX, Component.STATS,
                                                                              Component.COMPRESSION_INFO, Component.FILTER, Component.SUMMARY,
-                                                                             Component.DIGEST, Component.CRC);
+                                                                             Component.DIGEST, Component.CRC, Component.PARTITION_INDEX,
+                                                                             Component.PARTITION_DIGESTS);
 
     private final Ref<SSTableReader> ref;
     private final long estimatedKeys;
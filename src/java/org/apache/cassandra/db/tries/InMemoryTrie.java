@@ -0,0 +1,628 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.tries;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+import com.google.common.collect.AbstractIterator;
+
+import org.apache.cassandra.utils.bytecomparable.ByteComparable;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
+import org.apache.cassandra.utils.concurrent.OpOrder;
+import org.apache.cassandra.utils.memory.MemoryUtil;
+
+/**
+ * A byte-comparable trie that keeps its nodes in large memory blocks obtained from a {@link BlockAllocator},
+ * typically the slabs of a memtable allocator. When those slabs are off-heap, the whole index lives off-heap and
+ * the only on-heap cost per entry is a reference to its content.
+ * <p>
+ * Keys must be prefix-free, which is the case for all multi-component {@link ByteSource}s.
+ * <p>
+ * The trie supports a single writer at a time (callers must serialise modifications) and any number of concurrent
+ * lock-free readers. Nodes are never modified in a way that a reader could observe in an inconsistent state: new
+ * nodes are fully written before they are linked in with a volatile write, and existing nodes are only changed by
+ * volatile writes of a single child pointer or child count. Nodes that are replaced are not reclaimed; their space
+ * is released with the rest of the allocator's memory when the owner is discarded.
+ * <p>
+ * Node pointers are positive ints combining a block index and an offset within the block. Content is referenced
+ * by negative pointers ({@code ~contentId}), and 0 stands for no node. There are three kinds of nodes:
+ * <ul>
+ *     <li>chain: a run of up to {@link #MAX_CHAIN_LENGTH} bytes leading to a single child;</li>
+ *     <li>sparse: up to {@link #SPARSE_CAPACITY} (transition byte, child) pairs, in insertion order;</li>
+ *     <li>dense: 256 child pointers indexed by the transition byte.</li>
+ * </ul>
+ */
+public class InMemoryTrie<T>
+{
+    public interface BlockAllocator
+    {
+        /**
+         * Allocate a buffer of exactly the given size, owned by the trie's owner.
+         */
+        ByteBuffer allocate(int size, OpOrder.Group opGroup);
+    }
+
+    static final int BLOCK_SHIFT = 16;
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+    static final int OFFSET_MASK = BLOCK_SIZE - 1;
+    // pointers must stay positive
+    static final int MAX_BLOCKS = 1 << (31 - BLOCK_SHIFT);
+
+    static final int NONE = 0;
+
+    static final int CHAIN = 1;
+    static final int SPARSE = 2;
+    static final int DENSE = 3;
+
+    static final int MAX_CHAIN_LENGTH = 1024;
+    static final int SPARSE_CAPACITY = 16;
+
+    // node layouts; every node starts with an int header holding the type in its top byte
+    private static final int SPARSE_TRANSITIONS_OFFSET = 4;
+    private static final int SPARSE_CHILDREN_OFFSET = SPARSE_TRANSITIONS_OFFSET + SPARSE_CAPACITY;
+    private static final int SPARSE_SIZE = SPARSE_CHILDREN_OFFSET + 4 * SPARSE_CAPACITY;
+    private static final int DENSE_CHILDREN_OFFSET = 4;
+    private static final int DENSE_SIZE = DENSE_CHILDREN_OFFSET + 4 * 256;
+    private static final int CHAIN_BYTES_OFFSET = 4;
+
+    private static final int CONTENT_CHUNK_SHIFT = 10;
+    private static final int CONTENT_CHUNK_SIZE = 1 << CONTENT_CHUNK_SHIFT;
+    private static final int CONTENT_CHUNK_MASK = CONTENT_CHUNK_SIZE - 1;
+
+    private final BlockAllocator allocator;
+
+    // readers must always go through these volatile fields before reading any node
+    private volatile int root = NONE;
+    private volatile Block[] blocks = new Block[16];
+    private volatile Object[][] contentChunks = new Object[16][];
+    private volatile int contentCount = 0;
+
+    // writer-only state
+    private int blockCount = 0;
+    private int allocationOffset = BLOCK_SIZE;
+
+    public InMemoryTrie(BlockAllocator allocator)
+    {
+        this.allocator = allocator;
+    }
+
+    private static final class Block
+    {
+        // kept to tie the lifetime of heap memory to the block
+        final ByteBuffer buffer;
+        final Object base;
+        final long address;
+
+        Block(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+            long address;
+            if (buffer.hasArray())
+            {
+                base = buffer.array();
+                address = MemoryUtil.byteArrayBaseOffset() + buffer.arrayOffset() + buffer.position();
+            }
+            else
+            {
+                base = null;
+                address = MemoryUtil.getAddress(buffer) + buffer.position();
+            }
+            // the allocated buffer has 8 spare bytes so that we can align the block
+            this.address = (address + 7) & ~7L;
+        }
+    }
+
+    /**
+     * @return the number of entries in the trie
+     */
+    public int size()
+    {
+        return contentCount;
+    }
+
+    public boolean isEmpty()
+    {
+        return contentCount == 0;
+    }
+
+    /**
+     * @return the amount of block memory used by the trie
+     */
+    public long sizeInBytes()
+    {
+        return (long) blockCount * BLOCK_SIZE;
+    }
+
+    public T get(ByteComparable key)
+    {
+        Block[] blocks = null;
+        int node = root;
+        ByteSource src = key.asComparableBytes();
+        while (true)
+        {
+            if (node == NONE)
+                return null;
+
+            int b = src.next();
+            if (node < 0)
+                return b == ByteSource.END_OF_STREAM ? content(node) : null;
+            if (b == ByteSource.END_OF_STREAM)
+                return null;
+
+            if (blocks == null)
+                blocks = this.blocks;
+            Block block = blocks[node >>> BLOCK_SHIFT];
+            long address = block.address + (node & OFFSET_MASK);
+            int header = MemoryUtil.getIntVolatile(block.base, address);
+            switch (header >>> 24)
+            {
+                case CHAIN:
+                    int length = header & 0xFFFFFF;
+                    for (int i = 0; i < length; ++i)
+                    {
+                        if (i > 0)
+                            b = src.next();
+                        if (b != (MemoryUtil.getByte(block.base, address + CHAIN_BYTES_OFFSET + i) & 0xFF))
+                            return null;
+                    }
+                    node = MemoryUtil.getIntVolatile(block.base, address + chainChildOffset(length));
+                    break;
+                case SPARSE:
+                    int count = header & 0xFFFF;
+                    int child = NONE;
+                    for (int i = 0; i < count; ++i)
+                    {
+                        if (b == (MemoryUtil.getByte(block.base, address + SPARSE_TRANSITIONS_OFFSET + i) & 0xFF))
+                        {
+                            child = MemoryUtil.getIntVolatile(block.base, address + SPARSE_CHILDREN_OFFSET + 4 * i);
+                            break;
+                        }
+                    }
+                    node = child;
+                    break;
+                case DENSE:
+                    node = MemoryUtil.getIntVolatile(block.base, address + DENSE_CHILDREN_OFFSET + 4 * b);
+                    break;
+                default:
+                    throw new AssertionError("Corrupted trie node header " + header);
+            }
+            // a pointer read with a volatile read may point to a block added after we read the block array
+            if (node > 0 && (node >>> BLOCK_SHIFT) >= blocks.length)
+                blocks = this.blocks;
+        }
+    }
+
+    /**
+     * Return the content associated with the key if present, otherwise add the content produced by the supplier.
+     * Must not be called concurrently with other modifications.
+     */
+    public T putIfAbsent(ByteComparable key, Supplier<? extends T> supplier, OpOrder.Group opGroup)
+    {
+        T existing = get(key);
+        if (existing != null)
+            return existing;
+
+        byte[] bytes = ByteSource.readBytes(key.asComparableBytes());
+        T value = supplier.get();
+        int content = addContent(value);
+        insert(bytes, content, opGroup);
+        return value;
+    }
+
+    private void insert(byte[] key, int content, OpOrder.Group opGroup)
+    {
+        // the address of the pointer we reached the current node through, -1 for the root
+        long slot = -1;
+        Object slotBase = null;
+        int node = root;
+        int pos = 0;
+        while (true)
+        {
+            if (node == NONE)
+            {
+                setSlot(slotBase, slot, newChain(key, pos, content, opGroup));
+                return;
+            }
+            assert node > 0 && pos < key.length : "Byte-comparable keys must be prefix-free";
+
+            Block block = blocks[node >>> BLOCK_SHIFT];
+            long address = block.address + (node & OFFSET_MASK);
+            int header = MemoryUtil.getInt(block.base, address);
+            switch (header >>> 24)
+            {
+                case CHAIN:
+                {
+                    int length = header & 0xFFFFFF;
+                    int i = 0;
+                    while (i < length && pos + i < key.length && key[pos + i] == MemoryUtil.getByte(block.base, address + CHAIN_BYTES_OFFSET + i))
+                        ++i;
+
+                    long childAddress = address + chainChildOffset(length);
+                    if (i == length)
+                    {
+                        slotBase = block.base;
+                        slot = childAddress;
+                        node = MemoryUtil.getInt(block.base, childAddress);
+                        pos += length;
+                        continue;
+                    }
+
+                    assert pos + i < key.length : "Byte-comparable keys must be prefix-free";
+                    // split the chain at the mismatch
+                    byte[] chainBytes = new byte[length];
+                    for (int j = 0; j < length; ++j)
+                        chainBytes[j] = MemoryUtil.getByte(block.base, address + CHAIN_BYTES_OFFSET + j);
+                    int child = MemoryUtil.getInt(block.base, childAddress);
+
+                    int existingTail = i + 1 < length ? newChainNode(chainBytes, i + 1, length, child, opGroup) : child;
+                    int newTail = newChain(key, pos + i + 1, content, opGroup);
+                    int branch = newSparse(chainBytes[i], existingTail, key[pos + i], newTail, opGroup);
+                    setSlot(slotBase, slot, i > 0 ? newChainNode(chainBytes, 0, i, branch, opGroup) : branch);
+                    return;
+                }
+                case SPARSE:
+                {
+                    int count = header & 0xFFFF;
+                    int i = 0;
+                    while (i < count && key[pos] != MemoryUtil.getByte(block.base, address + SPARSE_TRANSITIONS_OFFSET + i))
+                        ++i;
+
+                    if (i < count)
+                    {
+                        slotBase = block.base;
+                        slot = address + SPARSE_CHILDREN_OFFSET + 4 * i;
+                        node = MemoryUtil.getInt(block.base, slot);
+                        ++pos;
+                        continue;
+                    }
+
+                    int tail = newChain(key, pos + 1, content, opGroup);
+                    if (count < SPARSE_CAPACITY)
+                    {
+                        // fill in the new slot, then publish it by updating the count
+                        MemoryUtil.setByte(block.base, address + SPARSE_TRANSITIONS_OFFSET + count, key[pos]);
+                        MemoryUtil.setInt(block.base, address + SPARSE_CHILDREN_OFFSET + 4 * count, tail);
+                        MemoryUtil.setIntVolatile(block.base, address, (SPARSE << 24) | (count + 1));
+                        return;
+                    }
+
+                    int dense = allocate(DENSE_SIZE, opGroup);
+                    Block denseBlock = blocks[dense >>> BLOCK_SHIFT];
+                    long denseAddress = denseBlock.address + (dense & OFFSET_MASK);
+                    MemoryUtil.setByte(denseBlock.base, denseAddress + DENSE_CHILDREN_OFFSET, 4 * 256, (byte) 0);
+                    for (int j = 0; j < count; ++j)
+                    {
+                        int transition = MemoryUtil.getByte(block.base, address + SPARSE_TRANSITIONS_OFFSET + j) & 0xFF;
+                        int child = MemoryUtil.getInt(block.base, address + SPARSE_CHILDREN_OFFSET + 4 * j);
+                        MemoryUtil.setInt(denseBlock.base, denseAddress + DENSE_CHILDREN_OFFSET + 4 * transition, child);
+                    }
+                    MemoryUtil.setInt(denseBlock.base, denseAddress + DENSE_CHILDREN_OFFSET + 4 * (key[pos] & 0xFF), tail);
+                    MemoryUtil.setInt(denseBlock.base, denseAddress, DENSE << 24);
+                    setSlot(slotBase, slot, dense);
+                    return;
+                }
+                case DENSE:
+                {
+                    slotBase = block.base;
+                    slot = address + DENSE_CHILDREN_OFFSET + 4 * (key[pos] & 0xFF);
+                    node = MemoryUtil.getInt(block.base, slot);
+                    ++pos;
+                    continue;
+                }
+                default:
+                    throw new AssertionError("Corrupted trie node header " + header);
+            }
+        }
+    }
+
+    private void setSlot(Object base, long slot, int pointer)
+    {
+        if (slot == -1)
+            root = pointer;
+        else
+            MemoryUtil.setIntVolatile(base, slot, pointer);
+    }
+
+    private static int chainChildOffset(int length)
+    {
+        return CHAIN_BYTES_OFFSET + ((length + 3) & ~3);
+    }
+
+    /**
+     * Creates the chain of nodes leading from the given key position to the given content.
+     */
+    private int newChain(byte[] key, int pos, int content, OpOrder.Group opGroup)
+    {
+        int child = content;
+        int end = key.length;
+        while (end > pos)
+        {
+            int start = Math.max(pos, end - MAX_CHAIN_LENGTH);
+            child = newChainNode(key, start, end, child, opGroup);
+            end = start;
+        }
+        return child;
+    }
+
+    private int newChainNode(byte[] bytes, int from, int to, int child, OpOrder.Group opGroup)
+    {
+        int length = to - from;
+        int node = allocate(chainChildOffset(length) + 4, opGroup);
+        Block block = blocks[node >>> BLOCK_SHIFT];
+        long address = block.address + (node & OFFSET_MASK);
+        for (int i = 0; i < length; ++i)
+            MemoryUtil.setByte(block.base, address + CHAIN_BYTES_OFFSET + i, bytes[from + i]);
+        MemoryUtil.setInt(block.base, address + chainChildOffset(length), child);
+        MemoryUtil.setInt(block.base, address, (CHAIN << 24) | length);
+        return node;
+    }
+
+    private int newSparse(byte transition1, int child1, byte transition2, int child2, OpOrder.Group opGroup)
+    {
+        int node = allocate(SPARSE_SIZE, opGroup);
+        Block block = blocks[node >>> BLOCK_SHIFT];
+        long address = block.address + (node & OFFSET_MASK);
+        MemoryUtil.setByte(block.base, address + SPARSE_TRANSITIONS_OFFSET, transition1);
+        MemoryUtil.setInt(block.base, address + SPARSE_CHILDREN_OFFSET, child1);
+        MemoryUtil.setByte(block.base, address + SPARSE_TRANSITIONS_OFFSET + 1, transition2);
+        MemoryUtil.setInt(block.base, address + SPARSE_CHILDREN_OFFSET + 4, child2);
+        MemoryUtil.setInt(block.base, address, (SPARSE << 24) | 2);
+        return node;
+    }
+
+    private int allocate(int size, OpOrder.Group opGroup)
+    {
+        size = (size + 3) & ~3;
+        assert size <= BLOCK_SIZE;
+        if (allocationOffset + size > BLOCK_SIZE)
+            addBlock(opGroup);
+
+        int pointer = ((blockCount - 1) << BLOCK_SHIFT) | allocationOffset;
+        allocationOffset += size;
+        return pointer;
+    }
+
+    private void addBlock(OpOrder.Group opGroup)
+    {
+        if (blockCount == MAX_BLOCKS)
+            throw new IllegalStateException("In-memory trie has reached its maximum size of " + ((long) MAX_BLOCKS << BLOCK_SHIFT) + " bytes");
+
+        Block block = new Block(allocator.allocate(BLOCK_SIZE + 8, opGroup));
+        Block[] blocks = this.blocks;
+        if (blockCount == blocks.length)
+            blocks = Arrays.copyOf(blocks, Math.min(blocks.length * 2, MAX_BLOCKS));
+        blocks[blockCount] = block;
+        // publish the block before any pointer into it can be written
+        this.blocks = blocks;
+        ++blockCount;
+        // never hand out the 0 pointer, which stands for no node
+        allocationOffset = blockCount == 1 ? 8 : 0;
+    }
+
+    private int addContent(T value)
+    {
+        int id = contentCount;
+        int chunk = id >>> CONTENT_CHUNK_SHIFT;
+        Object[][] chunks = contentChunks;
+        if (chunk == chunks.length)
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        if (chunks[chunk] == null)
+            chunks[chunk] = new Object[CONTENT_CHUNK_SIZE];
+        chunks[chunk][id & CONTENT_CHUNK_MASK] = value;
+        contentChunks = chunks;
+        contentCount = id + 1;
+        return ~id;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T content(int pointer)
+    {
+        int id = ~pointer;
+        return (T) contentChunks[id >>> CONTENT_CHUNK_SHIFT][id & CONTENT_CHUNK_MASK];
+    }
+
+    /**
+     * @return an iterator over all values in the order of their keys
+     */
+    public Iterator<T> values()
+    {
+        return new ValueIterator(null);
+    }
+
+    /**
+     * @return an iterator over the values whose keys are greater than or equal to the given bound, in key order
+     */
+    public Iterator<T> valuesFrom(ByteComparable lowerBound)
+    {
+        return new ValueIterator(lowerBound == null ? null : ByteSource.readBytes(lowerBound.asComparableBytes()));
+    }
+
+    /**
+     * Returns the children of the given node in transition order.
+     */
+    private int[] children(int node, int minTransition)
+    {
+        Block block = blocks[node >>> BLOCK_SHIFT];
+        long address = block.address + (node & OFFSET_MASK);
+        int header = MemoryUtil.getIntVolatile(block.base, address);
+        switch (header >>> 24)
+        {
+            case CHAIN:
+                return new int[]{ MemoryUtil.getIntVolatile(block.base, address + chainChildOffset(header & 0xFFFFFF)) };
+            case SPARSE:
+            {
+                int count = header & 0xFFFF;
+                int[] transitions = new int[count];
+                int[] children = new int[count];
+                int size = 0;
+                for (int i = 0; i < count; ++i)
+                {
+                    int transition = MemoryUtil.getByte(block.base, address + SPARSE_TRANSITIONS_OFFSET + i) & 0xFF;
+                    if (transition < minTransition)
+                        continue;
+                    int child = MemoryUtil.getIntVolatile(block.base, address + SPARSE_CHILDREN_OFFSET + 4 * i);
+                    // insertion sort, there are at most SPARSE_CAPACITY entries
+                    int j = size++;
+                    while (j > 0 && transitions[j - 1] > transition)
+                    {
+                        transitions[j] = transitions[j - 1];
+                        children[j] = children[j - 1];
+                        --j;
+                    }
+                    transitions[j] = transition;
+                    children[j] = child;
+                }
+                return size == count ? children : Arrays.copyOf(children, size);
+            }
+            case DENSE:
+            {
+                int[] children = new int[256 - minTransition];
+                int size = 0;
+                for (int i = minTransition; i < 256; ++i)
+                {
+                    int child = MemoryUtil.getIntVolatile(block.base, address + DENSE_CHILDREN_OFFSET + 4 * i);
+                    if (child != NONE)
+                        children[size++] = child;
+                }
+                return Arrays.copyOf(children, size);
+            }
+            default:
+                throw new AssertionError("Corrupted trie node header " + header);
+        }
+    }
+
+    private class ValueIterator extends AbstractIterator<T>
+    {
+        private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+
+        ValueIterator(byte[] lowerBound)
+        {
+            int node = root;
+            if (lowerBound == null)
+                pushNode(node);
+            else
+                descend(node, lowerBound);
+        }
+
+        /**
+         * Walks down the path of the lower bound, stacking the parts of the trie that are above it.
+         */
+        private void descend(int node, byte[] bound)
+        {
+            int pos = 0;
+            while (node != NONE)
+            {
+                if (pos == bound.length)
+                {
+                    // everything below is greater than or equal to the bound
+                    pushNode(node);
+                    return;
+                }
+                if (node < 0)
+                    return; // the key of this content is a prefix of the bound, thus smaller
+
+                Block block = blocks[node >>> BLOCK_SHIFT];
+                long address = block.address + (node & OFFSET_MASK);
+                int header = MemoryUtil.getIntVolatile(block.base, address);
+                int transition = bound[pos] & 0xFF;
+                if (header >>> 24 == CHAIN)
+                {
+                    int length = header & 0xFFFFFF;
+                    for (int i = 0; i < length; ++i)
+                    {
+                        if (pos + i == bound.length)
+                        {
+                            pushNode(node);
+                            return;
+                        }
+                        int b = MemoryUtil.getByte(block.base, address + CHAIN_BYTES_OFFSET + i) & 0xFF;
+                        int c = bound[pos + i] & 0xFF;
+                        if (b > c)
+                        {
+                            pushNode(node);
+                            return;
+                        }
+                        if (b < c)
+                            return;
+                    }
+                    pos += length;
+                    node = MemoryUtil.getIntVolatile(block.base, address + chainChildOffset(length));
+                    continue;
+                }
+
+                int next = NONE;
+                if (header >>> 24 == SPARSE)
+                {
+                    int count = header & 0xFFFF;
+                    for (int i = 0; i < count; ++i)
+                        if ((MemoryUtil.getByte(block.base, address + SPARSE_TRANSITIONS_OFFSET + i) & 0xFF) == transition)
+                            next = MemoryUtil.getIntVolatile(block.base, address + SPARSE_CHILDREN_OFFSET + 4 * i);
+                }
+                else
+                {
+                    next = MemoryUtil.getIntVolatile(block.base, address + DENSE_CHILDREN_OFFSET + 4 * transition);
+                }
+
+                if (transition < 255)
+                    stack.push(new Frame(children(node, transition + 1)));
+                node = next;
+                ++pos;
+            }
+        }
+
+        private void pushNode(int node)
+        {
+            if (node != NONE)
+                stack.push(new Frame(new int[]{ node }));
+        }
+
+        protected T computeNext()
+        {
+            while (!stack.isEmpty())
+            {
+                Frame frame = stack.peek();
+                if (frame.index == frame.children.length)
+                {
+                    stack.pop();
+                    continue;
+                }
+
+                int child = frame.children[frame.index++];
+                if (child < 0)
+                    return content(child);
+                stack.push(new Frame(children(child, 0)));
+            }
+            return endOfData();
+        }
+    }
+
+    private static final class Frame
+    {
+        final int[] children;
+        int index;
+
+        Frame(int[] children)
+        {
+            this.children = children;
+        }
+    }
+}
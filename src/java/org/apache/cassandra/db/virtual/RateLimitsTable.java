@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.virtual;
+
+import org.apache.cassandra.db.marshal.DoubleType;
+import org.apache.cassandra.db.marshal.LongType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.LocalPartitioner;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.transport.RequestRateLimiters;
+
+final class RateLimitsTable extends AbstractVirtualTable
+{
+    private static final String SCOPE = "scope";
+    private static final String NAME = "name";
+    private static final String RATE = "rate";
+    private static final String PERMITTED = "permitted";
+    private static final String REJECTED = "rejected";
+
+    RateLimitsTable(String keyspace)
+    {
+        super(TableMetadata.builder(keyspace, "rate_limits")
+                           .comment("native transport request rate limits in use")
+                           .kind(TableMetadata.Kind.VIRTUAL)
+                           .partitioner(new LocalPartitioner(UTF8Type.instance))
+                           .addPartitionKeyColumn(SCOPE, UTF8Type.instance)
+                           .addClusteringColumn(NAME, UTF8Type.instance)
+                           .addRegularColumn(RATE, DoubleType.instance)
+                           .addRegularColumn(PERMITTED, LongType.instance)
+                           .addRegularColumn(REJECTED, LongType.instance)
+                           .build());
+    }
+
+    @Override
+    public DataSet data()
+    {
+        SimpleDataSet result = new SimpleDataSet(metadata());
+        RequestRateLimiters.instance.forEach((scope, entry) ->
+            result.row(scope.toString(), entry.getKey())
+                  .column(RATE, entry.getValue().rate())
+                  .column(PERMITTED, entry.getValue().permitted())
+                  .column(REJECTED, entry.getValue().rejected()));
+        return result;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.virtual;
+
+import org.apache.cassandra.db.marshal.DoubleType;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.LongType;
+import org.apache.cassandra.db.marshal.TimeUUIDType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.LocalPartitioner;
+import org.apache.cassandra.repair.RepairScheduler;
+import org.apache.cassandra.schema.TableMetadata;
+
+final class ScheduledRepairsTable extends AbstractVirtualTable
+{
+    private static final String ID = "id";
+    private static final String KEYSPACE_NAME = "keyspace_name";
+    private static final String TABLES = "tables";
+    private static final String STATUS = "status";
+    private static final String TASKS = "tasks";
+    private static final String COMPLETED_TASKS = "completed_tasks";
+    private static final String FAILED_TASKS = "failed_tasks";
+    private static final String RUNNING_TASKS = "running_tasks";
+    private static final String ESTIMATED_PARTITIONS = "estimated_partitions";
+    private static final String PERCENT_COMPLETE = "percent_complete";
+
+    ScheduledRepairsTable(String keyspace)
+    {
+        super(TableMetadata.builder(keyspace, "scheduled_repairs")
+                           .comment("scheduled repairs running on this node")
+                           .kind(TableMetadata.Kind.VIRTUAL)
+                           .partitioner(new LocalPartitioner(TimeUUIDType.instance))
+                           .addPartitionKeyColumn(ID, TimeUUIDType.instance)
+                           .addRegularColumn(KEYSPACE_NAME, UTF8Type.instance)
+                           .addRegularColumn(TABLES, UTF8Type.instance)
+                           .addRegularColumn(STATUS, UTF8Type.instance)
+                           .addRegularColumn(TASKS, Int32Type.instance)
+                           .addRegularColumn(COMPLETED_TASKS, Int32Type.instance)
+                           .addRegularColumn(FAILED_TASKS, Int32Type.instance)
+                           .addRegularColumn(RUNNING_TASKS, Int32Type.instance)
+                           .addRegularColumn(ESTIMATED_PARTITIONS, LongType.instance)
+                           .addRegularColumn(PERCENT_COMPLETE, DoubleType.instance)
+                           .build());
+    }
+
+    @Override
+    public DataSet data()
+    {
+        SimpleDataSet result = new SimpleDataSet(metadata());
+        for (RepairScheduler.ScheduledRepair repair : RepairScheduler.instance.repairs())
+        {
+            int tasks = repair.tasks();
+            int completed = repair.tasks(RepairScheduler.TaskStatus.SUCCESS);
+            long estimatedPartitions = repair.estimatedPartitions();
+            // weigh the tasks by their estimated partitions when there are estimates
+            double percentComplete = estimatedPartitions > 0
+                                     ? 100.0 * repair.repairedPartitions() / estimatedPartitions
+                                     : tasks > 0 ? 100.0 * completed / tasks : 100.0;
+            result.row(repair.id)
+                  .column(KEYSPACE_NAME, repair.keyspace)
+                  .column(TABLES, String.join(",", repair.tables))
+                  .column(STATUS, repair.status().toString())
+                  .column(TASKS, tasks)
+                  .column(COMPLETED_TASKS, completed)
+                  .column(FAILED_TASKS, repair.tasks(RepairScheduler.TaskStatus.FAILED))
+                  .column(RUNNING_TASKS, repair.tasks(RepairScheduler.TaskStatus.RUNNING))
+                  .column(ESTIMATED_PARTITIONS, estimatedPartitions)
+                  .column(PERCENT_COMPLETE, percentComplete);
+        }
+        return result;
+    }
+}
@@ -36,6 +36,8 @@ public final class SystemViewsKeyspace extends VirtualKeyspace
                     .add(new ThreadPoolsTable(NAME))
                     .add(new InternodeOutboundTable(NAME))
                     .add(new InternodeInboundTable(NAME))
+                    .add(new RateLimitsTable(NAME))
+                    .add(new ScheduledRepairsTable(NAME))
                     .addAll(TableMetricTables.getAll(NAME))
                     .build());
     }
@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.db.virtual;
 
+import org.apache.cassandra.concurrent.AdaptiveConcurrencyLimiter;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.marshal.Int32Type;
 import org.apache.cassandra.db.marshal.LongType;
@@ -36,6 +37,8 @@ final class ThreadPoolsTable extends AbstractVirtualTable
     private static final String COMPLETED_TASKS = "completed_tasks";
     private static final String BLOCKED_TASKS = "blocked_tasks";
     private static final String BLOCKED_TASKS_ALL_TIME = "blocked_tasks_all_time";
+    private static final String CONCURRENCY_LIMIT = "concurrency_limit";
+    private static final String SHED_TASKS = "shed_tasks";
 
     ThreadPoolsTable(String keyspace)
     {
@@ -49,6 +52,8 @@ final class ThreadPoolsTable extends AbstractVirtualTable
                            .addRegularColumn(COMPLETED_TASKS, LongType.instance)
                            .addRegularColumn(BLOCKED_TASKS, LongType.instance)
                            .addRegularColumn(BLOCKED_TASKS_ALL_TIME, LongType.instance)
+                           .addRegularColumn(CONCURRENCY_LIMIT, Int32Type.instance)
+                           .addRegularColumn(SHED_TASKS, LongType.instance)
                            .build());
     }
 
@@ -74,12 +79,16 @@ final class ThreadPoolsTable extends AbstractVirtualTable
 
     private void addRow(SimpleDataSet dataSet, ThreadPoolMetrics metrics)
     {
+        // only the stages with an adaptive concurrency limit have one
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.forPoolName(metrics.poolName);
         dataSet.row(metrics.poolName)
                .column(ACTIVE_TASKS, metrics.activeTasks.getValue())
                .column(ACTIVE_TASKS_LIMIT, metrics.maxPoolSize.getValue())
                .column(PENDING_TASKS, metrics.pendingTasks.getValue())
                .column(COMPLETED_TASKS, metrics.completedTasks.getValue())
                .column(BLOCKED_TASKS, metrics.currentBlocked.getCount())
-               .column(BLOCKED_TASKS_ALL_TIME, metrics.totalBlocked.getCount());
+               .column(BLOCKED_TASKS_ALL_TIME, metrics.totalBlocked.getCount())
+               .column(CONCURRENCY_LIMIT, limiter == null ? null : limiter.getLimit())
+               .column(SHED_TASKS, limiter == null ? null : limiter.getShedTasks());
     }
 }
@@ -26,6 +26,7 @@ import org.apache.cassandra.db.PartitionPosition;
 import org.apache.cassandra.db.TypeSizes;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
 
 public abstract class Token implements RingPosition<Token>, Serializable
 {
@@ -111,6 +112,17 @@ public abstract class Token implements RingPosition<Token>, Serializable
      */
     abstract public Token increaseSlightly();
 
+    /**
+     * Produce a prefix-free, byte-comparable representation of the token, i.e. one whose unsigned lexicographic
+     * order is the same as {@link #compareTo}.
+     *
+     * @return the byte-comparable form of the token, or null if this kind of token does not support one
+     */
+    public ByteSource asComparableBytes()
+    {
+        return null;
+    }
+
     public Token getToken()
     {
         return this;
@@ -219,6 +231,13 @@ public abstract class Token implements RingPosition<Token>, Serializable
             return isMinimumBound ? PartitionPosition.Kind.MIN_BOUND : PartitionPosition.Kind.MAX_BOUND;
         }
 
+        public ByteSource asComparableBytes()
+        {
+            // the bound markers sort before/after the separator that introduces the key of a decorated key
+            return ByteSource.withTerminator(isMinimumBound ? ByteSource.LT_NEXT_COMPONENT : ByteSource.GT_NEXT_COMPONENT,
+                                             token.asComparableBytes());
+        }
+
         @Override
         public boolean equals(Object obj)
         {
@@ -58,6 +58,10 @@ public class Component
         SUMMARY("Summary.db"),
         // table of contents, stores the list of all components for the sstable
         TOC("TOC.txt"),
+        // byte-comparable trie mapping the partition keys to their position in the primary index
+        PARTITION_INDEX("Partitions.db"),
+        // the repair hash of each partition of the sstable
+        PARTITION_DIGESTS("PartitionDigests.db"),
         // built-in secondary index (may be multiple per sstable)
         SECONDARY_INDEX("SI_.*.db"),
         // custom component, used by e.g. custom compaction strategy
@@ -91,6 +95,8 @@ public class Component
     public final static Component CRC = new Component(Type.CRC);
     public final static Component SUMMARY = new Component(Type.SUMMARY);
     public final static Component TOC = new Component(Type.TOC);
+    public final static Component PARTITION_INDEX = new Component(Type.PARTITION_INDEX);
+    public final static Component PARTITION_DIGESTS = new Component(Type.PARTITION_DIGESTS);
 
     public final Type type;
     public final String name;
@@ -141,6 +147,8 @@ public class Component
             case CRC:              return Component.CRC;
             case SUMMARY:          return Component.SUMMARY;
             case TOC:              return Component.TOC;
+            case PARTITION_INDEX:  return Component.PARTITION_INDEX;
+            case PARTITION_DIGESTS: return Component.PARTITION_DIGESTS;
             case SECONDARY_INDEX:  return new Component(Type.SECONDARY_INDEX, name);
             case CUSTOM:           return new Component(Type.CUSTOM, name);
             default:               throw new AssertionError();
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Digest;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.schema.DroppedColumn;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+/**
+ * Reads the repair hashes of the partitions of an sstable, written by {@link PartitionDigestsWriter}.
+ * <p>
+ * The hash of a partition is the {@link Digest#forValidator() validator digest} that repair validation computes
+ * for it, so that the validation of a partition found in a single sstable can use the hash from the sstable instead
+ * of reading and hashing the partition again. This only holds for the partitions that validation does not transform:
+ * the partitions with tombstones or TTLs, which validation may purge, have no hash and must be read.
+ * <p>
+ * The hashes also cover the regular and static columns of the table, so they are only valid as long as the
+ * columns of the table are the same as when the sstable was written. The component starts with a digest of these
+ * columns, and {@link #open} ignores the component once they differ.
+ * <p>
+ * File format:
+ * <ul>
+ *   <li>header: the digest of the columns of the table, on {@link #DIGEST_LENGTH} bytes</li>
+ *   <li>partition: {@code [key, with its short length] [position in the data file, unsigned vint]
+ *       [size, unsigned vint]} followed, if the size is not 0, by the hash of the partition on
+ *       {@link #DIGEST_LENGTH} bytes. A size of 0 means that the partition must be read.</li>
+ * </ul>
+ */
+public class PartitionDigests implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(PartitionDigests.class);
+
+    public static final int DIGEST_LENGTH = 32;
+
+    private final SSTableReader sstable;
+    private final RandomAccessReader reader;
+
+    private DecoratedKey key;
+    private long position;
+    private long size;
+    private final byte[] digest = new byte[DIGEST_LENGTH];
+
+    private PartitionDigests(SSTableReader sstable, RandomAccessReader reader)
+    {
+        this.sstable = sstable;
+        this.reader = reader;
+    }
+
+    /**
+     * Opens the partition hashes of the given sstable.
+     *
+     * @return the hashes, positioned before the first partition, or {@code null} if the sstable has no hashes or if
+     * they were computed with other columns than the current ones of the table.
+     */
+    @SuppressWarnings("resource")
+    public static PartitionDigests open(SSTableReader sstable) throws IOException
+    {
+        if (!sstable.components.contains(Component.PARTITION_DIGESTS) || sstable.openReason == SSTableReader.OpenReason.EARLY)
+            return null;
+
+        RandomAccessReader reader = RandomAccessReader.open(new File(sstable.descriptor.filenameFor(Component.PARTITION_DIGESTS)));
+        try
+        {
+            byte[] columnsDigest = new byte[DIGEST_LENGTH];
+            reader.readFully(columnsDigest);
+            if (!Arrays.equals(columnsDigest, columnsDigest(sstable.metadata())))
+            {
+                logger.debug("The columns of {} changed since {} was written, ignoring its partition hashes", sstable.metadata(), sstable);
+                reader.close();
+                return null;
+            }
+            return new PartitionDigests(sstable, reader);
+        }
+        catch (Throwable t)
+        {
+            reader.close();
+            throw t;
+        }
+    }
+
+    /**
+     * @return the digest of the columns the hashes of the partitions of the table cover, including the columns
+     * dropped from the table, whose data is skipped when read.
+     */
+    public static byte[] columnsDigest(TableMetadata metadata)
+    {
+        Digest digest = Digest.forValidator();
+        metadata.regularAndStaticColumns().regulars.digest(digest);
+        digest.updateWithByte(0);
+        metadata.regularAndStaticColumns().statics.digest(digest);
+        List<DroppedColumn> dropped = metadata.droppedColumns.values()
+                                                             .stream()
+                                                             .sorted((l, r) -> l.column.name.compareTo(r.column.name))
+                                                             .collect(Collectors.toList());
+        for (DroppedColumn column : dropped)
+        {
+            digest.update(column.column.name.bytes);
+            digest.updateWithLong(column.droppedTime);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Moves to the next partition.
+     *
+     * @return whether there is a next partition
+     */
+    public boolean advance() throws IOException
+    {
+        if (reader.isEOF())
+            return false;
+
+        key = sstable.decorateKey(ByteBufferUtil.readWithShortLength(reader));
+        position = reader.readUnsignedVInt();
+        size = reader.readUnsignedVInt();
+        if (size > 0)
+            reader.readFully(digest);
+        return true;
+    }
+
+    public DecoratedKey key()
+    {
+        return key;
+    }
+
+    /**
+     * @return the position of the partition in the data file
+     */
+    public long position()
+    {
+        return position;
+    }
+
+    /**
+     * @return whether the partition has a hash, or must be read
+     */
+    public boolean hasDigest()
+    {
+        return size > 0;
+    }
+
+    /**
+     * @return the number of bytes the hash of the partition covers
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the hash of the partition, which is only valid until the next call to {@link #advance()}
+     */
+    public byte[] digest()
+    {
+        return digest;
+    }
+
+    public SSTableReader sstable()
+    {
+        return sstable;
+    }
+
+    public void close()
+    {
+        FileUtils.closeQuietly(reader);
+    }
+}
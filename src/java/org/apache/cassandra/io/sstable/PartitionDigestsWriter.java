@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Digest;
+import org.apache.cassandra.db.RegularAndStaticColumns;
+import org.apache.cassandra.db.rows.Cell;
+import org.apache.cassandra.db.rows.ColumnData;
+import org.apache.cassandra.db.rows.ComplexColumnData;
+import org.apache.cassandra.db.rows.RangeTombstoneMarker;
+import org.apache.cassandra.db.rows.Row;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.db.rows.UnfilteredRowIterators;
+import org.apache.cassandra.db.transform.Transformation;
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.io.util.SequentialWriterOption;
+import org.apache.cassandra.schema.TableMetadata;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.concurrent.Transactional;
+
+/**
+ * Writes the repair hashes of the partitions of an sstable as they are written, read by {@link PartitionDigests}.
+ */
+public class PartitionDigestsWriter extends Transactional.AbstractTransactional implements Transactional
+{
+    private final SequentialWriter writer;
+    // the columns the hashes cover, fixed for the whole sstable even if the table is altered while it is written.
+    // These are the columns of the table rather than the ones of the serialization header, which only has the columns
+    // written to the sstable: validation reads sstables through SSTableIdentityIterator, whose columns are the table's
+    private final RegularAndStaticColumns columns;
+
+    public PartitionDigestsWriter(File file, SequentialWriterOption option, TableMetadata metadata)
+    {
+        this.writer = new SequentialWriter(file, option);
+        this.columns = metadata.regularAndStaticColumns();
+        try
+        {
+            writer.write(PartitionDigests.columnsDigest(metadata));
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, writer.getPath());
+        }
+    }
+
+    /**
+     * @return a transformation that hashes the partition as it is written, to add with {@link #add} once written
+     */
+    public Digester digester(UnfilteredRowIterator partition)
+    {
+        return new Digester(partition, columns);
+    }
+
+    /**
+     * Adds a written partition.
+     *
+     * @param key the key of the partition, which must sort after all the keys previously added
+     * @param position the position of the partition in the data file
+     * @param digester the digester the partition was written through
+     */
+    public void add(DecoratedKey key, long position, Digester digester)
+    {
+        try
+        {
+            ByteBufferUtil.writeWithShortLength(key.getKey(), writer);
+            writer.writeUnsignedVInt(position);
+            if (digester.isLive)
+            {
+                writer.writeUnsignedVInt(digester.digest.inputBytes());
+                writer.write(digester.digest.digest());
+            }
+            else
+            {
+                writer.writeUnsignedVInt(0);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, writer.getPath());
+        }
+    }
+
+    protected void doPrepare()
+    {
+        writer.prepareToCommit();
+    }
+
+    protected Throwable doCommit(Throwable accumulate)
+    {
+        return writer.commit(accumulate);
+    }
+
+    protected Throwable doAbort(Throwable accumulate)
+    {
+        return writer.abort(accumulate);
+    }
+
+    /**
+     * Hashes a partition as it is written, with the header digest covering the columns of the table like the
+     * validation of the partition read back from the sstable, and tells whether the partition only has live data,
+     * that validation leaves untouched.
+     */
+    public static class Digester extends Transformation<UnfilteredRowIterator>
+    {
+        private final Digest digest = Digest.forValidator();
+        private boolean isLive;
+
+        private Digester(UnfilteredRowIterator partition, RegularAndStaticColumns columns)
+        {
+            UnfilteredRowIterators.digestHeader(partition.partitionKey(),
+                                                partition.partitionLevelDeletion(),
+                                                columns,
+                                                partition.staticRow(),
+                                                partition.isReverseOrder(),
+                                                digest);
+            isLive = partition.partitionLevelDeletion().isLive() && isLive(partition.staticRow());
+        }
+
+        @Override
+        protected Row applyToRow(Row row)
+        {
+            row.digest(digest);
+            isLive &= isLive(row);
+            return row;
+        }
+
+        @Override
+        protected RangeTombstoneMarker applyToMarker(RangeTombstoneMarker marker)
+        {
+            marker.digest(digest);
+            isLive = false;
+            return marker;
+        }
+
+        private static boolean isLive(Row row)
+        {
+            if (!row.deletion().isLive() || row.primaryKeyLivenessInfo().isExpiring())
+                return false;
+
+            for (ColumnData data : row)
+            {
+                if (data.column().isComplex())
+                {
+                    ComplexColumnData complexData = (ComplexColumnData) data;
+                    if (!complexData.complexDeletion().isLive())
+                        return false;
+                    for (Cell cell : complexData)
+                    {
+                        if (!isLive(cell))
+                            return false;
+                    }
+                }
+                else if (!isLive((Cell) data))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isLive(Cell cell)
+        {
+            return !cell.isTombstone() && !cell.isExpiring();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.io.IOException;
+
+import org.apache.cassandra.cache.ChunkCache;
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.io.util.DataOutputPlus;
+import org.apache.cassandra.io.util.FileHandle;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
+import org.apache.cassandra.utils.concurrent.Ref;
+
+/**
+ * An on-disk byte-comparable trie mapping the partition keys of an sstable to the position of their entry in the
+ * primary index, written by {@link PartitionIndexBuilder}.
+ * <p>
+ * Looking up a key walks the trie from its root following the bytes of the key, which takes a handful of node
+ * reads, instead of a binary search in the {@link IndexSummary} followed by a scan of up to an index interval of
+ * entries in the primary index. Nothing is kept on heap besides the file handle.
+ * <p>
+ * As the trie only stores the prefix of each key that is needed to tell it apart from the other keys of the sstable,
+ * a key that is not in the sstable can lead to the entry of another key: the caller must check the key of the entry.
+ * <p>
+ * File format, all numbers big-endian:
+ * <ul>
+ *   <li>leaf node: {@code [LEAF | (w - 1)] [primary index position on w bytes]}</li>
+ *   <li>inner node: {@code [INNER | (w - 1)] [children count - 1] [transition byte of each child, ascending]
+ *       [distance back from the node to each child, on w bytes each]}</li>
+ *   <li>footer: the position of the root node on 8 bytes, or -1 if the sstable has no keys.</li>
+ * </ul>
+ */
+public class PartitionIndex implements AutoCloseable
+{
+    static final int LEAF = 0x10;
+    static final int INNER = 0x20;
+    private static final int TYPE_MASK = 0xF0;
+    private static final int WIDTH_MASK = 0x0F;
+
+    /** Returned by {@link #getPosition} when the key is not in the index. */
+    public static final long NOT_FOUND = -1;
+
+    private final FileHandle fh;
+    private final long root;
+
+    private PartitionIndex(FileHandle fh, long root)
+    {
+        this.fh = fh;
+        this.root = root;
+    }
+
+    /**
+     * Opens the partition index of the given sstable, which must have been completely written.
+     */
+    @SuppressWarnings("resource")
+    public static PartitionIndex load(Descriptor descriptor) throws IOException
+    {
+        String path = descriptor.filenameFor(Component.PARTITION_INDEX);
+        try (FileHandle.Builder builder = new FileHandle.Builder(path).mmapped(DatabaseDescriptor.getIndexAccessMode() == Config.DiskAccessMode.mmap)
+                                                                       .withChunkCache(ChunkCache.instance))
+        {
+            FileHandle fh = builder.complete();
+            try (RandomAccessReader reader = fh.createReader())
+            {
+                reader.seek(reader.length() - 8);
+                return new PartitionIndex(fh, reader.readLong());
+            }
+            catch (Throwable t)
+            {
+                fh.close();
+                throw t;
+            }
+        }
+    }
+
+    /**
+     * @return the position in the primary index of the entry the trie leads to for the given key, which is the
+     * entry of the key if the key is in the sstable, or {@link #NOT_FOUND}.
+     */
+    public long getPosition(DecoratedKey key) throws IOException
+    {
+        if (root < 0)
+            return NOT_FOUND;
+
+        ByteSource bytes = key.asComparableBytes();
+        byte[] transitions = new byte[256];
+        try (RandomAccessReader reader = fh.createReader())
+        {
+            long node = root;
+            while (true)
+            {
+                reader.seek(node);
+                int header = reader.readUnsignedByte();
+                int width = (header & WIDTH_MASK) + 1;
+                if ((header & TYPE_MASK) == LEAF)
+                    return readSized(reader, width);
+
+                int count = reader.readUnsignedByte() + 1;
+                int next = bytes.next();
+                if (next == ByteSource.END_OF_STREAM)
+                    return NOT_FOUND;
+                reader.readFully(transitions, 0, count);
+                int child = binarySearch(transitions, count, next);
+                if (child < 0)
+                    return NOT_FOUND;
+                reader.seek(node + 2 + count + (long) child * width);
+                node -= readSized(reader, width);
+            }
+        }
+    }
+
+    private static int binarySearch(byte[] transitions, int count, int value)
+    {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int cmp = Integer.compare(transitions[mid] & 0xFF, value);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    static int bytesFor(long value)
+    {
+        assert value >= 0;
+        return Math.max(1, 8 - Long.numberOfLeadingZeros(value) / 8);
+    }
+
+    static void writeSized(DataOutputPlus out, long value, int width) throws IOException
+    {
+        for (int shift = (width - 1) * 8; shift >= 0; shift -= 8)
+            out.writeByte((int) (value >>> shift));
+    }
+
+    private static long readSized(RandomAccessReader in, int width) throws IOException
+    {
+        long value = 0;
+        for (int i = 0; i < width; i++)
+            value = (value << 8) | in.readUnsignedByte();
+        return value;
+    }
+
+    public void addTo(Ref.IdentityCollection identities)
+    {
+        fh.addTo(identities);
+    }
+
+    public void close()
+    {
+        fh.close();
+    }
+}
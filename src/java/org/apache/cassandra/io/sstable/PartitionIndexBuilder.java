@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.io.FSWriteError;
+import org.apache.cassandra.io.util.SequentialWriter;
+import org.apache.cassandra.io.util.SequentialWriterOption;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
+import org.apache.cassandra.utils.concurrent.Transactional;
+
+/**
+ * Writes the {@link PartitionIndex} of an sstable from its partition keys, which must be added in order.
+ * <p>
+ * The trie only stores the shortest prefix of each key that distinguishes it from its neighbours, so that the
+ * size of the index depends on the number of keys rather than on their length. The prefix a key needs is only known
+ * once the following key has been seen, so every key is written when its successor is added. Nodes are written
+ * depth-first, children before their parent, which lets a node be written as soon as the keys can no longer
+ * add children to it and makes every pointer a (positive) distance back from the node that holds it.
+ */
+public class PartitionIndexBuilder extends Transactional.AbstractTransactional implements Transactional
+{
+    private final SequentialWriter writer;
+
+    // the nodes on the path of the last key that can still get children, indexed by depth
+    private final List<OpenNode> path = new ArrayList<>();
+
+    private byte[] previousKey;
+    private long previousPosition;
+    // the length of the prefix the previous key shares with the one before it
+    private int previousCommonPrefix;
+    private long root = -1;
+
+    public PartitionIndexBuilder(File file, SequentialWriterOption option)
+    {
+        this.writer = new SequentialWriter(file, option);
+    }
+
+    /**
+     * Adds a key to the index.
+     *
+     * @param key the key, which must sort after all the keys previously added
+     * @param position the position of the entry of the key in the primary index
+     */
+    public void add(DecoratedKey key, long position)
+    {
+        byte[] bytes = ByteSource.readBytes(key.asComparableBytes());
+        try
+        {
+            if (previousKey != null)
+            {
+                int commonPrefix = commonPrefix(previousKey, bytes);
+                assert commonPrefix < bytes.length && commonPrefix < previousKey.length : "Keys must be added in order and be prefix-free";
+                writePrevious(Math.max(previousCommonPrefix, commonPrefix) + 1, commonPrefix);
+                previousCommonPrefix = commonPrefix;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, writer.getPath());
+        }
+        previousKey = bytes;
+        previousPosition = position;
+    }
+
+    private static int commonPrefix(byte[] left, byte[] right)
+    {
+        int length = Math.min(left.length, right.length);
+        for (int i = 0; i < length; i++)
+            if (left[i] != right[i])
+                return i;
+        return length;
+    }
+
+    /**
+     * Writes the previous key as a leaf at the given depth, and all the nodes of its path that are deeper than
+     * {@code keepDepth} and thus can't get further children.
+     */
+    private void writePrevious(int leafDepth, int keepDepth) throws IOException
+    {
+        long child = writer.position();
+        int width = PartitionIndex.bytesFor(previousPosition);
+        writer.writeByte(PartitionIndex.LEAF | (width - 1));
+        PartitionIndex.writeSized(writer, previousPosition, width);
+
+        for (int depth = leafDepth - 1; depth >= keepDepth; depth--)
+        {
+            while (path.size() <= depth)
+                path.add(new OpenNode());
+            OpenNode node = path.get(depth);
+            node.add(previousKey[depth], child);
+            if (depth == keepDepth)
+                break;
+            child = node.write(writer);
+        }
+    }
+
+    protected void doPrepare()
+    {
+        try
+        {
+            if (previousKey != null)
+            {
+                writePrevious(previousCommonPrefix + 1, 0);
+                root = path.get(0).write(writer);
+            }
+            writer.writeLong(root);
+        }
+        catch (IOException e)
+        {
+            throw new FSWriteError(e, writer.getPath());
+        }
+        writer.prepareToCommit();
+    }
+
+    protected Throwable doCommit(Throwable accumulate)
+    {
+        return writer.commit(accumulate);
+    }
+
+    protected Throwable doAbort(Throwable accumulate)
+    {
+        return writer.abort(accumulate);
+    }
+
+    private static final class OpenNode
+    {
+        private final byte[] transitions = new byte[256];
+        private final long[] children = new long[256];
+        private int count;
+
+        void add(byte transition, long child)
+        {
+            transitions[count] = transition;
+            children[count] = child;
+            count++;
+        }
+
+        /**
+         * Writes the node and resets it for the next prefix at the same depth.
+         *
+         * @return the position of the node
+         */
+        long write(SequentialWriter writer) throws IOException
+        {
+            long position = writer.position();
+            // the first child is the furthest one
+            int width = PartitionIndex.bytesFor(position - children[0]);
+            writer.writeByte(PartitionIndex.INNER | (width - 1));
+            writer.writeByte(count - 1);
+            writer.write(transitions, 0, count);
+            for (int i = 0; i < count; i++)
+                PartitionIndex.writeSized(writer, position - children[i], width);
+            count = 0;
+            return position;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.SerializationHeader;
+import org.apache.cassandra.db.compaction.ShardBoundaries;
+import org.apache.cassandra.db.lifecycle.LifecycleNewTracker;
+import org.apache.cassandra.db.rows.UnfilteredRowIterator;
+import org.apache.cassandra.index.Index;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
+import org.apache.cassandra.schema.TableId;
+
+/**
+ * An SSTableMultiWriter that starts a new sstable, in the same directory, at every shard boundary. This is used to
+ * split flushed sstables so that each of them covers at most one shard of the compaction strategy.
+ */
+public class ShardedSSTableMultiWriter implements SSTableMultiWriter
+{
+    private final ColumnFamilyStore cfs;
+    private final Descriptor firstDescriptor;
+    private final long keyCount;
+    private final long repairedAt;
+    private final UUID pendingRepair;
+    private final boolean isTransient;
+    private final MetadataCollector firstCollector;
+    private final SerializationHeader header;
+    private final Collection<Index> indexes;
+    private final LifecycleNewTracker lifecycleNewTracker;
+    private final ShardBoundaries shards;
+
+    private final List<SSTableMultiWriter> finishedWriters = new ArrayList<>();
+    private final List<SSTableReader> finishedReaders = new ArrayList<>();
+    private SSTableMultiWriter currentWriter = null;
+    private int currentShard = -1;
+
+    public ShardedSSTableMultiWriter(ColumnFamilyStore cfs,
+                                     Descriptor descriptor,
+                                     long keyCount,
+                                     long repairedAt,
+                                     UUID pendingRepair,
+                                     boolean isTransient,
+                                     MetadataCollector meta,
+                                     SerializationHeader header,
+                                     Collection<Index> indexes,
+                                     LifecycleNewTracker lifecycleNewTracker,
+                                     ShardBoundaries shards)
+    {
+        this.cfs = cfs;
+        this.firstDescriptor = descriptor;
+        this.keyCount = keyCount;
+        this.repairedAt = repairedAt;
+        this.pendingRepair = pendingRepair;
+        this.isTransient = isTransient;
+        this.firstCollector = meta;
+        this.header = header;
+        this.indexes = indexes;
+        this.lifecycleNewTracker = lifecycleNewTracker;
+        this.shards = shards;
+    }
+
+    private void maybeSwitchWriter(int shard)
+    {
+        if (shard == currentShard)
+            return;
+
+        currentShard = shard;
+        Descriptor descriptor;
+        MetadataCollector collector;
+        if (currentWriter == null)
+        {
+            descriptor = firstDescriptor;
+            collector = firstCollector;
+        }
+        else
+        {
+            finishedWriters.add(currentWriter);
+            descriptor = cfs.newSSTableDescriptor(firstDescriptor.directory, firstDescriptor.version, firstDescriptor.formatType);
+            collector = firstCollector.copyForNewSSTable();
+        }
+        currentWriter = SimpleSSTableMultiWriter.create(descriptor,
+                                                        Math.max(1, keyCount / shards.count()),
+                                                        repairedAt,
+                                                        pendingRepair,
+                                                        isTransient,
+                                                        cfs.metadata,
+                                                        collector,
+                                                        header,
+                                                        indexes,
+                                                        lifecycleNewTracker);
+    }
+
+    public boolean append(UnfilteredRowIterator partition)
+    {
+        maybeSwitchWriter(shards.shardFor(partition.partitionKey().getToken()));
+        return currentWriter.append(partition);
+    }
+
+    @Override
+    public Collection<SSTableReader> finish(long repairedAt, long maxDataAge, boolean openResult)
+    {
+        for (SSTableMultiWriter writer : allWriters())
+            finishedReaders.addAll(writer.finish(repairedAt, maxDataAge, openResult));
+        return finishedReaders;
+    }
+
+    @Override
+    public Collection<SSTableReader> finish(boolean openResult)
+    {
+        for (SSTableMultiWriter writer : allWriters())
+            finishedReaders.addAll(writer.finish(openResult));
+        return finishedReaders;
+    }
+
+    @Override
+    public Collection<SSTableReader> finished()
+    {
+        // the writers may have been finished by prepareToCommit rather than by one of the finish methods
+        if (finishedReaders.isEmpty())
+        {
+            for (SSTableMultiWriter writer : allWriters())
+                finishedReaders.addAll(writer.finished());
+        }
+        return finishedReaders;
+    }
+
+    @Override
+    public SSTableMultiWriter setOpenResult(boolean openResult)
+    {
+        finishedWriters.forEach(w -> w.setOpenResult(openResult));
+        if (currentWriter != null)
+            currentWriter.setOpenResult(openResult);
+        return this;
+    }
+
+    public String getFilename()
+    {
+        return firstDescriptor.filenameFor(Component.DATA);
+    }
+
+    @Override
+    public long getFilePointer()
+    {
+        long filePointer = 0;
+        for (SSTableMultiWriter writer : finishedWriters)
+            filePointer += writer.getFilePointer();
+        return currentWriter == null ? filePointer : filePointer + currentWriter.getFilePointer();
+    }
+
+    @Override
+    public TableId getTableId()
+    {
+        return cfs.metadata.id;
+    }
+
+    @Override
+    public Throwable commit(Throwable accumulate)
+    {
+        for (SSTableMultiWriter writer : allWriters())
+            accumulate = writer.commit(accumulate);
+        return accumulate;
+    }
+
+    @Override
+    public Throwable abort(Throwable accumulate)
+    {
+        for (SSTableMultiWriter writer : allWriters())
+            accumulate = writer.abort(accumulate);
+        return accumulate;
+    }
+
+    @Override
+    public void prepareToCommit()
+    {
+        allWriters().forEach(SSTableMultiWriter::prepareToCommit);
+    }
+
+    @Override
+    public void close()
+    {
+        allWriters().forEach(SSTableMultiWriter::close);
+    }
+
+    private List<SSTableMultiWriter> allWriters()
+    {
+        if (currentWriter != null)
+            finishedWriters.add(currentWriter);
+        currentWriter = null;
+        return finishedWriters;
+    }
+}
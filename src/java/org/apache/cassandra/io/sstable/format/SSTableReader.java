@@ -208,6 +208,8 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
     protected FileHandle dfile;
     protected IndexSummary indexSummary;
     protected IFilter bf;
+    // the trie of the partition keys, if the sstable has one; shared by all the instances of the sstable
+    protected PartitionIndex partitionIndex;
 
     protected final RowIndexEntry.IndexSerializer rowIndexEntrySerializer;
 
@@ -687,6 +689,21 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         return sum;
     }
 
+    /**
+     * @return whether the token spans of any two of the given sstables overlap
+     */
+    public static boolean hasOverlap(Collection<SSTableReader> sstables)
+    {
+        List<SSTableReader> sorted = new ArrayList<>(sstables);
+        sorted.sort(sstableComparator);
+        for (int i = 1; i < sorted.size(); i++)
+        {
+            if (sorted.get(i - 1).last.getToken().compareTo(sorted.get(i).first.getToken()) >= 0)
+                return true;
+        }
+        return false;
+    }
+
     public static long getTotalUncompressedBytes(Iterable<SSTableReader> sstables)
     {
         long sum = 0;
@@ -1583,6 +1600,14 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         return keyCache != null && metadata().params.caching.cacheKeys();
     }
 
+    /**
+     * @return whether exact key lookups go through the partition index trie rather than the index summary
+     */
+    public boolean hasPartitionIndex()
+    {
+        return partitionIndex != null;
+    }
+
     /**
      * Retrieves the position while updating the key cache and the stats.
      * @param key The key to apply as the rhs to the given Operator. A 'fake' key is allowed to
@@ -1637,6 +1662,42 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
 
     public abstract UnfilteredRowIterator simpleIterator(FileDataInput file, DecoratedKey key, RowIndexEntry indexEntry, boolean tombstoneOnly);
 
+    /**
+     * Reads the index entry and the first data chunk of the given partition, if the sstable contains it, so that
+     * a following read of the partition finds them in the chunk cache, or in the page cache for files that are not
+     * cached. The key cache and the read stats are left to the actual read.
+     * This is meant to be called asynchronously, and does nothing if the sstable has been released in the meantime.
+     */
+    public void prefetch(DecoratedKey key)
+    {
+        Ref<SSTableReader> ref = tryRef();
+        if (ref == null)
+            return;
+
+        try
+        {
+            RowIndexEntry indexEntry = getPosition(key, Operator.EQ, false);
+            if (indexEntry == null)
+                return;
+
+            try (RandomAccessReader reader = openDataReader())
+            {
+                reader.seek(indexEntry.position);
+                reader.readByte();
+            }
+        }
+        catch (Throwable t)
+        {
+            // any error will be raised by the actual read
+            JVMStabilityInspector.inspectThrowable(t);
+            logger.trace("Could not prefetch partition {} from {}", key, this, t);
+        }
+        finally
+        {
+            ref.release();
+        }
+    }
+
     /**
      * Finds and returns the first key beyond a given token in this SSTable or null if no such key exists.
      */
@@ -2070,6 +2131,28 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         return null;
     }
 
+    /**
+     * Opens a reader of the data file for a scan by a background operation (compaction, validation, verification...),
+     * which doesn't add the chunks it reads to the chunk cache.
+     *
+     * @param limiter the rate limiter of the reads, or null
+     */
+    public RandomAccessReader openDataScanReader(RateLimiter limiter)
+    {
+        return dfile.createScanReader(limiter);
+    }
+
+    /**
+     * Opens a reader of the primary index for a scan by a background operation, which doesn't add the chunks it
+     * reads to the chunk cache.
+     */
+    public RandomAccessReader openIndexScanReader()
+    {
+        if (ifile != null)
+            return ifile.createScanReader(null);
+        return null;
+    }
+
     public ChannelProxy getDataChannel()
     {
         return dfile.channel;
@@ -2146,6 +2229,7 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
     {
         tidy.setup(this, trackHotness);
         this.readMeter = tidy.global.readMeter;
+        this.partitionIndex = tidy.global.ensurePartitionIndex(this);
     }
 
     @VisibleForTesting
@@ -2162,6 +2246,8 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         ifile.addTo(identities);
         bf.addTo(identities);
         indexSummary.addTo(identities);
+        if (partitionIndex != null)
+            partitionIndex.addTo(identities);
 
     }
 
@@ -2299,6 +2385,8 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         private WeakReference<ScheduledFuture<?>> readMeterSyncFuture = NULL;
         // shared state managing if the logical sstable has been compacted; this is used in cleanup
         private volatile Runnable obsoletion;
+        // the partition index is immutable once the sstable is complete, so all instances can share it
+        private PartitionIndex partitionIndex;
 
         GlobalTidy(final SSTableReader reader)
         {
@@ -2335,6 +2423,24 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
             }, 1, 5, TimeUnit.MINUTES));
         }
 
+        synchronized PartitionIndex ensurePartitionIndex(SSTableReader reader)
+        {
+            // early opened instances may not have a complete partition index yet
+            if (partitionIndex != null || reader.openReason == OpenReason.EARLY || !reader.components.contains(Component.PARTITION_INDEX))
+                return partitionIndex;
+
+            try
+            {
+                partitionIndex = PartitionIndex.load(desc);
+            }
+            catch (IOException e)
+            {
+                // the partition index is only an optimisation, lookups can still go through the index summary
+                logger.warn("Cannot open the partition index of {}, using the index summary instead", desc, e);
+            }
+            return partitionIndex;
+        }
+
         private void stopReadMeterPersistence()
         {
             ScheduledFuture<?> readMeterSyncFutureLocal = readMeterSyncFuture.get();
@@ -2349,6 +2455,13 @@ public abstract class SSTableReader extends SSTable implements SelfRefCounted<SS
         {
             lookup.remove(desc);
 
+            synchronized (this)
+            {
+                if (partitionIndex != null)
+                    partitionIndex.close();
+                partitionIndex = null;
+            }
+
             if (obsoletion != null)
                 obsoletion.run();
 
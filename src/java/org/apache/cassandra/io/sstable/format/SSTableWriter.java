@@ -174,6 +174,11 @@ public abstract class SSTableWriter extends SSTable implements Transactional
             // but the components are unmodifiable after construction
             components.add(Component.CRC);
         }
+
+        if (DatabaseDescriptor.isTriePartitionIndexEnabled() && metadata.partitioner.getMinimumToken().asComparableBytes() != null)
+            components.add(Component.PARTITION_INDEX);
+        if (DatabaseDescriptor.isRepairPartitionDigestsEnabled() && !metadata.isCounter())
+            components.add(Component.PARTITION_DIGESTS);
         return components;
     }
 
@@ -192,6 +192,9 @@ public class BigTableReader extends SSTableReader
             return null;
         }
 
+        if (op == Operator.EQ && partitionIndex != null && ifile != null)
+            return getExactPosition((DecoratedKey) key, updateCacheAndStats, listener);
+
         int binarySearchResult = indexSummary.binarySearch(key);
         long sampledPosition = getIndexScanPositionFromBinarySearchResult(binarySearchResult, indexSummary);
         int sampledIndex = getIndexSummaryIndexFromBinarySearchResult(binarySearchResult);
@@ -287,5 +290,49 @@ public class BigTableReader extends SSTableReader
         return null;
     }
 
+    /**
+     * Finds the index entry of the given key by walking the partition index trie, which leads directly to the only
+     * entry of the primary index that can match the key.
+     */
+    private RowIndexEntry getExactPosition(DecoratedKey key, boolean updateCacheAndStats, SSTableReadsListener listener)
+    {
+        String path = descriptor.filenameFor(Component.PARTITION_INDEX);
+        try
+        {
+            long indexPosition = partitionIndex.getPosition(key);
+            if (indexPosition != PartitionIndex.NOT_FOUND)
+            {
+                try (FileDataInput in = ifile.createReader(indexPosition))
+                {
+                    path = in.getPath();
+                    // the trie only stores distinguishing prefixes, so the entry may be for another key
+                    if (ByteBufferUtil.readWithShortLength(in).equals(key.getKey()))
+                    {
+                        RowIndexEntry indexEntry = rowIndexEntrySerializer.deserialize(in);
+                        if (updateCacheAndStats)
+                        {
+                            cacheKey(key, indexEntry);
+                            bloomFilterTracker.addTruePositive();
+                        }
+                        listener.onSSTableSelected(this, indexEntry, SelectionReason.INDEX_ENTRY_FOUND);
+                        Tracing.trace("Partition index with {} entries found for sstable {}", indexEntry.columnsIndexCount(), descriptor.generation);
+                        return indexEntry;
+                    }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            markSuspect();
+            throw new CorruptSSTableException(e, path);
+        }
+
+        if (updateCacheAndStats)
+            bloomFilterTracker.addFalsePositive();
+        listener.onSSTableSkipped(this, SkippingReason.INDEX_ENTRY_NOT_FOUND);
+        Tracing.trace("Partition index lookup complete (bloom filter false positive) for sstable {}", descriptor.generation);
+        return null;
+    }
+
 
 }
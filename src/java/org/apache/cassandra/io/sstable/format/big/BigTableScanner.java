@@ -105,8 +105,17 @@ public class BigTableScanner implements ISSTableScanner
     {
         assert sstable != null;
 
-        this.dfile = sstable.openDataReader();
-        this.ifile = sstable.openIndexReader();
+        // the scans that aren't reads (compactions, validations, streaming...) shouldn't evict the cached chunks
+        if (dataRange == null)
+        {
+            this.dfile = sstable.openDataScanReader(null);
+            this.ifile = sstable.openIndexScanReader();
+        }
+        else
+        {
+            this.dfile = sstable.openDataReader();
+            this.ifile = sstable.openIndexReader();
+        }
         this.sstable = sstable;
         this.columns = columns;
         this.dataRange = dataRange;
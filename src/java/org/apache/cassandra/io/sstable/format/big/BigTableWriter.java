@@ -169,7 +169,7 @@ public class BigTableWriter extends SSTableWriter
         return (lastWrittenKey == null) ? 0 : dataFile.position();
     }
 
-    private void afterAppend(DecoratedKey decoratedKey, long dataEnd, RowIndexEntry index, ByteBuffer indexInfo) throws IOException
+    private void afterAppend(DecoratedKey decoratedKey, long dataEnd, RowIndexEntry index, ByteBuffer indexInfo, PartitionDigestsWriter.Digester digester) throws IOException
     {
         metadataCollector.addKey(decoratedKey.getKey());
         lastWrittenKey = decoratedKey;
@@ -179,7 +179,7 @@ public class BigTableWriter extends SSTableWriter
 
         if (logger.isTraceEnabled())
             logger.trace("wrote {} at {}", decoratedKey, dataEnd);
-        iwriter.append(decoratedKey, index, dataEnd, indexInfo);
+        iwriter.append(decoratedKey, index, dataEnd, indexInfo, digester);
     }
 
     /**
@@ -210,7 +210,10 @@ public class BigTableWriter extends SSTableWriter
         //Reuse the writer for each row
         columnIndexWriter.reset();
 
-        try (UnfilteredRowIterator collecting = Transformation.apply(iterator, new StatsCollector(metadataCollector)))
+        PartitionDigestsWriter.Digester digester = iwriter.partitionDigests == null ? null : iwriter.partitionDigests.digester(iterator);
+        UnfilteredRowIterator digesting = digester == null ? iterator : Transformation.apply(iterator, digester);
+
+        try (UnfilteredRowIterator collecting = Transformation.apply(digesting, new StatsCollector(metadataCollector)))
         {
             columnIndexWriter.buildRowIndex(collecting);
 
@@ -231,7 +234,7 @@ public class BigTableWriter extends SSTableWriter
             long rowSize = endPosition - startPosition;
             maybeLogLargePartitionWarning(key, rowSize);
             metadataCollector.addPartitionSizeInBytes(rowSize);
-            afterAppend(key, endPosition, entry, columnIndexWriter.buffer());
+            afterAppend(key, endPosition, entry, columnIndexWriter.buffer(), digester);
             return entry;
         }
         catch (IOException e)
@@ -476,6 +479,8 @@ public class BigTableWriter extends SSTableWriter
         public final FileHandle.Builder builder;
         public final IndexSummaryBuilder summary;
         public final IFilter bf;
+        private final PartitionIndexBuilder partitionIndex;
+        private final PartitionDigestsWriter partitionDigests;
         private DataPosition mark;
 
         IndexWriter(long keyCount)
@@ -485,6 +490,14 @@ public class BigTableWriter extends SSTableWriter
             chunkCache.ifPresent(builder::withChunkCache);
             summary = new IndexSummaryBuilder(keyCount, metadata().params.minIndexInterval, Downsampling.BASE_SAMPLING_LEVEL);
             bf = FilterFactory.getFilter(keyCount, metadata().params.bloomFilterFpChance);
+            if (components.contains(Component.PARTITION_INDEX))
+                partitionIndex = new PartitionIndexBuilder(new File(descriptor.filenameFor(Component.PARTITION_INDEX)), writerOption);
+            else
+                partitionIndex = null;
+            if (components.contains(Component.PARTITION_DIGESTS))
+                partitionDigests = new PartitionDigestsWriter(new File(descriptor.filenameFor(Component.PARTITION_DIGESTS)), writerOption, metadata());
+            else
+                partitionDigests = null;
             // register listeners to be alerted when the data files are flushed
             indexFile.setPostFlushListener(() -> summary.markIndexSynced(indexFile.getLastFlushOffset()));
             dataFile.setPostFlushListener(() -> summary.markDataSynced(dataFile.getLastFlushOffset()));
@@ -496,7 +509,7 @@ public class BigTableWriter extends SSTableWriter
             return summary.getLastReadableBoundary();
         }
 
-        public void append(DecoratedKey key, RowIndexEntry indexEntry, long dataEnd, ByteBuffer indexInfo) throws IOException
+        public void append(DecoratedKey key, RowIndexEntry indexEntry, long dataEnd, ByteBuffer indexInfo, PartitionDigestsWriter.Digester digester) throws IOException
         {
             bf.add(key);
             long indexStart = indexFile.position();
@@ -515,6 +528,10 @@ public class BigTableWriter extends SSTableWriter
                 logger.trace("wrote index entry: {} at {}", indexEntry, indexStart);
 
             summary.maybeAddEntry(key, indexStart, indexEnd, dataEnd);
+            if (partitionIndex != null)
+                partitionIndex.add(key, indexStart);
+            if (partitionDigests != null)
+                partitionDigests.add(key, indexEntry.position, digester);
         }
 
         /**
@@ -568,15 +585,28 @@ public class BigTableWriter extends SSTableWriter
             {
                 SSTableReader.saveSummary(descriptor, first, last, indexSummary);
             }
+
+            if (partitionIndex != null)
+                partitionIndex.prepareToCommit();
+            if (partitionDigests != null)
+                partitionDigests.prepareToCommit();
         }
 
         protected Throwable doCommit(Throwable accumulate)
         {
+            if (partitionIndex != null)
+                accumulate = partitionIndex.commit(accumulate);
+            if (partitionDigests != null)
+                accumulate = partitionDigests.commit(accumulate);
             return indexFile.commit(accumulate);
         }
 
         protected Throwable doAbort(Throwable accumulate)
         {
+            if (partitionIndex != null)
+                accumulate = partitionIndex.abort(accumulate);
+            if (partitionDigests != null)
+                accumulate = partitionDigests.abort(accumulate);
             return indexFile.abort(accumulate);
         }
 
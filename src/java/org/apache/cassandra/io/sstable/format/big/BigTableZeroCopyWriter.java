@@ -73,7 +73,9 @@ public class BigTableZeroCopyWriter extends SSTable implements SSTableMultiWrite
                         Component.COMPRESSION_INFO,
                         Component.FILTER,
                         Component.DIGEST,
-                        Component.CRC);
+                        Component.CRC,
+                        Component.PARTITION_INDEX,
+                        Component.PARTITION_DIGESTS);
 
     public BigTableZeroCopyWriter(Descriptor descriptor,
                                   TableMetadataRef metadata,
@@ -137,6 +137,15 @@ public class MetadataCollector implements PartitionStatisticsCollector
         sstableLevel(level);
     }
 
+    /**
+     * @return an empty collector for another sstable written from the same source, i.e. covering the same commit
+     * log intervals and at the same level as this one
+     */
+    public MetadataCollector copyForNewSSTable()
+    {
+        return new MetadataCollector(comparator).commitLogIntervals(commitLogIntervals).sstableLevel(sstableLevel);
+    }
+
     public MetadataCollector addKey(ByteBuffer key)
     {
         long hashed = MurmurHash.hash2_64(key, key.position(), key.remaining(), 0);
@@ -184,6 +184,79 @@ public abstract class CompressedChunkReader extends AbstractReaderFileProxy impl
                 throw new CorruptSSTableException(e, channel.filePath());
             }
         }
+
+        /**
+         * @return the size of the buffer needed by {@link #readCompressedChunk} for the chunk at the given position,
+         * that is its compressed length plus the length of its checksum.
+         */
+        public int compressedChunkSize(long position)
+        {
+            return metadata.chunkFor(position).length + Integer.BYTES;
+        }
+
+        /**
+         * Reads the compressed bytes of the chunk at the given position, followed by their checksum, verifying it if
+         * required. The filled buffer is positioned at 0, with limit set at the compressed length of the chunk, and
+         * can be uncompressed (concurrently, using duplicates) with {@link #uncompressChunk}.
+         */
+        public void readCompressedChunk(long position, ByteBuffer compressed)
+        {
+            assert position <= fileLength;
+
+            CompressionMetadata.Chunk chunk = metadata.chunkFor(position);
+            int length = chunk.length + Integer.BYTES;
+            try
+            {
+                assert compressed.capacity() >= length;
+                compressed.clear().limit(length);
+                if (channel.read(compressed, chunk.offset) != length)
+                    throw new CorruptBlockException(channel.filePath(), chunk);
+
+                compressed.flip();
+                compressed.limit(chunk.length);
+
+                if (shouldCheckCrc())
+                {
+                    int checksum = (int) ChecksumType.CRC32.of(compressed);
+
+                    compressed.limit(length);
+                    if (compressed.getInt(chunk.length) != checksum)
+                        throw new CorruptBlockException(channel.filePath(), chunk);
+
+                    compressed.position(0).limit(chunk.length);
+                }
+            }
+            catch (CorruptBlockException e)
+            {
+                compressed.position(0).limit(0);
+                throw new CorruptSSTableException(e, channel.filePath());
+            }
+        }
+
+        /**
+         * Uncompresses a chunk read with {@link #readCompressedChunk} into the given buffer, which must satisfy the
+         * same requirements as with {@link #readChunk}.
+         */
+        public void uncompressChunk(long position, ByteBuffer compressed, ByteBuffer uncompressed)
+        {
+            CompressionMetadata.Chunk chunk = metadata.chunkFor(position);
+            try
+            {
+                assert compressed.remaining() == chunk.length;
+                uncompressed.clear();
+                if (chunk.length < maxCompressedLength)
+                    metadata.compressor().uncompress(compressed, uncompressed);
+                else
+                    uncompressed.put(compressed);
+                uncompressed.flip();
+            }
+            catch (IOException e)
+            {
+                // Make sure reader does not see stale data.
+                uncompressed.position(0).limit(0);
+                throw new CorruptSSTableException(new CorruptBlockException(channel.filePath(), chunk, e), channel.filePath());
+            }
+        }
     }
 
     public static class Mmap extends CompressedChunkReader
@@ -142,7 +142,20 @@ public class FileHandle extends SharedCloseableImpl
      */
     public RandomAccessReader createReader(RateLimiter limiter)
     {
-        return new RandomAccessReader(instantiateRebufferer(limiter));
+        return new RandomAccessReader(instantiateRebufferer(limiter, false));
+    }
+
+    /**
+     * Create {@link RandomAccessReader} for a scan of the file by a background operation, like a compaction or a
+     * repair validation. The chunks of the file that are in the chunk cache are read from it, but the others are not
+     * added to it, so that the scan doesn't evict the chunks used by the reads.
+     *
+     * @param limiter RateLimiter to use for rate limiting read, or null
+     * @return RandomAccessReader for the file
+     */
+    public RandomAccessReader createScanReader(RateLimiter limiter)
+    {
+        return new RandomAccessReader(instantiateRebufferer(limiter, true));
     }
 
     public FileDataInput createReader(long position)
@@ -168,9 +181,14 @@ public class FileHandle extends SharedCloseableImpl
         NativeLibrary.trySkipCache(channel.getFileDescriptor(), 0, position, path());
     }
 
-    private Rebufferer instantiateRebufferer(RateLimiter limiter)
+    @SuppressWarnings("resource") // the rebufferer is closed with the reader
+    private Rebufferer instantiateRebufferer(RateLimiter limiter, boolean scan)
     {
-        Rebufferer rebufferer = rebuffererFactory.instantiateRebufferer();
+        Rebufferer rebufferer;
+        if (scan)
+            rebufferer = rebuffererFactory.instantiateScanRebufferer();
+        else
+            rebufferer = rebuffererFactory.instantiateRebufferer();
 
         if (limiter != null)
             rebufferer = new LimitingRebufferer(rebufferer, limiter, DiskOptimizationStrategy.MAX_BUFFER_SIZE);
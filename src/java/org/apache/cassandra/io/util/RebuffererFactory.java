@@ -29,4 +29,13 @@ package org.apache.cassandra.io.util;
 public interface RebuffererFactory extends ReaderFileProxy
 {
     Rebufferer instantiateRebufferer();
+
+    /**
+     * Instantiates a rebufferer for a scan of the file by a background operation, which shouldn't replace the
+     * cached data used by the reads. Only caching factories need to make a difference.
+     */
+    default Rebufferer instantiateScanRebufferer()
+    {
+        return instantiateRebufferer();
+    }
 }
@@ -30,12 +30,20 @@ public class BufferPoolMetrics
     /** Total number of misses */
     public final Meter misses;
 
+    /** Total number of chunks taken from the pool of another NUMA node */
+    public final Meter remoteChunks;
+
+    /** Total number of partially used chunks reused rather than missing */
+    public final Meter reusedChunks;
+
     /** Total size of buffer pools, in bytes */
     public final Gauge<Long> size;
 
     public BufferPoolMetrics()
     {
         misses = Metrics.meter(factory.createMetricName("Misses"));
+        remoteChunks = Metrics.meter(factory.createMetricName("RemoteChunks"));
+        reusedChunks = Metrics.meter(factory.createMetricName("ReusedChunks"));
 
         size = Metrics.register(factory.createMetricName("Size"), new Gauge<Long>()
         {
@@ -22,6 +22,7 @@ import javax.annotation.Nonnull;
 
 import com.google.common.annotations.VisibleForTesting;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.github.benmanes.caffeine.cache.stats.StatsCounter;
@@ -36,6 +37,12 @@ public class ChunkCacheMetrics extends CacheMetrics implements StatsCounter
 {
     /** Latency of misses */
     public final Timer missLatency;
+    /** Misses of the first tier found in the compressed tier */
+    public final Meter compressedHits;
+    /** Misses of the first tier that also missed the compressed tier */
+    public final Meter compressedMisses;
+    /** Chunks read by background scans without being cached */
+    public final Meter scanMisses;
 
     /**
      * Create metrics for the provided chunk cache.
@@ -46,6 +53,9 @@ public class ChunkCacheMetrics extends CacheMetrics implements StatsCounter
     {
         super("ChunkCache", cache);
         missLatency = Metrics.timer(factory.createMetricName("MissLatency"));
+        compressedHits = Metrics.meter(factory.createMetricName("CompressedHits"));
+        compressedMisses = Metrics.meter(factory.createMetricName("CompressedMisses"));
+        scanMisses = Metrics.meter(factory.createMetricName("ScanMisses"));
     }
 
     @Override
@@ -88,5 +98,8 @@ public class ChunkCacheMetrics extends CacheMetrics implements StatsCounter
     {
         hits.mark(-hits.getCount());
         misses.mark(-misses.getCount());
+        compressedHits.mark(-compressedHits.getCount());
+        compressedMisses.mark(-compressedMisses.getCount());
+        scanMisses.mark(-scanMisses.getCount());
     }
 }
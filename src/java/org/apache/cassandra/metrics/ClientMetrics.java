@@ -22,6 +22,7 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import org.apache.cassandra.transport.ClientStat;
 import org.apache.cassandra.transport.ConnectedClient;
@@ -44,6 +45,10 @@ public final class ClientMetrics
     private AtomicInteger pausedConnections;
     private Gauge<Integer> pausedConnectionsGauge;
     private Meter requestDiscarded;
+    private Meter requestRateLimited;
+
+    private Histogram flushedResponses;
+    private Histogram flushedChannels;
 
     private ClientMetrics()
     {
@@ -63,6 +68,19 @@ public final class ClientMetrics
     public void unpauseConnection() { pausedConnections.decrementAndGet(); }
 
     public void markRequestDiscarded() { requestDiscarded.mark(); }
+    public void markRequestRateLimited() { requestRateLimited.mark(); }
+
+    /**
+     * Records a flush of the responses written by the flusher of an event loop.
+     *
+     * @param responses the number of responses written since the previous flush
+     * @param channels the number of channels they were written to
+     */
+    public void recordFlush(int responses, int channels)
+    {
+        flushedResponses.update(responses);
+        flushedChannels.update(channels);
+    }
 
     public List<ConnectedClient> allConnectedClients()
     {
@@ -92,6 +110,10 @@ public final class ClientMetrics
         pausedConnections = new AtomicInteger();
         pausedConnectionsGauge = registerGauge("PausedConnections", pausedConnections::get);
         requestDiscarded = registerMeter("RequestDiscarded");
+        requestRateLimited = registerMeter("RequestRateLimited");
+
+        flushedResponses = registerHistogram("FlushedResponses");
+        flushedChannels = registerHistogram("FlushedChannels");
 
         initialized = true;
     }
@@ -152,4 +174,9 @@ public final class ClientMetrics
     {
         return Metrics.meter(factory.createMetricName(name));
     }
+
+    private Histogram registerHistogram(String name)
+    {
+        return Metrics.histogram(factory.createMetricName(name), false);
+    }
 }
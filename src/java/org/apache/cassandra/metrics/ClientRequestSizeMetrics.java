@@ -33,4 +33,13 @@ public class ClientRequestSizeMetrics
     public static final Counter totalBytesWritten = Metrics.counter(DefaultNameFactory.createMetricName(TYPE, "OutgoingBytes", null));
     public static final Histogram bytesRecievedPerFrame = Metrics.histogram(DefaultNameFactory.createMetricName(TYPE, "BytesRecievedPerFrame", null), true);
     public static final Histogram bytesTransmittedPerFrame = Metrics.histogram(DefaultNameFactory.createMetricName(TYPE, "BytesTransmittedPerFrame", null), true);
+
+    /**
+     * @return the average number of bytes of the frames sent to the clients so far
+     */
+    public static long averageBytesTransmittedPerFrame()
+    {
+        long frames = bytesTransmittedPerFrame.getCount();
+        return frames == 0 ? 0 : totalBytesWritten.getCount() / frames;
+    }
 }
@@ -18,6 +18,7 @@
 package org.apache.cassandra.metrics;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import org.apache.cassandra.db.commitlog.AbstractCommitLogService;
 import org.apache.cassandra.db.commitlog.AbstractCommitLogSegmentManager;
@@ -41,11 +42,20 @@ public class CommitLogMetrics
     public final Timer waitingOnSegmentAllocation;
     /** The time spent waiting on CL sync; for Periodic this is only occurs when the sync is lagging its sync interval */
     public final Timer waitingOnCommit;
+    /** Mutations read from the commit log segments and submitted for replay */
+    public final Meter replayedMutations;
+    /** Serialized size of the mutations read from the commit log segments and submitted for replay */
+    public final Meter replayedBytes;
+    /** Time spent replaying each commit log segment, from the start of its decoding to the submission of its last mutation */
+    public final Timer segmentReplayTime;
 
     public CommitLogMetrics()
     {
         waitingOnSegmentAllocation = Metrics.timer(factory.createMetricName("WaitingOnSegmentAllocation"));
         waitingOnCommit = Metrics.timer(factory.createMetricName("WaitingOnCommit"));
+        replayedMutations = Metrics.meter(factory.createMetricName("ReplayedMutations"));
+        replayedBytes = Metrics.meter(factory.createMetricName("ReplayedBytes"));
+        segmentReplayTime = Metrics.timer(factory.createMetricName("SegmentReplayTime"));
     }
 
     public void attach(final AbstractCommitLogService service, final AbstractCommitLogSegmentManager segmentManager)
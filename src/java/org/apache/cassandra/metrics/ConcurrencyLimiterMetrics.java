@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.metrics;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import org.apache.cassandra.concurrent.AdaptiveConcurrencyLimiter;
+
+import static org.apache.cassandra.metrics.CassandraMetricsRegistry.Metrics;
+import static org.apache.cassandra.metrics.ThreadPoolMetrics.makeMetricName;
+
+/**
+ * Metrics for {@link AdaptiveConcurrencyLimiter}, alongside the {@link ThreadPoolMetrics} of the stage it limits.
+ */
+public class ConcurrencyLimiterMetrics
+{
+    public static final String CONCURRENCY_LIMIT = "ConcurrencyLimit";
+    public static final String IN_FLIGHT_TASKS = "InFlightTasks";
+    public static final String SHED_TASKS = "ShedTasks";
+    public static final String QUEUE_TIME = "QueueTime";
+    public static final String SERVICE_TIME = "ServiceTime";
+
+    /** The number of tasks admitted at once, queued or running. */
+    public final Gauge<Integer> concurrencyLimit;
+
+    /** The number of admitted tasks, queued or running. */
+    public final Gauge<Integer> inFlightTasks;
+
+    /** The tasks rejected because the limit was reached. */
+    public final Meter shedTasks;
+
+    /** The time the admitted tasks waited before running. */
+    public final Timer queueTime;
+
+    /** The time the admitted tasks took to run. */
+    public final Timer serviceTime;
+
+    private final String path;
+    private final String poolName;
+
+    public ConcurrencyLimiterMetrics(AdaptiveConcurrencyLimiter limiter, String path, String poolName)
+    {
+        this.path = path;
+        this.poolName = poolName;
+
+        concurrencyLimit = Metrics.register(makeMetricName(path, poolName, CONCURRENCY_LIMIT), (Gauge<Integer>) limiter::getLimit);
+        inFlightTasks = Metrics.register(makeMetricName(path, poolName, IN_FLIGHT_TASKS), (Gauge<Integer>) limiter::getInFlight);
+        shedTasks = Metrics.meter(makeMetricName(path, poolName, SHED_TASKS));
+        queueTime = Metrics.timer(makeMetricName(path, poolName, QUEUE_TIME));
+        serviceTime = Metrics.timer(makeMetricName(path, poolName, SERVICE_TIME));
+    }
+
+    public void release()
+    {
+        Metrics.remove(makeMetricName(path, poolName, CONCURRENCY_LIMIT));
+        Metrics.remove(makeMetricName(path, poolName, IN_FLIGHT_TASKS));
+        Metrics.remove(makeMetricName(path, poolName, SHED_TASKS));
+        Metrics.remove(makeMetricName(path, poolName, QUEUE_TIME));
+        Metrics.remove(makeMetricName(path, poolName, SERVICE_TIME));
+    }
+}
@@ -113,7 +113,7 @@ public class ThreadPoolMetrics
         Metrics.remove(this);
     }
 
-    private static MetricName makeMetricName(String path, String poolName, String metricName)
+    static MetricName makeMetricName(String path, String poolName, String metricName)
     {
         return new MetricName("org.apache.cassandra.metrics",
                               "ThreadPools",
@@ -37,9 +37,11 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.EventLoop;
+import org.apache.cassandra.concurrent.AdaptiveConcurrencyLimiter;
 import org.apache.cassandra.concurrent.ExecutorLocals;
 import org.apache.cassandra.concurrent.Stage;
 import org.apache.cassandra.exceptions.IncompatibleSchemaException;
+import org.apache.cassandra.exceptions.OverloadedException;
 import org.apache.cassandra.io.util.DataInputBuffer;
 import org.apache.cassandra.locator.InetAddressAndPort;
 import org.apache.cassandra.net.Message.Header;
@@ -849,12 +851,28 @@ public class InboundMessageHandler extends ChannelInboundHandlerAdapter implemen
         TraceState state = Tracing.instance.initializeFromMessage(header);
         if (state != null) state.trace("{} message received from {}", header.verb, header.from);
 
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.forVerb(header.verb);
+        if (limiter != null)
+        {
+            if (!limiter.tryAcquire())
+            {
+                task.shed();
+                return;
+            }
+            task.limiter = limiter;
+            task.dispatchedAtNanos = System.nanoTime();
+        }
+
         callbacks.onDispatched(task.size(), header);
         header.verb.stage.execute(task, ExecutorLocals.create(state));
     }
 
     private abstract class ProcessMessage implements Runnable
     {
+        // the limiter of the stage that admitted the message, if any, to release once processed
+        AdaptiveConcurrencyLimiter limiter;
+        long dispatchedAtNanos;
+
         /**
          * Actually handle the message. Runs on the appropriate {@link Stage} for the {@link Verb}.
          *
@@ -865,6 +883,7 @@ public class InboundMessageHandler extends ChannelInboundHandlerAdapter implemen
         {
             Header header = header();
             long currentTimeNanos = approxTime.now();
+            long startedAtNanos = limiter == null ? 0 : System.nanoTime();
             boolean expired = approxTime.isAfter(currentTimeNanos, header.expiresAtNanos);
 
             boolean processed = false;
@@ -895,10 +914,36 @@ public class InboundMessageHandler extends ChannelInboundHandlerAdapter implemen
 
                 releaseResources();
 
+                if (limiter != null)
+                    limiter.release(startedAtNanos - dispatchedAtNanos, System.nanoTime() - startedAtNanos);
+
                 callbacks.onExecuted(size(), header, approxTime.now() - currentTimeNanos, NANOSECONDS);
             }
         }
 
+        /**
+         * Rejects the message without processing it, because its stage has reached its concurrency limit, failing
+         * the request right away instead of letting it time out.
+         *
+         * Mutations are dropped without a response instead, like expired ones, as the coordinator only hints them
+         * when their callback expires.
+         */
+        void shed()
+        {
+            Header header = header();
+            try
+            {
+                callbacks.onExpired(size(), header, approxTime.now() - header.createdAtNanos, NANOSECONDS);
+                if (header.verb != Verb.MUTATION_REQ)
+                    MessagingService.instance().inboundSink.fail(header, new OverloadedException(header.verb.stage.jmxName + " has reached its concurrency limit"));
+            }
+            finally
+            {
+                releaseCapacity(size());
+                releaseResources();
+            }
+        }
+
         abstract int size();
         abstract Header header();
         abstract Message provideMessage();
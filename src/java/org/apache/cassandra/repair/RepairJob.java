@@ -98,7 +98,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         List<InetAddressAndPort> allEndpoints = new ArrayList<>(session.commonRange.endpoints);
         allEndpoints.add(FBUtilities.getBroadcastAddressAndPort());
 
-        ListenableFuture<List<TreeResponse>> validations;
+        ListenableFuture<List<SyncStat>> syncResults;
         // Create a snapshot at all nodes unless we're using pure parallel repairs
         if (parallelismDegree != RepairParallelism.PARALLEL)
         {
@@ -122,7 +122,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
             }
 
             // When all snapshot complete, send validation requests
-            validations = Futures.transformAsync(allSnapshotTasks, new AsyncFunction<List<InetAddressAndPort>, List<TreeResponse>>()
+            ListenableFuture<List<TreeResponse>> validations = Futures.transformAsync(allSnapshotTasks, new AsyncFunction<List<InetAddressAndPort>, List<TreeResponse>>()
             {
                 public ListenableFuture<List<TreeResponse>> apply(List<InetAddressAndPort> endpoints)
                 {
@@ -132,18 +132,34 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
                         return sendDCAwareValidationRequest(endpoints);
                 }
             }, taskExecutor);
+            syncResults = syncWhenValidated(desc, validations);
         }
         else
         {
-            // If not sequential, just send validation request to all replica
-            validations = sendValidationRequest(allEndpoints);
+            // If not sequential, just send validation request to all replica, for each segment of the ranges in turn:
+            // the differences of a segment are synced as soon as it is validated, while the next one is validated.
+            // Each segment sizes its trees from the whole space of the session, so only one segment is validated at
+            // a time, for the coordinator to hold the trees of a single segment at once (CASSANDRA-14096)
+            List<RepairJobDesc> segments = segments(desc, DatabaseDescriptor.getRepairPipelineSegments());
+            if (segments.size() > 1)
+                logger.info("{} Validating and syncing {} in {} segments", session.previewKind.logPrefix(desc.sessionId), desc.columnFamily, segments.size());
+
+            List<ListenableFuture<List<SyncStat>>> segmentSyncResults = new ArrayList<>(segments.size());
+            ListenableFuture<List<TreeResponse>> validations = null;
+            for (RepairJobDesc segment : segments)
+            {
+                validations = validations == null
+                              ? sendValidationRequest(segment, allEndpoints)
+                              : Futures.transformAsync(validations, trees -> sendValidationRequest(segment, allEndpoints), taskExecutor);
+                segmentSyncResults.add(syncWhenValidated(segment, validations));
+            }
+            syncResults = segmentSyncResults.size() == 1
+                          ? segmentSyncResults.get(0)
+                          : Futures.transform(Futures.allAsList(segmentSyncResults),
+                                              stats -> stats.stream().flatMap(List::stream).collect(Collectors.toList()),
+                                              MoreExecutors.directExecutor());
         }
 
-        // When all validations complete, submit sync tasks
-        ListenableFuture<List<SyncStat>> syncResults = Futures.transformAsync(validations,
-                                                                              session.optimiseStreams && !session.pullRepair ? this::optimisedSyncing : this::standardSyncing,
-                                                                              taskExecutor);
-
         // When all sync complete, set the final result
         Futures.addCallback(syncResults, new FutureCallback<List<SyncStat>>()
         {
@@ -179,7 +195,17 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         return session.commonRange.transEndpoints.contains(ep);
     }
 
-    private ListenableFuture<List<SyncStat>> standardSyncing(List<TreeResponse> trees)
+    /**
+     * When all validations complete, submits the sync tasks.
+     */
+    private ListenableFuture<List<SyncStat>> syncWhenValidated(RepairJobDesc desc, ListenableFuture<List<TreeResponse>> validations)
+    {
+        return Futures.transformAsync(validations,
+                                      trees -> session.optimiseStreams && !session.pullRepair ? optimisedSyncing(desc, trees) : standardSyncing(desc, trees),
+                                      taskExecutor);
+    }
+
+    private ListenableFuture<List<SyncStat>> standardSyncing(RepairJobDesc desc, List<TreeResponse> trees)
     {
         List<SyncTask> syncTasks = createStandardSyncTasks(desc,
                                                            trees,
@@ -258,7 +284,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         return syncTasks;
     }
 
-    private ListenableFuture<List<SyncStat>> optimisedSyncing(List<TreeResponse> trees)
+    private ListenableFuture<List<SyncStat>> optimisedSyncing(RepairJobDesc desc, List<TreeResponse> trees)
     {
         List<SyncTask> syncTasks = createOptimisedSyncingSyncTasks(desc,
                                                                    trees,
@@ -277,7 +303,7 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         for (SyncTask task : syncTasks)
         {
             if (!task.isLocal())
-                session.trackSyncCompletion(Pair.create(desc, task.nodePair()), (CompletableRemoteSyncTask) task);
+                session.trackSyncCompletion(Pair.create(task.desc, task.nodePair()), (CompletableRemoteSyncTask) task);
             taskExecutor.submit(task);
         }
 
@@ -352,13 +378,60 @@ public class RepairJob extends AbstractFuture<RepairResult> implements Runnable
         return DatabaseDescriptor.getEndpointSnitch().getDatacenter(address);
     }
 
+    /**
+     * Splits the ranges of the job into consecutive segments of about the same size, to validate and sync separately.
+     * The ranges are halved until there are at least as many ranges as segments.
+     *
+     * @return the descriptions of the jobs validating the segments, or only {@code desc} if there is a single segment
+     */
+    @VisibleForTesting
+    static List<RepairJobDesc> segments(RepairJobDesc desc, int segments)
+    {
+        if (segments <= 1)
+            return Collections.singletonList(desc);
+
+        List<Range<Token>> ranges = new ArrayList<>(desc.ranges);
+        while (ranges.size() < segments)
+        {
+            List<Range<Token>> halves = new ArrayList<>(2 * ranges.size());
+            for (Range<Token> range : ranges)
+            {
+                Token midpoint = range.left.getPartitioner().midpoint(range.left, range.right);
+                // the range might not have enough tokens to split
+                if (midpoint.equals(range.left) || midpoint.equals(range.right))
+                {
+                    halves.add(range);
+                }
+                else
+                {
+                    halves.add(new Range<>(range.left, midpoint));
+                    halves.add(new Range<>(midpoint, range.right));
+                }
+            }
+            if (halves.size() == ranges.size())
+                break;
+            ranges = halves;
+        }
+        Collections.sort(ranges);
+
+        segments = Math.min(segments, ranges.size());
+        List<RepairJobDesc> descs = new ArrayList<>(segments);
+        for (int i = 0; i < segments; i++)
+        {
+            List<Range<Token>> segment = new ArrayList<>(ranges.subList(i * ranges.size() / segments, (i + 1) * ranges.size() / segments));
+            descs.add(new RepairJobDesc(desc.parentSessionId, desc.sessionId, desc.keyspace, desc.columnFamily, segment));
+        }
+        return descs;
+    }
+
     /**
      * Creates {@link ValidationTask} and submit them to task executor in parallel.
      *
+     * @param desc the description of the job or of the segment of the job to validate
      * @param endpoints Endpoint addresses to send validation request
      * @return Future that can get all {@link TreeResponse} from replica, if all validation succeed.
      */
-    private ListenableFuture<List<TreeResponse>> sendValidationRequest(Collection<InetAddressAndPort> endpoints)
+    private ListenableFuture<List<TreeResponse>> sendValidationRequest(RepairJobDesc desc, Collection<InetAddressAndPort> endpoints)
     {
         String message = String.format("Requesting merkle trees for %s (to %s)", desc.columnFamily, endpoints);
         logger.info("{} {}", session.previewKind.logPrefix(desc.sessionId), message);
@@ -0,0 +1,551 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.repair;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.concurrent.NamedThreadFactory;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.UntypedResultSet;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.SystemKeyspace;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.exceptions.RequestExecutionException;
+import org.apache.cassandra.exceptions.RequestValidationException;
+import org.apache.cassandra.repair.messages.RepairOption;
+import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.utils.Pair;
+import org.apache.cassandra.utils.UUIDGen;
+import org.apache.cassandra.utils.progress.ProgressEvent;
+import org.apache.cassandra.utils.progress.ProgressEventType;
+import org.apache.cassandra.utils.progress.ProgressListener;
+
+/**
+ * Runs repairs of whole keyspaces as a sequence of full repairs of sub-ranges, the tasks, of about
+ * {@code repair_scheduler_partitions_per_session} partitions each according to the table estimates of the keyspace.
+ * <p>
+ * At most {@code repair_scheduler_concurrent_sessions} tasks run at once on this node, all scheduled repairs
+ * included, and the start of each task is throttled to {@code repair_scheduler_throughput_mb_per_sec} from the
+ * estimated size of the data it repairs. The tasks and their status are recorded in system_distributed, so that
+ * the repairs that were running when this node stopped resume with their tasks that didn't succeed.
+ */
+public class RepairScheduler
+{
+    private static final Logger logger = LoggerFactory.getLogger(RepairScheduler.class);
+
+    public static final RepairScheduler instance = new RepairScheduler();
+
+    // the most sub-ranges a single range is split into, whatever its estimated partitions
+    private static final int MAX_SPLITS_PER_RANGE = 1 << 16;
+
+    public enum Status
+    {
+        RUNNING, SUCCESS, FAILED, CANCELLED
+    }
+
+    public enum TaskStatus
+    {
+        PENDING, RUNNING, SUCCESS, FAILED
+    }
+
+    private final ConcurrentMap<UUID, ScheduledRepair> repairs = new ConcurrentHashMap<>();
+    private final RateLimiter throughput = RateLimiter.create(Double.MAX_VALUE);
+
+    // tasks running for all the scheduled repairs, guarded by this
+    private int running;
+
+    private RepairScheduler()
+    {
+        setThroughputMbPerSec(DatabaseDescriptor.getRepairSchedulerThroughputMbPerSec());
+    }
+
+    /**
+     * Schedules the repair of a keyspace, with the options of {@link RepairOption#parse}. Whether the repair is
+     * incremental or not, the tasks are full repairs.
+     *
+     * @return the id of the scheduled repair
+     */
+    public UUID schedule(String keyspace, Map<String, String> options) throws IOException
+    {
+        IPartitioner partitioner = StorageService.instance.getTokenMetadata().partitioner;
+        RepairOption option = RepairOption.parse(options, partitioner);
+        StorageService.instance.addDefaultRepairRanges(keyspace, option);
+        List<String> tables = tables(keyspace, option);
+
+        double partitionsPerRing = 0, bytesPerRing = 0;
+        if (partitioner.splitter().isPresent())
+        {
+            for (String table : tables)
+            {
+                Map<Range<Token>, Pair<Long, Long>> estimates = SystemKeyspace.getTableEstimates(keyspace, table, SystemKeyspace.TABLE_ESTIMATES_TYPE_PRIMARY, partitioner);
+                double ringSize = 0, partitions = 0, bytes = 0;
+                for (Map.Entry<Range<Token>, Pair<Long, Long>> entry : estimates.entrySet())
+                {
+                    ringSize += entry.getKey().left.size(entry.getKey().right);
+                    partitions += entry.getValue().left;
+                    bytes += (double) entry.getValue().left * entry.getValue().right;
+                }
+                if (ringSize > 0)
+                {
+                    partitionsPerRing += partitions / ringSize;
+                    bytesPerRing += bytes / ringSize;
+                }
+            }
+        }
+
+        List<Task> tasks = plan(partitioner, option.getRanges(), partitionsPerRing, bytesPerRing, DatabaseDescriptor.getRepairSchedulerPartitionsPerSession());
+        ScheduledRepair repair = new ScheduledRepair(UUIDGen.getTimeUUID(), keyspace, options, tables, tasks);
+
+        try
+        {
+            // the repair is recorded last, so that it is only resumed with all its tasks
+            SystemDistributedKeyspace.addScheduledRepairTasks(repair.id, partitioner, tasks, TaskStatus.PENDING.name());
+            SystemDistributedKeyspace.startScheduledRepair(SystemKeyspace.getLocalHostId(), repair.id, keyspace, options, tasks.size(), Status.RUNNING.name());
+        }
+        catch (RequestExecutionException | RequestValidationException e)
+        {
+            throw new IOException(String.format("Could not record scheduled repair %s of keyspace %s", repair.id, keyspace), e);
+        }
+
+        logger.info("Scheduled repair {} of keyspace {} in {} tasks of about {} estimated partitions",
+                    repair.id, keyspace, tasks.size(), tasks.isEmpty() ? 0 : repair.estimatedPartitions() / tasks.size());
+        start(repair);
+        return repair.id;
+    }
+
+    /**
+     * Stops launching the tasks of a scheduled repair. The running tasks complete, and the repair isn't resumed.
+     *
+     * @return whether the repair was running
+     */
+    public boolean cancel(UUID id)
+    {
+        ScheduledRepair repair = repairs.get(id);
+        if (repair == null || repair.status != Status.RUNNING)
+            return false;
+
+        repair.cancelled = true;
+        synchronized (this)
+        {
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Resumes the repairs scheduled by this host that were still running when it stopped, from their tasks that
+     * didn't succeed. The repairs whose tasks can't be read are left for a later attempt, and the ones that don't
+     * have as many tasks as recorded are marked as failed.
+     *
+     * @return the number of resumed repairs
+     */
+    public int resume()
+    {
+        if (!StorageService.instance.isJoined())
+        {
+            logger.info("Not resuming scheduled repairs as this node hasn't joined the ring");
+            return 0;
+        }
+
+        UntypedResultSet rows;
+        try
+        {
+            rows = SystemDistributedKeyspace.scheduledRepairs(SystemKeyspace.getLocalHostId());
+        }
+        catch (RequestExecutionException | RequestValidationException e)
+        {
+            logger.warn("Could not read the scheduled repairs to resume", e);
+            return 0;
+        }
+
+        IPartitioner partitioner = StorageService.instance.getTokenMetadata().partitioner;
+        int resumed = 0;
+        for (UntypedResultSet.Row row : rows)
+        {
+            UUID id = row.getUUID("id");
+            if (!Status.RUNNING.name().equals(row.getString("status")) || repairs.containsKey(id))
+                continue;
+
+            String keyspace = row.getString("keyspace_name");
+            Map<String, String> options = row.has("options")
+                                          ? row.getMap("options", UTF8Type.instance, UTF8Type.instance)
+                                          : Collections.emptyMap();
+            UntypedResultSet taskRows;
+            try
+            {
+                taskRows = SystemDistributedKeyspace.scheduledRepairTasks(id);
+            }
+            catch (RequestExecutionException | RequestValidationException e)
+            {
+                logger.warn("Could not read the tasks of scheduled repair {} of keyspace {}, not resuming it", id, keyspace, e);
+                continue;
+            }
+
+            List<Task> tasks = new ArrayList<>();
+            for (UntypedResultSet.Row taskRow : taskRows)
+            {
+                List<Range<Token>> ranges = new ArrayList<>();
+                for (String range : taskRow.getSet("ranges", UTF8Type.instance))
+                    ranges.add(rangeFromString(partitioner, range));
+                Task task = new Task(taskRow.getInt("task"),
+                                     ranges,
+                                     taskRow.has("estimated_partitions") ? taskRow.getLong("estimated_partitions") : 0,
+                                     taskRow.has("estimated_bytes") ? taskRow.getLong("estimated_bytes") : 0);
+                if (TaskStatus.SUCCESS.name().equals(taskRow.getString("status")))
+                    task.status = TaskStatus.SUCCESS;
+                tasks.add(task);
+            }
+
+            int recordedTasks = row.has("tasks") ? row.getInt("tasks") : -1;
+            if (tasks.size() != recordedTasks)
+            {
+                logger.warn("Not resuming scheduled repair {} of keyspace {} as it has {} tasks instead of {}", id, keyspace, tasks.size(), recordedTasks);
+                SystemDistributedKeyspace.finishScheduledRepair(SystemKeyspace.getLocalHostId(), id, Status.FAILED.name());
+                continue;
+            }
+
+            try
+            {
+                List<String> tables = tables(keyspace, RepairOption.parse(options, partitioner));
+                logger.info("Resuming scheduled repair {} of keyspace {}", id, keyspace);
+                start(new ScheduledRepair(id, keyspace, options, tables, tasks));
+                resumed++;
+            }
+            catch (Exception e)
+            {
+                logger.warn("Could not resume scheduled repair {} of keyspace {}", id, keyspace, e);
+                SystemDistributedKeyspace.finishScheduledRepair(SystemKeyspace.getLocalHostId(), id, Status.FAILED.name());
+            }
+        }
+        return resumed;
+    }
+
+    /**
+     * @return the scheduled repairs running on this node
+     */
+    public Collection<ScheduledRepair> repairs()
+    {
+        return Collections.unmodifiableCollection(repairs.values());
+    }
+
+    public int getConcurrentSessions()
+    {
+        return DatabaseDescriptor.getRepairSchedulerConcurrentSessions();
+    }
+
+    public synchronized void setConcurrentSessions(int sessions)
+    {
+        DatabaseDescriptor.setRepairSchedulerConcurrentSessions(sessions);
+        notifyAll();
+    }
+
+    public int getThroughputMbPerSec()
+    {
+        return DatabaseDescriptor.getRepairSchedulerThroughputMbPerSec();
+    }
+
+    public void setThroughputMbPerSec(int throughputMbPerSec)
+    {
+        DatabaseDescriptor.setRepairSchedulerThroughputMbPerSec(throughputMbPerSec);
+        throughput.setRate(throughputMbPerSec == 0 ? Double.MAX_VALUE : throughputMbPerSec * 1024.0 * 1024.0);
+    }
+
+    /**
+     * Splits ranges into sub-ranges of at most {@code partitionsPerTask} estimated partitions, and packs the
+     * consecutive sub-ranges into tasks of at most {@code partitionsPerTask} estimated partitions. Without estimates,
+     * or with a partitioner that can't split ranges, each range is a task.
+     *
+     * @param partitionsPerRing the estimated partitions of the whole ring
+     * @param bytesPerRing the estimated size of the whole ring
+     */
+    @VisibleForTesting
+    static List<Task> plan(IPartitioner partitioner, Collection<Range<Token>> ranges, double partitionsPerRing, double bytesPerRing, long partitionsPerTask)
+    {
+        List<Task> tasks = new ArrayList<>();
+        List<Range<Token>> sorted = Range.sort(ranges);
+        if (!partitioner.splitter().isPresent() || partitionsPerRing <= 0)
+        {
+            for (Range<Token> range : sorted)
+                tasks.add(new Task(tasks.size(), Collections.singletonList(range), 0, 0));
+            return tasks;
+        }
+
+        List<Range<Token>> taskRanges = new ArrayList<>();
+        double taskSize = 0;
+        for (Range<Token> range : sorted)
+        {
+            double size = range.left.size(range.right);
+            long parts = (long) Math.ceil(size * partitionsPerRing / partitionsPerTask);
+            // a range can't start and end at the same token
+            if (range.left.equals(range.right))
+                parts = Math.max(2, parts);
+            parts = Math.max(1, Math.min(MAX_SPLITS_PER_RANGE, parts));
+
+            Token left = range.left;
+            for (int i = 1; i <= parts; i++)
+            {
+                Token right = i == parts ? range.right : partitioner.split(range.left, range.right, (double) i / parts);
+                // the range might not have enough tokens to split
+                if (right.equals(left))
+                    continue;
+
+                Range<Token> subrange = new Range<>(left, right);
+                double subrangeSize = left.size(right);
+                if (!taskRanges.isEmpty() && (taskSize + subrangeSize) * partitionsPerRing > partitionsPerTask)
+                {
+                    tasks.add(new Task(tasks.size(), taskRanges, Math.round(taskSize * partitionsPerRing), Math.round(taskSize * bytesPerRing)));
+                    taskRanges = new ArrayList<>();
+                    taskSize = 0;
+                }
+                taskRanges.add(subrange);
+                taskSize += subrangeSize;
+                left = right;
+            }
+        }
+        if (!taskRanges.isEmpty())
+            tasks.add(new Task(tasks.size(), taskRanges, Math.round(taskSize * partitionsPerRing), Math.round(taskSize * bytesPerRing)));
+        return tasks;
+    }
+
+    private static List<String> tables(String keyspace, RepairOption option) throws IOException
+    {
+        String[] names = option.getColumnFamilies().toArray(new String[0]);
+        List<String> tables = new ArrayList<>();
+        for (ColumnFamilyStore cfs : StorageService.instance.getValidColumnFamilies(false, false, keyspace, names))
+            tables.add(cfs.name);
+        return tables;
+    }
+
+    static List<String> rangesToStrings(IPartitioner partitioner, Collection<Range<Token>> ranges)
+    {
+        List<String> strings = new ArrayList<>(ranges.size());
+        for (Range<Token> range : ranges)
+            strings.add(partitioner.getTokenFactory().toString(range.left) + ':' + partitioner.getTokenFactory().toString(range.right));
+        return strings;
+    }
+
+    private static Range<Token> rangeFromString(IPartitioner partitioner, String range)
+    {
+        String[] tokens = range.split(":", 2);
+        return new Range<>(partitioner.getTokenFactory().fromString(tokens[0]), partitioner.getTokenFactory().fromString(tokens[1]));
+    }
+
+    private void start(ScheduledRepair repair)
+    {
+        repairs.put(repair.id, repair);
+        NamedThreadFactory.createThread(() -> run(repair), "RepairScheduler:" + repair.id, true).start();
+    }
+
+    private void run(ScheduledRepair repair)
+    {
+        try
+        {
+            for (Task task : repair.tasks)
+            {
+                if (task.status == TaskStatus.SUCCESS)
+                    continue;
+
+                for (long bytes = task.estimatedBytes; bytes > 0 && !repair.cancelled; bytes -= Integer.MAX_VALUE)
+                    throughput.acquire((int) Math.min(bytes, Integer.MAX_VALUE));
+
+                if (!acquire(repair))
+                    break;
+                launch(repair, task);
+            }
+            awaitRunningTasks(repair);
+        }
+        catch (InterruptedException e)
+        {
+            logger.warn("Interrupted while running scheduled repair {}, it will be resumed on restart", repair.id);
+            return;
+        }
+
+        if (repair.cancelled)
+            repair.status = Status.CANCELLED;
+        else if (repair.tasks.stream().anyMatch(t -> t.status == TaskStatus.FAILED))
+            repair.status = Status.FAILED;
+        else
+            repair.status = Status.SUCCESS;
+        SystemDistributedKeyspace.finishScheduledRepair(SystemKeyspace.getLocalHostId(), repair.id, repair.status.name());
+        repairs.remove(repair.id);
+        logger.info("Scheduled repair {} of keyspace {} finished with status {}", repair.id, repair.keyspace, repair.status);
+    }
+
+    private void launch(ScheduledRepair repair, Task task)
+    {
+        IPartitioner partitioner = StorageService.instance.getTokenMetadata().partitioner;
+        Map<String, String> spec = new HashMap<>(repair.options);
+        spec.put(RepairOption.RANGES_KEY, String.join(",", rangesToStrings(partitioner, task.ranges)));
+        spec.put(RepairOption.INCREMENTAL_KEY, Boolean.toString(false));
+        spec.remove(RepairOption.PRIMARY_RANGE_KEY);
+
+        task.status = TaskStatus.RUNNING;
+        try
+        {
+            int cmd = StorageService.instance.repair(repair.keyspace, spec, Collections.singletonList(new TaskListener(repair, task))).left;
+            // nothing to repair
+            if (cmd == 0)
+                complete(repair, task, true);
+        }
+        catch (Throwable t)
+        {
+            logger.error("Could not start task {} of scheduled repair {}", task.index, repair.id, t);
+            complete(repair, task, false);
+        }
+    }
+
+    private void complete(ScheduledRepair repair, Task task, boolean success)
+    {
+        task.status = success ? TaskStatus.SUCCESS : TaskStatus.FAILED;
+        SystemDistributedKeyspace.finishScheduledRepairTask(repair.id, task.index, task.status.name());
+        synchronized (this)
+        {
+            running--;
+            repair.running--;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits for a task of the scheduled repairs to complete if there are already as many running as allowed.
+     *
+     * @return false if the repair was cancelled
+     */
+    private synchronized boolean acquire(ScheduledRepair repair) throws InterruptedException
+    {
+        while (!repair.cancelled && running >= DatabaseDescriptor.getRepairSchedulerConcurrentSessions())
+            wait();
+
+        if (repair.cancelled)
+            return false;
+
+        running++;
+        repair.running++;
+        return true;
+    }
+
+    private synchronized void awaitRunningTasks(ScheduledRepair repair) throws InterruptedException
+    {
+        while (repair.running > 0)
+            wait();
+    }
+
+    private class TaskListener implements ProgressListener
+    {
+        private final ScheduledRepair repair;
+        private final Task task;
+        private volatile boolean succeeded;
+
+        private TaskListener(ScheduledRepair repair, Task task)
+        {
+            this.repair = repair;
+            this.task = task;
+        }
+
+        public void progress(String tag, ProgressEvent event)
+        {
+            // failed repairs don't always notify an error, but successful ones always notify their success
+            if (event.getType() == ProgressEventType.SUCCESS)
+                succeeded = true;
+            else if (event.getType() == ProgressEventType.COMPLETE)
+                complete(repair, task, succeeded);
+        }
+    }
+
+    public static class ScheduledRepair
+    {
+        public final UUID id;
+        public final String keyspace;
+        public final List<String> tables;
+        private final Map<String, String> options;
+        private final List<Task> tasks;
+        private volatile Status status = Status.RUNNING;
+        private volatile boolean cancelled;
+        // running tasks of this repair, guarded by the scheduler
+        private int running;
+
+        private ScheduledRepair(UUID id, String keyspace, Map<String, String> options, List<String> tables, List<Task> tasks)
+        {
+            this.id = id;
+            this.keyspace = keyspace;
+            this.options = options;
+            this.tables = tables;
+            this.tasks = tasks;
+        }
+
+        public Status status()
+        {
+            return status;
+        }
+
+        public int tasks()
+        {
+            return tasks.size();
+        }
+
+        public int tasks(TaskStatus status)
+        {
+            return (int) tasks.stream().filter(t -> t.status == status).count();
+        }
+
+        public long estimatedPartitions()
+        {
+            return tasks.stream().mapToLong(t -> t.estimatedPartitions).sum();
+        }
+
+        public long repairedPartitions()
+        {
+            return tasks.stream().filter(t -> t.status == TaskStatus.SUCCESS).mapToLong(t -> t.estimatedPartitions).sum();
+        }
+    }
+
+    @VisibleForTesting
+    static class Task
+    {
+        final int index;
+        final List<Range<Token>> ranges;
+        final long estimatedPartitions;
+        final long estimatedBytes;
+        volatile TaskStatus status = TaskStatus.PENDING;
+
+        Task(int index, List<Range<Token>> ranges, long estimatedPartitions, long estimatedBytes)
+        {
+            this.index = index;
+            this.ranges = ranges;
+            this.estimatedPartitions = estimatedPartitions;
+            this.estimatedBytes = estimatedBytes;
+        }
+    }
+}
@@ -44,6 +44,7 @@ import org.apache.cassandra.cql3.UntypedResultSet;
 import org.apache.cassandra.cql3.statements.schema.CreateTableStatement;
 import org.apache.cassandra.db.ConsistencyLevel;
 import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.gms.Gossiper;
@@ -81,8 +82,9 @@ public final class SystemDistributedKeyspace
      * gen 3: gc_grace_seconds raised from 0 to 10 days in CASSANDRA-12954 in 3.11.0
      * gen 4: compression chunk length reduced to 16KiB, memtable_flush_period_in_ms now unset on all tables in 4.0
      * gen 5: add ttl and TWCS to repair_history tables
+     * gen 6: add scheduled_repairs and scheduled_repair_tasks tables
      */
-    public static final long GENERATION = 5;
+    public static final long GENERATION = 6;
 
     public static final String REPAIR_HISTORY = "repair_history";
 
@@ -90,6 +92,13 @@ public final class SystemDistributedKeyspace
 
     public static final String VIEW_BUILD_STATUS = "view_build_status";
 
+    public static final String SCHEDULED_REPAIRS = "scheduled_repairs";
+
+    public static final String SCHEDULED_REPAIR_TASKS = "scheduled_repair_tasks";
+
+    // the most tasks of a scheduled repair recorded in a single batch
+    private static final int SCHEDULED_REPAIR_TASKS_PER_BATCH = 1000;
+
     private static final TableMetadata RepairHistory =
         parse(REPAIR_HISTORY,
                 "Repair history",
@@ -145,6 +154,33 @@ public final class SystemDistributedKeyspace
                      + "status text,"
                      + "PRIMARY KEY ((keyspace_name, view_name), host_id))").build();
 
+    private static final TableMetadata ScheduledRepairs =
+        parse(SCHEDULED_REPAIRS,
+              "Repairs scheduled by each host",
+              "CREATE TABLE %s ("
+                     + "host_id uuid,"
+                     + "id timeuuid,"
+                     + "keyspace_name text,"
+                     + "options map<text, text>,"
+                     + "tasks int,"
+                     + "status text,"
+                     + "started_at timestamp,"
+                     + "finished_at timestamp,"
+                     + "PRIMARY KEY (host_id, id))").build();
+
+    private static final TableMetadata ScheduledRepairTasks =
+        parse(SCHEDULED_REPAIR_TASKS,
+              "Sub-range repairs of the scheduled repairs",
+              "CREATE TABLE %s ("
+                     + "id timeuuid,"
+                     + "task int,"
+                     + "ranges set<text>,"
+                     + "estimated_partitions bigint,"
+                     + "estimated_bytes bigint,"
+                     + "status text,"
+                     + "finished_at timestamp,"
+                     + "PRIMARY KEY (id, task))").build();
+
     private static TableMetadata.Builder parse(String table, String description, String cql)
     {
         return CreateTableStatement.parse(format(cql, table), SchemaConstants.DISTRIBUTED_KEYSPACE_NAME)
@@ -154,7 +190,7 @@ public final class SystemDistributedKeyspace
 
     public static KeyspaceMetadata metadata()
     {
-        return KeyspaceMetadata.create(SchemaConstants.DISTRIBUTED_KEYSPACE_NAME, KeyspaceParams.simple(3), Tables.of(RepairHistory, ParentRepairHistory, ViewBuildStatus));
+        return KeyspaceMetadata.create(SchemaConstants.DISTRIBUTED_KEYSPACE_NAME, KeyspaceParams.simple(3), Tables.of(RepairHistory, ParentRepairHistory, ViewBuildStatus, ScheduledRepairs, ScheduledRepairTasks));
     }
 
     public static void startParentRepair(UUID parent_id, String keyspaceName, String[] cfnames, RepairOption options)
@@ -356,6 +392,75 @@ public final class SystemDistributedKeyspace
         forceBlockingFlush(VIEW_BUILD_STATUS);
     }
 
+    /**
+     * Records a scheduled repair and its number of tasks, which must be recorded first. Unlike the other updates of
+     * this keyspace, this throws if the update fails.
+     */
+    public static void startScheduledRepair(UUID hostId, UUID id, String keyspaceName, Map<String, String> options, int tasks, String status)
+    {
+        String query = "INSERT INTO %s.%s (host_id, id, keyspace_name, options, tasks, status, started_at) VALUES (%s, %s, '%s', { %s }, %d, '%s', toTimestamp(now()))";
+        QueryProcessor.process(format(query, SchemaConstants.DISTRIBUTED_KEYSPACE_NAME, SCHEDULED_REPAIRS,
+                                             hostId.toString(),
+                                             id.toString(),
+                                             keyspaceName,
+                                             toCQLMap(options),
+                                             tasks,
+                                             status),
+                               ConsistencyLevel.ONE);
+    }
+
+    public static void finishScheduledRepair(UUID hostId, UUID id, String status)
+    {
+        String query = "UPDATE %s.%s SET status = '%s', finished_at = toTimestamp(now()) WHERE host_id = %s AND id = %s";
+        processSilent(format(query, SchemaConstants.DISTRIBUTED_KEYSPACE_NAME, SCHEDULED_REPAIRS, status, hostId.toString(), id.toString()));
+    }
+
+    /**
+     * Records the tasks of a scheduled repair with the given status, in single partition batches. Unlike the other
+     * updates of this keyspace, this throws if any of the batches fails.
+     */
+    static void addScheduledRepairTasks(UUID id, IPartitioner partitioner, List<RepairScheduler.Task> tasks, String status)
+    {
+        String query = "INSERT INTO %s.%s (id, task, ranges, estimated_partitions, estimated_bytes, status) VALUES (%s, %d, { '%s' }, %d, %d, '%s');";
+        for (List<RepairScheduler.Task> batch : Lists.partition(tasks, SCHEDULED_REPAIR_TASKS_PER_BATCH))
+        {
+            StringBuilder fmtQry = new StringBuilder("BEGIN UNLOGGED BATCH ");
+            for (RepairScheduler.Task task : batch)
+                fmtQry.append(format(query, SchemaConstants.DISTRIBUTED_KEYSPACE_NAME, SCHEDULED_REPAIR_TASKS,
+                                            id.toString(),
+                                            task.index,
+                                            Joiner.on("','").join(RepairScheduler.rangesToStrings(partitioner, task.ranges)),
+                                            task.estimatedPartitions,
+                                            task.estimatedBytes,
+                                            status));
+            QueryProcessor.process(fmtQry.append(" APPLY BATCH").toString(), ConsistencyLevel.ONE);
+        }
+    }
+
+    public static void finishScheduledRepairTask(UUID id, int task, String status)
+    {
+        String query = "UPDATE %s.%s SET status = '%s', finished_at = toTimestamp(now()) WHERE id = %s AND task = %d";
+        processSilent(format(query, SchemaConstants.DISTRIBUTED_KEYSPACE_NAME, SCHEDULED_REPAIR_TASKS, status, id.toString(), task));
+    }
+
+    /**
+     * @return the id, keyspace_name, options, tasks and status of the repairs scheduled by the given host
+     */
+    public static UntypedResultSet scheduledRepairs(UUID hostId)
+    {
+        String query = "SELECT id, keyspace_name, options, tasks, status FROM %s.%s WHERE host_id = ?";
+        return QueryProcessor.execute(format(query, SchemaConstants.DISTRIBUTED_KEYSPACE_NAME, SCHEDULED_REPAIRS), ConsistencyLevel.ONE, hostId);
+    }
+
+    /**
+     * @return the task, ranges, estimated_partitions, estimated_bytes and status of the tasks of a scheduled repair
+     */
+    public static UntypedResultSet scheduledRepairTasks(UUID id)
+    {
+        String query = "SELECT task, ranges, estimated_partitions, estimated_bytes, status FROM %s.%s WHERE id = ?";
+        return QueryProcessor.execute(format(query, SchemaConstants.DISTRIBUTED_KEYSPACE_NAME, SCHEDULED_REPAIR_TASKS), ConsistencyLevel.ONE, id);
+    }
+
     private static void processSilent(String fmtQry, String... values)
     {
         try
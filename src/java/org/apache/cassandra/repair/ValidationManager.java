@@ -20,11 +20,12 @@ package org.apache.cassandra.repair;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +35,7 @@ import org.apache.cassandra.db.rows.UnfilteredRowIterator;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.metrics.TableMetrics;
+import org.apache.cassandra.net.ResourceLimits;
 import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.MerkleTree;
 import org.apache.cassandra.utils.MerkleTrees;
@@ -44,45 +46,87 @@ public class ValidationManager
 
     public static final ValidationManager instance = new ValidationManager();
 
+    // the off-heap space of the merkle trees being built, shared by the concurrent validations
+    private final ResourceLimits.Concurrent offHeapTreesSpace =
+        new ResourceLimits.Concurrent(DatabaseDescriptor.getOffheapMerkleTreesSpaceInMegabytes() * 1048576L);
+
     private ValidationManager() {}
 
-    private static MerkleTrees createMerkleTrees(ValidationPartitionIterator validationIterator, Collection<Range<Token>> ranges, ColumnFamilyStore cfs)
+    public void setOffHeapTreesSpace(long bytes)
+    {
+        long previous = offHeapTreesSpace.setLimit(bytes);
+        logger.info("Changed the off-heap space of merkle trees from {} to {} bytes", previous, bytes);
+    }
+
+    private static MerkleTrees createMerkleTrees(ValidationPartitionIterator validationIterator, Collection<Range<Token>> ranges, ColumnFamilyStore cfs, boolean offHeap)
     {
         MerkleTrees tree = new MerkleTrees(cfs.getPartitioner());
         long allPartitions = validationIterator.estimatedPartitions();
-        Map<Range<Token>, Long> rangePartitionCounts = validationIterator.getRangePartitionCounts();
-
-        // The repair coordinator must hold RF trees in memory at once, so a given validation compaction can only
-        // use 1 / RF of the allowed space.
-        long availableBytes = (DatabaseDescriptor.getRepairSessionSpaceInMegabytes() * 1048576) /
-                              cfs.keyspace.getReplicationStrategy().getReplicationFactor().allReplicas;
 
         for (Range<Token> range : ranges)
-        {
-            long numPartitions = rangePartitionCounts.get(range);
-            double rangeOwningRatio = allPartitions > 0 ? (double)numPartitions / allPartitions : 0;
-            // determine max tree depth proportional to range size to avoid blowing up memory with multiple tress,
-            // capping at a depth that does not exceed our memory budget (CASSANDRA-11390, CASSANDRA-14096)
-            int rangeAvailableBytes = Math.max(1, (int) (rangeOwningRatio * availableBytes));
-            // Try to estimate max tree depth that fits the space budget assuming hashes of 256 bits = 32 bytes
-            // note that estimatedMaxDepthForBytes cannot return a number lower than 1
-            int estimatedMaxDepth = MerkleTree.estimatedMaxDepthForBytes(cfs.getPartitioner(), rangeAvailableBytes, 32);
-            int maxDepth = rangeOwningRatio > 0
-                           ? Math.min(estimatedMaxDepth, DatabaseDescriptor.getRepairSessionMaxTreeDepth())
-                           : 0;
-            // determine tree depth from number of partitions, capping at max tree depth (CASSANDRA-5263)
-            int depth = numPartitions > 0 ? (int) Math.min(Math.ceil(Math.log(numPartitions) / Math.log(2)), maxDepth) : 0;
-            tree.addMerkleTree((int) Math.pow(2, depth), range);
-        }
+            tree.addMerkleTree((int) Math.pow(2, depth(validationIterator, range, cfs)), range, offHeap);
+
         if (logger.isDebugEnabled())
         {
             // MT serialize may take time
-            logger.debug("Created {} merkle trees with merkle trees size {}, {} partitions, {} bytes", tree.ranges().size(), tree.size(), allPartitions, MerkleTrees.serializer.serializedSize(tree, 0));
+            logger.debug("Created {} merkle trees{} with merkle trees size {}, {} partitions, {} bytes", tree.ranges().size(), offHeap ? " off-heap" : "", tree.size(), allPartitions, MerkleTrees.serializer.serializedSize(tree, 0));
         }
 
         return tree;
     }
 
+    /**
+     * The depth of the tree of a range, which is the same whether the tree is built on or off heap: the trees of all
+     * the replicas must have the same depth for their differences to be resolved at that depth, and the coordinator
+     * may deserialize them on heap according to its own use_offheap_merkle_trees.
+     */
+    private static int depth(ValidationPartitionIterator validationIterator, Range<Token> range, ColumnFamilyStore cfs)
+    {
+        long allPartitions = validationIterator.estimatedPartitions();
+        long numPartitions = validationIterator.getRangePartitionCounts().get(range);
+
+        // The repair coordinator must hold RF trees in memory at once, so a given validation compaction can only
+        // use 1 / RF of the allowed space.
+        long availableBytes = (DatabaseDescriptor.getRepairSessionSpaceInMegabytes() * 1048576) /
+                              cfs.keyspace.getReplicationStrategy().getReplicationFactor().allReplicas;
+
+        double rangeOwningRatio = allPartitions > 0 ? (double)numPartitions / allPartitions : 0;
+        // determine max tree depth proportional to range size to avoid blowing up memory with multiple tress,
+        // capping at a depth that does not exceed our memory budget (CASSANDRA-11390, CASSANDRA-14096)
+        int rangeAvailableBytes = Math.max(1, (int) (rangeOwningRatio * availableBytes));
+        // Try to estimate max tree depth that fits the space budget assuming hashes of 256 bits = 32 bytes
+        // note that estimatedMaxDepthForBytes cannot return a number lower than 1
+        int maxDepth = rangeOwningRatio > 0
+                       ? Math.min(MerkleTree.estimatedMaxDepthForBytes(cfs.getPartitioner(), rangeAvailableBytes, 32),
+                                  DatabaseDescriptor.getRepairSessionMaxTreeDepth())
+                       : 0;
+
+        // determine tree depth from number of partitions, capping at max tree depth (CASSANDRA-5263)
+        return numPartitions > 0 ? (int) Math.min(Math.ceil(Math.log(numPartitions) / Math.log(2)), maxDepth) : 0;
+    }
+
+    /**
+     * Reserves the off-heap space of the merkle trees of a validation, if they are to be built off-heap and fit in
+     * the space left by the other validations.
+     *
+     * @return the reserved space, or 0 if the trees are to be built on heap
+     */
+    private long reserveOffHeapTreesSpace(ValidationPartitionIterator validationIterator, Collection<Range<Token>> ranges, ColumnFamilyStore cfs)
+    {
+        if (!DatabaseDescriptor.useOffheapMerkleTrees())
+            return 0;
+
+        long bytes = 0;
+        for (Range<Token> range : ranges)
+            bytes += MerkleTree.estimatedOffHeapBytesForDepth(cfs.getPartitioner(), depth(validationIterator, range, cfs));
+
+        if (offHeapTreesSpace.tryAllocate(bytes))
+            return bytes;
+
+        logger.debug("Not enough off-heap space left for {} bytes of merkle trees ({} bytes in use), building them on heap", bytes, offHeapTreesSpace.using());
+        return 0;
+    }
+
     private static ValidationPartitionIterator getValidationIterator(TableRepairManager repairManager, Validator validator) throws IOException
     {
         RepairJobDesc desc = validator.desc;
@@ -109,31 +153,47 @@ public class ValidationManager
         long start = System.nanoTime();
         long partitionCount = 0;
         long estimatedTotalBytes = 0;
+        long offHeapBytes = 0;
         try (ValidationPartitionIterator vi = getValidationIterator(cfs.getRepairManager(), validator))
         {
-            MerkleTrees tree = createMerkleTrees(vi, validator.desc.ranges, cfs);
+            offHeapBytes = reserveOffHeapTreesSpace(vi, validator.desc.ranges, cfs);
+            MerkleTrees tree = createMerkleTrees(vi, validator.desc.ranges, cfs, offHeapBytes > 0);
             try
             {
                 // validate the CF as we iterate over it
                 validator.prepare(cfs, tree);
+                // the partitions with a precomputed hash are added in key order with the partitions read
+                PeekingIterator<ValidationPartitionIterator.PartitionHash> hashes = Iterators.peekingIterator(vi.precomputedHashes());
                 while (vi.hasNext())
                 {
                     try (UnfilteredRowIterator partition = vi.next())
                     {
+                        while (hashes.hasNext() && hashes.peek().key.compareTo(partition.partitionKey()) < 0)
+                            validator.add(hashes.next());
                         validator.add(partition);
                         partitionCount++;
                     }
                 }
-                validator.complete();
+                while (hashes.hasNext())
+                    validator.add(hashes.next());
+            }
+            catch (Throwable t)
+            {
+                // the trees won't be sent, so free their direct memory now rather than once they are collected
+                tree.release();
+                throw t;
             }
             finally
             {
                 estimatedTotalBytes = vi.getEstimatedBytes();
                 partitionCount = vi.estimatedPartitions();
             }
+            validator.complete();
         }
         finally
         {
+            // the space only bounds the trees being built: once complete, they are sent and released
+            offHeapTreesSpace.release(offHeapBytes);
             cfs.metric.bytesValidated.update(estimatedTotalBytes);
             cfs.metric.partitionsValidated.update(partitionCount);
         }
@@ -19,8 +19,11 @@
 package org.apache.cassandra.repair;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
 
+import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.partitions.AbstractUnfilteredPartitionIterator;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
@@ -30,4 +33,30 @@ public abstract class ValidationPartitionIterator extends AbstractUnfilteredPart
     public abstract long getEstimatedBytes();
     public abstract long estimatedPartitions();
     public abstract Map<Range<Token>, Long> getRangePartitionCounts();
+
+    /**
+     * @return the hashes, computed beforehand, of the partitions to validate that this iterator doesn't return,
+     * in key order
+     */
+    public Iterator<PartitionHash> precomputedHashes() throws IOException
+    {
+        return Collections.emptyIterator();
+    }
+
+    /**
+     * The hash of a partition, as computed by {@link Validator} for a partition it reads.
+     */
+    public static class PartitionHash
+    {
+        public final DecoratedKey key;
+        public final byte[] hash;
+        public final long size;
+
+        public PartitionHash(DecoratedKey key, byte[] hash, long size)
+        {
+            this.key = key;
+            this.hash = hash;
+            this.size = size;
+        }
+    }
 }
@@ -75,6 +75,8 @@ public class Validator implements Runnable
 
     // null when all rows with the min token have been consumed
     private long validated;
+    // the partitions validated from their precomputed hash
+    private long precomputed;
     private MerkleTrees trees;
     // current range being updated
     private MerkleTree.TreeRange range;
@@ -103,6 +105,7 @@ public class Validator implements Runnable
         this.isIncremental = isIncremental;
         this.previewKind = previewKind;
         validated = 0;
+        precomputed = 0;
         range = null;
         ranges = null;
         this.evenTreeDistribution = evenTreeDistribution;
@@ -148,6 +151,8 @@ public class Validator implements Runnable
                     keys.clear();
                 }
             }
+            // the trees to build off-heap are split on heap, so move them off-heap before hashing
+            tree.moveSplitTreesOffHeap();
         }
         logger.debug("Prepared AEService trees of size {} for {}", trees.size(), desc);
         ranges = tree.rangeIterator();
@@ -161,10 +166,37 @@ public class Validator implements Runnable
      */
     public void add(UnfilteredRowIterator partition)
     {
-        assert Range.isInRanges(partition.partitionKey().getToken(), desc.ranges) : partition.partitionKey().getToken() + " is not contained in " + desc.ranges;
-        assert lastKey == null || lastKey.compareTo(partition.partitionKey()) < 0
-               : "partition " + partition.partitionKey() + " received out of order wrt " + lastKey;
-        lastKey = partition.partitionKey();
+        moveTo(partition.partitionKey());
+
+        // case 3 must be true: mix in the hashed row
+        RowHash rowHash = rowHash(partition);
+        if (rowHash != null)
+        {
+            range.addHash(rowHash);
+        }
+    }
+
+    /**
+     * Called (in order with the partitions added by {@link #add(UnfilteredRowIterator)}) for every partition whose
+     * hash was computed beforehand, rather than read.
+     *
+     * @param hash the hash of the partition, as {@link #add(UnfilteredRowIterator)} would have computed it
+     */
+    public void add(ValidationPartitionIterator.PartitionHash hash)
+    {
+        moveTo(hash.key);
+
+        validated++;
+        precomputed++;
+        range.addHash(new MerkleTree.RowHash(hash.key.getToken(), hash.hash, hash.size));
+    }
+
+    private void moveTo(DecoratedKey key)
+    {
+        assert Range.isInRanges(key.getToken(), desc.ranges) : key.getToken() + " is not contained in " + desc.ranges;
+        assert lastKey == null || lastKey.compareTo(key) < 0
+               : "partition " + key + " received out of order wrt " + lastKey;
+        lastKey = key;
 
         if (range == null)
             range = ranges.next();
@@ -178,12 +210,6 @@ public class Validator implements Runnable
         }
 
         assert range.contains(lastKey.getToken()) : "Token not in MerkleTree: " + lastKey.getToken();
-        // case 3 must be true: mix in the hashed row
-        RowHash rowHash = rowHash(partition);
-        if (rowHash != null)
-        {
-            range.addHash(rowHash);
-        }
     }
 
     public boolean findCorrectRange(Token t)
@@ -208,6 +234,12 @@ public class Validator implements Runnable
              : null;
     }
 
+    @VisibleForTesting
+    long getPrecomputed()
+    {
+        return precomputed;
+    }
+
     /**
      * Registers the newly created tree for rendezvous in Stage.ANTIENTROPY.
      */
@@ -218,7 +250,7 @@ public class Validator implements Runnable
         if (logger.isDebugEnabled())
         {
             // log distribution of rows in tree
-            logger.debug("Validated {} partitions for {}.  Partitions per leaf are:", validated, desc.sessionId);
+            logger.debug("Validated {} partitions ({} from precomputed hashes) for {}.  Partitions per leaf are:", validated, precomputed, desc.sessionId);
             trees.logRowCountPerLeaf(logger);
             logger.debug("Validated {} partitions for {}.  Partition sizes are:", validated, desc.sessionId);
             trees.logRowSizePerLeaf(logger);
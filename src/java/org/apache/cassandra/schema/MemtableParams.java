@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.schema;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableMap;
+
+import org.apache.cassandra.db.Memtable;
+import org.apache.cassandra.db.memtable.SkipListMemtable;
+import org.apache.cassandra.exceptions.ConfigurationException;
+
+import static java.lang.String.format;
+
+/**
+ * The memtable implementation used by a table.
+ * <p>
+ * CQL: {'class' : 'SkipListMemtable'|'ShardedSkipListMemtable'|'TrieMemtable'|&lt;fully qualified class name&gt;, ...implementation options}
+ * <p>
+ * Implementations are subclasses of {@link Memtable} with a public static {@code factory(Map<String, String>)}
+ * method that validates the options and returns a {@link Memtable.Factory}.
+ */
+public final class MemtableParams
+{
+    public enum Option
+    {
+        CLASS;
+
+        @Override
+        public String toString()
+        {
+            return name().toLowerCase();
+        }
+    }
+
+    public static final MemtableParams DEFAULT = create(SkipListMemtable.class, ImmutableMap.of());
+
+    private final Class<? extends Memtable> klass;
+    private final ImmutableMap<String, String> options;
+
+    // created lazily, as looking it up initializes the memtable classes, which requires the node configuration
+    private volatile Memtable.Factory factory;
+
+    private MemtableParams(Class<? extends Memtable> klass, Map<String, String> options)
+    {
+        this.klass = klass;
+        this.options = ImmutableMap.copyOf(options);
+    }
+
+    public static MemtableParams create(Class<? extends Memtable> klass, Map<String, String> options)
+    {
+        return new MemtableParams(klass, options);
+    }
+
+    public void validate()
+    {
+        factory();
+    }
+
+    private Memtable.Factory createFactory()
+    {
+        try
+        {
+            return (Memtable.Factory) klass.getMethod("factory", Map.class).invoke(null, options);
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new ConfigurationException(format("Memtable class %s does not have a static factory(Map) method", klass.getName()));
+        }
+        catch (InvocationTargetException e)
+        {
+            if (e.getTargetException() instanceof ConfigurationException)
+                throw (ConfigurationException) e.getTargetException();
+
+            Throwable cause = e.getCause() == null
+                            ? e
+                            : e.getCause();
+
+            throw new ConfigurationException(format("%s.factory() threw an error: %s %s",
+                                                    klass.getName(),
+                                                    cause.getClass().getName(),
+                                                    cause.getMessage()),
+                                             e);
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new ConfigurationException("Cannot access method factory in " + klass.getName(), e);
+        }
+    }
+
+    public Class<? extends Memtable> klass()
+    {
+        return klass;
+    }
+
+    /**
+     * All implementation options - excluding 'class'.
+     */
+    public Map<String, String> options()
+    {
+        return options;
+    }
+
+    public Memtable.Factory factory()
+    {
+        Memtable.Factory factory = this.factory;
+        if (factory == null)
+            this.factory = factory = createFactory();
+        return factory;
+    }
+
+    public static MemtableParams fromMap(Map<String, String> map)
+    {
+        Map<String, String> options = new HashMap<>(map);
+
+        String className = options.remove(Option.CLASS.toString());
+        if (className == null)
+        {
+            throw new ConfigurationException(format("Missing sub-option '%s' for the '%s' option",
+                                                    Option.CLASS,
+                                                    TableParams.Option.MEMTABLE));
+        }
+
+        return create(classFromName(className), options);
+    }
+
+    public static Class<? extends Memtable> classFromName(String name)
+    {
+        String className = name.contains(".")
+                         ? name
+                         : "org.apache.cassandra.db.memtable." + name;
+        Class<?> memtableClass;
+        try
+        {
+            memtableClass = Class.forName(className, false, MemtableParams.class.getClassLoader());
+        }
+        catch (ClassNotFoundException | NoClassDefFoundError e)
+        {
+            throw new ConfigurationException(format("Unable to find memtable class '%s'", className), e);
+        }
+
+        if (!Memtable.class.isAssignableFrom(memtableClass))
+            throw new ConfigurationException(format("Memtable class %s is not derived from Memtable", className));
+
+        return memtableClass.asSubclass(Memtable.class);
+    }
+
+    public Map<String, String> asMap()
+    {
+        Map<String, String> map = new HashMap<>(options());
+        map.put(Option.CLASS.toString(), klass.getName());
+        return map;
+    }
+
+    @Override
+    public String toString()
+    {
+        return MoreObjects.toStringHelper(this)
+                          .add("class", klass.getName())
+                          .add("options", options)
+                          .toString();
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o)
+            return true;
+
+        if (!(o instanceof MemtableParams))
+            return false;
+
+        MemtableParams mp = (MemtableParams) o;
+
+        return klass.equals(mp.klass) && options.equals(mp.options);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(klass, options);
+    }
+}
@@ -131,6 +131,7 @@ public final class SchemaKeyspace
               + "gc_grace_seconds int,"
               + "id uuid,"
               + "max_index_interval int,"
+              + "memtable frozen<map<text, text>>,"
               + "memtable_flush_period_in_ms int,"
               + "min_index_interval int,"
               + "read_repair_chance double," // no longer used, left for drivers' sake
@@ -198,6 +199,7 @@ public final class SchemaKeyspace
               + "id uuid,"
               + "include_all_columns boolean,"
               + "max_index_interval int,"
+              + "memtable frozen<map<text, text>>,"
               + "memtable_flush_period_in_ms int,"
               + "min_index_interval int,"
               + "read_repair_chance double," // no longer used, left for drivers' sake
@@ -574,12 +576,21 @@ public final class SchemaKeyspace
         // node sends table schema to a < 3.8 versioned node with an unknown column.
         if (DatabaseDescriptor.isCDCEnabled())
             builder.add("cdc", params.cdc);
+
+        // As above, only add the memtable column if the table doesn't use the default memtable, so that schema
+        // mutations and digests are unchanged for tables, and nodes, that don't use pluggable memtables.
+        if (!params.memtable.equals(MemtableParams.DEFAULT))
+            builder.add("memtable", params.memtable.asMap());
     }
 
     private static void addAlterTableToSchemaMutation(TableMetadata oldTable, TableMetadata newTable, Mutation.SimpleBuilder builder)
     {
         addTableToSchemaMutation(newTable, false, builder);
 
+        // the memtable column is omitted for the default memtable, so reverting to it has to be explicit
+        if (isRevertedToDefaultMemtable(oldTable.params, newTable.params))
+            builder.update(Tables).row(newTable.name).add("memtable", MemtableParams.DEFAULT.asMap());
+
         MapDifference<ByteBuffer, ColumnMetadata> columnDiff = Maps.difference(oldTable.columns, newTable.columns);
 
         // columns that are no longer needed
@@ -771,6 +782,9 @@ public final class SchemaKeyspace
     {
         addViewToSchemaMutation(after, false, builder);
 
+        if (isRevertedToDefaultMemtable(before.metadata.params, after.metadata.params))
+            builder.update(Views).row(after.name()).add("memtable", MemtableParams.DEFAULT.asMap());
+
         MapDifference<ByteBuffer, ColumnMetadata> columnDiff = Maps.difference(before.metadata.columns, after.metadata.columns);
 
         // columns that are no longer needed
@@ -786,6 +800,11 @@ public final class SchemaKeyspace
             addColumnToSchemaMutation(after.metadata, after.metadata.getColumn(name), builder);
     }
 
+    private static boolean isRevertedToDefaultMemtable(TableParams before, TableParams after)
+    {
+        return !before.memtable.equals(MemtableParams.DEFAULT) && after.memtable.equals(MemtableParams.DEFAULT);
+    }
+
     private static void addIndexToSchemaMutation(TableMetadata table, IndexMetadata index, Mutation.SimpleBuilder builder)
     {
         builder.update(Indexes)
@@ -996,6 +1015,9 @@ public final class SchemaKeyspace
                                                      SpeculativeRetryPolicy.fromString("99PERCENTILE"))
                           .cdc(row.has("cdc") && row.getBoolean("cdc"))
                           .readRepair(getReadRepairStrategy(row))
+                          .memtable(row.has("memtable")
+                                    ? MemtableParams.fromMap(row.getFrozenTextMap("memtable"))
+                                    : MemtableParams.DEFAULT)
                           .build();
     }
 
@@ -66,7 +66,9 @@ import org.apache.cassandra.repair.CommonRange;
 import org.apache.cassandra.streaming.PreviewKind;
 import org.apache.cassandra.repair.RepairJobDesc;
 import org.apache.cassandra.repair.RepairParallelism;
+import org.apache.cassandra.repair.RepairScheduler;
 import org.apache.cassandra.repair.RepairSession;
+import org.apache.cassandra.repair.ValidationManager;
 import org.apache.cassandra.repair.consistent.CoordinatorSessions;
 import org.apache.cassandra.repair.consistent.LocalSessions;
 import org.apache.cassandra.repair.messages.*;
@@ -200,6 +202,18 @@ public class ActiveRepairService implements IEndpointStateChangeSubscriber, IFai
         return DatabaseDescriptor.getRepairSessionSpaceInMegabytes();
     }
 
+    @Override
+    public void setRepairPipelineSegments(int segments)
+    {
+        DatabaseDescriptor.setRepairPipelineSegments(segments);
+    }
+
+    @Override
+    public int getRepairPipelineSegments()
+    {
+        return DatabaseDescriptor.getRepairPipelineSegments();
+    }
+
     /**
      * Requests repairs for the given keyspace and column families.
      *
@@ -260,6 +274,62 @@ public class ActiveRepairService implements IEndpointStateChangeSubscriber, IFai
         DatabaseDescriptor.useOffheapMerkleTrees(value);
     }
 
+    public int getOffheapMerkleTreesSpaceInMegabytes()
+    {
+        return DatabaseDescriptor.getOffheapMerkleTreesSpaceInMegabytes();
+    }
+
+    public void setOffheapMerkleTreesSpaceInMegabytes(int sizeInMegabytes)
+    {
+        DatabaseDescriptor.setOffheapMerkleTreesSpaceInMegabytes(sizeInMegabytes);
+        ValidationManager.instance.setOffHeapTreesSpace(DatabaseDescriptor.getOffheapMerkleTreesSpaceInMegabytes() * 1048576L);
+    }
+
+    public String scheduleRepair(String keyspace, Map<String, String> options) throws IOException
+    {
+        return RepairScheduler.instance.schedule(keyspace, options).toString();
+    }
+
+    public boolean cancelScheduledRepair(String id)
+    {
+        return RepairScheduler.instance.cancel(UUID.fromString(id));
+    }
+
+    public int resumeScheduledRepairs()
+    {
+        return RepairScheduler.instance.resume();
+    }
+
+    public int getRepairSchedulerConcurrentSessions()
+    {
+        return RepairScheduler.instance.getConcurrentSessions();
+    }
+
+    public void setRepairSchedulerConcurrentSessions(int sessions)
+    {
+        RepairScheduler.instance.setConcurrentSessions(sessions);
+    }
+
+    public long getRepairSchedulerPartitionsPerSession()
+    {
+        return DatabaseDescriptor.getRepairSchedulerPartitionsPerSession();
+    }
+
+    public void setRepairSchedulerPartitionsPerSession(long partitions)
+    {
+        DatabaseDescriptor.setRepairSchedulerPartitionsPerSession(partitions);
+    }
+
+    public int getRepairSchedulerThroughputMbPerSec()
+    {
+        return RepairScheduler.instance.getThroughputMbPerSec();
+    }
+
+    public void setRepairSchedulerThroughputMbPerSec(int throughputMbPerSec)
+    {
+        RepairScheduler.instance.setThroughputMbPerSec(throughputMbPerSec);
+    }
+
     private <T extends AbstractFuture &
                IEndpointStateChangeSubscriber &
                IFailureDetectionEventListener> void registerOnFdAndGossip(final T task)
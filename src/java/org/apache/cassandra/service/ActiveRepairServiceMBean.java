@@ -18,6 +18,7 @@
 
 package org.apache.cassandra.service;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -31,6 +32,45 @@ public interface ActiveRepairServiceMBean
     public void setRepairSessionSpaceInMegabytes(int sizeInMegabytes);
     public int getRepairSessionSpaceInMegabytes();
 
+    public void setRepairPipelineSegments(int segments);
+    public int getRepairPipelineSegments();
+
     public boolean getUseOffheapMerkleTrees();
     public void setUseOffheapMerkleTrees(boolean value);
+
+    public int getOffheapMerkleTreesSpaceInMegabytes();
+    public void setOffheapMerkleTreesSpaceInMegabytes(int sizeInMegabytes);
+
+    /**
+     * Schedules the full repair of a keyspace in sub-range repairs, that are run in the background and resumed if
+     * this node restarts. Their progress is shown in system_views.scheduled_repairs.
+     *
+     * @param keyspace the keyspace to repair
+     * @param options the repair options, as for StorageServiceMBean#repairAsync
+     * @return the id of the scheduled repair
+     */
+    public String scheduleRepair(String keyspace, Map<String, String> options) throws IOException;
+
+    /**
+     * Stops starting the sub-range repairs of a scheduled repair.
+     *
+     * @return whether the repair was running
+     */
+    public boolean cancelScheduledRepair(String id);
+
+    /**
+     * Resumes the scheduled repairs of this node that were interrupted by its last restart.
+     *
+     * @return the number of resumed repairs
+     */
+    public int resumeScheduledRepairs();
+
+    public int getRepairSchedulerConcurrentSessions();
+    public void setRepairSchedulerConcurrentSessions(int sessions);
+
+    public long getRepairSchedulerPartitionsPerSession();
+    public void setRepairSchedulerPartitionsPerSession(long partitions);
+
+    public int getRepairSchedulerThroughputMbPerSec();
+    public void setRepairSchedulerThroughputMbPerSec(int throughputMbPerSec);
 }
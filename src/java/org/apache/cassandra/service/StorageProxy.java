@@ -55,6 +55,7 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.batchlog.Batch;
 import org.apache.cassandra.batchlog.BatchlogManager;
+import org.apache.cassandra.concurrent.AdaptiveConcurrencyLimiter;
 import org.apache.cassandra.concurrent.Stage;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.ColumnFamilyStore;
@@ -1431,7 +1432,7 @@ public class StorageProxy implements StorageProxyMBean
 
     private static void performLocally(Stage stage, Replica localReplica, final Runnable runnable, final RequestCallback<?> handler)
     {
-        stage.maybeExecuteImmediately(new LocalMutationRunnable(localReplica)
+        LocalMutationRunnable mutation = new LocalMutationRunnable(localReplica)
         {
             public void runMayThrow()
             {
@@ -1453,7 +1454,12 @@ public class StorageProxy implements StorageProxyMBean
             {
                 return Verb.MUTATION_REQ;
             }
-        });
+        };
+
+        // a mutation shed by the stage is hinted, like one that expires before it runs
+        Runnable admitted = AdaptiveConcurrencyLimiter.admit(stage, mutation, mutation::hint);
+        if (admitted != null)
+            stage.maybeExecuteImmediately(admitted);
     }
 
     /**
@@ -2126,8 +2132,10 @@ public class StorageProxy implements StorageProxyMBean
          * that batch or not. The reason it matters is that whe paging queries, the command (more specifically the
          * {@code DataLimits}) may have "state" information and that state may only be valid for the first query (in
          * that it's the query that "continues" whatever we're previously queried).
+         * @param isLast whether that's the last query sent in parallel, in which case a local query can be executed
+         * by the current thread, as it would wait for the responses anyway.
          */
-        private SingleRangeResponse query(ReplicaPlan.ForRangeRead replicaPlan, boolean isFirst)
+        private SingleRangeResponse query(ReplicaPlan.ForRangeRead replicaPlan, boolean isFirst, boolean isLast)
         {
             PartitionRangeReadCommand rangeCommand = command.forSubRange(replicaPlan.range(), isFirst);
             // If enabled, request repaired data tracking info from full replicas but
@@ -2150,7 +2158,11 @@ public class StorageProxy implements StorageProxyMBean
 
             if (replicaPlan.contacts().size() == 1 && replicaPlan.contacts().get(0).isSelf())
             {
-                Stage.READ.execute(new LocalReadRunnable(rangeCommand, handler));
+                Runnable localRead = AdaptiveConcurrencyLimiter.admit(Stage.READ, new LocalReadRunnable(rangeCommand, handler));
+                if (isLast)
+                    Stage.READ.maybeExecuteImmediately(localRead);
+                else
+                    Stage.READ.execute(localRead);
             }
             else
             {
@@ -2175,8 +2187,10 @@ public class StorageProxy implements StorageProxyMBean
             {
                 for (int i = 0; i < concurrencyFactor && ranges.hasNext(); i++)
                 {
+                    ReplicaPlan.ForRangeRead replicaPlan = ranges.next();
+                    boolean isLast = i == concurrencyFactor - 1 || !ranges.hasNext();
                     @SuppressWarnings("resource") // response will be closed by concatAndBlockOnRepair, or in the catch block below
-                    SingleRangeResponse response = query(ranges.next(), i == 0);
+                    SingleRangeResponse response = query(replicaPlan, i == 0, isLast);
                     concurrentQueries.add(response);
                     readRepairs.add(response.readRepair);
                     ++rangesQueried;
@@ -2568,17 +2582,7 @@ public class StorageProxy implements StorageProxyMBean
             long expirationTimeNanos = verb.expiresAtNanos(approxCreationTimeNanos);
             if (nowNanos > expirationTimeNanos)
             {
-                long timeTakenNanos = nowNanos - approxCreationTimeNanos;
-                MessagingService.instance().metrics.recordSelfDroppedMessage(Verb.MUTATION_REQ, timeTakenNanos, NANOSECONDS);
-
-                HintRunnable runnable = new HintRunnable(EndpointsForToken.of(localReplica.range().right, localReplica))
-                {
-                    protected void runMayThrow() throws Exception
-                    {
-                        LocalMutationRunnable.this.runMayThrow();
-                    }
-                };
-                submitHint(runnable);
+                hint();
                 return;
             }
 
@@ -2592,6 +2596,24 @@ public class StorageProxy implements StorageProxyMBean
             }
         }
 
+        /**
+         * Drops the mutation and hints it instead of applying it.
+         */
+        void hint()
+        {
+            long timeTakenNanos = MonotonicClock.approxTime.now() - approxCreationTimeNanos;
+            MessagingService.instance().metrics.recordSelfDroppedMessage(Verb.MUTATION_REQ, timeTakenNanos, NANOSECONDS);
+
+            HintRunnable runnable = new HintRunnable(EndpointsForToken.of(localReplica.range().right, localReplica))
+            {
+                protected void runMayThrow() throws Exception
+                {
+                    LocalMutationRunnable.this.runMayThrow();
+                }
+            };
+            submitHint(runnable);
+        }
+
         abstract protected Verb verb();
         abstract protected void runMayThrow() throws Exception;
     }
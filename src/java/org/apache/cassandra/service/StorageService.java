@@ -101,6 +101,7 @@ import org.apache.cassandra.streaming.*;
 import org.apache.cassandra.tracing.TraceKeyspace;
 import org.apache.cassandra.transport.ProtocolVersion;
 import org.apache.cassandra.transport.Server;
+import org.apache.cassandra.transport.RequestRateLimiters;
 import org.apache.cassandra.utils.*;
 import org.apache.cassandra.utils.logging.LoggingSupportFactory;
 import org.apache.cassandra.utils.progress.ProgressEvent;
@@ -3710,6 +3711,20 @@ public class StorageService extends NotificationBroadcasterSupport implements IE
     public Pair<Integer, Future<?>> repair(String keyspace, Map<String, String> repairSpec, List<ProgressListener> listeners)
     {
         RepairOption option = RepairOption.parse(repairSpec, tokenMetadata.partitioner);
+        addDefaultRepairRanges(keyspace, option);
+        if (option.getRanges().isEmpty() || Keyspace.open(keyspace).getReplicationStrategy().getReplicationFactor().allReplicas < 2)
+            return Pair.create(0, Futures.immediateFuture(null));
+
+        int cmd = nextRepairCommand.incrementAndGet();
+        return Pair.create(cmd, ActiveRepairService.repairCommandExecutor.submit(createRepairTask(cmd, keyspace, option, listeners)));
+    }
+
+    /**
+     * Adds the ranges repaired by default, the primary or the full local ranges of the keyspace, to repair options
+     * that don't specify ranges.
+     */
+    public void addDefaultRepairRanges(String keyspace, RepairOption option)
+    {
         // if ranges are not specified
         if (option.getRanges().isEmpty())
         {
@@ -3729,11 +3744,6 @@ public class StorageService extends NotificationBroadcasterSupport implements IE
                 Iterables.addAll(option.getRanges(), getLocalReplicas(keyspace).onlyFull().ranges());
             }
         }
-        if (option.getRanges().isEmpty() || Keyspace.open(keyspace).getReplicationStrategy().getReplicationFactor().allReplicas < 2)
-            return Pair.create(0, Futures.immediateFuture(null));
-
-        int cmd = nextRepairCommand.incrementAndGet();
-        return Pair.create(cmd, ActiveRepairService.repairCommandExecutor.submit(createRepairTask(cmd, keyspace, option, listeners)));
     }
 
     /**
@@ -5516,6 +5526,42 @@ public class StorageService extends NotificationBroadcasterSupport implements IE
         Server.EndpointPayloadTracker.setEndpointLimit(newLimit);
     }
 
+    @Override
+    public int getNativeTransportRequestsPerSecPerIp()
+    {
+        return DatabaseDescriptor.getNativeTransportRequestsPerSecPerIp();
+    }
+
+    @Override
+    public void setNativeTransportRequestsPerSecPerIp(int requestsPerSecond)
+    {
+        RequestRateLimiters.instance.setRate(RequestRateLimiters.Scope.IP, requestsPerSecond);
+    }
+
+    @Override
+    public int getNativeTransportRequestsPerSecPerRole()
+    {
+        return DatabaseDescriptor.getNativeTransportRequestsPerSecPerRole();
+    }
+
+    @Override
+    public void setNativeTransportRequestsPerSecPerRole(int requestsPerSecond)
+    {
+        RequestRateLimiters.instance.setRate(RequestRateLimiters.Scope.ROLE, requestsPerSecond);
+    }
+
+    @Override
+    public int getNativeTransportRequestsPerSecPerTable()
+    {
+        return DatabaseDescriptor.getNativeTransportRequestsPerSecPerTable();
+    }
+
+    @Override
+    public void setNativeTransportRequestsPerSecPerTable(int requestsPerSecond)
+    {
+        RequestRateLimiters.instance.setRate(RequestRateLimiters.Scope.TABLE, requestsPerSecond);
+    }
+
     @VisibleForTesting
     public void shutdownServer()
     {
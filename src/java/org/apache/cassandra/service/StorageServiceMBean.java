@@ -525,6 +525,12 @@ public interface StorageServiceMBean extends NotificationEmitter
     public void setNativeTransportMaxConcurrentRequestsInBytes(long newLimit);
     public long getNativeTransportMaxConcurrentRequestsInBytesPerIp();
     public void setNativeTransportMaxConcurrentRequestsInBytesPerIp(long newLimit);
+    public int getNativeTransportRequestsPerSecPerIp();
+    public void setNativeTransportRequestsPerSecPerIp(int requestsPerSecond);
+    public int getNativeTransportRequestsPerSecPerRole();
+    public void setNativeTransportRequestsPerSecPerRole(int requestsPerSecond);
+    public int getNativeTransportRequestsPerSecPerTable();
+    public void setNativeTransportRequestsPerSecPerTable(int requestsPerSecond);
 
 
     // allows a node that have been started without joining the ring to join it
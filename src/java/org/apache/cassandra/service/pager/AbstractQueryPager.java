@@ -21,6 +21,7 @@ import org.apache.cassandra.db.*;
 import org.apache.cassandra.db.rows.*;
 import org.apache.cassandra.db.partitions.*;
 import org.apache.cassandra.db.filter.DataLimits;
+import org.apache.cassandra.db.transform.StoppingTransformation;
 import org.apache.cassandra.db.transform.Transformation;
 import org.apache.cassandra.schema.TableMetadata;
 import org.apache.cassandra.service.ClientState;
@@ -43,6 +44,9 @@ abstract class AbstractQueryPager<T extends ReadQuery> implements QueryPager
 
     private boolean exhausted;
 
+    // the size of the rows of the last page, see fetchPage(int, int, ...)
+    private int lastPageSizeInBytes;
+
     protected AbstractQueryPager(T query, ProtocolVersion protocolVersion)
     {
         this.query = query;
@@ -60,12 +64,17 @@ abstract class AbstractQueryPager<T extends ReadQuery> implements QueryPager
     }
 
     public PartitionIterator fetchPage(int pageSize, ConsistencyLevel consistency, ClientState clientState, long queryStartNanoTime)
+    {
+        return fetchPage(pageSize, NO_PAGE_SIZE_IN_BYTES, consistency, clientState, queryStartNanoTime);
+    }
+
+    public PartitionIterator fetchPage(int pageSize, int pageSizeInBytes, ConsistencyLevel consistency, ClientState clientState, long queryStartNanoTime)
     {
         if (isExhausted())
             return EmptyIterators.partition();
 
-        pageSize = Math.min(pageSize, remaining);
-        Pager pager = new RowPager(limits.forPaging(pageSize), query.nowInSec());
+        pageSize = Math.min(rowsToFetch(pageSize, pageSizeInBytes), remaining);
+        Pager pager = new RowPager(limits.forPaging(pageSize), pageSizeInBytes, query.nowInSec());
         ReadQuery readQuery = nextPageReadQuery(pageSize);
         if (readQuery == null)
         {
@@ -75,13 +84,36 @@ abstract class AbstractQueryPager<T extends ReadQuery> implements QueryPager
         return Transformation.apply(readQuery.execute(consistency, clientState, queryStartNanoTime), pager);
     }
 
+    /**
+     * The number of rows to ask the replicas for in a page limited in bytes. The page only returns the rows that fit
+     * in its size, so the replicas are asked for as many rows as fit according to the mean size of the rows of the
+     * table on this node, plus the row that ends the page, rather than for the rows of the whole page size. The page
+     * size if the size of the rows is unknown.
+     */
+    private int rowsToFetch(int pageSize, int pageSizeInBytes)
+    {
+        if (pageSizeInBytes == NO_PAGE_SIZE_IN_BYTES)
+            return pageSize;
+
+        ColumnFamilyStore cfs = ColumnFamilyStore.getIfExists(query.metadata().id);
+        double meanRowSize = cfs == null ? 0 : cfs.getMeanRowSize();
+        if (meanRowSize <= 0)
+            return pageSize;
+        return (int) Math.min(pageSize, pageSizeInBytes / meanRowSize + 1);
+    }
+
     public PartitionIterator fetchPageInternal(int pageSize, ReadExecutionController executionController)
+    {
+        return fetchPageInternal(pageSize, NO_PAGE_SIZE_IN_BYTES, executionController);
+    }
+
+    public PartitionIterator fetchPageInternal(int pageSize, int pageSizeInBytes, ReadExecutionController executionController)
     {
         if (isExhausted())
             return EmptyIterators.partition();
 
         pageSize = Math.min(pageSize, remaining);
-        RowPager pager = new RowPager(limits.forPaging(pageSize), query.nowInSec());
+        RowPager pager = new RowPager(limits.forPaging(pageSize), pageSizeInBytes, query.nowInSec());
         ReadQuery readQuery = nextPageReadQuery(pageSize);
         if (readQuery == null)
         {
@@ -97,7 +129,7 @@ abstract class AbstractQueryPager<T extends ReadQuery> implements QueryPager
             return EmptyIterators.unfilteredPartition(metadata);
 
         pageSize = Math.min(pageSize, remaining);
-        UnfilteredPager pager = new UnfilteredPager(limits.forPaging(pageSize), query.nowInSec());
+        UnfilteredPager pager = new UnfilteredPager(limits.forPaging(pageSize), NO_PAGE_SIZE_IN_BYTES, query.nowInSec());
         ReadQuery readQuery = nextPageReadQuery(pageSize);
         if (readQuery == null)
         {
@@ -110,9 +142,9 @@ abstract class AbstractQueryPager<T extends ReadQuery> implements QueryPager
     private class UnfilteredPager extends Pager<Unfiltered>
     {
 
-        private UnfilteredPager(DataLimits pageLimits, int nowInSec)
+        private UnfilteredPager(DataLimits pageLimits, int pageSizeInBytes, int nowInSec)
         {
-            super(pageLimits, nowInSec);
+            super(pageLimits, pageSizeInBytes, nowInSec);
         }
 
         protected BaseRowIterator<Unfiltered> apply(BaseRowIterator<Unfiltered> partition)
@@ -124,9 +156,9 @@ abstract class AbstractQueryPager<T extends ReadQuery> implements QueryPager
     private class RowPager extends Pager<Row>
     {
 
-        private RowPager(DataLimits pageLimits, int nowInSec)
+        private RowPager(DataLimits pageLimits, int pageSizeInBytes, int nowInSec)
         {
-            super(pageLimits, nowInSec);
+            super(pageLimits, pageSizeInBytes, nowInSec);
         }
 
         protected BaseRowIterator<Row> apply(BaseRowIterator<Row> partition)
@@ -135,7 +167,7 @@ abstract class AbstractQueryPager<T extends ReadQuery> implements QueryPager
         }
     }
 
-    private abstract class Pager<T extends Unfiltered> extends Transformation<BaseRowIterator<T>>
+    private abstract class Pager<T extends Unfiltered> extends StoppingTransformation<BaseRowIterator<T>>
     {
         private final DataLimits pageLimits;
         protected final DataLimits.Counter counter;
@@ -143,10 +175,14 @@ abstract class AbstractQueryPager<T extends ReadQuery> implements QueryPager
         private Row lastRow;
         private boolean isFirstPartition = true;
 
-        private Pager(DataLimits pageLimits, int nowInSec)
+        private final int pageSizeInBytes;
+        private int sizeInBytes;
+
+        private Pager(DataLimits pageLimits, int pageSizeInBytes, int nowInSec)
         {
             this.counter = pageLimits.newCounter(nowInSec, true, query.selectsFullPartition(), enforceStrictLiveness);
             this.pageLimits = pageLimits;
+            this.pageSizeInBytes = pageSizeInBytes;
         }
 
         @Override
@@ -177,6 +213,8 @@ abstract class AbstractQueryPager<T extends ReadQuery> implements QueryPager
         @Override
         public void onClose()
         {
+            super.onClose();
+
             // In some case like GROUP BY a counter need to know when the processing is completed.
             counter.onClose();
 
@@ -196,7 +234,19 @@ abstract class AbstractQueryPager<T extends ReadQuery> implements QueryPager
             {
                 remainingInPartition -= counter.countedInCurrentPartition();
             }
-            exhausted = pageLimits.isExhausted(counter);
+            // a page ended by its size in bytes says nothing about the rows left
+            exhausted = !isFull() && pageLimits.isExhausted(counter);
+            lastPageSizeInBytes = sizeInBytes;
+        }
+
+        private boolean isFull()
+        {
+            return sizeInBytes >= pageSizeInBytes;
+        }
+
+        private void countBytes(Row row)
+        {
+            sizeInBytes += row.clustering().dataSize() + row.dataSize();
         }
 
         public Row applyToStatic(Row row)
@@ -207,6 +257,7 @@ abstract class AbstractQueryPager<T extends ReadQuery> implements QueryPager
                     remainingInPartition = limits.perPartitionCount();
                 lastKey = currentKey;
                 lastRow = row;
+                countBytes(row);
             }
             return row;
         }
@@ -220,6 +271,12 @@ abstract class AbstractQueryPager<T extends ReadQuery> implements QueryPager
                 lastKey = currentKey;
             }
             lastRow = row;
+
+            // end the page after the row that brings it to its size in bytes; we don't stop on a static row, as this
+            // would end the page with a partition that looks like it only has static content
+            countBytes(row);
+            if (isFull())
+                stop();
             return row;
         }
     }
@@ -246,6 +303,14 @@ abstract class AbstractQueryPager<T extends ReadQuery> implements QueryPager
         return remainingInPartition;
     }
 
+    /**
+     * @return the size in bytes of the rows of the last page fetched
+     */
+    int lastPageSizeInBytes()
+    {
+        return lastPageSizeInBytes;
+    }
+
     protected abstract T nextPageReadQuery(int pageSize);
     protected abstract void recordLast(DecoratedKey key, Row row);
     protected abstract boolean isPreviouslyReturnedPartition(DecoratedKey key);
@@ -147,23 +147,34 @@ public class MultiPartitionPager<T extends SinglePartitionReadQuery> implements
         throw new AssertionError("Shouldn't be called on an exhausted pager");
     }
 
-    @SuppressWarnings("resource") // iter closed via countingIter
     public PartitionIterator fetchPage(int pageSize, ConsistencyLevel consistency, ClientState clientState, long queryStartNanoTime) throws RequestValidationException, RequestExecutionException
     {
-        int toQuery = Math.min(remaining, pageSize);
-        return new PagersIterator(toQuery, consistency, clientState, null, queryStartNanoTime);
+        return fetchPage(pageSize, NO_PAGE_SIZE_IN_BYTES, consistency, clientState, queryStartNanoTime);
     }
 
     @SuppressWarnings("resource") // iter closed via countingIter
+    public PartitionIterator fetchPage(int pageSize, int pageSizeInBytes, ConsistencyLevel consistency, ClientState clientState, long queryStartNanoTime) throws RequestValidationException, RequestExecutionException
+    {
+        int toQuery = Math.min(remaining, pageSize);
+        return new PagersIterator(toQuery, pageSizeInBytes, consistency, clientState, null, queryStartNanoTime);
+    }
+
     public PartitionIterator fetchPageInternal(int pageSize, ReadExecutionController executionController) throws RequestValidationException, RequestExecutionException
+    {
+        return fetchPageInternal(pageSize, NO_PAGE_SIZE_IN_BYTES, executionController);
+    }
+
+    @SuppressWarnings("resource") // iter closed via countingIter
+    public PartitionIterator fetchPageInternal(int pageSize, int pageSizeInBytes, ReadExecutionController executionController) throws RequestValidationException, RequestExecutionException
     {
         int toQuery = Math.min(remaining, pageSize);
-        return new PagersIterator(toQuery, null, null, executionController, System.nanoTime());
+        return new PagersIterator(toQuery, pageSizeInBytes, null, null, executionController, System.nanoTime());
     }
 
     private class PagersIterator extends AbstractIterator<RowIterator> implements PartitionIterator
     {
         private final int pageSize;
+        private final int pageSizeInBytes;
         private PartitionIterator result;
         private boolean closed;
         private final long queryStartNanoTime;
@@ -177,10 +188,12 @@ public class MultiPartitionPager<T extends SinglePartitionReadQuery> implements
 
         private int pagerMaxRemaining;
         private int counted;
+        private int countedBytes;
 
-        public PagersIterator(int pageSize, ConsistencyLevel consistency, ClientState clientState, ReadExecutionController executionController, long queryStartNanoTime)
+        public PagersIterator(int pageSize, int pageSizeInBytes, ConsistencyLevel consistency, ClientState clientState, ReadExecutionController executionController, long queryStartNanoTime)
         {
             this.pageSize = pageSize;
+            this.pageSizeInBytes = pageSizeInBytes;
             this.consistency = consistency;
             this.clientState = clientState;
             this.executionController = executionController;
@@ -195,11 +208,13 @@ public class MultiPartitionPager<T extends SinglePartitionReadQuery> implements
                 {
                     result.close();
                     counted += pagerMaxRemaining - pagers[current].maxRemaining();
+                    countedBytes += pagers[current].lastPageSizeInBytes();
                 }
 
-                // We are done if we have reached the page size or in the case of GROUP BY if the current pager
-                // is not exhausted.
+                // We are done if we have reached the page size, in rows or in bytes, or in the case of GROUP BY if
+                // the current pager is not exhausted.
                 boolean isDone = counted >= pageSize
+                        || countedBytes >= pageSizeInBytes
                         || (result != null && limit.isGroupByLimit() && !pagers[current].isExhausted());
 
                 // isExhausted() will sets us on the first non-exhausted pager
@@ -211,9 +226,10 @@ public class MultiPartitionPager<T extends SinglePartitionReadQuery> implements
 
                 pagerMaxRemaining = pagers[current].maxRemaining();
                 int toQuery = pageSize - counted;
+                int toQueryInBytes = pageSizeInBytes == NO_PAGE_SIZE_IN_BYTES ? NO_PAGE_SIZE_IN_BYTES : pageSizeInBytes - countedBytes;
                 result = consistency == null
-                       ? pagers[current].fetchPageInternal(toQuery, executionController)
-                       : pagers[current].fetchPage(toQuery, consistency, clientState, queryStartNanoTime);
+                       ? pagers[current].fetchPageInternal(toQuery, toQueryInBytes, executionController)
+                       : pagers[current].fetchPage(toQuery, toQueryInBytes, consistency, clientState, queryStartNanoTime);
             }
             return result.next();
         }
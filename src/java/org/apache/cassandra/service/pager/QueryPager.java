@@ -47,6 +47,11 @@ import org.apache.cassandra.service.ClientState;
  */
 public interface QueryPager
 {
+    /**
+     * The page size in bytes of the pages that are only limited by their number of rows.
+     */
+    int NO_PAGE_SIZE_IN_BYTES = Integer.MAX_VALUE;
+
     QueryPager EMPTY = new QueryPager()
     {
         public ReadExecutionController executionController()
@@ -96,6 +101,25 @@ public interface QueryPager
      */
     public PartitionIterator fetchPage(int pageSize, ConsistencyLevel consistency, ClientState clientState, long queryStartNanoTime) throws RequestValidationException, RequestExecutionException;
 
+    /**
+     * Fetches the next page, ending it early once its rows add up to the given number of bytes.
+     * <p>
+     * The page ends after the row that reaches the size, so it may go over it by a row. A page ended by its size
+     * does not exhaust the pager, even if it is the last one. Pagers that cannot end their pages early, like the ones
+     * of aggregation queries, ignore the size.
+     *
+     * @param pageSize the maximum number of elements to return in the next page.
+     * @param pageSizeInBytes the size in bytes after which the page ends, {@link #NO_PAGE_SIZE_IN_BYTES} for no limit.
+     * @param consistency the consistency level to achieve for the query.
+     * @param clientState the {@code ClientState} for the query. In practice, this can be null unless
+     * {@code consistency} is a serial consistency.
+     * @return the page of result.
+     */
+    default PartitionIterator fetchPage(int pageSize, int pageSizeInBytes, ConsistencyLevel consistency, ClientState clientState, long queryStartNanoTime) throws RequestValidationException, RequestExecutionException
+    {
+        return fetchPage(pageSize, consistency, clientState, queryStartNanoTime);
+    }
+
     /**
      * Starts a new read operation.
      * <p>
@@ -116,6 +140,20 @@ public interface QueryPager
      */
     public PartitionIterator fetchPageInternal(int pageSize, ReadExecutionController executionController) throws RequestValidationException, RequestExecutionException;
 
+    /**
+     * Fetches the next page internally, ending it early once its rows add up to the given number of bytes, as
+     * {@link #fetchPage(int, int, ConsistencyLevel, ClientState, long)} does.
+     *
+     * @param pageSize the maximum number of elements to return in the next page.
+     * @param pageSizeInBytes the size in bytes after which the page ends, {@link #NO_PAGE_SIZE_IN_BYTES} for no limit.
+     * @param executionController the {@code ReadExecutionController} protecting the read.
+     * @return the page of result.
+     */
+    default PartitionIterator fetchPageInternal(int pageSize, int pageSizeInBytes, ReadExecutionController executionController) throws RequestValidationException, RequestExecutionException
+    {
+        return fetchPageInternal(pageSize, executionController);
+    }
+
     /**
      * Whether or not this pager is exhausted, i.e. whether or not a call to
      * fetchPage may return more result.
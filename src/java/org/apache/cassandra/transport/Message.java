@@ -31,18 +31,21 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
 import io.netty.handler.codec.MessageToMessageDecoder;
 import io.netty.handler.codec.MessageToMessageEncoder;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.concurrent.LocalAwareExecutorService;
+import org.apache.cassandra.concurrent.PerCoreExecutors;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.exceptions.OverloadedException;
 import org.apache.cassandra.metrics.ClientMetrics;
@@ -52,6 +55,7 @@ import org.apache.cassandra.service.StorageService;
 import org.apache.cassandra.tracing.Tracing;
 import org.apache.cassandra.transport.messages.*;
 import org.apache.cassandra.service.QueryState;
+import org.apache.cassandra.utils.FBUtilities;
 import org.apache.cassandra.utils.JVMStabilityInspector;
 import org.apache.cassandra.utils.UUIDGen;
 
@@ -75,7 +79,20 @@ public abstract class Message
             add("Connection timed out").
             build();
 
-    public interface Codec<M extends Message> extends CBCodec<M> {}
+    public interface Codec<M extends Message> extends CBCodec<M>
+    {
+        /**
+         * Returns the end of the encoding of the message if it is already encoded, in which case it is appended to
+         * the body of the frame after what {@link #encode} writes, instead of being copied into it, and is not
+         * accounted for by {@link #encodedSize}.
+         *
+         * @return the end of the encoding of the message, owned by the caller, or {@code null}
+         */
+        default ByteBuf encodedTail(M message, ProtocolVersion version)
+        {
+            return null;
+        }
+    }
 
     public enum Direction
     {
@@ -375,8 +392,11 @@ public abstract class Message
             EnumSet<Frame.Header.Flag> flags = EnumSet.noneOf(Frame.Header.Flag.class);
 
             Codec<Message> codec = (Codec<Message>)message.type.codec;
+            // taken first, so that it is released whatever fails below
+            ByteBuf tail = null;
             try
             {
+                tail = codec.encodedTail(message, version);
                 int messageSize = codec.encodedSize(message, version);
                 ByteBuf body;
                 if (message instanceof Response)
@@ -441,6 +461,12 @@ public abstract class Message
                     throw e;
                 }
 
+                if (tail != null)
+                {
+                    body = CBUtil.allocator.compositeBuffer(2).addComponents(true, body, tail);
+                    tail = null;
+                }
+
                 // if the driver attempted to connect with a protocol version lower than the minimum supported
                 // version, respond with a protocol error message with the correct frame header for that version
                 ProtocolVersion responseVersion = message.forcedProtocolVersion == null
@@ -454,6 +480,8 @@ public abstract class Message
             }
             catch (Throwable e)
             {
+                if (tail != null)
+                    tail.release();
                 throw ErrorMessage.wrap(e, message.getStreamId());
             }
         }
@@ -467,6 +495,14 @@ public abstract class Message
                                                                                             "transport",
                                                                                             "Native-Transport-Requests");
 
+        /**
+         * The executors of the requests with {@code native_transport_thread_per_core}, to which the connections are
+         * assigned by event loop, instead of {@link #requestExecutor}.
+         */
+        private static final PerCoreExecutors perCoreRequestExecutors = DatabaseDescriptor.useNativeTransportThreadPerCore()
+                                                                        ? newPerCoreRequestExecutors()
+                                                                        : null;
+
         /**
          * Current count of *request* bytes that are live on the channel.
          *
@@ -478,6 +514,9 @@ public abstract class Message
 
         private boolean paused;
 
+        // whether reading is stopped until the responses waiting to be written to the channel drain
+        private boolean unwritable;
+
         private static class FlushItem
         {
             final ChannelHandlerContext ctx;
@@ -519,6 +558,38 @@ public abstract class Message
             {
                 this.eventLoop = eventLoop;
             }
+
+            /**
+             * Called on the event loop when a request of one of its channels is submitted for processing.
+             */
+            void onRequest()
+            {
+            }
+
+            /**
+             * Called once the response of a request has been queued.
+             */
+            void onResponse()
+            {
+            }
+
+            /**
+             * Flushes the channels written to since the last flush, and releases the written items.
+             */
+            void flushWritten()
+            {
+                if (flushed.isEmpty())
+                    return;
+
+                for (ChannelHandlerContext channel : channels)
+                    channel.flush();
+                for (FlushItem item : flushed)
+                    item.release();
+
+                ClientMetrics.instance.recordFlush(flushed.size(), channels.size());
+                channels.clear();
+                flushed.clear();
+            }
         }
 
         private static final class LegacyFlusher extends Flusher
@@ -548,13 +619,7 @@ public abstract class Message
 
                 if (!doneWork || runsSinceFlush > 2 || flushed.size() > 50)
                 {
-                    for (ChannelHandlerContext channel : channels)
-                        channel.flush();
-                    for (FlushItem item : flushed)
-                        item.release();
-
-                    channels.clear();
-                    flushed.clear();
+                    flushWritten();
                     runsSinceFlush = 0;
                 }
 
@@ -599,26 +664,107 @@ public abstract class Message
                 }
 
                 if (doneWork)
+                    flushWritten();
+            }
+        }
+
+        /**
+         * Coalesces the responses of the channels of an event loop while more responses are on their way, and flushes
+         * them as soon as none are, so that lightly loaded connections are flushed immediately, while the responses
+         * to the requests pipelined by busy connections are written to the socket in batches.
+         *
+         * The flush is delayed only as long as the next response is expected to arrive within {@link #maxDelayNanos}
+         * of the first unflushed one, according to the average interval between the responses observed so far.
+         */
+        private static final class AdaptiveFlusher extends Flusher
+        {
+            // flush at least this often while waiting for responses
+            private static final long POLL_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+            private static final int MAX_BATCH_SIZE = 256;
+
+            private final long maxDelayNanos;
+
+            // the number of requests of the channels of this event loop that have not queued their response yet
+            final AtomicInteger inFlight = new AtomicInteger();
+
+            // only accessed on the event loop
+            private long firstWrittenNanos;
+            private long lastArrivalNanos;
+            private long averageIntervalNanos;
+
+            private AdaptiveFlusher(EventLoop eventLoop, long maxDelayNanos)
+            {
+                super(eventLoop);
+                this.maxDelayNanos = maxDelayNanos;
+                this.averageIntervalNanos = maxDelayNanos;
+            }
+
+            void onRequest()
+            {
+                inFlight.incrementAndGet();
+            }
+
+            void onResponse()
+            {
+                inFlight.decrementAndGet();
+            }
+
+            public void run()
+            {
+                long now = System.nanoTime();
+                int arrived = 0;
+                FlushItem flush;
+                while (null != (flush = queued.poll()))
                 {
-                    for (ChannelHandlerContext channel : channels)
-                        channel.flush();
-                    for (FlushItem item : flushed)
-                        item.release();
+                    if (flushed.isEmpty())
+                        firstWrittenNanos = now;
+                    channels.add(flush.ctx);
+                    flush.ctx.write(flush.response, flush.ctx.voidPromise());
+                    flushed.add(flush);
+                    arrived++;
+                }
 
-                    channels.clear();
-                    flushed.clear();
+                if (arrived > 0)
+                {
+                    // exponentially weighted moving average of the interval between two responses
+                    long interval = Math.min((now - lastArrivalNanos) / arrived, maxDelayNanos);
+                    averageIntervalNanos += (interval - averageIntervalNanos) / 8;
+                    lastArrivalNanos = now;
                 }
+
+                if (!flushed.isEmpty())
+                {
+                    long waited = now - firstWrittenNanos;
+                    if (inFlight.get() > 0 && flushed.size() < MAX_BATCH_SIZE && waited + averageIntervalNanos < maxDelayNanos)
+                    {
+                        // more responses are expected soon, give them a chance to join the batch
+                        eventLoop.schedule(this, Math.min(maxDelayNanos - waited, POLL_INTERVAL_NANOS), TimeUnit.NANOSECONDS);
+                        return;
+                    }
+                    flushWritten();
+                }
+
+                scheduled.set(false);
+                if (!queued.isEmpty() && scheduled.compareAndSet(false, true))
+                    eventLoop.execute(this);
             }
         }
 
         private static final ConcurrentMap<EventLoop, Flusher> flusherLookup = new ConcurrentHashMap<>();
 
         private final boolean useLegacyFlusher;
+        private final boolean useAdaptiveFlusher;
 
         public Dispatcher(boolean useLegacyFlusher, Server.EndpointPayloadTracker endpointPayloadTracker)
+        {
+            this(useLegacyFlusher, false, endpointPayloadTracker);
+        }
+
+        public Dispatcher(boolean useLegacyFlusher, boolean useAdaptiveFlusher, Server.EndpointPayloadTracker endpointPayloadTracker)
         {
             super(false);
             this.useLegacyFlusher = useLegacyFlusher;
+            this.useAdaptiveFlusher = useAdaptiveFlusher;
             this.endpointPayloadTracker = endpointPayloadTracker;
         }
 
@@ -627,7 +773,28 @@ public abstract class Message
         {
             // if we decide to handle this message, process it outside of the netty event loop
             if (shouldHandleRequest(ctx, request))
-                requestExecutor.submit(() -> processRequest(ctx, request));
+            {
+                flusherFor(ctx.channel().eventLoop()).onRequest();
+                requestExecutor(ctx).submit(() -> processRequest(ctx, request));
+            }
+        }
+
+        private static LocalAwareExecutorService requestExecutor(ChannelHandlerContext ctx)
+        {
+            return perCoreRequestExecutors == null ? requestExecutor : perCoreRequestExecutors.executorFor(ctx.channel().eventLoop());
+        }
+
+        private static PerCoreExecutors newPerCoreRequestExecutors()
+        {
+            int cores = FBUtilities.getAvailableProcessors();
+            int threadsPerCore = Math.max(1, DatabaseDescriptor.getNativeTransportMaxThreads() / cores);
+            return new PerCoreExecutors("Native-Transport-Requests", "transport", cores, threadsPerCore);
+        }
+
+        @VisibleForTesting
+        static PerCoreExecutors perCoreRequestExecutors()
+        {
+            return perCoreRequestExecutors;
         }
 
         /** This check for inflight payload to potentially discard the request should have been ideally in one of the
@@ -640,6 +807,15 @@ public abstract class Message
          */
         private boolean shouldHandleRequest(ChannelHandlerContext ctx, Request request)
         {
+            RequestRateLimiters.Scope rateLimited = RequestRateLimiters.instance.tryAcquire(request);
+            if (rateLimited != null)
+            {
+                ClientMetrics.instance.markRequestRateLimited();
+                logger.trace("Rejected request over the {} rate limit: {}", rateLimited, request);
+                throw ErrorMessage.wrap(new OverloadedException("Request rate limit per " + rateLimited + " exceeded"),
+                                        request.getSourceFrame().header.streamId);
+            }
+
             long frameSize = request.getSourceFrame().header.bodySizeInBytes;
 
             ResourceLimits.EndpointAndGlobal endpointAndGlobalPayloadsInFlight = endpointPayloadTracker.endpointAndGlobalPayloadsInFlight;
@@ -698,8 +874,32 @@ public abstract class Message
             {
                 paused = false;
                 ClientMetrics.instance.unpauseConnection();
-                config.setAutoRead(true);
+                if (!unwritable)
+                    config.setAutoRead(true);
+            }
+        }
+
+        /**
+         * With {@code native_transport_pause_reads_while_unwritable}, stops reading requests from a connection while
+         * its responses are not written as fast as they are produced, so that the responses waiting to be written to
+         * a slow client are bounded.
+         */
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx)
+        {
+            ChannelConfig config = ctx.channel().config();
+            if (!ctx.channel().isWritable() && DatabaseDescriptor.pauseNativeTransportReadsWhileUnwritable())
+            {
+                unwritable = true;
+                config.setAutoRead(false);
+            }
+            else if (ctx.channel().isWritable() && unwritable)
+            {
+                unwritable = false;
+                if (!paused)
+                    config.setAutoRead(true);
             }
+            ctx.fireChannelWritabilityChanged();
         }
 
         /**
@@ -707,7 +907,7 @@ public abstract class Message
          */
         void processRequest(ChannelHandlerContext ctx, Request request)
         {
-            final Response response;
+            Response response = null;
             final ServerConnection connection;
             long queryStartNanoTime = System.nanoTime();
 
@@ -731,6 +931,9 @@ public abstract class Message
             catch (Throwable t)
             {
                 JVMStabilityInspector.inspectThrowable(t);
+                // the response replaced by the error is never encoded, so what it already holds encoded is released
+                if (response != null)
+                    releaseEncodedTail(response, request.connection().getVersion());
                 UnexpectedChannelExceptionHandler handler = new UnexpectedChannelExceptionHandler(ctx.channel(), true);
                 flush(new FlushItem(ctx, ErrorMessage.fromException(t, handler).setStreamId(request.getStreamId()), request.getSourceFrame(), this));
                 return;
@@ -744,6 +947,13 @@ public abstract class Message
             flush(new FlushItem(ctx, response, request.getSourceFrame(), this));
         }
 
+        private static void releaseEncodedTail(Response response, ProtocolVersion version)
+        {
+            ByteBuf tail = ((Codec<Message>) response.type.codec).encodedTail(response, version);
+            if (tail != null)
+                tail.release();
+        }
+
         @Override
         public void channelInactive(ChannelHandlerContext ctx)
         {
@@ -756,19 +966,26 @@ public abstract class Message
             ctx.fireChannelInactive();
         }
 
-        private void flush(FlushItem item)
+        private Flusher flusherFor(EventLoop loop)
         {
-            EventLoop loop = item.ctx.channel().eventLoop();
             Flusher flusher = flusherLookup.get(loop);
             if (flusher == null)
             {
-                Flusher created = useLegacyFlusher ? new LegacyFlusher(loop) : new ImmediateFlusher(loop);
+                Flusher created = useAdaptiveFlusher
+                                  ? new AdaptiveFlusher(loop, TimeUnit.MICROSECONDS.toNanos(DatabaseDescriptor.getNativeTransportFlushMaxDelay()))
+                                  : useLegacyFlusher ? new LegacyFlusher(loop) : new ImmediateFlusher(loop);
                 Flusher alt = flusherLookup.putIfAbsent(loop, flusher = created);
                 if (alt != null)
                     flusher = alt;
             }
+            return flusher;
+        }
 
+        private void flush(FlushItem item)
+        {
+            Flusher flusher = flusherFor(item.ctx.channel().eventLoop());
             flusher.queued.add(item);
+            flusher.onResponse();
             flusher.start();
         }
 
@@ -778,6 +995,10 @@ public abstract class Message
             {
                 requestExecutor.shutdown();
             }
+            if (perCoreRequestExecutors != null)
+            {
+                perCoreRequestExecutors.shutdown();
+            }
         }
     }
 
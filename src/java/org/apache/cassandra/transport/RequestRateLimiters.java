@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.RateLimiter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.cassandra.audit.AuditLogContext;
+import org.apache.cassandra.auth.AuthenticatedUser;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.QueryHandler;
+import org.apache.cassandra.service.ClientState;
+import org.apache.cassandra.transport.messages.BatchMessage;
+import org.apache.cassandra.transport.messages.ExecuteMessage;
+import org.apache.cassandra.utils.MD5Digest;
+
+/**
+ * Token buckets limiting the rate of the requests of the native transport clients, by client address, by role and
+ * by table, so that a client sending more requests than its share cannot saturate the request stages for everyone.
+ *
+ * Each scope has a rate in requests per second, 0 to disable it, and each key of a scope (an address, a role or a
+ * table) gets its own bucket of that many requests, refilled over a second. Only the requests that execute statements
+ * are limited. The table of an unprepared query is only known once it is parsed, on the request executor, so the
+ * per-table limit only applies to prepared statements and batches of them.
+ *
+ * The buckets are created on first use and dropped once they are not used for a while, so that the clients that come
+ * and go do not accumulate.
+ */
+public class RequestRateLimiters
+{
+    public static final RequestRateLimiters instance = new RequestRateLimiters();
+
+    private static final long EXPIRE_AFTER_ACCESS_MINUTES = 10;
+
+    public enum Scope
+    {
+        IP, ROLE, TABLE;
+
+        public String toString()
+        {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * The bucket of a key, and the number of requests it permitted and rejected.
+     */
+    public static class Limiter
+    {
+        private final RateLimiter rateLimiter;
+        private final LongAdder permitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        private Limiter(int requestsPerSecond)
+        {
+            this.rateLimiter = RateLimiter.create(requestsPerSecond);
+        }
+
+        private boolean tryAcquire()
+        {
+            if (rateLimiter.tryAcquire())
+            {
+                permitted.increment();
+                return true;
+            }
+            rejected.increment();
+            return false;
+        }
+
+        public double rate()
+        {
+            return rateLimiter.getRate();
+        }
+
+        public long permitted()
+        {
+            return permitted.sum();
+        }
+
+        public long rejected()
+        {
+            return rejected.sum();
+        }
+    }
+
+    private final Map<Scope, Cache<String, Limiter>> limiters = new EnumMap<>(Scope.class);
+
+    @VisibleForTesting
+    RequestRateLimiters()
+    {
+        for (Scope scope : Scope.values())
+            limiters.put(scope, Caffeine.newBuilder().expireAfterAccess(EXPIRE_AFTER_ACCESS_MINUTES, TimeUnit.MINUTES).build());
+    }
+
+    private static int rate(Scope scope)
+    {
+        switch (scope)
+        {
+            case IP: return DatabaseDescriptor.getNativeTransportRequestsPerSecPerIp();
+            case ROLE: return DatabaseDescriptor.getNativeTransportRequestsPerSecPerRole();
+            case TABLE: return DatabaseDescriptor.getNativeTransportRequestsPerSecPerTable();
+            default: throw new AssertionError(scope);
+        }
+    }
+
+    /**
+     * Sets the rate of a scope, including the one of its existing buckets.
+     */
+    public void setRate(Scope scope, int requestsPerSecond)
+    {
+        switch (scope)
+        {
+            case IP: DatabaseDescriptor.setNativeTransportRequestsPerSecPerIp(requestsPerSecond); break;
+            case ROLE: DatabaseDescriptor.setNativeTransportRequestsPerSecPerRole(requestsPerSecond); break;
+            case TABLE: DatabaseDescriptor.setNativeTransportRequestsPerSecPerTable(requestsPerSecond); break;
+        }
+
+        Cache<String, Limiter> cache = limiters.get(scope);
+        if (requestsPerSecond == 0)
+            cache.invalidateAll();
+        else
+            cache.asMap().values().forEach(limiter -> limiter.rateLimiter.setRate(requestsPerSecond));
+    }
+
+    /**
+     * Takes a token from the buckets of the address, role and tables of the request.
+     *
+     * Note: this method is called on the netty event loop, so it does not block.
+     *
+     * @return the scope whose limit the request is over, or {@code null} if the request is permitted
+     */
+    public Scope tryAcquire(Message.Request request)
+    {
+        int perIp = rate(Scope.IP);
+        int perRole = rate(Scope.ROLE);
+        int perTable = rate(Scope.TABLE);
+        if ((perIp == 0 && perRole == 0 && perTable == 0) || !isLimited(request.type))
+            return null;
+
+        ClientState clientState = ((ServerConnection) request.connection()).getClientState();
+        InetSocketAddress address = clientState.getRemoteAddress();
+        if (perIp > 0 && address != null && !tryAcquire(Scope.IP, address.getAddress().getHostAddress(), perIp))
+            return Scope.IP;
+
+        AuthenticatedUser user = clientState.getUser();
+        if (perRole > 0 && user != null && !user.isAnonymous() && !tryAcquire(Scope.ROLE, user.getName(), perRole))
+            return Scope.ROLE;
+
+        if (perTable > 0)
+        {
+            for (String table : tables(request))
+            {
+                if (!tryAcquire(Scope.TABLE, table, perTable))
+                    return Scope.TABLE;
+            }
+        }
+        return null;
+    }
+
+    private boolean tryAcquire(Scope scope, String key, int requestsPerSecond)
+    {
+        return limiters.get(scope).get(key, k -> new Limiter(requestsPerSecond)).tryAcquire();
+    }
+
+    private static boolean isLimited(Message.Type type)
+    {
+        return type == Message.Type.QUERY || type == Message.Type.EXECUTE || type == Message.Type.BATCH;
+    }
+
+    /**
+     * @return the tables of the prepared statements of the request, as {@code keyspace.table}
+     */
+    private static List<String> tables(Message.Request request)
+    {
+        QueryHandler handler = ClientState.getCQLQueryHandler();
+        if (request instanceof ExecuteMessage)
+        {
+            String table = table(handler.getPrepared(((ExecuteMessage) request).statementId));
+            return table == null ? Collections.emptyList() : Collections.singletonList(table);
+        }
+
+        if (request instanceof BatchMessage)
+        {
+            List<String> tables = new ArrayList<>();
+            for (Object queryOrId : ((BatchMessage) request).queryOrIdList)
+            {
+                if (!(queryOrId instanceof MD5Digest))
+                    continue;
+                String table = table(handler.getPrepared((MD5Digest) queryOrId));
+                if (table != null && !tables.contains(table))
+                    tables.add(table);
+            }
+            return tables;
+        }
+
+        return Collections.emptyList();
+    }
+
+    private static String table(QueryHandler.Prepared prepared)
+    {
+        // an unknown statement fails once executed
+        if (prepared == null)
+            return null;
+        AuditLogContext context = prepared.statement.getAuditLogContext();
+        return context.keyspace == null || context.scope == null ? null : context.keyspace + '.' + context.scope;
+    }
+
+    /**
+     * Iterates over the buckets in use, with their scope and key.
+     */
+    public void forEach(BiConsumer<Scope, Map.Entry<String, Limiter>> consumer)
+    {
+        limiters.forEach((scope, cache) -> cache.asMap().entrySet().forEach(entry -> consumer.accept(scope, entry)));
+    }
+
+    @VisibleForTesting
+    public void clear()
+    {
+        limiters.values().forEach(Cache::invalidateAll);
+    }
+}
@@ -462,6 +462,7 @@ public class Server implements CassandraDaemon.Server
             pipeline.addLast("messageEncoder", messageEncoder);
 
             pipeline.addLast("executor", new Message.Dispatcher(DatabaseDescriptor.useNativeTransportLegacyFlusher(),
+                                                                DatabaseDescriptor.useNativeTransportAdaptiveFlusher(),
                                                                 EndpointPayloadTracker.get(((InetSocketAddress) channel.remoteAddress()).getAddress())));
 
             // The exceptionHandler will take care of handling exceptionCaught(...) events while still running
@@ -46,6 +46,11 @@ public abstract class ResultMessage extends Message.Response
         {
             return 4 + msg.kind.subcodec.encodedSize(msg, version);
         }
+
+        public ByteBuf encodedTail(ResultMessage msg, ProtocolVersion version)
+        {
+            return msg.kind.subcodec.encodedTail(msg, version);
+        }
     };
 
     public enum Kind
@@ -191,6 +196,13 @@ public abstract class ResultMessage extends Message.Response
                 Rows rowMsg = (Rows)msg;
                 return ResultSet.codec.encodedSize(rowMsg.result, version);
             }
+
+            public ByteBuf encodedTail(ResultMessage msg, ProtocolVersion version)
+            {
+                assert msg instanceof Rows;
+                Rows rowMsg = (Rows)msg;
+                return ResultSet.codec.encodedRows(rowMsg.result);
+            }
         };
 
         public final ResultSet result;
@@ -33,8 +33,6 @@ import org.slf4j.LoggerFactory;
 
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.dht.IPartitioner;
-import org.apache.cassandra.dht.Murmur3Partitioner;
-import org.apache.cassandra.dht.RandomPartitioner;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.exceptions.ConfigurationException;
@@ -75,6 +73,8 @@ public class MerkleTree
 
     private static final int HASH_SIZE = 32; // 2xMM3_128 = 32 bytes.
     private static final byte[] EMPTY_HASH = new byte[HASH_SIZE];
+    // the token size assumed to estimate the off-heap size of trees for partitioners without a maximum token size
+    private static final int ESTIMATED_VARIABLE_TOKEN_SIZE = 16;
 
     /*
      * Thread-local byte array, large enough to host 32B of digest or MM3/Random partitoners' tokens
@@ -98,6 +98,11 @@ public class MerkleTree
     private long size;
     private Node root;
 
+    // whether to build the tree off-heap, in a writable buffer, rather than on heap
+    private final boolean offHeap;
+    // whether hashes were added to the leaves of a writable off-heap tree since the hashes of its inner nodes were computed
+    private boolean innerHashesStale;
+
     /**
      * @param partitioner The partitioner in use.
      * @param range the range this tree covers
@@ -107,7 +112,21 @@ public class MerkleTree
      */
     public MerkleTree(IPartitioner partitioner, Range<Token> range, int hashdepth, long maxsize)
     {
-        this(new OnHeapLeaf(), partitioner, range, hashdepth, maxsize, 1);
+        this(partitioner, range, hashdepth, maxsize, false);
+    }
+
+    /**
+     * @param partitioner The partitioner in use.
+     * @param range the range this tree covers
+     * @param hashdepth The maximum depth of the tree. 100/(2^depth) is the %
+     *        of the key space covered by each subrange of a fully populated tree.
+     * @param maxsize The maximum number of subranges in the tree.
+     * @param offHeap Whether to build the tree off-heap, by {@link #init()}, or by
+     *        {@link #moveSplitTreeOffHeap()} once split.
+     */
+    public MerkleTree(IPartitioner partitioner, Range<Token> range, int hashdepth, long maxsize, boolean offHeap)
+    {
+        this(new OnHeapLeaf(), partitioner, range, hashdepth, maxsize, 1, offHeap);
     }
 
     /**
@@ -119,6 +138,11 @@ public class MerkleTree
      * @param size The size of the tree. Typically 1, unless deserilized from an existing tree
      */
     private MerkleTree(Node root, IPartitioner partitioner, Range<Token> range, int hashdepth, long maxsize, long size)
+    {
+        this(root, partitioner, range, hashdepth, maxsize, size, false);
+    }
+
+    private MerkleTree(Node root, IPartitioner partitioner, Range<Token> range, int hashdepth, long maxsize, long size, boolean offHeap)
     {
         assert hashdepth < Byte.MAX_VALUE;
 
@@ -128,13 +152,15 @@ public class MerkleTree
         this.hashdepth = hashdepth;
         this.maxsize = maxsize;
         this.size = size;
+        this.offHeap = offHeap;
     }
 
     /**
      * Initializes this tree by splitting it until hashdepth is reached,
      * or until an additional level of splits would violate maxsize.
      *
-     * NB: Replaces all nodes in the tree, and always builds on the heap
+     * NB: Replaces all nodes in the tree, and builds them directly off-heap
+     * if the tree was created to be built off-heap
      */
     public void init()
     {
@@ -142,7 +168,7 @@ public class MerkleTree
         int sizedepth = (int) (Math.log10(maxsize) / Math.log10(2));
         int depth = Math.min(sizedepth, hashdepth);
 
-        root = initHelper(fullRange.left, fullRange.right, 0, depth);
+        root = offHeap ? initOffHeap(depth) : initHelper(fullRange.left, fullRange.right, 0, depth);
         size = (long) Math.pow(2, depth);
     }
 
@@ -161,6 +187,68 @@ public class MerkleTree
         return new OnHeapInner(midpoint, leftChild, rightChild);
     }
 
+    /**
+     * Builds the nodes of the tree in a single writable buffer, without creating them on heap first. The buffer is
+     * sized upfront, from the maximum token size of the partitioner if it has one, or else by computing the
+     * midpoints, and so the tokens, of the tree twice.
+     */
+    private OffHeapNode initOffHeap(int depth)
+    {
+        int bufferSize = partitioner.getMaxTokenSize() > 0
+                       ? offHeapBufferSize((1 << depth) - 1, partitioner, true)
+                       : Ints.checkedCast(initOffHeapSizeHelper(fullRange.left, fullRange.right, 0, depth));
+        ByteBuffer buffer = allocate(bufferSize);
+        int pointer = initOffHeapHelper(buffer, fullRange.left, fullRange.right, 0, depth);
+        innerHashesStale = false;
+        return fromPointer(pointer, buffer, partitioner, true);
+    }
+
+    private long initOffHeapSizeHelper(Token left, Token right, int depth, int max)
+    {
+        if (depth == max)
+            return OffHeapLeaf.offHeapSize(true);
+        Token midpoint = partitioner.midpoint(left, right);
+
+        if (midpoint.equals(left) || midpoint.equals(right))
+            return OffHeapLeaf.offHeapSize(true);
+
+        return OffHeapInner.offHeapSize(partitioner.getTokenFactory().byteSize(midpoint))
+             + initOffHeapSizeHelper(left, midpoint, depth + 1, max)
+             + initOffHeapSizeHelper(midpoint, right, depth + 1, max);
+    }
+
+    private int initOffHeapHelper(ByteBuffer buffer, Token left, Token right, int depth, int max)
+    {
+        if (depth == max)
+            // we've reached the leaves
+            return OffHeapLeaf.allocate(buffer);
+        Token midpoint = partitioner.midpoint(left, right);
+
+        if (midpoint.equals(left) || midpoint.equals(right))
+            return OffHeapLeaf.allocate(buffer);
+
+        // the buffer is zeroed, so the hashes of the new nodes are empty until hashes are added to the leaves
+        int offset = OffHeapInner.allocate(buffer, midpoint, partitioner);
+        int leftPointer = initOffHeapHelper(buffer, left, midpoint, depth + 1, max);
+        int rightPointer = initOffHeapHelper(buffer, midpoint, right, depth + 1, max);
+        buffer.putInt(offset + OffHeapInner.LEFT_CHILD_POINTER_OFFSET, leftPointer);
+        buffer.putInt(offset + OffHeapInner.RIGHT_CHILD_POINTER_OFFSET, rightPointer);
+        return offset;
+    }
+
+    /**
+     * Moves a tree created to be built off-heap, but {@link #split} on heap, to a writable off-heap buffer, before
+     * any hash is added to it. Does nothing if the tree is not to be built off-heap, or is already off-heap.
+     */
+    void moveSplitTreeOffHeap()
+    {
+        if (!offHeap || !(root instanceof OnHeapNode))
+            return;
+
+        root = moveOffHeap((OnHeapNode) root, partitioner, true);
+        innerHashesStale = false;
+    }
+
     public void release()
     {
         if (root instanceof OffHeapNode)
@@ -547,6 +635,8 @@ public class MerkleTree
         {
             assert tree != null : "Not intended for modification!";
             node.hash(hash);
+            if (node instanceof OffHeapNode)
+                tree.innerHashesStale = true;
         }
 
         /**
@@ -561,6 +651,13 @@ public class MerkleTree
         {
             assert tree != null : "Not intended for modification!";
 
+            if (node instanceof OffHeapLeaf)
+            {
+                ((OffHeapLeaf) node).addHash(hash, partitionSize);
+                tree.innerHashesStale = true;
+                return;
+            }
+
             assert node instanceof OnHeapLeaf;
             ((OnHeapLeaf) node).addHash(hash, partitionSize);
         }
@@ -721,23 +818,8 @@ public class MerkleTree
         return new MerkleTree(root, partitioner, fullRange, hashDepth, maxSize, innerNodeCount);
     }
 
-    private static boolean shouldUseOffHeapTrees(IPartitioner partitioner, boolean offHeapRequested)
-    {
-        boolean offHeapSupported = partitioner instanceof Murmur3Partitioner || partitioner instanceof RandomPartitioner;
-
-        if (offHeapRequested && !offHeapSupported && !warnedOnce)
-        {
-            logger.warn("Configuration requests off-heap merkle trees, but partitioner does not support it. Ignoring.");
-            warnedOnce = true;
-        }
-
-        return offHeapRequested && offHeapSupported;
-    }
-    private static boolean warnedOnce;
-
-    private static ByteBuffer allocate(int innerNodeCount, IPartitioner partitioner)
+    private static ByteBuffer allocate(int size)
     {
-        int size = offHeapBufferSize(innerNodeCount, partitioner);
         logger.debug("Allocating direct buffer of size {} for an off-heap merkle tree", size);
         ByteBuffer buffer = ByteBuffer.allocateDirect(size);
         if (Ref.DEBUG_ENABLED)
@@ -747,9 +829,14 @@ public class MerkleTree
 
     private static Node deserializeTree(DataInputPlus in, IPartitioner partitioner, int innerNodeCount, boolean offHeapRequested, int version) throws IOException
     {
-        return shouldUseOffHeapTrees(partitioner, offHeapRequested)
-             ? deserializeOffHeap(in, partitioner, innerNodeCount, version)
-             : OnHeapNode.deserialize(in, partitioner, version);
+        if (!offHeapRequested)
+            return OnHeapNode.deserialize(in, partitioner, version);
+
+        if (partitioner.getMaxTokenSize() > 0)
+            return deserializeOffHeap(in, partitioner, innerNodeCount, version);
+
+        // the size of the tokens, and so of the buffer, is only known once the tree is deserialized
+        return moveOffHeap(OnHeapNode.deserialize(in, partitioner, version), partitioner, false);
     }
 
     /*
@@ -759,7 +846,7 @@ public class MerkleTree
      */
     MerkleTree tryMoveOffHeap() throws IOException
     {
-        return root instanceof OnHeapNode && shouldUseOffHeapTrees(partitioner, DatabaseDescriptor.useOffheapMerkleTrees())
+        return root instanceof OnHeapNode && DatabaseDescriptor.useOffheapMerkleTrees()
              ? moveOffHeap()
              : this;
     }
@@ -768,28 +855,38 @@ public class MerkleTree
     MerkleTree moveOffHeap() throws IOException
     {
         assert root instanceof OnHeapNode;
-        root.fillInnerHashes(); // ensure on-heap trees' inner node hashes have been computed
-        ByteBuffer buffer = allocate(Ints.checkedCast(size), partitioner);
-        int pointer = ((OnHeapNode) root).serializeOffHeap(buffer, partitioner);
-        OffHeapNode newRoot = fromPointer(pointer, buffer, partitioner);
+        OffHeapNode newRoot = moveOffHeap((OnHeapNode) root, partitioner, false);
         return new MerkleTree(newRoot, partitioner, fullRange, hashdepth, maxsize, size);
     }
 
+    private static OffHeapNode moveOffHeap(OnHeapNode root, IPartitioner partitioner, boolean writable)
+    {
+        root.fillInnerHashes(); // ensure on-heap trees' inner node hashes have been computed
+        ByteBuffer buffer = allocate(Ints.checkedCast(root.offHeapSize(partitioner, writable)));
+        int pointer = root.serializeOffHeap(buffer, partitioner, writable);
+        return fromPointer(pointer, buffer, partitioner, writable);
+    }
+
     private static OffHeapNode deserializeOffHeap(DataInputPlus in, IPartitioner partitioner, int innerNodeCount, int version) throws IOException
     {
-        ByteBuffer buffer = allocate(innerNodeCount, partitioner);
+        ByteBuffer buffer = allocate(offHeapBufferSize(innerNodeCount, partitioner, false));
         int pointer = OffHeapNode.deserialize(in, buffer, partitioner, version);
-        return fromPointer(pointer, buffer, partitioner);
+        return fromPointer(pointer, buffer, partitioner, false);
     }
 
-    private static OffHeapNode fromPointer(int pointer, ByteBuffer buffer, IPartitioner partitioner)
+    private static OffHeapNode fromPointer(int pointer, ByteBuffer buffer, IPartitioner partitioner, boolean writable)
     {
-        return pointer >= 0 ? new OffHeapInner(buffer, pointer, partitioner) : new OffHeapLeaf(buffer, ~pointer);
+        return pointer >= 0 ? new OffHeapInner(buffer, pointer, partitioner, writable) : new OffHeapLeaf(buffer, ~pointer, writable);
     }
 
-    private static int offHeapBufferSize(int innerNodeCount, IPartitioner partitioner)
+    /**
+     * @return the size of the buffer of a tree with the given number of inner nodes, for a partitioner with a
+     * maximum token size
+     */
+    private static int offHeapBufferSize(int innerNodeCount, IPartitioner partitioner, boolean writable)
     {
-        return innerNodeCount * OffHeapInner.maxOffHeapSize(partitioner) + (innerNodeCount + 1) * OffHeapLeaf.maxOffHeapSize();
+        return Ints.checkedCast((long) innerNodeCount * OffHeapInner.maxOffHeapSize(partitioner)
+                                + (long) (innerNodeCount + 1) * OffHeapLeaf.offHeapSize(writable));
     }
 
     interface Node
@@ -910,7 +1007,16 @@ public class MerkleTree
             }
         }
 
-        abstract int serializeOffHeap(ByteBuffer buffer, IPartitioner p) throws IOException;
+        /**
+         * @param writable whether to write the node as part of a tree built off-heap, which leaves keep their
+         *                 size and partition count, and can be added hashes to
+         */
+        abstract int serializeOffHeap(ByteBuffer buffer, IPartitioner p, boolean writable);
+
+        /**
+         * @return the size of this node and of the nodes below it once moved off-heap
+         */
+        abstract long offHeapSize(IPartitioner p, boolean writable);
     }
 
     static abstract class OffHeapNode implements Node
@@ -1089,9 +1195,9 @@ public class MerkleTree
             }
         }
 
-        int serializeOffHeap(ByteBuffer buffer, IPartitioner p)
+        int serializeOffHeap(ByteBuffer buffer, IPartitioner p, boolean writable)
         {
-            if (buffer.remaining() < OffHeapLeaf.maxOffHeapSize())
+            if (buffer.remaining() < OffHeapLeaf.offHeapSize(writable))
                 throw new IllegalStateException("Insufficient remaining bytes to deserialize a Leaf node off-heap");
 
             if (hash.length != HASH_SIZE)
@@ -1099,9 +1205,19 @@ public class MerkleTree
 
             final int position = buffer.position();
             buffer.put(hash);
+            if (writable)
+            {
+                buffer.putLong(sizeOfRange);
+                buffer.putLong(partitionsInRange);
+            }
             return ~position;
         }
 
+        long offHeapSize(IPartitioner p, boolean writable)
+        {
+            return OffHeapLeaf.offHeapSize(writable);
+        }
+
         @Override
         public String toString()
         {
@@ -1111,11 +1227,20 @@ public class MerkleTree
 
     static class OffHeapLeaf extends OffHeapNode implements Leaf
     {
-        static final int HASH_BYTES_OFFSET = 0;
+        /**
+         * The leaves of a writable tree, built off-heap, follow their hash with the size (long) and the number of
+         * partitions (long) of their range, as on-heap leaves keep them.
+         */
+        static final int HASH_BYTES_OFFSET           = 0;
+        static final int SIZE_OF_RANGE_OFFSET        = HASH_SIZE;
+        static final int PARTITIONS_IN_RANGE_OFFSET  = HASH_SIZE + 8;
+
+        private final boolean writable;
 
-        OffHeapLeaf(ByteBuffer buffer, int offset)
+        OffHeapLeaf(ByteBuffer buffer, int offset, boolean writable)
         {
             super(buffer, offset);
+            this.writable = writable;
         }
 
         public int hashBytesOffset()
@@ -1123,6 +1248,58 @@ public class MerkleTree
             return offset + HASH_BYTES_OFFSET;
         }
 
+        @Override
+        public void hash(byte[] hash)
+        {
+            if (!writable)
+                throw new UnsupportedOperationException();
+
+            for (int i = 0; i < HASH_SIZE; i++)
+                buffer.put(hashBytesOffset() + i, hash[i]);
+        }
+
+        /**
+         * Mixes the given value into our hash, in the buffer of a writable tree.
+         */
+        void addHash(byte[] partitionHash, long partitionSize)
+        {
+            assert writable : "Not intended for modification!";
+
+            int hashOffset = hashBytesOffset();
+            for (int i = 0; i < HASH_SIZE; i++)
+                buffer.put(hashOffset + i, (byte) (buffer.get(hashOffset + i) ^ partitionHash[i]));
+
+            buffer.putLong(offset + SIZE_OF_RANGE_OFFSET, buffer.getLong(offset + SIZE_OF_RANGE_OFFSET) + partitionSize);
+            buffer.putLong(offset + PARTITIONS_IN_RANGE_OFFSET, buffer.getLong(offset + PARTITIONS_IN_RANGE_OFFSET) + 1);
+        }
+
+        @Override
+        public long sizeOfRange()
+        {
+            return writable ? buffer.getLong(offset + SIZE_OF_RANGE_OFFSET) : 0;
+        }
+
+        @Override
+        public long partitionsInRange()
+        {
+            return writable ? buffer.getLong(offset + PARTITIONS_IN_RANGE_OFFSET) : 0;
+        }
+
+        /**
+         * Allocates an empty writable leaf in the zeroed buffer of a tree being built.
+         *
+         * @return the pointer to the leaf
+         */
+        static int allocate(ByteBuffer buffer)
+        {
+            if (buffer.remaining() < offHeapSize(true))
+                throw new IllegalStateException("Insufficient remaining bytes to allocate a Leaf node off-heap");
+
+            final int position = buffer.position();
+            buffer.position(position + offHeapSize(true));
+            return ~position;
+        }
+
         static int deserializeWithoutIdent(DataInput in, ByteBuffer buffer) throws IOException
         {
             if (buffer.remaining() < maxOffHeapSize())
@@ -1153,6 +1330,11 @@ public class MerkleTree
             return HASH_SIZE;
         }
 
+        static int offHeapSize(boolean writable)
+        {
+            return writable ? PARTITIONS_IN_RANGE_OFFSET + 8 : maxOffHeapSize();
+        }
+
         @Override
         public String toString()
         {
@@ -1308,36 +1490,27 @@ public class MerkleTree
             return new OnHeapInner(token, left, right);
         }
 
-        int serializeOffHeap(ByteBuffer buffer, IPartitioner partitioner) throws IOException
+        int serializeOffHeap(ByteBuffer buffer, IPartitioner partitioner, boolean writable)
         {
-            if (buffer.remaining() < OffHeapInner.maxOffHeapSize(partitioner))
-                throw new IllegalStateException("Insufficient remaining bytes to deserialize Inner node off-heap");
-
-            final int offset = buffer.position();
+            final int offset = OffHeapInner.allocate(buffer, token, partitioner);
 
-            int tokenSize = partitioner.getTokenFactory().byteSize(token);
-            buffer.putShort(offset + OffHeapInner.TOKEN_LENGTH_OFFSET, Shorts.checkedCast(tokenSize));
-            buffer.position(offset + OffHeapInner.TOKEN_BYTES_OFFSET);
-            partitioner.getTokenFactory().serialize(token, buffer);
-
-            int  leftPointer =  left.serializeOffHeap(buffer, partitioner);
-            int rightPointer = right.serializeOffHeap(buffer, partitioner);
+            int  leftPointer =  left.serializeOffHeap(buffer, partitioner, writable);
+            int rightPointer = right.serializeOffHeap(buffer, partitioner, writable);
 
             buffer.putInt(offset + OffHeapInner.LEFT_CHILD_POINTER_OFFSET,  leftPointer);
             buffer.putInt(offset + OffHeapInner.RIGHT_CHILD_POINTER_OFFSET, rightPointer);
-
-            int  leftHashOffset = OffHeapInner.hashBytesOffset(leftPointer);
-            int rightHashOffset = OffHeapInner.hashBytesOffset(rightPointer);
-
-            for (int i = 0; i < HASH_SIZE; i += 8)
-            {
-                buffer.putLong(offset + OffHeapInner.HASH_BYTES_OFFSET + i,
-                               buffer.getLong(leftHashOffset  + i) ^ buffer.getLong(rightHashOffset + i));
-            }
+            OffHeapInner.xorChildHashes(buffer, offset, leftPointer, rightPointer);
 
             return offset;
         }
 
+        long offHeapSize(IPartitioner partitioner, boolean writable)
+        {
+            return OffHeapInner.offHeapSize(partitioner.getTokenFactory().byteSize(token))
+                 + left.offHeapSize(partitioner, writable)
+                 + right.offHeapSize(partitioner, writable);
+        }
+
         @Override
         public String toString()
         {
@@ -1372,11 +1545,13 @@ public class MerkleTree
         static final int TOKEN_BYTES_OFFSET         = TOKEN_LENGTH_OFFSET + 2;
 
         private final IPartitioner partitioner;
+        private final boolean writable;
 
-        OffHeapInner(ByteBuffer buffer, int offset, IPartitioner partitioner)
+        OffHeapInner(ByteBuffer buffer, int offset, IPartitioner partitioner, boolean writable)
         {
             super(buffer, offset);
             this.partitioner = partitioner;
+            this.writable = writable;
         }
 
         public Token token()
@@ -1398,7 +1573,7 @@ public class MerkleTree
         private Node child(int childOffset)
         {
             int pointer = buffer.getInt(offset + childOffset);
-            return pointer >= 0 ? new OffHeapInner(buffer, pointer, partitioner) : new OffHeapLeaf(buffer, ~pointer);
+            return fromPointer(pointer, buffer, partitioner, writable);
         }
 
         public int hashBytesOffset()
@@ -1426,7 +1601,36 @@ public class MerkleTree
 
             buffer.putInt(offset + OffHeapInner.LEFT_CHILD_POINTER_OFFSET,  leftPointer);
             buffer.putInt(offset + OffHeapInner.RIGHT_CHILD_POINTER_OFFSET, rightPointer);
+            xorChildHashes(buffer, offset, leftPointer, rightPointer);
+
+            return offset;
+        }
+
+        /**
+         * Allocates an inner node with the given token, leaving the buffer positioned at the end of the node, where
+         * its children follow. The pointers to the children, and the hash, remain to be written.
+         *
+         * @return the offset of the node
+         */
+        static int allocate(ByteBuffer buffer, Token token, IPartitioner partitioner)
+        {
+            ByteBuffer tokenBytes = partitioner.getTokenFactory().toByteArray(token);
+            int tokenSize = tokenBytes.remaining();
+            if (buffer.remaining() < offHeapSize(tokenSize))
+                throw new IllegalStateException("Insufficient remaining bytes to allocate Inner node off-heap");
+
+            final int offset = buffer.position();
+            buffer.putShort(offset + OffHeapInner.TOKEN_LENGTH_OFFSET, Shorts.checkedCast(tokenSize));
+            buffer.position(offset + OffHeapInner.TOKEN_BYTES_OFFSET);
+            buffer.put(tokenBytes);
+            return offset;
+        }
 
+        /**
+         * Sets the hash of an inner node to the XOR of the hashes of its children.
+         */
+        static void xorChildHashes(ByteBuffer buffer, int offset, int leftPointer, int rightPointer)
+        {
             int leftHashOffset  = hashBytesOffset(leftPointer);
             int rightHashOffset = hashBytesOffset(rightPointer);
 
@@ -1435,16 +1639,35 @@ public class MerkleTree
                 buffer.putLong(offset + OffHeapInner.HASH_BYTES_OFFSET + i,
                                buffer.getLong(leftHashOffset  + i) ^ buffer.getLong(rightHashOffset + i));
             }
+        }
 
-            return offset;
+        /**
+         * Computes again the hashes of the inner nodes below the given pointer, in a writable tree whose leaves
+         * were added hashes since.
+         */
+        static void fillInnerHashes(ByteBuffer buffer, int pointer)
+        {
+            if (pointer < 0)
+                return;
+
+            int leftPointer  = buffer.getInt(pointer + LEFT_CHILD_POINTER_OFFSET);
+            int rightPointer = buffer.getInt(pointer + RIGHT_CHILD_POINTER_OFFSET);
+            fillInnerHashes(buffer, leftPointer);
+            fillInnerHashes(buffer, rightPointer);
+            xorChildHashes(buffer, pointer, leftPointer, rightPointer);
         }
 
         static int maxOffHeapSize(IPartitioner partitioner)
+        {
+            return offHeapSize(partitioner.getMaxTokenSize());
+        }
+
+        static int offHeapSize(int tokenSize)
         {
             return 4 // left pointer
                  + 4 // right pointer
                  + HASH_SIZE
-                 + 2 + partitioner.getMaxTokenSize();
+                 + 2 + tokenSize;
         }
 
         static int hashBytesOffset(int pointer)
@@ -1531,6 +1754,21 @@ public class MerkleTree
         return Math.max(1, (int) Math.floor(Math.log(adjustedBytes) / Math.log(2)));
     }
 
+    /**
+     * @return the estimated size of the buffer of a tree of the given depth built off-heap
+     */
+    public static long estimatedOffHeapBytesForDepth(IPartitioner partitioner, int depth)
+    {
+        long leaves = 1L << depth;
+        return leaves * OffHeapLeaf.offHeapSize(true) + (leaves - 1) * OffHeapInner.offHeapSize(estimatedTokenSize(partitioner));
+    }
+
+    private static int estimatedTokenSize(IPartitioner partitioner)
+    {
+        // the midpoints of partitioners with variable token sizes are usually somewhat longer than their keys
+        return partitioner.getMaxTokenSize() > 0 ? partitioner.getMaxTokenSize() : ESTIMATED_VARIABLE_TOKEN_SIZE;
+    }
+
     /*
      * Test-only methods.
      */
@@ -1575,6 +1813,7 @@ public class MerkleTree
     @VisibleForTesting
     byte[] hash(Range<Token> range)
     {
+        fillInnerHashes();
         return find(range).hash();
     }
 
@@ -1586,6 +1825,7 @@ public class MerkleTree
     @VisibleForTesting
     <E extends Exception> boolean ifHashesRange(Range<Token> range, Consumer<E> consumer) throws E
     {
+        fillInnerHashes();
         try
         {
             Node node = findHelper(root, new Range<>(fullRange.left, fullRange.right), range);
@@ -1648,6 +1888,13 @@ public class MerkleTree
 
     private void fillInnerHashes()
     {
+        if (innerHashesStale)
+        {
+            // the hashes of the inner nodes of a writable off-heap tree are computed at once, when first needed
+            if (root instanceof OffHeapInner)
+                OffHeapInner.fillInnerHashes(((OffHeapInner) root).buffer(), ((OffHeapInner) root).offset);
+            innerHashesStale = false;
+        }
         root.fillInnerHashes();
     }
 }
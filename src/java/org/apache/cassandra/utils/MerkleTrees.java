@@ -110,6 +110,22 @@ public class MerkleTrees implements Iterable<Map.Entry<Range<Token>, MerkleTree>
         return addMerkleTree(maxsize, MerkleTree.RECOMMENDED_DEPTH, range);
     }
 
+    /**
+     * Add a MerkleTree with the defined size and range, to be built off-heap or on heap.
+     *
+     * @param maxsize
+     * @param range
+     * @param offHeap
+     * @return The created merkle tree.
+     */
+    public MerkleTree addMerkleTree(int maxsize, Range<Token> range, boolean offHeap)
+    {
+        MerkleTree tree = new MerkleTree(partitioner, range, MerkleTree.RECOMMENDED_DEPTH, maxsize, offHeap);
+        addTree(tree);
+
+        return tree;
+    }
+
     @VisibleForTesting
     public MerkleTree addMerkleTree(int maxsize, byte hashdepth, Range<Token> range)
     {
@@ -172,6 +188,14 @@ public class MerkleTrees implements Iterable<Map.Entry<Range<Token>, MerkleTree>
         return getMerkleTree(t).split(t);
     }
 
+    /**
+     * Move the MerkleTree's to be built off-heap that were split on heap off-heap, before hashing them.
+     */
+    public void moveSplitTreesOffHeap()
+    {
+        merkleTrees.values().forEach(MerkleTree::moveSplitTreeOffHeap);
+    }
+
     /**
      * Invalidate the MerkleTree responsible for the given token.
      *
@@ -60,7 +60,7 @@ public final class NativeLibrary
     private static final int F_GETFL   = 3;  /* get file status flags */
     private static final int F_SETFL   = 4;  /* set file status flags */
     private static final int F_NOCACHE = 48; /* Mac OS X specific flag, turns cache on/off */
-    private static final int O_DIRECT  = 040000; /* fcntl.h */
+    private static final int O_DIRECT; /* fcntl.h, depends on the architecture */
     private static final int O_RDONLY  = 00000000; /* fcntl.h */
 
     private static final int POSIX_FADV_NORMAL     = 0; /* fadvise.h */
@@ -124,6 +124,18 @@ public final class NativeLibrary
             MCL_CURRENT = 1;
             MCL_FUTURE = 2;
         }
+
+        String arch = System.getProperty("os.arch").toLowerCase();
+        if (arch.contains("aarch64") || arch.startsWith("arm"))
+            O_DIRECT = 0200000;
+        else if (arch.contains("ppc"))
+            O_DIRECT = 0400000;
+        else if (arch.startsWith("mips"))
+            O_DIRECT = 0100000;
+        else if (arch.startsWith("sparc"))
+            O_DIRECT = 04000000;
+        else
+            O_DIRECT = 040000;
     }
 
     private NativeLibrary() {}
@@ -296,6 +308,28 @@ public final class NativeLibrary
         return result;
     }
 
+    /**
+     * Switches the given file descriptor to direct I/O, so that its writes bypass the page cache. The buffers, file
+     * offsets and lengths of its reads and writes then have to be aligned on the logical block size of the device.
+     *
+     * F_SETFL silently ignores the flags it does not know, so the flags are read back to check that direct I/O is
+     * actually enabled.
+     *
+     * @return {@code true} if direct I/O has been enabled, {@code false} if it is not supported
+     */
+    public static boolean tryEnableDirectIO(int fd)
+    {
+        if (fd < 0 || osType != LINUX)
+            return false;
+
+        int flags = tryFcntl(fd, F_GETFL, 0);
+        if (flags < 0 || tryFcntl(fd, F_SETFL, flags | O_DIRECT) < 0)
+            return false;
+
+        flags = tryFcntl(fd, F_GETFL, 0);
+        return flags >= 0 && (flags & O_DIRECT) != 0;
+    }
+
     public static int tryOpenDirectory(String path)
     {
         int fd = -1;
@@ -416,4 +450,26 @@ public final class NativeLibrary
 
         return -1;
     }
+
+    /**
+     * @return the CPU the calling thread is running on, or -1 if we failed to get it
+     */
+    public static int getCurrentCpu()
+    {
+        try
+        {
+            return wrappedLibrary.callSchedGetcpu();
+        }
+        catch (UnsatisfiedLinkError e)
+        {
+            // if JNA is unavailable just skipping
+        }
+        catch (RuntimeException e)
+        {
+            if (!(e instanceof LastErrorException))
+                throw e;
+        }
+
+        return -1;
+    }
 }
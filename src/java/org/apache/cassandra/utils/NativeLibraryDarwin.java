@@ -124,6 +124,11 @@ public class NativeLibraryDarwin implements NativeLibraryWrapper
         return getpid();
     }
 
+    public int callSchedGetcpu() throws UnsatisfiedLinkError, RuntimeException
+    {
+        throw new UnsatisfiedLinkError();
+    }
+
     public boolean isAvailable()
     {
         return available;
@@ -78,6 +78,7 @@ public class NativeLibraryLinux implements NativeLibraryWrapper
     private static native int close(int fd) throws LastErrorException;
     private static native Pointer strerror(int errnum) throws LastErrorException;
     private static native long getpid() throws LastErrorException;
+    private static native int sched_getcpu() throws LastErrorException;
 
     public int callMlockall(int flags) throws UnsatisfiedLinkError, RuntimeException
     {
@@ -124,6 +125,11 @@ public class NativeLibraryLinux implements NativeLibraryWrapper
         return getpid();
     }
 
+    public int callSchedGetcpu() throws UnsatisfiedLinkError, RuntimeException
+    {
+        return sched_getcpu();
+    }
+
     public boolean isAvailable()
     {
         return available;
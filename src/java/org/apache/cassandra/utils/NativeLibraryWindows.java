@@ -119,6 +119,11 @@ public class NativeLibraryWindows implements NativeLibraryWrapper
         return GetCurrentProcessId();
     }
 
+    public int callSchedGetcpu() throws UnsatisfiedLinkError, RuntimeException
+    {
+        throw new UnsatisfiedLinkError();
+    }
+
     public boolean isAvailable()
     {
         return available;
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils.bytecomparable;
+
+/**
+ * A value that can be translated to a {@link ByteSource} whose unsigned lexicographic order is the same as the
+ * order of the values themselves. Encodings of distinct values are never prefixes of one another.
+ */
+public interface ByteComparable
+{
+    ByteSource asComparableBytes();
+
+    static ByteComparable fixedLength(byte[] bytes)
+    {
+        return () -> ByteSource.fixedLength(bytes);
+    }
+
+    static int compare(ByteComparable left, ByteComparable right)
+    {
+        return ByteSource.compare(left.asComparableBytes(), right.asComparableBytes());
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils.bytecomparable;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A stream of unsigned bytes whose lexicographic order matches the order of the value it was produced from.
+ * <p>
+ * Sources are consumed one byte at a time through {@link #next()}, which returns {@link #END_OF_STREAM} once the
+ * source is exhausted. Variable-length components are escaped so that no encoding is a prefix of another:
+ * a 0x00 byte in the input is written as {@code ESCAPE ESCAPED_0}, and the end of the component is written as
+ * {@code ESCAPE} followed by the separator of the next component (or the terminator), all of which are smaller
+ * than {@code ESCAPED_0}.
+ */
+public interface ByteSource
+{
+    int END_OF_STREAM = -1;
+
+    int ESCAPE = 0x00;
+    int ESCAPED_0 = 0xFF;
+
+    // Separators and terminators used between and after the components of a multi-component source.
+    // The bound markers sort respectively before and after any component that can follow at the same position.
+    int LT_NEXT_COMPONENT = 0x20;
+    int TERMINATOR = 0x38;
+    int NEXT_COMPONENT = 0x40;
+    int GT_NEXT_COMPONENT = 0x60;
+
+    // Separators used in place of NEXT_COMPONENT before null and empty components, which have no content. A null
+    // sorts before any value, and an empty value before any non-empty one, unless its type is reversed.
+    int NEXT_COMPONENT_NULL = 0x3E;
+    int NEXT_COMPONENT_EMPTY = 0x3F;
+    int NEXT_COMPONENT_EMPTY_REVERSED = 0x41;
+
+    ByteSource EMPTY = () -> END_OF_STREAM;
+
+    /**
+     * @return the next byte (0-255) of the source, or {@link #END_OF_STREAM} when the source is exhausted.
+     */
+    int next();
+
+    /**
+     * A variable-length, escaped source for the remaining bytes of the given buffer, compared unsigned.
+     */
+    static ByteSource of(ByteBuffer buf)
+    {
+        return new ReusableEscaped(buf, buf.position(), buf.limit());
+    }
+
+    /**
+     * A variable-length, escaped source for the given byte array, compared unsigned.
+     */
+    static ByteSource of(byte[] bytes)
+    {
+        return of(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * A source of the remaining bytes of the buffer as they are, without escaping. Only suitable for values of a
+     * fixed length, or as the very last component of a source.
+     */
+    static ByteSource fixedLength(ByteBuffer buf)
+    {
+        return new ByteSource()
+        {
+            int pos = buf.position();
+
+            public int next()
+            {
+                return pos < buf.limit() ? buf.get(pos++) & 0xFF : END_OF_STREAM;
+            }
+        };
+    }
+
+    /**
+     * A source of the given bytes as they are, without escaping.
+     */
+    static ByteSource fixedLength(byte[] bytes)
+    {
+        return fixedLength(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * A fixed-length, 8-byte source for a signed long, with the sign bit flipped so that negative values sort first.
+     */
+    static ByteSource of(long value)
+    {
+        return new ByteSource()
+        {
+            int pos = 0;
+
+            public int next()
+            {
+                if (pos >= 8)
+                    return END_OF_STREAM;
+                int b = (int) (value >>> (56 - 8 * pos)) & 0xFF;
+                if (pos++ == 0)
+                    b ^= 0x80;
+                return b;
+            }
+        };
+    }
+
+    /**
+     * A fixed-length, 4-byte source for a signed int, with the sign bit flipped so that negative values sort first.
+     */
+    static ByteSource of(int value)
+    {
+        return new ByteSource()
+        {
+            int pos = 0;
+
+            public int next()
+            {
+                if (pos >= 4)
+                    return END_OF_STREAM;
+                int b = (value >>> (24 - 8 * pos)) & 0xFF;
+                if (pos++ == 0)
+                    b ^= 0x80;
+                return b;
+            }
+        };
+    }
+
+    /**
+     * A source for the remaining bytes of the buffer holding a fixed-length, big-endian, two's complement signed
+     * number, with the sign bit flipped so that negative values sort first.
+     */
+    static ByteSource signedFixedLength(ByteBuffer buf)
+    {
+        return new ByteSource()
+        {
+            int pos = buf.position();
+
+            public int next()
+            {
+                if (pos >= buf.limit())
+                    return END_OF_STREAM;
+                int b = buf.get(pos) & 0xFF;
+                return pos++ == buf.position() ? b ^ 0x80 : b;
+            }
+        };
+    }
+
+    /**
+     * A source for an arbitrary signed {@link BigInteger}. The header encodes the sign and the length of the
+     * minimal two's complement representation (longer negative numbers are smaller, longer positive ones larger),
+     * which makes the encoding prefix-free and lets the remaining bytes be compared unsigned. Lengths that don't fit
+     * in the header byte are written after it, on 4 bytes (inverted for negative numbers).
+     */
+    static ByteSource of(BigInteger value)
+    {
+        byte[] bytes = value.toByteArray();
+        boolean negative = value.signum() < 0;
+        byte[] header;
+        if (bytes.length < 0x7F)
+        {
+            header = new byte[]{ (byte) (negative ? 0x7F - bytes.length : 0x80 + bytes.length) };
+        }
+        else
+        {
+            int length = negative ? ~bytes.length : bytes.length;
+            header = new byte[]{ (byte) (negative ? 0x00 : 0xFF),
+                                 (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length };
+        }
+        return concat(fixedLength(header), fixedLength(bytes));
+    }
+
+    /**
+     * A variable-length, escaped source for a string, ordered like {@link String#compareTo}, i.e. by UTF-16 code
+     * unit. Each character is written as two big-endian bytes.
+     */
+    static ByteSource of(String value)
+    {
+        ByteBuffer buf = ByteBuffer.allocate(value.length() * 2);
+        for (int i = 0; i < value.length(); ++i)
+            buf.putChar(value.charAt(i));
+        buf.flip();
+        return of(buf);
+    }
+
+    static ByteSource oneByte(int b)
+    {
+        assert b >= 0 && b <= 0xFF;
+        return new ByteSource()
+        {
+            boolean consumed = false;
+
+            public int next()
+            {
+                if (consumed)
+                    return END_OF_STREAM;
+                consumed = true;
+                return b;
+            }
+        };
+    }
+
+    /**
+     * The source of all the bytes of the given sources, one after the other.
+     */
+    static ByteSource concat(ByteSource... sources)
+    {
+        return new ByteSource()
+        {
+            int index = 0;
+
+            public int next()
+            {
+                while (index < sources.length)
+                {
+                    int b = sources[index].next();
+                    if (b != END_OF_STREAM)
+                        return b;
+                    ++index;
+                }
+                return END_OF_STREAM;
+            }
+        };
+    }
+
+    /**
+     * A source whose bytes are the complements of those of the given source, and which thus sorts in the reverse
+     * order for prefix-free sources. For escaped components, the continuation of a longer value inverts to a byte
+     * smaller than any separator, so these still sort correctly.
+     */
+    static ByteSource invert(ByteSource source)
+    {
+        return () ->
+        {
+            int b = source.next();
+            return b == END_OF_STREAM ? END_OF_STREAM : b ^ 0xFF;
+        };
+    }
+
+    /**
+     * Combines the given sources into one, writing {@link #NEXT_COMPONENT} before each of them and the given
+     * terminator at the end. A {@code null} source is written as a separator with no content.
+     */
+    static ByteSource withTerminator(int terminator, ByteSource... sources)
+    {
+        return new Multi(sources, terminator);
+    }
+
+    /**
+     * Compares two sources byte by byte. A source that ends first sorts before any longer source it is a prefix of.
+     */
+    static int compare(ByteSource left, ByteSource right)
+    {
+        while (true)
+        {
+            int l = left.next();
+            int r = right.next();
+            if (l != r)
+                return Integer.compare(l, r);
+            if (l == END_OF_STREAM)
+                return 0;
+        }
+    }
+
+    /**
+     * Reads the whole source into a byte array.
+     */
+    static byte[] readBytes(ByteSource source)
+    {
+        byte[] bytes = new byte[16];
+        int length = 0;
+        int b;
+        while ((b = source.next()) != END_OF_STREAM)
+        {
+            if (length == bytes.length)
+                bytes = Arrays.copyOf(bytes, length * 2);
+            bytes[length++] = (byte) b;
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * Escaped variable-length source over a byte range of a buffer.
+     */
+    class ReusableEscaped implements ByteSource
+    {
+        private final ByteBuffer buf;
+        private final int limit;
+        private int pos;
+        private boolean escapedZero = false;
+
+        ReusableEscaped(ByteBuffer buf, int position, int limit)
+        {
+            this.buf = buf;
+            this.pos = position;
+            this.limit = limit;
+        }
+
+        public int next()
+        {
+            if (escapedZero)
+            {
+                escapedZero = false;
+                return ESCAPED_0;
+            }
+
+            if (pos > limit)
+                return END_OF_STREAM;
+
+            if (pos == limit)
+            {
+                ++pos;
+                return ESCAPE;
+            }
+
+            int b = buf.get(pos++) & 0xFF;
+            if (b == ESCAPE)
+                escapedZero = true;
+            return b;
+        }
+    }
+
+    /**
+     * Multi-component source, see {@link #withTerminator}.
+     */
+    class Multi implements ByteSource
+    {
+        private final ByteSource[] sources;
+        private final int terminator;
+        private int index = -1;
+        private ByteSource current = null;
+
+        Multi(ByteSource[] sources, int terminator)
+        {
+            this.sources = sources;
+            this.terminator = terminator;
+        }
+
+        public int next()
+        {
+            if (current != null)
+            {
+                int b = current.next();
+                if (b != END_OF_STREAM)
+                    return b;
+                current = null;
+            }
+
+            if (index >= sources.length)
+                return END_OF_STREAM;
+
+            if (++index == sources.length)
+                return terminator;
+
+            current = sources[index];
+            return NEXT_COMPONENT;
+        }
+    }
+}
@@ -174,6 +174,12 @@ public class BufferPool
     interface Recycler
     {
         void recycle(Chunk chunk);
+
+        /**
+         * Called when the local pool allocating from a chunk releases it whilst some of its buffers are still in use,
+         * so that it can't be recycled until they are all freed.
+         */
+        default void releasePartiallyFree(Chunk chunk) {}
     }
 
     /**
@@ -181,13 +187,28 @@ public class BufferPool
      * the macro-chunks, also page aligned. Macro-chunks are allocated as long as we have not exceeded the
      * memory maximum threshold, MEMORY_USAGE_THRESHOLD and are never released.
      *
+     * The chunks are kept per NUMA node: the chunks of a macro-chunk belong to the node of the thread that allocated
+     * it, as its memory is placed on that node when first touched (unless the JVM interleaves its memory across the
+     * nodes, as bin/cassandra does by default), and they go back to this node when recycled. Threads get the chunks
+     * of their own node first, then allocate a new macro-chunk, then steal the chunks of the other nodes.
+     *
+     * When no chunk is left and the memory threshold is reached, rather than the local pools allocating outside of
+     * the pool, they reuse the free space of the chunks released by other local pools whilst still partially in use,
+     * which otherwise can't be allocated from until all of their buffers are freed.
+     *
      * This class is shared by multiple thread local pools and must be thread-safe.
      */
-    static final class GlobalPool implements Supplier<Chunk>, Recycler
+    static final class GlobalPool implements Supplier<Chunk>
     {
         /** The size of a bigger chunk, 1 MiB, must be a multiple of NORMAL_CHUNK_SIZE */
         static final int MACRO_CHUNK_SIZE = 64 * NORMAL_CHUNK_SIZE;
 
+        /** The free slots a partially free chunk needs to be reused, a quarter of its capacity */
+        static final int MIN_REUSED_FREE_SLOTS = 16;
+
+        /** The partially free chunks to look at before giving up on reusing one */
+        static final int MAX_REUSE_ATTEMPTS = 16;
+
         static
         {
             assert Integer.bitCount(NORMAL_CHUNK_SIZE) == 1; // must be a power of 2
@@ -199,30 +220,118 @@ public class BufferPool
         }
 
         private final Queue<Chunk> macroChunks = new ConcurrentLinkedQueue<>();
-        // TODO (future): it would be preferable to use a CLStack to improve cache occupancy; it would also be preferable to use "CoreLocal" storage
-        private final Queue<Chunk> chunks = new ConcurrentLinkedQueue<>();
         private final AtomicLong memoryUsage = new AtomicLong();
+        private final NumaTopology topology;
+        private final Node[] nodes;
+
+        GlobalPool()
+        {
+            this(NumaTopology.detect());
+        }
+
+        @VisibleForTesting
+        GlobalPool(NumaTopology topology)
+        {
+            this.topology = topology;
+            this.nodes = new Node[topology.nodes()];
+            for (int i = 0; i < nodes.length; i++)
+                nodes[i] = new Node(i);
+        }
+
+        /**
+         * The chunks of a NUMA node
+         */
+        final class Node implements Recycler
+        {
+            private final int id;
+            // TODO (future): it would be preferable to use a CLStack to improve cache occupancy; it would also be preferable to use "CoreLocal" storage
+            private final Queue<Chunk> chunks = new ConcurrentLinkedQueue<>();
+            private final Queue<Chunk> partiallyFreeChunks = new ConcurrentLinkedQueue<>();
+
+            private Node(int id)
+            {
+                this.id = id;
+            }
+
+            public void recycle(Chunk chunk)
+            {
+                Chunk recycleAs = new Chunk(chunk);
+                if (debug != null)
+                    debug.recycleNormal(chunk, recycleAs);
+                chunks.add(recycleAs);
+            }
+
+            public void releasePartiallyFree(Chunk chunk)
+            {
+                if (chunk.freeSlotCount() >= MIN_REUSED_FREE_SLOTS)
+                    partiallyFreeChunks.add(chunk);
+            }
+
+            /**
+             * Return a chunk released whilst partially in use and with enough free space, if any. It may have been
+             * recycled in the meantime, in which case it has no free space left, and the recycled chunk is available
+             * from the chunks of the node.
+             */
+            private Chunk pollPartiallyFree()
+            {
+                for (int i = 0; i < MAX_REUSE_ATTEMPTS; i++)
+                {
+                    Chunk chunk = partiallyFreeChunks.poll();
+                    if (chunk == null)
+                        return null;
+
+                    // owned again, recycled, or used up by the buffers of another chunk
+                    if (chunk.owner != null || chunk.freeSlotCount() < MIN_REUSED_FREE_SLOTS)
+                        continue;
+
+                    return chunk;
+                }
+                return null;
+            }
+        }
 
         /** Return a chunk, the caller will take owership of the parent chunk. */
         public Chunk get()
         {
-            Chunk chunk = chunks.poll();
+            Node local = nodes[topology.currentNode()];
+            Chunk chunk = local.chunks.poll();
             if (chunk != null)
                 return chunk;
 
-            chunk = allocateMoreChunks();
+            chunk = allocateMoreChunks(local);
             if (chunk != null)
                 return chunk;
 
-            // another thread may have just allocated last macro chunk, so make one final attempt before returning null
-            return chunks.poll();
+            // another thread may have just allocated last macro chunk, so make one final attempt before stealing the
+            // chunks of the other nodes
+            for (int i = 0; i < nodes.length; i++)
+            {
+                Node node = nodes[(local.id + i) % nodes.length];
+                if (null != (chunk = node.chunks.poll()))
+                {
+                    if (node != local)
+                        metrics.remoteChunks.mark();
+                    return chunk;
+                }
+            }
+
+            // finally, reuse the free space of the chunks released whilst partially in use
+            for (int i = 0; i < nodes.length; i++)
+            {
+                if (null != (chunk = nodes[(local.id + i) % nodes.length].pollPartiallyFree()))
+                {
+                    metrics.reusedChunks.mark();
+                    return chunk;
+                }
+            }
+            return null;
         }
 
         /**
          * This method might be called by multiple threads and that's fine if we add more
          * than one chunk at the same time as long as we don't exceed the MEMORY_USAGE_THRESHOLD.
          */
-        private Chunk allocateMoreChunks()
+        private Chunk allocateMoreChunks(Node node)
         {
             while (true)
             {
@@ -245,7 +354,7 @@ public class BufferPool
             Chunk chunk;
             try
             {
-                chunk = new Chunk(null, allocateDirectAligned(MACRO_CHUNK_SIZE));
+                chunk = new Chunk(null, MemoryUtil.allocateDirectAligned(MACRO_CHUNK_SIZE, MemoryUtil.pageSize()));
             }
             catch (OutOfMemoryError oom)
             {
@@ -261,38 +370,52 @@ public class BufferPool
             chunk.acquire(null);
             macroChunks.add(chunk);
 
-            final Chunk callerChunk = new Chunk(this, chunk.get(NORMAL_CHUNK_SIZE));
+            final Chunk callerChunk = new Chunk(node, chunk.get(NORMAL_CHUNK_SIZE));
             if (debug != null)
                 debug.registerNormal(callerChunk);
             for (int i = NORMAL_CHUNK_SIZE; i < MACRO_CHUNK_SIZE; i += NORMAL_CHUNK_SIZE)
             {
-                Chunk add = new Chunk(this, chunk.get(NORMAL_CHUNK_SIZE));
-                chunks.add(add);
+                Chunk add = new Chunk(node, chunk.get(NORMAL_CHUNK_SIZE));
+                node.chunks.add(add);
                 if (debug != null)
                     debug.registerNormal(add);
             }
             return callerChunk;
         }
 
-        public void recycle(Chunk chunk)
+        public long sizeInBytes()
         {
-            Chunk recycleAs = new Chunk(chunk);
-            if (debug != null)
-                debug.recycleNormal(chunk, recycleAs);
-            chunks.add(recycleAs);
+            return memoryUsage.get();
         }
 
-        public long sizeInBytes()
+        @VisibleForTesting
+        int nodes()
         {
-            return memoryUsage.get();
+            return nodes.length;
+        }
+
+        /** The capacity of the chunks that are not allocated from by local pools. */
+        long availableBytes()
+        {
+            long available = 0;
+            for (Node node : nodes)
+            {
+                for (Chunk chunk : node.chunks)
+                    available += chunk.capacity();
+            }
+            return available;
         }
 
         /** This is not thread safe and should only be used for unit testing. */
         @VisibleForTesting
         void unsafeFree()
         {
-            while (!chunks.isEmpty())
-                chunks.poll().unsafeFree();
+            for (Node node : nodes)
+            {
+                node.partiallyFreeChunks.clear();
+                while (!node.chunks.isEmpty())
+                    node.chunks.poll().unsafeFree();
+            }
 
             while (!macroChunks.isEmpty())
                 macroChunks.poll().unsafeFree();
@@ -809,30 +932,6 @@ public class BufferPool
         }
     }
 
-    private static ByteBuffer allocateDirectAligned(int capacity)
-    {
-        int align = MemoryUtil.pageSize();
-        if (Integer.bitCount(align) != 1)
-            throw new IllegalArgumentException("Alignment must be a power of 2");
-
-        ByteBuffer buffer = ByteBuffer.allocateDirect(capacity + align);
-        long address = MemoryUtil.getAddress(buffer);
-        long offset = address & (align -1); // (address % align)
-
-        if (offset == 0)
-        { // already aligned
-            buffer.limit(capacity);
-        }
-        else
-        { // shift by offset
-            int pos = (int)(align - offset);
-            buffer.position(pos);
-            buffer.limit(pos + capacity);
-        }
-
-        return buffer.slice();
-    }
-
     /**
      * A memory chunk: it takes a buffer (the slab) and slices it
      * into smaller buffers when requested.
@@ -909,14 +1008,24 @@ public class BufferPool
         void release()
         {
             this.owner = null;
-            tryRecycle();
+            if (!tryRecycle())
+                recycler.releasePartiallyFree(this);
         }
 
-        void tryRecycle()
+        /**
+         * Recycle the chunk if it is fully free and not owned, the global pool possibly handing partially free
+         * chunks to a new owner concurrently.
+         *
+         * @return whether the chunk has been recycled
+         */
+        boolean tryRecycle()
         {
-            assert owner == null;
-            if (isFree() && freeSlotsUpdater.compareAndSet(this, -1L, 0L))
+            if (owner == null && isFree() && freeSlotsUpdater.compareAndSet(this, -1L, 0L))
+            {
                 recycle();
+                return true;
+            }
+            return false;
         }
 
         void recycle()
@@ -1073,8 +1182,10 @@ public class BufferPool
                             break;
 
                         cur = freeSlots;
-                        // make sure no other thread has cleared the candidate bits
-                        assert ((candidate & cur) == candidate);
+                        // no other thread can clear the candidate bits, unless the chunk was partially free when we
+                        // took it from the global pool and has been recycled since, so that we can't allocate from it
+                        if ((candidate & cur) != candidate)
+                            return null;
                     }
                     return set(index << shift, size, into);
                 }
@@ -1215,10 +1326,7 @@ public class BufferPool
         long totalMemory = globalPool.memoryUsage.get();
         class L { long v; }
         final L availableMemory = new L();
-        for (Chunk chunk : globalPool.chunks)
-        {
-            availableMemory.v += chunk.capacity();
-        }
+        availableMemory.v += globalPool.availableBytes();
         for (LocalPoolRef ref : localPoolReferences)
         {
             ref.chunks.forEach(chunk -> availableMemory.v += chunk.free());
@@ -82,6 +82,33 @@ public abstract class MemoryUtil
         return unsafe.pageSize();
     }
 
+    /**
+     * Allocates a direct buffer of the given capacity, whose address is a multiple of the given alignment. The buffer
+     * is a slice of a bigger one, that can be retrieved with {@link #getAttachment} to be cleaned.
+     */
+    public static ByteBuffer allocateDirectAligned(int capacity, int align)
+    {
+        if (Integer.bitCount(align) != 1)
+            throw new IllegalArgumentException("Alignment must be a power of 2");
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(capacity + align);
+        long address = getAddress(buffer);
+        long offset = address & (align -1); // (address % align)
+
+        if (offset == 0)
+        { // already aligned
+            buffer.limit(capacity);
+        }
+        else
+        { // shift by offset
+            int pos = (int)(align - offset);
+            buffer.position(pos);
+            buffer.limit(pos + capacity);
+        }
+
+        return buffer.slice();
+    }
+
     public static long getAddress(ByteBuffer buffer)
     {
         assert buffer.getClass() == DIRECT_BYTE_BUFFER_CLASS;
@@ -149,6 +176,54 @@ public abstract class MemoryUtil
         return Architecture.IS_UNALIGNED ? unsafe.getLong(address) : getLongByByte(address);
     }
 
+    /**
+     * @return the offset of the first element of a byte array, to access heap memory relative to the array
+     */
+    public static long byteArrayBaseOffset()
+    {
+        return BYTE_ARRAY_BASE_OFFSET;
+    }
+
+    /*
+     * Accessors of memory relative to a base object, which is either a byte array with an offset starting at
+     * byteArrayBaseOffset(), or null with an absolute native address. Ints must be aligned.
+     */
+
+    public static byte getByte(Object base, long offset)
+    {
+        return unsafe.getByte(base, offset);
+    }
+
+    public static void setByte(Object base, long offset, byte b)
+    {
+        unsafe.putByte(base, offset, b);
+    }
+
+    public static void setByte(Object base, long offset, int count, byte b)
+    {
+        unsafe.setMemory(base, offset, count, b);
+    }
+
+    public static int getInt(Object base, long offset)
+    {
+        return unsafe.getInt(base, offset);
+    }
+
+    public static void setInt(Object base, long offset, int i)
+    {
+        unsafe.putInt(base, offset, i);
+    }
+
+    public static int getIntVolatile(Object base, long offset)
+    {
+        return unsafe.getIntVolatile(base, offset);
+    }
+
+    public static void setIntVolatile(Object base, long offset, int i)
+    {
+        unsafe.putIntVolatile(base, offset, i);
+    }
+
     public static ByteBuffer getByteBuffer(long address, int length)
     {
         return getByteBuffer(address, length, ByteOrder.nativeOrder());
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.utils.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.utils.NativeLibrary;
+
+/**
+ * The NUMA nodes of the machine, and the node of the CPU a thread is running on.
+ *
+ * The nodes and their CPUs are read from sysfs on Linux, and the CPU of a thread is found with sched_getcpu.
+ * Everywhere else, when this fails, or when disabled with -Dcassandra.numa_aware_buffer_pool=false, there is a
+ * single node.
+ */
+class NumaTopology
+{
+    private static final Logger logger = LoggerFactory.getLogger(NumaTopology.class);
+
+    private static final String NODES_DIRECTORY = "/sys/devices/system/node";
+    private static final Pattern NODE_DIRECTORY = Pattern.compile("node(\\d+)");
+
+    static final NumaTopology SINGLE_NODE = new NumaTopology(new int[0], 1);
+
+    // the node of each CPU, as an index in [0, nodes)
+    private final int[] cpuNodes;
+    private final int nodes;
+
+    @VisibleForTesting
+    NumaTopology(int[] cpuNodes, int nodes)
+    {
+        this.cpuNodes = cpuNodes;
+        this.nodes = nodes;
+    }
+
+    static NumaTopology detect()
+    {
+        if (!Boolean.parseBoolean(System.getProperty(Config.PROPERTY_PREFIX + "numa_aware_buffer_pool", "true"))
+            || NativeLibrary.osType != NativeLibrary.OSType.LINUX
+            || NativeLibrary.getCurrentCpu() < 0)
+            return SINGLE_NODE;
+
+        File[] directories = new File(NODES_DIRECTORY).listFiles();
+        if (directories == null)
+            return SINGLE_NODE;
+
+        try
+        {
+            int[] cpuNodes = new int[0];
+            int nodes = 0;
+            Arrays.sort(directories);
+            for (File directory : directories)
+            {
+                Matcher matcher = NODE_DIRECTORY.matcher(directory.getName());
+                File cpuList = new File(directory, "cpulist");
+                if (!matcher.matches() || !cpuList.exists())
+                    continue;
+
+                String cpus = new String(Files.readAllBytes(cpuList.toPath()), StandardCharsets.US_ASCII);
+                cpuNodes = addCpus(cpuNodes, cpus, nodes++);
+            }
+
+            if (nodes > 1)
+            {
+                logger.info("Buffer pool is NUMA aware across {} nodes", nodes);
+                return new NumaTopology(cpuNodes, nodes);
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            logger.warn("Could not read the NUMA nodes from {}", NODES_DIRECTORY, e);
+        }
+        return SINGLE_NODE;
+    }
+
+    /**
+     * Sets the node of the CPUs of a cpulist, such as 0-7,16-23, growing the array of the CPU nodes if needed.
+     */
+    @VisibleForTesting
+    static int[] addCpus(int[] cpuNodes, String cpuList, int node)
+    {
+        for (String cpus : cpuList.trim().split(","))
+        {
+            if (cpus.isEmpty())
+                continue;
+
+            int dash = cpus.indexOf('-');
+            int first = Integer.parseInt(dash < 0 ? cpus : cpus.substring(0, dash));
+            int last = dash < 0 ? first : Integer.parseInt(cpus.substring(dash + 1));
+            if (last >= cpuNodes.length)
+                cpuNodes = Arrays.copyOf(cpuNodes, last + 1);
+            Arrays.fill(cpuNodes, first, last + 1, node);
+        }
+        return cpuNodes;
+    }
+
+    int nodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * @return the node of the CPU the calling thread is running on, or 0 if unknown
+     */
+    int currentNode()
+    {
+        return nodes == 1 ? 0 : node(NativeLibrary.getCurrentCpu());
+    }
+
+    @VisibleForTesting
+    int node(int cpu)
+    {
+        return cpu >= 0 && cpu < cpuNodes.length ? cpuNodes[cpu] : 0;
+    }
+}
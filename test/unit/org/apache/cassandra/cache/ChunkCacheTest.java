@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cache;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ClusteringComparator;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.io.compress.CompressedSequentialWriter;
+import org.apache.cassandra.io.compress.CompressionMetadata;
+import org.apache.cassandra.io.sstable.metadata.MetadataCollector;
+import org.apache.cassandra.io.util.FileHandle;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.RandomAccessReader;
+import org.apache.cassandra.io.util.SequentialWriterOption;
+import org.apache.cassandra.schema.CompressionParams;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChunkCacheTest
+{
+    private static final int CHUNK_LENGTH = 4096;
+    private static final int CHUNKS = 16;
+    private static final int VALUES = CHUNKS * CHUNK_LENGTH / Integer.BYTES;
+
+    private File file;
+    private File metadata;
+
+    @BeforeClass
+    public static void setupDD()
+    {
+        DatabaseDescriptor.daemonInitialization();
+    }
+
+    @Before
+    public void writeFile() throws IOException
+    {
+        file = FileUtils.createTempFile("chunkcache", "1");
+        metadata = new File(file.getPath() + ".metadata");
+        try (CompressedSequentialWriter writer = new CompressedSequentialWriter(file, metadata.getPath(),
+                                                                                null, SequentialWriterOption.DEFAULT,
+                                                                                CompressionParams.lz4(CHUNK_LENGTH),
+                                                                                new MetadataCollector(new ClusteringComparator(BytesType.instance))))
+        {
+            for (int i = 0; i < VALUES; i++)
+                writer.writeInt(i);
+            writer.finish();
+        }
+    }
+
+    @After
+    public void deleteFile()
+    {
+        FileUtils.deleteWithConfirm(file);
+        FileUtils.deleteWithConfirm(metadata);
+    }
+
+    private FileHandle.Builder builder(ChunkCache cache)
+    {
+        return new FileHandle.Builder(file.getPath()).withChunkCache(cache)
+                                                     .withCompressionMetadata(new CompressionMetadata(metadata.getPath(), file.length(), true));
+    }
+
+    private static void readAll(RandomAccessReader reader) throws IOException
+    {
+        for (int i = 0; i < VALUES; i++)
+            assertEquals(i, reader.readInt());
+    }
+
+    @Test
+    public void testScansDoNotPopulateTheCache() throws IOException
+    {
+        ChunkCache cache = new ChunkCache(1 << 20, 0);
+        try (FileHandle.Builder builder = builder(cache);
+             FileHandle fh = builder.complete())
+        {
+            long scanMisses = cache.metrics.scanMisses.getCount();
+            try (RandomAccessReader reader = fh.createScanReader(null))
+            {
+                readAll(reader);
+            }
+            assertEquals(0, cache.size());
+            assertEquals(scanMisses + CHUNKS, cache.metrics.scanMisses.getCount());
+
+            try (RandomAccessReader reader = fh.createReader())
+            {
+                readAll(reader);
+            }
+            assertEquals(CHUNKS, cache.size());
+
+            // the chunks cached by the reads are used by the scans
+            try (RandomAccessReader reader = fh.createScanReader(null))
+            {
+                readAll(reader);
+            }
+            assertEquals(scanMisses + CHUNKS, cache.metrics.scanMisses.getCount());
+        }
+        finally
+        {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testCompressedTier() throws IOException
+    {
+        ChunkCache cache = new ChunkCache(1 << 20, 1 << 20);
+        try (FileHandle.Builder builder = builder(cache).mmapped(false);
+             FileHandle fh = builder.complete())
+        {
+            long hits = cache.metrics.compressedHits.getCount();
+            long misses = cache.metrics.compressedMisses.getCount();
+            try (RandomAccessReader reader = fh.createReader())
+            {
+                readAll(reader);
+            }
+            assertEquals(hits, cache.metrics.compressedHits.getCount());
+            assertEquals(misses + CHUNKS, cache.metrics.compressedMisses.getCount());
+
+            // chunks evicted from the first tier are uncompressed from the second one
+            for (int i = 0; i < CHUNKS; i++)
+                cache.invalidatePosition(fh, (long) i * CHUNK_LENGTH);
+            assertEquals(0, cache.size());
+
+            try (RandomAccessReader reader = fh.createReader())
+            {
+                readAll(reader);
+            }
+            assertEquals(hits + CHUNKS, cache.metrics.compressedHits.getCount());
+            assertEquals(misses + CHUNKS, cache.metrics.compressedMisses.getCount());
+            assertEquals(CHUNKS, cache.size());
+
+            // and are dropped with the file
+            cache.invalidateFile(fh.path());
+            assertEquals(0, cache.size());
+            try (RandomAccessReader reader = fh.createReader())
+            {
+                readAll(reader);
+            }
+            assertEquals(misses + 2 * CHUNKS, cache.metrics.compressedMisses.getCount());
+        }
+        finally
+        {
+            cache.close();
+        }
+    }
+}
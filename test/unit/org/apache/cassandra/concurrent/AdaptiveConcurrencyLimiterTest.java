@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.exceptions.OverloadedException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdaptiveConcurrencyLimiterTest
+{
+    private static final long SERVICE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeClass
+    public static void setup()
+    {
+        DatabaseDescriptor.daemonInitialization();
+    }
+
+    @After
+    public void releaseLimiter()
+    {
+        if (limiter != null)
+            limiter.releaseMetrics();
+        DatabaseDescriptor.setAdaptiveConcurrencyLimit(false);
+    }
+
+    /**
+     * @return a limiter whose limit is only updated by the tests
+     */
+    private AdaptiveConcurrencyLimiter limiter(int minLimit, int maxLimit)
+    {
+        limiter = new AdaptiveConcurrencyLimiter("TestStage", minLimit, maxLimit, Long.MAX_VALUE);
+        return limiter;
+    }
+
+    /**
+     * Admits as many tasks as the limit, then releases them with the given queue time.
+     */
+    private static void window(AdaptiveConcurrencyLimiter limiter, long queueNanos)
+    {
+        int tasks = limiter.getLimit();
+        for (int i = 0; i < tasks; i++)
+            assertTrue(limiter.tryAcquire());
+        for (int i = 0; i < tasks; i++)
+            limiter.release(queueNanos, SERVICE_NANOS);
+        limiter.updateLimit();
+    }
+
+    @Test
+    public void testShedsOverLimit()
+    {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 8);
+        assertEquals(4, limiter.getLimit());
+
+        for (int i = 0; i < 4; i++)
+            assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(4, limiter.getInFlight());
+        assertEquals(2, limiter.getShedTasks());
+
+        limiter.release(0, SERVICE_NANOS);
+        assertTrue(limiter.tryAcquire());
+        assertEquals(2, limiter.getShedTasks());
+    }
+
+    @Test
+    public void testShrinksWhenQueueing()
+    {
+        AdaptiveConcurrencyLimiter limiter = limiter(16, 256);
+        int limit = limiter.getLimit();
+        window(limiter, 10 * SERVICE_NANOS);
+        assertTrue(limiter.getLimit() < limit);
+
+        // down to the number of threads, and no further
+        for (int i = 0; i < 100; i++)
+            window(limiter, 10 * SERVICE_NANOS);
+        assertEquals(16, limiter.getLimit());
+        assertEquals(10 * SERVICE_NANOS / 1000, limiter.getQueueTimeMicros());
+        assertEquals(SERVICE_NANOS / 1000, limiter.getServiceTimeMicros());
+    }
+
+    @Test
+    public void testGrowsWhenNotQueueing()
+    {
+        AdaptiveConcurrencyLimiter limiter = limiter(16, 64);
+        int limit = limiter.getLimit();
+
+        // queueing for as long as running is tolerated
+        window(limiter, SERVICE_NANOS);
+        assertTrue(limiter.getLimit() > limit);
+
+        // up to the maximum, and no further
+        for (int i = 0; i < 100; i++)
+            window(limiter, 0);
+        assertEquals(64, limiter.getLimit());
+    }
+
+    @Test
+    public void testDoesNotGrowWhenIdle()
+    {
+        AdaptiveConcurrencyLimiter limiter = limiter(16, 64);
+        int limit = limiter.getLimit();
+        for (int i = 0; i < 100; i++)
+        {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(0, SERVICE_NANOS);
+        }
+        limiter.updateLimit();
+        assertEquals(limit, limiter.getLimit());
+    }
+
+    @Test
+    public void testMinAndMaxLimits()
+    {
+        AdaptiveConcurrencyLimiter limiter = limiter(16, 64);
+        limiter.setMaxLimit(20);
+        assertEquals(20, limiter.getLimit());
+        limiter.setMinLimit(20);
+        assertEquals(20, limiter.getLimit());
+
+        try
+        {
+            limiter.setMinLimit(21);
+            fail();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAdmit()
+    {
+        Runnable task = () -> {};
+        assertNull(AdaptiveConcurrencyLimiter.forStage(Stage.READ));
+        assertSame(task, AdaptiveConcurrencyLimiter.admit(Stage.READ, task));
+
+        DatabaseDescriptor.setAdaptiveConcurrencyLimit(true);
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.forStage(Stage.READ);
+        assertNotNull(limiter);
+        assertNull(AdaptiveConcurrencyLimiter.forStage(Stage.GOSSIP));
+        assertSame(limiter, AdaptiveConcurrencyLimiter.forPoolName(Stage.READ.jmxName));
+        assertEquals(Stage.READ.getMaximumPoolSize(), limiter.getMinLimit());
+
+        // the admitted tasks hold their permit until they have run
+        int limit = limiter.getLimit();
+        Runnable[] admitted = new Runnable[limit];
+        for (int i = 0; i < limit; i++)
+            admitted[i] = AdaptiveConcurrencyLimiter.admit(Stage.READ, task);
+        try
+        {
+            AdaptiveConcurrencyLimiter.admit(Stage.READ, task);
+            fail();
+        }
+        catch (OverloadedException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().contains("concurrency limit"));
+        }
+
+        for (Runnable r : admitted)
+            r.run();
+        assertEquals(0, limiter.getInFlight());
+    }
+}
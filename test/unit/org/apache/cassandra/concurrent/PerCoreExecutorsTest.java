@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.concurrent;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PerCoreExecutorsTest
+{
+    @BeforeClass
+    public static void setupDD()
+    {
+        DatabaseDescriptor.daemonInitialization();
+    }
+
+    @Test
+    public void testOwnersAreSpreadOverTheExecutors() throws Exception
+    {
+        PerCoreExecutors executors = new PerCoreExecutors("PerCoreExecutorsTest", "internal", 3, 2);
+        try
+        {
+            Object[] owners = new Object[6];
+            Set<LocalAwareExecutorService> assigned = new HashSet<>();
+            for (int i = 0; i < owners.length; i++)
+            {
+                owners[i] = new Object();
+                assigned.add(executors.executorFor(owners[i]));
+            }
+            assertEquals(3, assigned.size());
+
+            // an owner always gets the same executor, whose threads execute all its tasks
+            for (Object owner : owners)
+            {
+                LocalAwareExecutorService executor = executors.executorFor(owner);
+                assertSame(executor, executors.executorFor(owner));
+                String thread = executor.submit(() -> Thread.currentThread().getName()).get(10, TimeUnit.SECONDS);
+                assertTrue(thread, thread.startsWith("PerCoreExecutorsTest-Core" + executors.executors().indexOf(executor)));
+            }
+        }
+        finally
+        {
+            executors.shutdown();
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.concurrent;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class WorkStealingExecutorTest
+{
+    private static final AtomicInteger executors = new AtomicInteger();
+
+    private static WorkStealingExecutor newExecutor(int maximumPoolSize, AtomicInteger notifiedMaxPoolSize)
+    {
+        return new WorkStealingExecutor(maximumPoolSize, notifiedMaxPoolSize::set, "internal", "WorkStealingExecutorTest" + executors.incrementAndGet());
+    }
+
+    @Test
+    public void testExecuteAll() throws Throwable
+    {
+        WorkStealingExecutor executor = newExecutor(4, new AtomicInteger());
+        try
+        {
+            int tasks = 100000;
+            CountDownLatch done = new CountDownLatch(tasks);
+            for (int i = 0; i < tasks; i++)
+                executor.execute(done::countDown);
+            Assert.assertTrue(done.await(1, TimeUnit.MINUTES));
+
+            // the completion is counted after the task returns
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (executor.getCompletedTaskCount() < tasks && System.nanoTime() < deadline)
+                Thread.yield();
+            Assert.assertEquals(tasks, executor.getCompletedTaskCount());
+            Assert.assertEquals(0, executor.getPendingTaskCount());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTasksOfAWorkerAreStolen() throws Throwable
+    {
+        int concurrency = 4;
+        WorkStealingExecutor executor = newExecutor(concurrency, new AtomicInteger());
+        try
+        {
+            // the tasks submitted by a worker go to its own deque, and can only reach the concurrency goal if the
+            // other workers steal them
+            CountDownLatch concurrencyGoal = new CountDownLatch(concurrency);
+            executor.execute(() -> {
+                for (int i = 0; i < concurrency; i++)
+                    executor.execute(new SEPExecutorTest.LatchWaiter(concurrencyGoal, 5L, SECONDS));
+            });
+            Assert.assertTrue("Test tasks did not hit max concurrency goal", concurrencyGoal.await(3L, SECONDS));
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testChangingMaxWorkersMeetsConcurrencyGoals() throws Throwable
+    {
+        AtomicInteger notifiedMaxPoolSize = new AtomicInteger();
+        WorkStealingExecutor executor = newExecutor(1, notifiedMaxPoolSize);
+        try
+        {
+            for (int repeat = 0; repeat < 100; repeat++)
+            {
+                assertMaxTaskConcurrency(executor, 2);
+                Assert.assertEquals(2, notifiedMaxPoolSize.get());
+
+                assertMaxTaskConcurrency(executor, 1);
+                Assert.assertEquals(1, notifiedMaxPoolSize.get());
+
+                executor.setMaximumPoolSize(0);
+                Assert.assertEquals(0, notifiedMaxPoolSize.get());
+
+                assertMaxTaskConcurrency(executor, 4);
+                Assert.assertEquals(4, notifiedMaxPoolSize.get());
+
+                assertMaxTaskConcurrency(executor, 3);
+                Assert.assertEquals(3, notifiedMaxPoolSize.get());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testShrunkExecutorDoesNotExceedMaxPoolSize() throws Throwable
+    {
+        WorkStealingExecutor executor = newExecutor(4, new AtomicInteger());
+        try
+        {
+            executor.setMaximumPoolSize(2);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger maxRunning = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(1000);
+            for (int i = 0; i < 1000; i++)
+            {
+                executor.execute(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.yield();
+                    running.decrementAndGet();
+                    done.countDown();
+                });
+            }
+            Assert.assertTrue(done.await(1, TimeUnit.MINUTES));
+            Assert.assertTrue("Ran " + maxRunning.get() + " tasks concurrently", maxRunning.get() <= 2);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMaybeExecuteImmediately() throws Throwable
+    {
+        WorkStealingExecutor executor = newExecutor(1, new AtomicInteger());
+        try
+        {
+            AtomicReference<Thread> ranOn = new AtomicReference<>();
+            executor.maybeExecuteImmediately(() -> ranOn.set(Thread.currentThread()));
+            Assert.assertSame(Thread.currentThread(), ranOn.get());
+
+            // without capacity left, the task is queued for the workers
+            CountDownLatch queued = new CountDownLatch(1);
+            executor.maybeExecuteImmediately(() -> {
+                executor.maybeExecuteImmediately(() -> {
+                    ranOn.set(Thread.currentThread());
+                    queued.countDown();
+                });
+            });
+            Assert.assertTrue(queued.await(10, SECONDS));
+            Assert.assertNotSame(Thread.currentThread(), ranOn.get());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testShutdown() throws Throwable
+    {
+        WorkStealingExecutor executor = newExecutor(4, new AtomicInteger());
+        CountDownLatch done = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++)
+            executor.execute(done::countDown);
+        executor.shutdown();
+
+        // the queued tasks still run
+        Assert.assertTrue(done.await(10, SECONDS));
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        Assert.assertTrue(executor.isTerminated());
+
+        try
+        {
+            executor.execute(() -> {});
+            Assert.fail("Expected the task to be rejected");
+        }
+        catch (RejectedExecutionException e)
+        {
+            // expected
+        }
+
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+        {
+            if (thread.getName().startsWith(executor.name + ':'))
+            {
+                thread.join(100);
+                if (thread.isAlive())
+                    Assert.fail(thread + " is still running " + Arrays.toString(thread.getStackTrace()));
+            }
+        }
+    }
+
+    @Test
+    public void testShutdownNow() throws Throwable
+    {
+        WorkStealingExecutor executor = newExecutor(1, new AtomicInteger());
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            blocked.countDown();
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                throw new AssertionError(e);
+            }
+        });
+        Assert.assertTrue(blocked.await(10, SECONDS));
+        for (int i = 0; i < 10; i++)
+            executor.execute(() -> {});
+
+        List<Runnable> aborted = executor.shutdownNow();
+        Assert.assertEquals(10, aborted.size());
+        release.countDown();
+        Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+
+    private static void assertMaxTaskConcurrency(LocalAwareExecutorService executor, int concurrency) throws InterruptedException
+    {
+        executor.setMaximumPoolSize(concurrency);
+
+        CountDownLatch concurrencyGoal = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++)
+            executor.execute(new SEPExecutorTest.LatchWaiter(concurrencyGoal, 5L, SECONDS));
+        Assert.assertTrue("Test tasks did not hit max concurrency goal", concurrencyGoal.await(3L, SECONDS));
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cql3;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import io.netty.buffer.ByteBuf;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.transport.CBUtil;
+import org.apache.cassandra.transport.ProtocolVersion;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.memory.BufferPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EncodedRowsTest extends CQLTester
+{
+    @BeforeClass
+    public static void setUp()
+    {
+        DatabaseDescriptor.setEncodeNativeTransportRowsDirectly(true);
+        requireNetwork();
+    }
+
+    private static ResultSet.ResultMetadata metadata()
+    {
+        List<ColumnSpecification> names = new ArrayList<>();
+        names.add(new ColumnSpecification("ks", "t", new ColumnIdentifier("k", true), Int32Type.instance));
+        names.add(new ColumnSpecification("ks", "t", new ColumnIdentifier("v", true), UTF8Type.instance));
+        return new ResultSet.ResultMetadata(names);
+    }
+
+    private static List<List<ByteBuffer>> rows(int count, int valueSize)
+    {
+        List<List<ByteBuffer>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+        {
+            ByteBuffer value = i % 10 == 0 ? null : ByteBuffer.wrap(new byte[valueSize]);
+            if (value != null)
+                Arrays.fill(value.array(), (byte) i);
+            rows.add(Arrays.asList(ByteBufferUtil.bytes(i), value));
+        }
+        return rows;
+    }
+
+    private static ResultSet encodedResultSet(List<List<ByteBuffer>> rows)
+    {
+        ResultSet.ResultMetadata metadata = metadata();
+        ResultSet rs = new ResultSet(metadata, new EncodedRows(metadata.valueCount()));
+        for (List<ByteBuffer> row : rows)
+            rs.addRow(row);
+        return rs;
+    }
+
+    @Test
+    public void testEncodeAndTake()
+    {
+        // values big enough to span several buffers
+        List<List<ByteBuffer>> rows = rows(200, 10000);
+        ResultSet rs = encodedResultSet(rows);
+        assertEquals(rows.size(), rs.size());
+        assertTrue(((EncodedRows) rs.rows).isEncoded());
+
+        ProtocolVersion version = ProtocolVersion.CURRENT;
+        int size = ResultSet.codec.encodedSize(rs, version);
+        ByteBuf body = CBUtil.allocator.buffer(size);
+        ByteBuf tail = ResultSet.codec.encodedRows(rs);
+        ResultSet.codec.encode(rs, body, version);
+        assertEquals(size, body.readableBytes());
+
+        ByteBuf frame = CBUtil.allocator.compositeBuffer(2).addComponents(true, body, tail);
+        try
+        {
+            ResultSet decoded = ResultSet.codec.decode(frame, version);
+            assertFalse(frame.isReadable());
+            assertEquals(rows, decoded.rows);
+        }
+        finally
+        {
+            frame.release();
+        }
+    }
+
+    @Test
+    public void testEncodeEmpty()
+    {
+        ResultSet rs = encodedResultSet(Collections.emptyList());
+        assertTrue(rs.isEmpty());
+        assertNull(ResultSet.codec.encodedRows(rs));
+    }
+
+    @Test
+    public void testDecodeOnAccess()
+    {
+        List<List<ByteBuffer>> rows = rows(50, 100);
+        ResultSet rs = encodedResultSet(rows);
+
+        // reading the rows decodes them, after which they are encoded as any other result set
+        assertEquals(rows.get(3), rs.rows.get(3));
+        assertFalse(((EncodedRows) rs.rows).isEncoded());
+        assertNull(ResultSet.codec.encodedRows(rs));
+        assertEquals(rows, rs.rows);
+
+        rs.trim(10);
+        assertEquals(rows.subList(0, 10), rs.rows);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTakenRowsCannotBeRead()
+    {
+        ResultSet rs = encodedResultSet(rows(5, 10));
+        ResultSet.codec.encodedRows(rs).release();
+        rs.rows.get(0);
+    }
+
+    @Test
+    public void testQueries() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, v text, PRIMARY KEY (k, c))");
+        String value = new String(new char[1000]).replace('\0', 'x');
+        for (int k = 0; k < 5; k++)
+            for (int c = 0; c < 100; c++)
+                execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", k, c, c % 7 == 0 ? null : value + c);
+
+        Object[][] partition = new Object[100][];
+        for (int c = 0; c < 100; c++)
+            partition[c] = row(2, c, c % 7 == 0 ? null : value + c);
+
+        assertRowsNet(executeNet("SELECT * FROM %s WHERE k = 2"), partition);
+        assertRowsNet(executeNetWithPaging("SELECT * FROM %s WHERE k = 2", 7), partition);
+        assertEquals(500, executeNetWithPaging("SELECT * FROM %s", 33).all().size());
+        assertRowsNet(executeNet("SELECT count(*) FROM %s"), row(500L));
+        assertRowsNet(executeNet("SELECT * FROM %s WHERE k = 2 LIMIT 2"), partition[0], partition[1]);
+        assertTrue(executeNet("SELECT * FROM %s WHERE k = 10").all().isEmpty());
+
+        // post-query ordering does not use encoded rows
+        assertRowsNet(executeNetWithPaging("SELECT k, c FROM %s WHERE k IN (1, 2) AND c < 2 ORDER BY c DESC", Integer.MAX_VALUE),
+                      row(1, 1), row(2, 1), row(1, 0), row(2, 0));
+    }
+
+    @Test
+    public void testRowsReleasedOnFailure() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, b blob, PRIMARY KEY (k, c))");
+        for (int c = 0; c < 100; c++)
+            execute("INSERT INTO %s (k, c, b) VALUES (0, ?, ?)", c, c == 50 ? ByteBuffer.allocate(3) : ByteBufferUtil.bytes(c));
+
+        // the query fails in the middle of the page, on the blob that is not an int, once the previous rows are encoded
+        long bytesInUse = BufferPool.unsafeGetBytesInUse();
+        try
+        {
+            executeNetWithPaging("SELECT c, blobAsInt(b) FROM %s WHERE k = 0", 80).all();
+            fail("Expected the query to fail");
+        }
+        catch (InvalidQueryException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().contains("blobasint"));
+        }
+        assertEquals(bytesInUse, BufferPool.unsafeGetBytesInUse());
+    }
+}
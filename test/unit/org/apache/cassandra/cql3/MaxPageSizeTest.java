@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.cql3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import org.apache.cassandra.config.DatabaseDescriptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MaxPageSizeTest extends CQLTester
+{
+    private static final int MAX_PAGE_SIZE_IN_KB = 4;
+    private static final String VALUE = new String(new char[1000]).replace('\0', 'x');
+
+    @BeforeClass
+    public static void setUp()
+    {
+        DatabaseDescriptor.setNativeTransportMaxPageSizeInKb(MAX_PAGE_SIZE_IN_KB);
+        requireNetwork();
+    }
+
+    @AfterClass
+    public static void tearDown()
+    {
+        DatabaseDescriptor.setNativeTransportMaxPageSizeInKb(0);
+    }
+
+    private void populate(int partitions, int rows) throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int, c int, s text static, v text, PRIMARY KEY (k, c))");
+        for (int k = 0; k < partitions; k++)
+        {
+            execute("INSERT INTO %s (k, s) VALUES (?, ?)", k, "static" + k);
+            for (int c = 0; c < rows; c++)
+                execute("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", k, c, VALUE + c);
+        }
+    }
+
+    /**
+     * Executes the query with the given fetch size, checking that its pages do not get over the maximum page size by
+     * more than a row.
+     */
+    private List<Row> executeBounded(String query, int fetchSize) throws Throwable
+    {
+        Session session = sessionNet();
+        SimpleStatement statement = new SimpleStatement(formatQuery(query));
+        statement.setFetchSize(fetchSize);
+        ResultSet rs = session.execute(statement);
+
+        List<Row> rows = new ArrayList<>();
+        int pages = 0;
+        while (true)
+        {
+            int available = rs.getAvailableWithoutFetching();
+            assertTrue("Page of " + available + " rows", available <= MAX_PAGE_SIZE_IN_KB + 1);
+            for (int i = 0; i < available; i++)
+                rows.add(rs.one());
+            pages++;
+            if (rs.isFullyFetched())
+                break;
+            Uninterruptibles.getUninterruptibly(rs.fetchMoreResults());
+        }
+        assertTrue(pages > 1);
+        return rows;
+    }
+
+    private static void assertRows(List<Row> rows, int[] partitions, int rowsPerPartition)
+    {
+        assertEquals(partitions.length * rowsPerPartition, rows.size());
+        int i = 0;
+        for (int k : partitions)
+        {
+            for (int c = 0; c < rowsPerPartition; c++)
+            {
+                Row row = rows.get(i++);
+                assertEquals(k, row.getInt("k"));
+                assertEquals(c, row.getInt("c"));
+                assertEquals("static" + k, row.getString("s"));
+                assertEquals(VALUE + c, row.getString("v"));
+            }
+        }
+    }
+
+    @Test
+    public void testSinglePartition() throws Throwable
+    {
+        populate(1, 50);
+        assertRows(executeBounded("SELECT * FROM %s WHERE k = 0", 1000), new int[]{ 0 }, 50);
+        assertRows(executeBounded("SELECT * FROM %s WHERE k = 0 LIMIT 100", 1000), new int[]{ 0 }, 50);
+
+        List<Row> rows = executeBounded("SELECT * FROM %s WHERE k = 0 LIMIT 20", 1000);
+        assertEquals(20, rows.size());
+        assertEquals(19, rows.get(19).getInt("c"));
+    }
+
+    @Test
+    public void testMultiplePartitions() throws Throwable
+    {
+        populate(5, 10);
+        assertRows(executeBounded("SELECT * FROM %s WHERE k IN (1, 3, 4)", 1000), new int[]{ 1, 3, 4 }, 10);
+
+        List<Row> rows = executeBounded("SELECT * FROM %s WHERE k IN (1, 3, 4) PER PARTITION LIMIT 6", 1000);
+        assertEquals(18, rows.size());
+    }
+
+    @Test
+    public void testRange() throws Throwable
+    {
+        populate(10, 10);
+        List<Row> rows = executeBounded("SELECT * FROM %s", 1000);
+        assertEquals(100, rows.size());
+
+        // the partitions come in token order, but each one is complete and in clustering order
+        List<Integer> partitions = new ArrayList<>();
+        for (Row row : rows)
+        {
+            if (!partitions.contains(row.getInt("k")))
+                partitions.add(row.getInt("k"));
+        }
+        assertRows(rows, partitions.stream().mapToInt(Integer::intValue).toArray(), 10);
+    }
+
+    @Test
+    public void testReplicasReadTheRowsThatFit() throws Throwable
+    {
+        populate(1, 50);
+        flush();
+        assertRows(executeBounded("SELECT * FROM %s WHERE k = 0", 1000), new int[]{ 0 }, 50);
+
+        // the reads of the pages are limited to the rows that fit according to the size of the rows in the sstables,
+        // with the one that ends the page and the static row, rather than reading the 1000 rows of the fetch size
+        long maxRowsPerRead = getCurrentColumnFamilyStore().metric.liveScannedHistogram.cf.getSnapshot().getMax();
+        assertTrue("Read " + maxRowsPerRead + " rows", maxRowsPerRead <= MAX_PAGE_SIZE_IN_KB + 2);
+    }
+
+    @Test
+    public void testSmallerFetchSize() throws Throwable
+    {
+        populate(1, 20);
+        assertRows(executeBounded("SELECT * FROM %s WHERE k = 0", 2), new int[]{ 0 }, 20);
+    }
+
+    @Test
+    public void testAggregationIsNotBounded() throws Throwable
+    {
+        populate(3, 20);
+        assertRowsNet(executeNetWithPaging("SELECT k, count(*) FROM %s WHERE k = 1 GROUP BY k", 1000), row(1, 20L));
+        assertRowsNet(executeNetWithPaging("SELECT count(v) FROM %s", 1000), row(60L));
+    }
+
+    @Test
+    public void testInternalQueriesAreNotBounded() throws Throwable
+    {
+        populate(1, 50);
+        assertEquals(50, execute("SELECT * FROM %s WHERE k = 0").size());
+    }
+}
@@ -19,10 +19,12 @@
 package org.apache.cassandra.db;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Random;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
@@ -339,6 +341,51 @@ public class RecoveryManagerTest
         assertEquals(2, Util.getAll(Util.cmd(cfs).build()).size());
     }
 
+    @Test
+    public void testParallelReplay() throws IOException
+    {
+        int originalParallelism = CommitLogReplayer.REPLAY_PARALLELISM;
+        CommitLogReplayer.REPLAY_PARALLELISM = 2;
+        try
+        {
+            CommitLog.instance.resetUnsafe(true);
+            ColumnFamilyStore cfs = Keyspace.open(KEYSPACE1).getColumnFamilyStore(CF_STANDARD1);
+
+            // large random values, so the mutations span several segments even when compressed
+            Random random = new Random(42);
+            ByteBuffer[] expected = new ByteBuffer[10];
+            for (int i = 0; i < 40; i++)
+            {
+                byte[] value = new byte[256 * 1024];
+                for (int j = 0; j < value.length; j++)
+                    value[j] = (byte) ('!' + random.nextInt(94));
+                expected[i % 10] = ByteBuffer.wrap(value);
+                new RowUpdateBuilder(cfs.metadata(), i, "key" + (i % 10))
+                    .clustering("cc")
+                    .add("val", expected[i % 10])
+                    .build()
+                    .apply();
+            }
+            Assert.assertTrue(CommitLog.instance.segmentManager.getActiveSegments().size() > 1);
+
+            cfs.clearUnsafe();
+            long replayedMutations = CommitLog.instance.metrics.replayedMutations.getCount();
+            CommitLog.instance.resetUnsafe(false);
+            Assert.assertTrue(CommitLog.instance.metrics.replayedMutations.getCount() >= replayedMutations + 40);
+
+            ColumnMetadata column = cfs.metadata().getColumn(ByteBufferUtil.bytes("val"));
+            for (int i = 0; i < 10; i++)
+            {
+                Row row = Util.getOnlyRow(Util.cmd(cfs, "key" + i).includeRow("cc").build());
+                assertEquals(expected[i], row.getCell(column).value());
+            }
+        }
+        finally
+        {
+            CommitLogReplayer.REPLAY_PARALLELISM = originalParallelism;
+        }
+    }
+
     private static class MockInitiator extends CommitLogReplayer.MutationInitiator
     {
         final Semaphore blocker = new Semaphore(0);
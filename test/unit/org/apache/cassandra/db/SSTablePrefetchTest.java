@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.cassandra.Util;
+import org.apache.cassandra.concurrent.LocalAwareExecutorService;
+import org.apache.cassandra.concurrent.Stage;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.junit.Assert.assertEquals;
+
+public class SSTablePrefetchTest extends CQLTester
+{
+    private final LocalAwareExecutorService prefetchStage = Stage.READ_PREFETCH.executor();
+
+    @Before
+    public void enablePrefetch()
+    {
+        prefetchStage.setMaximumPoolSize(2);
+    }
+
+    @After
+    public void disablePrefetch()
+    {
+        prefetchStage.setMaximumPoolSize(0);
+    }
+
+    @Test
+    public void testMultiSSTableRead() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, val int, PRIMARY KEY (pk, ck))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        assertEquals(2, DatabaseDescriptor.getConcurrentSSTablePrefetches());
+
+        for (int j = 0; j < 3; j++)
+        {
+            for (int pk = 0; pk < 10; pk++)
+                execute("INSERT INTO %s (pk, ck, val) VALUES (?, ?, ?)", pk, j, j);
+            flush();
+        }
+        assertEquals(3, cfs.getLiveSSTables().size());
+
+        long completed = prefetchStage.getCompletedTaskCount();
+        for (int pk = 0; pk < 10; pk++)
+            assertRows(execute("SELECT ck, val FROM %s WHERE pk = ?", pk), row(0, 0), row(1, 1), row(2, 2));
+
+        // all but the first sstable are prefetched for each read
+        Util.spinAssertEquals(completed + 20, prefetchStage::getCompletedTaskCount, 10);
+    }
+
+    @Test
+    public void testSingleSSTableReadIsNotPrefetched() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, val int, PRIMARY KEY (pk, ck))");
+        execute("INSERT INTO %s (pk, ck, val) VALUES (0, 0, 0)");
+        flush();
+
+        long completed = prefetchStage.getCompletedTaskCount();
+        assertRows(execute("SELECT ck, val FROM %s WHERE pk = 0"), row(0, 0));
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(completed, prefetchStage.getCompletedTaskCount());
+    }
+
+    @Test
+    public void testSSTablesWithoutPartitionAreNotPrefetched() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, val int, PRIMARY KEY (pk, ck))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        for (int pk = 0; pk < 3; pk++)
+        {
+            execute("INSERT INTO %s (pk, ck, val) VALUES (?, 0, 0)", pk);
+            flush();
+        }
+        assertEquals(3, cfs.getLiveSSTables().size());
+
+        // the bloom filters of the other sstables rule them out, so there is nothing to prefetch
+        long completed = prefetchStage.getCompletedTaskCount();
+        for (int pk = 0; pk < 3; pk++)
+            assertRows(execute("SELECT ck, val FROM %s WHERE pk = ?", pk), row(0, 0));
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(completed, prefetchStage.getCompletedTaskCount());
+    }
+
+    @Test
+    public void testSSTablesShadowedByPartitionDeletionAreNotPrefetched() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, val int, PRIMARY KEY (pk, ck))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        for (int j = 0; j < 3; j++)
+        {
+            execute("INSERT INTO %s (pk, ck, val) VALUES (0, ?, ?)", j, j);
+            flush();
+        }
+        execute("DELETE FROM %s WHERE pk = 0");
+
+        // the partition deletion in the memtable shadows all the sstables, which the read skips
+        long completed = prefetchStage.getCompletedTaskCount();
+        assertEmpty(execute("SELECT ck, val FROM %s WHERE pk = 0"));
+        TimeUnit.MILLISECONDS.sleep(100);
+        assertEquals(completed, prefetchStage.getCompletedTaskCount());
+    }
+
+    @Test
+    public void testPrefetchReleasedSSTable() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, val int, PRIMARY KEY (pk, ck))");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        for (int j = 0; j < 2; j++)
+        {
+            execute("INSERT INTO %s (pk, ck, val) VALUES (0, ?, ?)", j, j);
+            flush();
+        }
+        List<SSTableReader> compacted = new ArrayList<>(cfs.getLiveSSTables());
+        cfs.forceMajorCompaction();
+
+        // the compacted sstables are fully released, so prefetching them is a no-op
+        DecoratedKey key = Util.dk(ByteBufferUtil.bytes(0));
+        for (SSTableReader sstable : compacted)
+            sstable.prefetch(key);
+        for (SSTableReader sstable : cfs.getLiveSSTables())
+            sstable.prefetch(key);
+
+        assertRows(execute("SELECT ck, val FROM %s WHERE pk = 0"), row(0, 0), row(1, 1));
+    }
+}
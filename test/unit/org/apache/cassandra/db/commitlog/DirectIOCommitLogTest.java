@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.db.commitlog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.config.ParameterizedClass;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.security.EncryptionContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DirectIOCommitLogTest extends CommitLogTest
+{
+    public DirectIOCommitLogTest(ParameterizedClass commitLogCompression, EncryptionContext encryptionContext)
+    {
+        super(commitLogCompression, encryptionContext);
+    }
+
+    @BeforeClass
+    public static void setCommitLogModeDetails()
+    {
+        DatabaseDescriptor.daemonInitialization();
+        DatabaseDescriptor.setCommitLogSync(Config.CommitLogSync.batch);
+        DatabaseDescriptor.setCommitLogDiskAccessMode(Config.CommitLogDiskAccessMode.direct);
+        beforeClass();
+    }
+
+    @Test
+    public void testPageAlignedWrites() throws IOException
+    {
+        CommitLog.instance.resetUnsafe(true);
+        CommitLogSegment segment = CommitLog.instance.segmentManager.allocatingFrom();
+        if (!(segment instanceof DirectIOSegment))
+        {
+            // compressed and encrypted segments are not written with direct I/O
+            assertTrue(CommitLog.instance.configuration.useCompression() || CommitLog.instance.configuration.useEncryption());
+            return;
+        }
+
+        // only the page holding the header is written on creation
+        assertEquals(DirectIOSegment.ALIGNMENT, segment.onDiskSize());
+        assertEquals(segment.onDiskSize(), segment.logFile.length());
+
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE1).getColumnFamilyStore(STANDARD1);
+        Mutation m = new RowUpdateBuilder(cfs.metadata.get(), 0, "key")
+                     .clustering("bytes")
+                     .add("val", ByteBuffer.allocate(10 * 1024))
+                     .build();
+        CommitLogPosition position = CommitLog.instance.add(m);
+        assertEquals(segment.id, position.segmentId);
+
+        // the batch sync wrote the pages holding the mutation and the next sync marker
+        int end = position.position + CommitLogSegment.SYNC_MARKER_SIZE;
+        assertEquals((end + DirectIOSegment.ALIGNMENT - 1) / DirectIOSegment.ALIGNMENT * DirectIOSegment.ALIGNMENT, segment.onDiskSize());
+        assertEquals(segment.onDiskSize(), segment.logFile.length());
+
+        assertEquals(1, CommitLog.instance.resetUnsafe(false));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.commitlog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.concurrent.NamedThreadFactory;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Mutation;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.schema.KeyspaceParams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StripedCommitLogTest
+{
+    private static final String KEYSPACE = "StripedCommitLogTest";
+    private static final String TABLE = "Standard1";
+    private static final int STRIPES = 4;
+    private static final int WRITERS = 8;
+
+    @BeforeClass
+    public static void beforeClass()
+    {
+        // keep the system keyspaces out of the commit log, so we can count the replayed mutations
+        KeyspaceParams.DEFAULT_LOCAL_DURABLE_WRITES = false;
+        DatabaseDescriptor.daemonInitialization();
+        DatabaseDescriptor.setCommitLogStripes(STRIPES);
+        SchemaLoader.prepareServer();
+        SchemaLoader.createKeyspace(KEYSPACE, KeyspaceParams.simple(1), SchemaLoader.standardCFMD(KEYSPACE, TABLE));
+    }
+
+    @AfterClass
+    public static void afterClass() throws IOException
+    {
+        DatabaseDescriptor.setCommitLogStripes(1);
+        CommitLog.instance.resetUnsafe(true);
+    }
+
+    @Before
+    public void beforeTest() throws IOException
+    {
+        CommitLog.instance.resetUnsafe(true);
+    }
+
+    private static Mutation mutation(int key)
+    {
+        ColumnFamilyStore cfs = Keyspace.open(KEYSPACE).getColumnFamilyStore(TABLE);
+        return new RowUpdateBuilder(cfs.metadata(), 0, "key" + key).clustering("c").add("val", "value").build();
+    }
+
+    /**
+     * Writes from {@link #WRITERS} threads, and returns the positions of the written records.
+     */
+    private static List<CommitLogPosition> writeConcurrently(int writesPerThread, Set<Long> stripes) throws InterruptedException
+    {
+        List<CommitLogPosition> positions = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < WRITERS; t++)
+        {
+            int first = t * writesPerThread;
+            Thread writer = NamedThreadFactory.createThread(() -> {
+                for (int i = 0; i < writesPerThread; i++)
+                    positions.add(CommitLog.instance.add(mutation(first + i)));
+            });
+            stripes.add(writer.getId() % STRIPES);
+            writers.add(writer);
+        }
+        for (Thread writer : writers)
+            writer.start();
+        for (Thread writer : writers)
+            writer.join();
+        return positions;
+    }
+
+    private static Set<Long> segmentIds(List<CommitLogPosition> positions)
+    {
+        Set<Long> ids = new HashSet<>();
+        for (CommitLogPosition position : positions)
+            ids.add(position.segmentId);
+        return ids;
+    }
+
+    @Test
+    public void testReplayAllStripes() throws Exception
+    {
+        Set<Long> stripes = new HashSet<>();
+        List<CommitLogPosition> positions = writeConcurrently(100, stripes);
+
+        // each stripe appended to its own segment
+        assertEquals(stripes.size(), segmentIds(positions).size());
+        assertTrue(CommitLog.instance.segmentManager.getActiveSegments().size() >= stripes.size());
+
+        assertEquals(WRITERS * 100, CommitLog.instance.resetUnsafe(false));
+    }
+
+    @Test
+    public void testCurrentPositionFollowsAllocatedRecords() throws Exception
+    {
+        for (int round = 0; round < 3; round++)
+        {
+            List<CommitLogPosition> before = writeConcurrently(10, new HashSet<>());
+            CommitLogPosition current = CommitLog.instance.getCurrentPosition();
+            for (CommitLogPosition position : before)
+                assertTrue(position + " > " + current, position.compareTo(current) <= 0);
+
+            List<CommitLogPosition> after = writeConcurrently(10, new HashSet<>());
+            for (CommitLogPosition position : after)
+                assertTrue(position + " <= " + current, position.compareTo(current) > 0);
+        }
+    }
+
+    @Test
+    public void testStripesAreSpreadAfterFlush() throws Exception
+    {
+        writeConcurrently(10, new HashSet<>());
+        Keyspace.open(KEYSPACE).getColumnFamilyStore(TABLE).forceBlockingFlush();
+
+        // the stripes moved to a shared segment by the flush eventually get their own segments back
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true)
+        {
+            Set<Long> stripes = new HashSet<>();
+            Set<Long> ids = segmentIds(writeConcurrently(1, stripes));
+            if (ids.size() == stripes.size())
+                break;
+            assertTrue("Stripes still share segments: " + ids, System.nanoTime() < deadline);
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
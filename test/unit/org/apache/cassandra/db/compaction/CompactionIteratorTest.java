@@ -320,6 +320,50 @@ public class CompactionIteratorTest extends CQLTester
         }
     }
 
+    @Test
+    public void testNonOverlappingSources()
+    {
+        UnfilteredRowsGenerator generator = new UnfilteredRowsGenerator(metadata.comparator, false);
+        Random rand = new Random(1);
+        List<DecoratedKey> keys = new ArrayList<>();
+        for (String key : new String[]{ "a", "b", "c", "d", "e" })
+            keys.add(Util.dk(key));
+        Collections.sort(keys);
+        // the second key is the only partition present in two sources
+        int[][] keysPerSource = { { 0, 1 }, { 1, 2, 3 }, { 4 } };
+        Map<DecoratedKey, List<List<Unfiltered>>> versions = new TreeMap<>();
+        List<ISSTableScanner> scanners = new ArrayList<>();
+        for (int[] indexes : keysPerSource)
+        {
+            List<UnfilteredRowIterator> partitions = new ArrayList<>();
+            for (int index : indexes)
+            {
+                List<Unfiltered> content = generator.generateSource(rand, COUNT, RANGE, NOW - 5, x -> NOW - 1);
+                versions.computeIfAbsent(keys.get(index), k -> new ArrayList<>()).add(content);
+                partitions.add(listToIterator(content, keys.get(index)));
+            }
+            scanners.add(new Scanner(partitions));
+        }
+
+        try (CompactionController controller = new Controller(Keyspace.openAndGetStore(metadata), Collections.emptyMap(), GC_BEFORE);
+             CompactionIterator iter = new CompactionIterator(OperationType.COMPACTION, scanners, controller, NOW, null))
+        {
+            for (Map.Entry<DecoratedKey, List<List<Unfiltered>>> entry : versions.entrySet())
+            {
+                assertTrue(iter.hasNext());
+                try (UnfilteredRowIterator partition = iter.next())
+                {
+                    assertEquals(entry.getKey(), partition.partitionKey());
+                    List<Unfiltered> result = new ArrayList<>();
+                    Iterators.addAll(result, partition);
+                    verifyEquivalent(entry.getValue(), result, Collections.emptyList(), generator);
+                }
+            }
+            assertFalse(iter.hasNext());
+            assertArrayEquals(new long[]{ 4, 1, 0 }, iter.getMergedRowCounts());
+        }
+    }
+
     @Test
     public void transformTest()
     {
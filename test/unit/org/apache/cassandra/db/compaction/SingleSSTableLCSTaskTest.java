@@ -20,7 +20,13 @@ package org.apache.cassandra.db.compaction;
 
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.Set;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
@@ -30,8 +36,10 @@ import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.lifecycle.LifecycleTransaction;
 import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.utils.FBUtilities;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class SingleSSTableLCSTaskTest extends CQLTester
@@ -67,6 +75,48 @@ public class SingleSSTableLCSTaskTest extends CQLTester
         assertTrue(cfs.getTracker().getCompacting().isEmpty());
     }
 
+    @Test
+    public void disjointSSTablesTest() throws Throwable
+    {
+        createTable("create table %s (id int primary key, t text) with compaction = {'class':'LeveledCompactionStrategy','single_sstable_uplevel':true}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        // sstables with a single partition each don't overlap
+        for (int i = 0; i < 3; i++)
+        {
+            execute("insert into %s (id, t) values (?, 'meep')", i);
+            cfs.forceBlockingFlush();
+        }
+        Set<SSTableReader> sstables = new HashSet<>(cfs.getLiveSSTables());
+        LeveledManifest.CompactionCandidate candidate = new LeveledManifest.CompactionCandidate(sstables, 1, Long.MAX_VALUE);
+        assertFalse(SSTableReader.hasOverlap(sstables));
+        assertTrue(LeveledCompactionStrategy.canUplevelWithoutRewrite(sstables, candidate, FBUtilities.nowInSeconds()));
+        // sstables can't be moved to their own level, nor when they are bigger than the sstables of the target level
+        assertFalse(LeveledCompactionStrategy.canUplevelWithoutRewrite(sstables, new LeveledManifest.CompactionCandidate(sstables, 0, Long.MAX_VALUE), FBUtilities.nowInSeconds()));
+        assertFalse(LeveledCompactionStrategy.canUplevelWithoutRewrite(sstables, new LeveledManifest.CompactionCandidate(sstables, 1, 1), FBUtilities.nowInSeconds()));
+
+        try (LifecycleTransaction txn = cfs.getTracker().tryModify(sstables, OperationType.COMPACTION))
+        {
+            new SingleSSTableLCSTask(cfs, txn, 1).executeInternal(null);
+        }
+        assertEquals(sstables, cfs.getLiveSSTables());
+        cfs.getLiveSSTables().forEach(s -> assertEquals(1, s.getSSTableLevel()));
+        LeveledCompactionStrategy lcs = (LeveledCompactionStrategy) cfs.getCompactionStrategyManager().getUnrepairedUnsafe().first();
+        assertEquals(3, lcs.getLevelSize(1));
+        assertTrue(cfs.getTracker().getCompacting().isEmpty());
+
+        // an sstable that overlaps the others, and one with a tombstone that could be purged, need rewriting
+        execute("insert into %s (id, t) values (?, 'meep')", 1);
+        cfs.forceBlockingFlush();
+        assertTrue(SSTableReader.hasOverlap(cfs.getLiveSSTables()));
+        execute("delete from %s where id = ?", 10);
+        cfs.forceBlockingFlush();
+        SSTableReader withTombstone = Iterables.getOnlyElement(Iterables.filter(Sets.difference(cfs.getLiveSSTables(), sstables), SSTableReader::mayHaveTombstones));
+        Set<SSTableReader> single = Collections.singleton(withTombstone);
+        assertTrue(LeveledCompactionStrategy.canUplevelWithoutRewrite(single, new LeveledManifest.CompactionCandidate(single, 1, Long.MAX_VALUE), 0));
+        assertFalse(LeveledCompactionStrategy.canUplevelWithoutRewrite(single, new LeveledManifest.CompactionCandidate(single, 1, Long.MAX_VALUE), Integer.MAX_VALUE));
+    }
+
     @Test
     public void compactionTest() throws Throwable
     {
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.utils.FBUtilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SubRangeCompactionTest extends CQLTester
+{
+    private int parallelism;
+    private long minSize;
+
+    @Before
+    public void enableSubRanges()
+    {
+        parallelism = DatabaseDescriptor.getCompactionSubRangeParallelism();
+        minSize = DatabaseDescriptor.getCompactionSubRangeMinSize();
+        DatabaseDescriptor.setCompactionSubRangeParallelism(4);
+        DatabaseDescriptor.setCompactionSubRangeMinSizeInMB(0);
+    }
+
+    @After
+    public void restoreSubRanges()
+    {
+        DatabaseDescriptor.setCompactionSubRangeParallelism(parallelism);
+        DatabaseDescriptor.setCompactionSubRangeMinSizeInMB((int) (minSize >> 20));
+    }
+
+    private void populate(int flushes) throws Throwable
+    {
+        for (int j = 0; j < flushes; j++)
+        {
+            for (int i = 0; i < 200; i++)
+                execute("INSERT INTO %s (id, val) VALUES (?, ?)", i, "value" + i + '-' + j);
+            flush();
+        }
+    }
+
+    private void assertData(int sstables) throws Throwable
+    {
+        assertRowCount(execute("SELECT * FROM %s"), 200);
+        for (int i = 0; i < 200; i += 17)
+            assertRows(execute("SELECT val FROM %s WHERE id = ?", i), row("value" + i + '-' + (sstables - 1)));
+    }
+
+    @Test
+    public void testMajorCompaction() throws Throwable
+    {
+        createTable("CREATE TABLE %s (id int PRIMARY KEY, val text) WITH compaction = {'class':'SizeTieredCompactionStrategy', 'min_threshold':2}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        populate(3);
+        assertEquals(3, cfs.getLiveSSTables().size());
+        Set<SSTableReader> originals = new HashSet<>(cfs.getLiveSSTables());
+
+        cfs.forceMajorCompaction();
+
+        // one sstable per sub-range, with no overlap
+        Set<SSTableReader> compacted = cfs.getLiveSSTables();
+        assertEquals(4, compacted.size());
+        assertFalse(SSTableReader.hasOverlap(compacted));
+        for (SSTableReader sstable : originals)
+            assertTrue(sstable.isMarkedCompacted());
+        assertTrue(cfs.getTracker().getCompacting().isEmpty());
+        assertData(3);
+
+        // the disjoint sstables are still compacted together, but they are merged rather than split again
+        AbstractCompactionStrategy strategy = cfs.getCompactionStrategyManager().getStrategies().get(1).get(0);
+        AbstractCompactionTask task = strategy.getNextBackgroundTask(FBUtilities.nowInSeconds());
+        assertEquals(compacted, task.transaction.originals());
+        task.execute(ActiveCompactionsTracker.NOOP);
+        assertEquals(1, cfs.getLiveSSTables().size());
+        assertData(3);
+        assertNull(strategy.getNextBackgroundTask(FBUtilities.nowInSeconds()));
+    }
+
+    @Test
+    public void testSmallCompactionIsNotSplit() throws Throwable
+    {
+        DatabaseDescriptor.setCompactionSubRangeMinSizeInMB(1024);
+        createTable("CREATE TABLE %s (id int PRIMARY KEY, val text) WITH compaction = {'class':'SizeTieredCompactionStrategy', 'min_threshold':2}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        populate(3);
+        assertEquals(3, cfs.getLiveSSTables().size());
+
+        cfs.forceMajorCompaction();
+
+        assertEquals(1, cfs.getLiveSSTables().size());
+        assertData(3);
+    }
+
+    @Test
+    public void testLeveledCompaction() throws Throwable
+    {
+        createTable("CREATE TABLE %s (id int PRIMARY KEY, val text) WITH compaction = {'class':'LeveledCompactionStrategy'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        populate(2);
+        assertEquals(2, cfs.getLiveSSTables().size());
+
+        AbstractCompactionStrategy strategy = cfs.getCompactionStrategyManager().getStrategies().get(1).get(0);
+        AbstractCompactionTask task = strategy.getNextBackgroundTask(FBUtilities.nowInSeconds());
+        task.execute(ActiveCompactionsTracker.NOOP);
+
+        Set<SSTableReader> compacted = cfs.getLiveSSTables();
+        assertEquals(4, compacted.size());
+        assertFalse(SSTableReader.hasOverlap(compacted));
+        int level = compacted.iterator().next().getSSTableLevel();
+        for (SSTableReader sstable : compacted)
+            assertEquals(level, sstable.getSSTableLevel());
+        assertData(2);
+    }
+
+    @Test
+    public void testUnifiedCompactionIsSplitAtShardBoundaries() throws Throwable
+    {
+        DatabaseDescriptor.setCompactionSubRangeParallelism(2);
+        createTable("CREATE TABLE %s (id int PRIMARY KEY, val text) WITH compaction = {'class':'UnifiedCompactionStrategy', 'base_shard_count':4}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+        populate(8);
+
+        cfs.forceMajorCompaction();
+
+        UnifiedCompactionStrategy strategy = (UnifiedCompactionStrategy) cfs.getCompactionStrategyManager().getStrategies().get(1).get(0);
+        ShardBoundaries shards = strategy.getShardBoundaries();
+        Set<Integer> shardsSeen = new HashSet<>();
+        for (SSTableReader sstable : cfs.getLiveSSTables())
+        {
+            int shard = shards.shardFor(sstable.first.getToken());
+            assertEquals(shard, shards.shardFor(sstable.last.getToken()));
+            assertTrue(shardsSeen.add(shard));
+        }
+        assertEquals(4, shardsSeen.size());
+        assertData(8);
+    }
+
+    @Test
+    public void testCoveringRanges()
+    {
+        IPartitioner partitioner = DatabaseDescriptor.getPartitioner();
+        Token minimum = partitioner.getMinimumToken();
+        assertEquals(Collections.singletonList(new Range<>(minimum, minimum)),
+                     CompactionTask.coveringRanges(partitioner, Collections.emptyList()));
+
+        Token first = partitioner.getRandomToken();
+        Token second = partitioner.getRandomToken();
+        if (first.compareTo(second) > 0)
+        {
+            Token tmp = first;
+            first = second;
+            second = tmp;
+        }
+        List<Range<Token>> ranges = CompactionTask.coveringRanges(partitioner, Arrays.asList(first, second));
+        assertEquals(Arrays.asList(new Range<>(minimum, first), new Range<>(first, second), new Range<>(second, minimum)), ranges);
+    }
+}
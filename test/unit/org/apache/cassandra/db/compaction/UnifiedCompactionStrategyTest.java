@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.compaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UnifiedCompactionStrategyTest extends CQLTester
+{
+    @Test
+    public void testScalingParameter()
+    {
+        assertEquals(2, UnifiedCompactionStrategyOptions.parseScalingParameter("T4"));
+        assertEquals(-8, UnifiedCompactionStrategyOptions.parseScalingParameter("L10"));
+        assertEquals(0, UnifiedCompactionStrategyOptions.parseScalingParameter("T2"));
+        assertEquals(0, UnifiedCompactionStrategyOptions.parseScalingParameter("N"));
+        assertEquals(-3, UnifiedCompactionStrategyOptions.parseScalingParameter("-3"));
+
+        UnifiedCompactionStrategyOptions tiered = new UnifiedCompactionStrategyOptions(ImmutableMap.of(UnifiedCompactionStrategyOptions.SCALING_PARAMETER_KEY, "T8"));
+        assertEquals(8, tiered.fanout());
+        assertEquals(8, tiered.threshold());
+
+        UnifiedCompactionStrategyOptions leveled = new UnifiedCompactionStrategyOptions(ImmutableMap.of(UnifiedCompactionStrategyOptions.SCALING_PARAMETER_KEY, "L8"));
+        assertEquals(8, leveled.fanout());
+        assertEquals(2, leveled.threshold());
+    }
+
+    @Test
+    public void testValidateOptions()
+    {
+        Map<String, String> options = new HashMap<>();
+        options.put(UnifiedCompactionStrategyOptions.SCALING_PARAMETER_KEY, "L4");
+        options.put(UnifiedCompactionStrategyOptions.BASE_SHARD_COUNT_KEY, "8");
+        options.put(UnifiedCompactionStrategyOptions.MIN_SSTABLE_SIZE_KEY, "1048576");
+        assertTrue(UnifiedCompactionStrategy.validateOptions(options).isEmpty());
+
+        assertInvalid(UnifiedCompactionStrategyOptions.SCALING_PARAMETER_KEY, "X4");
+        assertInvalid(UnifiedCompactionStrategyOptions.SCALING_PARAMETER_KEY, "T1");
+        assertInvalid(UnifiedCompactionStrategyOptions.SCALING_PARAMETER_KEY, "");
+        assertInvalid(UnifiedCompactionStrategyOptions.BASE_SHARD_COUNT_KEY, "0");
+        assertInvalid(UnifiedCompactionStrategyOptions.MIN_SSTABLE_SIZE_KEY, "-1");
+    }
+
+    private static void assertInvalid(String key, String value)
+    {
+        try
+        {
+            UnifiedCompactionStrategy.validateOptions(Collections.singletonMap(key, value));
+            fail(String.format("%s=%s should be invalid", key, value));
+        }
+        catch (ConfigurationException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void testShardBoundaries()
+    {
+        Murmur3Partitioner partitioner = Murmur3Partitioner.instance;
+        ShardBoundaries shards = ShardBoundaries.create(partitioner, 4, null);
+        assertEquals(4, shards.count());
+        assertEquals(0, shards.shardFor(partitioner.getMinimumToken()));
+        assertEquals(3, shards.shardFor(partitioner.getMaximumToken()));
+        double total = 0;
+        for (int i = 0; i < shards.count(); i++)
+        {
+            assertEquals(0.25, shards.fraction(i), 0.001);
+            total += shards.fraction(i);
+        }
+        assertEquals(1.0, total, 0.001);
+
+        // a boundary is the last token of its shard
+        Token boundary = shards.boundaries().get(0);
+        assertEquals(0, shards.shardFor(boundary));
+        assertEquals(1, shards.shardFor(boundary.increaseSlightly()));
+
+        // disk boundaries split the shards they fall in
+        List<PartitionPosition> diskPositions = new ArrayList<>();
+        diskPositions.add(new Murmur3Partitioner.LongToken(Long.MIN_VALUE / 4).maxKeyBound());
+        diskPositions.add(partitioner.getMaximumToken().maxKeyBound());
+        ShardBoundaries withDisks = ShardBoundaries.create(partitioner, 4, diskPositions);
+        assertEquals(5, withDisks.count());
+        assertTrue(withDisks.isFor(diskPositions));
+        assertTrue(!withDisks.isFor(null));
+        assertEquals(0.5, withDisks.fraction(partitioner.getMinimumToken(), new Murmur3Partitioner.LongToken(Long.MIN_VALUE / 8)), 0.001);
+    }
+
+    @Test
+    public void testFlushIsSharded() throws Throwable
+    {
+        createTable("CREATE TABLE %s (id int PRIMARY KEY, val text) WITH compaction = {'class':'UnifiedCompactionStrategy', 'base_shard_count':4}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+
+        for (int i = 0; i < 100; i++)
+            execute("INSERT INTO %s (id, val) VALUES (?, ?)", i, "value" + i);
+        flush();
+
+        UnifiedCompactionStrategy strategy = getStrategy(cfs);
+        ShardBoundaries shards = strategy.getShardBoundaries();
+        assertEquals(4, cfs.getLiveSSTables().size());
+        Set<Integer> shardsSeen = new HashSet<>();
+        for (SSTableReader sstable : cfs.getLiveSSTables())
+        {
+            int shard = shards.shardFor(sstable.first.getToken());
+            assertEquals(shard, shards.shardFor(sstable.last.getToken()));
+            assertTrue(shardsSeen.add(shard));
+        }
+        assertRowCount(execute("SELECT * FROM %s"), 100);
+    }
+
+    @Test
+    public void testParallelShardCompactions() throws Throwable
+    {
+        createTable("CREATE TABLE %s (id int PRIMARY KEY, val text) WITH compaction = {'class':'UnifiedCompactionStrategy', 'base_shard_count':4, 'scaling_parameter':'L2'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        cfs.disableAutoCompaction();
+
+        for (int j = 0; j < 2; j++)
+        {
+            for (int i = 0; i < 100; i++)
+                execute("INSERT INTO %s (id, val) VALUES (?, ?)", i, "value" + i + '-' + j);
+            flush();
+        }
+        assertEquals(8, cfs.getLiveSSTables().size());
+
+        UnifiedCompactionStrategy strategy = getStrategy(cfs);
+        ShardBoundaries shards = strategy.getShardBoundaries();
+        List<AbstractCompactionTask> tasks = new ArrayList<>();
+        Set<Integer> shardsCompacted = new HashSet<>();
+        int gcBefore = (int) (System.currentTimeMillis() / 1000);
+        AbstractCompactionTask task;
+        while ((task = strategy.getNextBackgroundTask(gcBefore)) != null)
+        {
+            assertEquals(2, task.transaction.originals().size());
+            Set<Integer> taskShards = new HashSet<>();
+            for (SSTableReader sstable : task.transaction.originals())
+                taskShards.add(shards.shardFor(sstable.first.getToken()));
+            assertEquals(1, taskShards.size());
+            assertTrue(shardsCompacted.addAll(taskShards));
+            tasks.add(task);
+        }
+        // one independent task per shard, that can all run concurrently
+        assertEquals(4, tasks.size());
+
+        for (AbstractCompactionTask t : tasks)
+            t.execute(ActiveCompactionsTracker.NOOP);
+
+        assertEquals(4, cfs.getLiveSSTables().size());
+        assertNull(strategy.getNextBackgroundTask(gcBefore));
+        assertRowCount(execute("SELECT * FROM %s"), 100);
+        assertRows(execute("SELECT val FROM %s WHERE id = 42"), row("value42-1"));
+    }
+
+    private static UnifiedCompactionStrategy getStrategy(ColumnFamilyStore cfs)
+    {
+        AbstractCompactionStrategy strategy = cfs.getCompactionStrategyManager().getStrategies().get(1).get(0);
+        assertNotNull(strategy);
+        return (UnifiedCompactionStrategy) strategy;
+    }
+}
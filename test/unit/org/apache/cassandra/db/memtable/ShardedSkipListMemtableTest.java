@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.memtable;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Memtable;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.dht.LocalPartitioner;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.exceptions.ConfigurationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedSkipListMemtableTest extends CQLTester
+{
+    @Test
+    public void testReadWrite() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, v int, PRIMARY KEY (pk, ck)) WITH memtable = {'class': 'ShardedSkipListMemtable', 'shards': '8'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        Memtable memtable = cfs.getTracker().getView().getCurrentMemtable();
+        assertTrue(memtable instanceof ShardedSkipListMemtable);
+        assertEquals(8, ((ShardedSkipListMemtable) memtable).shardCount());
+
+        for (int pk = 0; pk < 100; ++pk)
+            for (int ck = 0; ck < 3; ++ck)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, pk + ck);
+
+        assertEquals(100, memtable.partitionCount());
+        assertRows(execute("SELECT * FROM %s WHERE pk = ?", 42),
+                   row(42, 0, 42), row(42, 1, 43), row(42, 2, 44));
+        assertRowCount(execute("SELECT * FROM %s"), 300);
+
+        // range queries spanning several shards must return the same results before and after the flush
+        Object[][] all = getRows(execute("SELECT DISTINCT pk FROM %s"));
+        Object[][] range = getRows(execute("SELECT DISTINCT pk FROM %s WHERE token(pk) > token(?) AND token(pk) <= token(?)", all[10][0], all[90][0]));
+        assertEquals(80, range.length);
+        flush();
+        assertFalse(memtable.isClean());
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable().isClean());
+        assertRows(execute("SELECT DISTINCT pk FROM %s"), all);
+        assertRows(execute("SELECT DISTINCT pk FROM %s WHERE token(pk) > token(?) AND token(pk) <= token(?)", all[10][0], all[90][0]), range);
+    }
+
+    @Test
+    public void testInvalidOptions() throws Throwable
+    {
+        assertInvalidThrow(ConfigurationException.class, "CREATE TABLE " + KEYSPACE + ".invalid (pk int PRIMARY KEY) WITH memtable = {'class': 'ShardedSkipListMemtable', 'shards': '0'}");
+        assertInvalidThrow(ConfigurationException.class, "CREATE TABLE " + KEYSPACE + ".invalid (pk int PRIMARY KEY) WITH memtable = {'class': 'ShardedSkipListMemtable', 'shards': 'many'}");
+        assertInvalidThrow(ConfigurationException.class, "CREATE TABLE " + KEYSPACE + ".invalid (pk int PRIMARY KEY) WITH memtable = {'class': 'ShardedSkipListMemtable', 'foo': 'bar'}");
+    }
+
+    @Test
+    public void testShardBoundaries()
+    {
+        List<Token> boundaries = ShardedSkipListMemtable.shardBoundaries(Murmur3Partitioner.instance, 4);
+        assertEquals(3, boundaries.size());
+        for (int i = 1; i < boundaries.size(); i++)
+            assertTrue(boundaries.get(i - 1).compareTo(boundaries.get(i)) < 0);
+        // shards are of equal width, so the middle boundary is (about) zero
+        assertTrue(Math.abs((Long) boundaries.get(1).getTokenValue()) < 10);
+
+        assertTrue(ShardedSkipListMemtable.shardBoundaries(Murmur3Partitioner.instance, 1).isEmpty());
+        // partitioners that can't split their token range use a single shard
+        assertTrue(ShardedSkipListMemtable.shardBoundaries(new LocalPartitioner(Int32Type.instance), 4).isEmpty());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.memtable;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Memtable;
+import org.apache.cassandra.db.marshal.CompositeType;
+import org.apache.cassandra.db.marshal.CounterColumnType;
+import org.apache.cassandra.db.marshal.DynamicCompositeType;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.dht.LocalPartitioner;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.exceptions.ConfigurationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrieMemtableTest extends CQLTester
+{
+    @Test
+    public void testReadWrite() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int, ck int, v int, PRIMARY KEY (pk, ck)) WITH memtable = {'class': 'TrieMemtable'}");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof TrieMemtable);
+
+        for (int pk = 0; pk < 100; ++pk)
+            for (int ck = 0; ck < 3; ++ck)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, ck, pk + ck);
+
+        Memtable memtable = cfs.getTracker().getView().getCurrentMemtable();
+        assertEquals(100, memtable.partitionCount());
+        assertRows(execute("SELECT * FROM %s WHERE pk = ?", 42),
+                   row(42, 0, 42), row(42, 1, 43), row(42, 2, 44));
+        assertRowCount(execute("SELECT * FROM %s"), 300);
+
+        // the range queries must return the same results before and after the flush
+        Object[][] before = getRows(execute("SELECT pk FROM %s WHERE token(pk) > token(?) AND token(pk) <= token(?)", 10, 90));
+        flush();
+        assertFalse(memtable.isClean());
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable().isClean());
+        assertRows(execute("SELECT pk FROM %s WHERE token(pk) > token(?) AND token(pk) <= token(?)", 10, 90), before);
+        assertRowCount(execute("SELECT * FROM %s"), 300);
+    }
+
+    @Test
+    public void testAlterMemtable() throws Throwable
+    {
+        createTable("CREATE TABLE %s (pk int PRIMARY KEY, v int)");
+        ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof SkipListMemtable);
+        execute("INSERT INTO %s (pk, v) VALUES (1, 1)");
+
+        alterTable("ALTER TABLE %s WITH memtable = {'class': 'TrieMemtable'}");
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof TrieMemtable);
+        execute("INSERT INTO %s (pk, v) VALUES (2, 2)");
+        assertRowsIgnoringOrder(execute("SELECT * FROM %s"), row(1, 1), row(2, 2));
+
+        alterTable("ALTER TABLE %s WITH memtable = {'class': 'SkipListMemtable'}");
+        assertTrue(cfs.getTracker().getView().getCurrentMemtable() instanceof SkipListMemtable);
+        assertRowsIgnoringOrder(execute("SELECT * FROM %s"), row(1, 1), row(2, 2));
+    }
+
+    @Test
+    public void testInvalidOptions() throws Throwable
+    {
+        assertInvalidThrow(ConfigurationException.class, "CREATE TABLE " + KEYSPACE + ".invalid (pk int PRIMARY KEY) WITH memtable = {'class': 'NoSuchMemtable'}");
+        assertInvalidThrow(ConfigurationException.class, "CREATE TABLE " + KEYSPACE + ".invalid (pk int PRIMARY KEY) WITH memtable = {'class': 'TrieMemtable', 'foo': 'bar'}");
+        assertInvalidThrow(ConfigurationException.class, "CREATE TABLE " + KEYSPACE + ".invalid (pk int PRIMARY KEY) WITH memtable = {'foo': 'bar'}");
+    }
+
+    @Test
+    public void testSupportsPartitioner()
+    {
+        assertTrue(TrieMemtable.supportsPartitioner(Murmur3Partitioner.instance));
+        assertTrue(TrieMemtable.supportsPartitioner(new LocalPartitioner(Int32Type.instance)));
+        assertFalse(TrieMemtable.supportsPartitioner(new LocalPartitioner(CounterColumnType.instance)));
+        assertFalse(TrieMemtable.supportsPartitioner(new LocalPartitioner(CompositeType.getInstance(Int32Type.instance,
+                                                                                                     DynamicCompositeType.getInstance(Collections.emptyMap())))));
+    }
+}
@@ -36,10 +36,12 @@ import io.netty.channel.ChannelPromise;
 import io.netty.channel.DefaultFileRegion;
 import io.netty.channel.embedded.EmbeddedChannel;
 import org.apache.cassandra.SchemaLoader;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.db.RowUpdateBuilder;
 import org.apache.cassandra.db.compaction.CompactionManager;
+import org.apache.cassandra.io.sstable.PartitionDigests;
 import org.apache.cassandra.io.sstable.SSTableMultiWriter;
 import org.apache.cassandra.io.sstable.format.SSTableReader;
 import org.apache.cassandra.io.util.DataInputBuffer;
@@ -62,6 +64,7 @@ import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.FBUtilities;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 public class CassandraEntireSSTableStreamWriterTest
@@ -90,6 +93,10 @@ public class CassandraEntireSSTableStreamWriterTest
         Keyspace keyspace = Keyspace.open(KEYSPACE);
         store = keyspace.getColumnFamilyStore("Standard1");
 
+        // the optional components must be streamed too
+        DatabaseDescriptor.setTriePartitionIndexEnabled(true);
+        DatabaseDescriptor.setRepairPartitionDigestsEnabled(true);
+
         // insert data and compact to a single sstable
         CompactionManager.instance.disableAutoCompaction();
         for (int j = 0; j < 10; j++)
@@ -159,6 +166,12 @@ public class CassandraEntireSSTableStreamWriterTest
         Collection<SSTableReader> newSstables = sstableWriter.finished();
 
         assertEquals(1, newSstables.size());
+        SSTableReader received = newSstables.iterator().next();
+        assertTrue(received.hasPartitionIndex());
+        try (PartitionDigests digests = PartitionDigests.open(received))
+        {
+            assertNotNull(digests);
+        }
     }
 
     private EmbeddedChannel createMockNettyChannel(ByteBuf serializedFile) throws Exception
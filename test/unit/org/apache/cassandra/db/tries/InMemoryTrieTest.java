@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.tries;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import com.google.common.collect.Iterables;
+import com.google.common.primitives.UnsignedBytes;
+import org.junit.Test;
+
+import org.apache.cassandra.utils.bytecomparable.ByteComparable;
+import org.apache.cassandra.utils.bytecomparable.ByteSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryTrieTest
+{
+    private static final InMemoryTrie.BlockAllocator HEAP = (size, opGroup) -> ByteBuffer.allocate(size);
+    private static final InMemoryTrie.BlockAllocator DIRECT = (size, opGroup) -> ByteBuffer.allocateDirect(size);
+
+    private static ByteComparable key(byte[] bytes)
+    {
+        // an escaped component is only prefix-free when followed by a separator or terminator
+        return () -> ByteSource.withTerminator(ByteSource.TERMINATOR, ByteSource.of(bytes));
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        InMemoryTrie<String> trie = new InMemoryTrie<>(HEAP);
+        assertTrue(trie.isEmpty());
+        assertEquals(0, trie.sizeInBytes());
+        assertNull(trie.get(key(new byte[]{ 1 })));
+        assertTrue(!trie.values().hasNext());
+        assertTrue(!trie.valuesFrom(key(new byte[]{ 1 })).hasNext());
+    }
+
+    @Test
+    public void testPutIfAbsent()
+    {
+        InMemoryTrie<String> trie = new InMemoryTrie<>(HEAP);
+        String first = trie.putIfAbsent(key(new byte[]{ 1, 2 }), () -> "a", null);
+        assertEquals("a", first);
+        assertSame(first, trie.putIfAbsent(key(new byte[]{ 1, 2 }), () -> "b", null));
+        assertEquals(1, trie.size());
+        assertNull(trie.get(key(new byte[]{ 1 })));
+        assertNull(trie.get(key(new byte[]{ 1, 2, 3 })));
+        assertEquals("a", trie.get(key(new byte[]{ 1, 2 })));
+    }
+
+    @Test
+    public void testRandomHeap()
+    {
+        testRandom(HEAP, 10000, 20, 8, 1);
+    }
+
+    @Test
+    public void testRandomDirect()
+    {
+        testRandom(DIRECT, 10000, 20, 8, 2);
+    }
+
+    @Test
+    public void testRandomDense()
+    {
+        // a small alphabet with long keys makes for long chains, a full one for dense nodes
+        testRandom(HEAP, 5000, 200, 2, 3);
+        testRandom(HEAP, 50000, 4, 256, 4);
+    }
+
+    private static void testRandom(InMemoryTrie.BlockAllocator allocator, int count, int maxLength, int alphabet, long seed)
+    {
+        Random random = new Random(seed);
+        InMemoryTrie<byte[]> trie = new InMemoryTrie<>(allocator);
+        TreeMap<byte[], byte[]> expected = new TreeMap<>(UnsignedBytes.lexicographicalComparator());
+        for (int i = 0; i < count; ++i)
+        {
+            byte[] bytes = randomKey(random, maxLength, alphabet);
+            byte[] value = trie.putIfAbsent(key(bytes), () -> bytes, null);
+            byte[] previous = expected.putIfAbsent(bytes, bytes);
+            assertSame(previous == null ? bytes : previous, value);
+        }
+
+        assertEquals(expected.size(), trie.size());
+        for (byte[] bytes : expected.keySet())
+            assertSame(expected.get(bytes), trie.get(key(bytes)));
+        assertValues(expected.values().iterator(), trie.values());
+
+        for (int i = 0; i < 100; ++i)
+        {
+            byte[] bound = randomKey(random, maxLength, alphabet);
+            assertValues(expected.tailMap(bound, true).values().iterator(), trie.valuesFrom(key(bound)));
+        }
+        for (Map.Entry<byte[], byte[]> entry : Iterables.limit(expected.entrySet(), 100))
+            assertValues(expected.tailMap(entry.getKey(), true).values().iterator(), trie.valuesFrom(key(entry.getKey())));
+    }
+
+    private static byte[] randomKey(Random random, int maxLength, int alphabet)
+    {
+        byte[] bytes = new byte[random.nextInt(maxLength) + 1];
+        // a restricted alphabet makes keys share prefixes; 0 and 255 exercise the escaping
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = (byte) (random.nextInt(alphabet) * 255 / Math.max(1, alphabet - 1));
+        return bytes;
+    }
+
+    private static void assertValues(Iterator<byte[]> expected, Iterator<byte[]> actual)
+    {
+        List<byte[]> expectedList = new ArrayList<>();
+        expected.forEachRemaining(expectedList::add);
+        List<byte[]> actualList = new ArrayList<>();
+        actual.forEachRemaining(actualList::add);
+        assertEquals(expectedList.size(), actualList.size());
+        for (int i = 0; i < expectedList.size(); ++i)
+            assertSame(expectedList.get(i), actualList.get(i));
+    }
+}
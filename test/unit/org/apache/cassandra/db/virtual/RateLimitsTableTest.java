@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.db.virtual;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.exceptions.OverloadedException;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.transport.RequestRateLimiters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RateLimitsTableTest extends CQLTester
+{
+    private static final String KS_NAME = "vts";
+
+    @BeforeClass
+    public static void setUpClass()
+    {
+        CQLTester.setUpClass();
+        VirtualKeyspaceRegistry.instance.register(new VirtualKeyspace(KS_NAME, ImmutableList.of(new RateLimitsTable(KS_NAME))));
+        requireNetwork();
+    }
+
+    @After
+    public void resetRates()
+    {
+        for (RequestRateLimiters.Scope scope : RequestRateLimiters.Scope.values())
+            RequestRateLimiters.instance.setRate(scope, 0);
+        RequestRateLimiters.instance.clear();
+    }
+
+    /**
+     * Sends the requests all at once, much faster than the rate limits used by the tests.
+     *
+     * @return the number of requests that were rejected
+     */
+    private static int rejected(List<ResultSetFuture> futures)
+    {
+        int rejected = 0;
+        for (ResultSetFuture future : futures)
+        {
+            try
+            {
+                future.getUninterruptibly();
+            }
+            catch (OverloadedException e)
+            {
+                assertTrue(e.getMessage(), e.getMessage().contains("rate limit"));
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+
+    private Row limit(String scope, String name) throws Throwable
+    {
+        List<Row> rows = executeNet("SELECT * FROM vts.rate_limits WHERE scope = ? AND name = ?", scope, name).all();
+        assertEquals(1, rows.size());
+        return rows.get(0);
+    }
+
+    @Test
+    public void testPerIp() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        Session session = sessionNet();
+        RequestRateLimiters.instance.setRate(RequestRateLimiters.Scope.IP, 10);
+
+        int requests = 100;
+        List<ResultSetFuture> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++)
+            futures.add(session.executeAsync(formatQuery("SELECT * FROM %s WHERE k = " + i)));
+        int rejected = rejected(futures);
+        assertTrue("Only " + rejected + " requests were rejected", rejected > requests / 2);
+
+        // disabling the limit lets everything through again, and drops the buckets
+        RequestRateLimiters.instance.setRate(RequestRateLimiters.Scope.IP, 0);
+        futures.clear();
+        for (int i = 0; i < requests; i++)
+            futures.add(session.executeAsync(formatQuery("SELECT * FROM %s WHERE k = " + i)));
+        assertEquals(0, rejected(futures));
+        assertTrue(executeNet("SELECT * FROM vts.rate_limits").all().isEmpty());
+    }
+
+    @Test
+    public void testPerTable() throws Throwable
+    {
+        String limited = createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        String other = createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        Session session = sessionNet();
+        PreparedStatement insertLimited = session.prepare(String.format("INSERT INTO %s.%s (k, v) VALUES (?, ?)", KEYSPACE, limited));
+        PreparedStatement insertOther = session.prepare(String.format("INSERT INTO %s.%s (k, v) VALUES (?, ?)", KEYSPACE, other));
+        RequestRateLimiters.instance.setRate(RequestRateLimiters.Scope.TABLE, 10);
+
+        int requests = 100;
+        List<ResultSetFuture> limitedFutures = new ArrayList<>(requests);
+        List<ResultSetFuture> otherFutures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++)
+        {
+            limitedFutures.add(session.executeAsync(insertLimited.bind(i, i)));
+            otherFutures.add(session.executeAsync(insertOther.bind(i, i)));
+        }
+        int limitedRejected = rejected(limitedFutures);
+        int otherRejected = rejected(otherFutures);
+
+        // both tables have their own bucket
+        assertTrue("Only " + limitedRejected + " requests were rejected", limitedRejected > requests / 2);
+        assertTrue("Only " + otherRejected + " requests were rejected", otherRejected > requests / 2);
+
+        Row row = limit("table", KEYSPACE + '.' + limited);
+        assertEquals(10.0, row.getDouble("rate"), 0.001);
+        assertEquals(requests - limitedRejected, row.getLong("permitted"));
+        assertEquals(limitedRejected, row.getLong("rejected"));
+
+        // unprepared statements are not limited by table
+        for (int i = 0; i < 20; i++)
+            executeNet(String.format("INSERT INTO %s.%s (k, v) VALUES (?, ?)", KEYSPACE, limited), i, i);
+    }
+}
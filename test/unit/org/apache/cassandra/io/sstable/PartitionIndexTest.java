@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.io.sstable;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.dht.ByteOrderedPartitioner;
+import org.apache.cassandra.io.sstable.format.SSTableFormat;
+import org.apache.cassandra.io.sstable.format.SSTableReader;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.io.util.SequentialWriterOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PartitionIndexTest extends CQLTester
+{
+    @Test
+    public void testEmpty() throws Throwable
+    {
+        try (PartitionIndex index = build(new TreeMap<>()))
+        {
+            assertEquals(PartitionIndex.NOT_FOUND, index.getPosition(key(new byte[]{ 1 })));
+        }
+    }
+
+    @Test
+    public void testRandom() throws Throwable
+    {
+        // a small alphabet makes the keys share long prefixes, a full one makes for wide nodes
+        testRandom(1, 1, 10, 256);
+        testRandom(2, 10000, 30, 2);
+        testRandom(3, 50000, 8, 256);
+    }
+
+    private void testRandom(long seed, int count, int maxLength, int alphabet) throws Throwable
+    {
+        Random random = new Random(seed);
+        TreeMap<DecoratedKey, Long> keys = new TreeMap<>();
+        while (keys.size() < count)
+            keys.put(key(randomBytes(random, maxLength, alphabet)), 0L);
+
+        // increasing positions with random gaps, as in the primary index
+        Map<Long, DecoratedKey> byPosition = new HashMap<>();
+        long position = random.nextInt(1 << 20);
+        for (Map.Entry<DecoratedKey, Long> entry : keys.entrySet())
+        {
+            position += random.nextInt(1 << 10) + 1;
+            entry.setValue(position);
+            byPosition.put(position, entry.getKey());
+        }
+
+        try (PartitionIndex index = build(keys))
+        {
+            for (Map.Entry<DecoratedKey, Long> entry : keys.entrySet())
+                assertEquals((long) entry.getValue(), index.getPosition(entry.getKey()));
+
+            // a missing key can't lead to any entry but that of another key
+            for (int i = 0; i < 1000; i++)
+            {
+                DecoratedKey missing = key(randomBytes(random, maxLength + 1, alphabet));
+                if (keys.containsKey(missing))
+                    continue;
+                long found = index.getPosition(missing);
+                if (found != PartitionIndex.NOT_FOUND)
+                    assertNotEquals(missing, byPosition.get(found));
+            }
+        }
+    }
+
+    @Test
+    public void testPointReads() throws Throwable
+    {
+        DatabaseDescriptor.setTriePartitionIndexEnabled(true);
+        try
+        {
+            createTable("CREATE TABLE %s (pk int, ck int, v int, PRIMARY KEY (pk, ck))");
+            for (int pk = 0; pk < 1000; pk += 2)
+                execute("INSERT INTO %s (pk, ck, v) VALUES (?, ?, ?)", pk, 0, pk);
+            flush();
+
+            ColumnFamilyStore cfs = getCurrentColumnFamilyStore();
+            cfs.disableAutoCompaction();
+            SSTableReader sstable = cfs.getLiveSSTables().iterator().next();
+            assertTrue(sstable.components.contains(Component.PARTITION_INDEX));
+            assertTrue(new File(sstable.descriptor.filenameFor(Component.PARTITION_INDEX)).exists());
+            assertTrue(sstable.hasPartitionIndex());
+
+            for (int pk = 0; pk < 1000; pk++)
+            {
+                if (pk % 2 == 0)
+                    assertRows(execute("SELECT v FROM %s WHERE pk = ?", pk), row(pk));
+                else
+                    assertEmpty(execute("SELECT v FROM %s WHERE pk = ?", pk));
+            }
+            assertRowCount(execute("SELECT * FROM %s"), 500);
+        }
+        finally
+        {
+            DatabaseDescriptor.setTriePartitionIndexEnabled(false);
+        }
+    }
+
+    private static DecoratedKey key(byte[] bytes)
+    {
+        return ByteOrderedPartitioner.instance.decorateKey(ByteBuffer.wrap(bytes));
+    }
+
+    private static byte[] randomBytes(Random random, int maxLength, int alphabet)
+    {
+        byte[] bytes = new byte[random.nextInt(maxLength) + 1];
+        // 0 and 255 exercise the escaping
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = (byte) (random.nextInt(alphabet) * 255 / Math.max(1, alphabet - 1));
+        return bytes;
+    }
+
+    private static PartitionIndex build(TreeMap<DecoratedKey, Long> keys) throws Throwable
+    {
+        File directory = FileUtils.createTempFile("partition_index", "");
+        directory.delete();
+        directory.mkdirs();
+        directory.deleteOnExit();
+        Descriptor descriptor = new Descriptor(directory, "ks", "cf", 1, SSTableFormat.Type.BIG);
+        File file = new File(descriptor.filenameFor(Component.PARTITION_INDEX));
+        file.deleteOnExit();
+        try (PartitionIndexBuilder builder = new PartitionIndexBuilder(file, SequentialWriterOption.DEFAULT))
+        {
+            for (Map.Entry<DecoratedKey, Long> entry : keys.entrySet())
+                builder.add(entry.getKey(), entry.getValue());
+            builder.finish();
+        }
+        return PartitionIndex.load(descriptor);
+    }
+}
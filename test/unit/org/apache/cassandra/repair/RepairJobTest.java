@@ -43,6 +43,7 @@ import org.junit.Test;
 
 import org.apache.cassandra.SchemaLoader;
 import org.apache.cassandra.concurrent.DebuggableThreadPoolExecutor;
+import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.dht.ByteOrderedPartitioner;
 import org.apache.cassandra.dht.IPartitioner;
@@ -156,6 +157,7 @@ public class RepairJobTest
         MessagingService.instance().outboundSink.clear();
         MessagingService.instance().inboundSink.clear();
         FBUtilities.reset();
+        DatabaseDescriptor.setRepairPipelineSegments(1);
     }
 
     /**
@@ -189,6 +191,76 @@ public class RepairJobTest
         assertThat(observedMessages).extracting(Message::verb).containsExactlyElementsOf(expectedTypes);
     }
 
+    /**
+     * Ensure a parallel RepairJob validates each segment of its ranges separately when pipelining
+     */
+    @Test
+    public void testEndToEndPipelinedNoDifferences() throws InterruptedException, ExecutionException, TimeoutException
+    {
+        DatabaseDescriptor.setRepairPipelineSegments(2);
+        RepairSession session = new RepairSession(this.session.parentRepairSession, UUIDGen.getTimeUUID(),
+                                                  new CommonRange(new HashSet<>(Arrays.asList(addr2, addr3)), Collections.emptySet(), FULL_RANGE),
+                                                  KEYSPACE, RepairParallelism.PARALLEL,
+                                                  false, false, false,
+                                                  PreviewKind.NONE, false, CF);
+        RepairJob job = new RepairJob(session, CF);
+
+        List<RepairMessage> validationRequests = new ArrayList<>();
+        MessagingService.instance().outboundSink.add((message, to) -> {
+            if (message.verb() == Verb.VALIDATION_REQ)
+            {
+                RepairJobDesc desc = ((RepairMessage) message.payload).desc;
+                synchronized (MESSAGE_LOCK)
+                {
+                    validationRequests.add((RepairMessage) message.payload);
+                }
+                MerkleTrees trees = new MerkleTrees(MURMUR3_PARTITIONER);
+                trees.addMerkleTrees((int) Math.pow(2, 15), desc.ranges);
+                trees.init();
+                session.validationComplete(desc, to, trees);
+            }
+            return false;
+        });
+
+        job.run();
+
+        RepairResult result = job.get(TEST_TIMEOUT_S, TimeUnit.SECONDS);
+        assertThat(result.stats).hasSize(0);
+
+        // 3 replicas validate each of the 2 segments, one segment after the other
+        assertThat(validationRequests).hasSize(6);
+        List<RepairJobDesc> segments = RepairJob.segments(new RepairJobDesc(session.parentRepairSession, session.getId(), KEYSPACE, CF, FULL_RANGE), 2);
+        for (int i = 0; i < validationRequests.size(); i++)
+            assertThat(validationRequests.get(i).desc).isEqualTo(segments.get(i / 3));
+    }
+
+    @Test
+    public void testSegments()
+    {
+        RepairJobDesc desc = new RepairJobDesc(UUID.randomUUID(), UUID.randomUUID(), KEYSPACE, CF, FULL_RANGE);
+        assertThat(RepairJob.segments(desc, 1)).containsExactly(desc);
+
+        // a single range is split
+        List<RepairJobDesc> segments = RepairJob.segments(desc, 4);
+        assertThat(segments).hasSize(4);
+        Token left = FULL_RANGE.get(0).left;
+        for (RepairJobDesc segment : segments)
+        {
+            assertThat(segment.ranges).hasSize(1);
+            Range<Token> range = segment.ranges.iterator().next();
+            assertThat(range.left).isEqualTo(left);
+            left = range.right;
+        }
+        assertThat(left).isEqualTo(FULL_RANGE.get(0).right);
+
+        // more ranges than segments are grouped, in order
+        desc = new RepairJobDesc(UUID.randomUUID(), UUID.randomUUID(), KEYSPACE, CF, Arrays.asList(RANGE_3, RANGE_1, RANGE_2));
+        segments = RepairJob.segments(desc, 2);
+        assertThat(segments).hasSize(2);
+        assertThat(segments.get(0).ranges).containsExactly(RANGE_1);
+        assertThat(segments.get(1).ranges).containsExactly(RANGE_2, RANGE_3);
+    }
+
     /**
      * Regression test for CASSANDRA-14096. We should not retain memory in the RepairSession once the
      * ValidationTask -> SyncTask transform is done.
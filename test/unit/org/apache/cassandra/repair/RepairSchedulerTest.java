@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.repair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.dht.ByteOrderedPartitioner;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+import static org.apache.cassandra.repair.RepairScheduler.plan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RepairSchedulerTest
+{
+    private static final IPartitioner partitioner = Murmur3Partitioner.instance;
+
+    @BeforeClass
+    public static void setupDD()
+    {
+        DatabaseDescriptor.daemonInitialization();
+    }
+
+    @Test
+    public void testSplitFullRing()
+    {
+        Token min = partitioner.getMinimumToken();
+        Range<Token> ring = new Range<>(min, min);
+        List<RepairScheduler.Task> tasks = plan(partitioner, Collections.singleton(ring), 10_000_000, 1e10, 1_000_000);
+
+        assertEquals(10, tasks.size());
+        Token left = min;
+        long partitions = 0;
+        for (RepairScheduler.Task task : tasks)
+        {
+            assertTrue(task.estimatedPartitions <= 1_000_000);
+            for (Range<Token> range : task.ranges)
+            {
+                assertEquals(left, range.left);
+                left = range.right;
+            }
+            partitions += task.estimatedPartitions;
+        }
+        assertEquals(min, left);
+        assertEquals(10_000_000, partitions, 10);
+    }
+
+    @Test
+    public void testPackSmallRanges()
+    {
+        List<Range<Token>> ranges = ranges(100);
+        List<RepairScheduler.Task> tasks = plan(partitioner, ranges, 1_000_000, 1e9, 100_000);
+
+        assertEquals(10, tasks.size());
+        for (int i = 0; i < tasks.size(); i++)
+        {
+            RepairScheduler.Task task = tasks.get(i);
+            assertEquals(i, task.index);
+            assertEquals(ranges.subList(i * 10, i * 10 + 10), task.ranges);
+            assertEquals(100_000, task.estimatedPartitions, 10);
+            assertEquals(100_000_000, task.estimatedBytes, 10_000);
+        }
+    }
+
+    @Test
+    public void testSplitAndPackRanges()
+    {
+        // half the ring, split in 4 sub-ranges of 450k partitions, then 10 small ranges of 45k partitions each
+        List<Range<Token>> ranges = new ArrayList<>();
+        Token min = partitioner.getMinimumToken();
+        Token half = partitioner.split(min, min, 0.5);
+        ranges.add(new Range<>(min, half));
+        Token left = half;
+        for (int i = 1; i <= 10; i++)
+        {
+            Token right = partitioner.split(half, min, i / 40.0);
+            ranges.add(new Range<>(left, right));
+            left = right;
+        }
+        List<RepairScheduler.Task> tasks = plan(partitioner, ranges, 3_600_000, 0, 500_000);
+
+        // the last sub-range is packed with the first small range, and the other small ranges fit in a task
+        assertEquals(5, tasks.size());
+        for (int i = 0; i < 3; i++)
+            assertEquals(1, tasks.get(i).ranges.size());
+        assertEquals(2, tasks.get(3).ranges.size());
+        assertEquals(ranges.get(1), tasks.get(3).ranges.get(1));
+        assertEquals(ranges.subList(2, 11), tasks.get(4).ranges);
+        for (RepairScheduler.Task task : tasks)
+            assertTrue(task.estimatedPartitions <= 500_000);
+        assertEquals(half, tasks.get(3).ranges.get(0).right);
+    }
+
+    @Test
+    public void testWithoutEstimates()
+    {
+        List<Range<Token>> ranges = ranges(16);
+        List<RepairScheduler.Task> tasks = plan(partitioner, ranges, 0, 0, 100_000);
+
+        assertEquals(16, tasks.size());
+        for (int i = 0; i < tasks.size(); i++)
+        {
+            assertEquals(Collections.singletonList(ranges.get(i)), tasks.get(i).ranges);
+            assertEquals(0, tasks.get(i).estimatedPartitions);
+        }
+    }
+
+    @Test
+    public void testWithoutSplitter()
+    {
+        IPartitioner bop = ByteOrderedPartitioner.instance;
+        Range<Token> range = new Range<>(bop.getToken(ByteBufferUtil.bytes(1)), bop.getToken(ByteBufferUtil.bytes(100)));
+        List<RepairScheduler.Task> tasks = plan(bop, Collections.singleton(range), 1_000_000, 0, 10);
+
+        assertEquals(1, tasks.size());
+        assertEquals(Collections.singletonList(range), tasks.get(0).ranges);
+    }
+
+    private static List<Range<Token>> ranges(int count)
+    {
+        List<Range<Token>> ranges = new ArrayList<>(count);
+        Token min = partitioner.getMinimumToken();
+        Token left = min;
+        for (int i = 1; i <= count; i++)
+        {
+            Token right = i == count ? min : partitioner.split(min, min, (double) i / count);
+            ranges.add(new Range<>(left, right));
+            left = right;
+        }
+        return ranges;
+    }
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.repair;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -43,13 +44,17 @@ import org.apache.cassandra.db.BufferDecoratedKey;
 import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.EmptyIterators;
 import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.RowUpdateBuilder;
+import org.apache.cassandra.db.marshal.UTF8Type;
 import org.apache.cassandra.dht.IPartitioner;
 import org.apache.cassandra.dht.Range;
 import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.Component;
 import org.apache.cassandra.net.Message;
 import org.apache.cassandra.net.MessagingService;
 import org.apache.cassandra.repair.messages.ValidationResponse;
 import org.apache.cassandra.schema.KeyspaceParams;
+import org.apache.cassandra.schema.TableMetadata;
 import org.apache.cassandra.service.ActiveRepairService;
 import org.apache.cassandra.streaming.PreviewKind;
 import org.apache.cassandra.utils.ByteBufferUtil;
@@ -69,9 +74,12 @@ public class ValidatorTest
 {
     private static final long TEST_TIMEOUT = 60; //seconds
     private static int testSizeMegabytes;
+    private static int testOffHeapSizeMegabytes;
 
     private static final String keyspace = "ValidatorTest";
     private static final String columnFamily = "Standard1";
+    // a table with a column that is never written
+    private static final String sparseColumnFamily = "Sparse1";
     private static IPartitioner partitioner;
 
     @BeforeClass
@@ -80,9 +88,11 @@ public class ValidatorTest
         SchemaLoader.prepareServer();
         SchemaLoader.createKeyspace(keyspace,
                                     KeyspaceParams.simple(1),
-                                    SchemaLoader.standardCFMD(keyspace, columnFamily));
+                                    SchemaLoader.standardCFMD(keyspace, columnFamily),
+                                    SchemaLoader.standardCFMD(keyspace, sparseColumnFamily).addRegularColumn("unwritten", UTF8Type.instance));
         partitioner = Schema.instance.getTableMetadata(keyspace, columnFamily).partitioner;
         testSizeMegabytes = DatabaseDescriptor.getRepairSessionSpaceInMegabytes();
+        testOffHeapSizeMegabytes = DatabaseDescriptor.getOffheapMerkleTreesSpaceInMegabytes();
     }
 
     @After
@@ -90,6 +100,9 @@ public class ValidatorTest
     {
         MessagingService.instance().outboundSink.clear();
         DatabaseDescriptor.setRepairSessionSpaceInMegabytes(testSizeMegabytes);
+        DatabaseDescriptor.setRepairPartitionDigestsEnabled(false);
+        DatabaseDescriptor.useOffheapMerkleTrees(true);
+        ActiveRepairService.instance.setOffheapMerkleTreesSpaceInMegabytes(testOffHeapSizeMegabytes);
     }
 
     @Before
@@ -230,6 +243,80 @@ public class ValidatorTest
      */
     @Test
     public void testSizeLimiting() throws Exception
+    {
+        DatabaseDescriptor.useOffheapMerkleTrees(false);
+        MerkleTrees trees = validateSizeLimited();
+
+        Iterator<Map.Entry<Range<Token>, MerkleTree>> iterator = trees.iterator();
+        int numTrees = 0;
+        while (iterator.hasNext())
+        {
+            assertEquals(1 << 12, iterator.next().getValue().size(), 0.0);
+            numTrees++;
+        }
+        assertEquals(1, numTrees);
+
+        assertEquals(trees.rowCount(), 1 << 14);
+    }
+
+    /*
+     * Trees built off-heap have the depth they would have on heap, so that they match the trees of the other replicas
+     * to the same depth, even for a local coordinator that keeps them off-heap.
+     */
+    @Test
+    public void testOffHeapSizeLimiting() throws Exception
+    {
+        DatabaseDescriptor.useOffheapMerkleTrees(true);
+        MerkleTrees trees = validateSizeLimited(false);
+
+        Iterator<Map.Entry<Range<Token>, MerkleTree>> iterator = trees.iterator();
+        int numTrees = 0;
+        while (iterator.hasNext())
+        {
+            assertEquals(1 << 12, iterator.next().getValue().size(), 0.0);
+            numTrees++;
+        }
+        assertEquals(1, numTrees);
+    }
+
+    /*
+     * Trees built off-heap for a remote coordinator, that may deserialize them on heap, are limited like on heap too.
+     */
+    @Test
+    public void testOffHeapSizeLimitingForRemoteCoordinator() throws Exception
+    {
+        DatabaseDescriptor.useOffheapMerkleTrees(true);
+        MerkleTrees trees = validateSizeLimited();
+
+        Iterator<Map.Entry<Range<Token>, MerkleTree>> iterator = trees.iterator();
+        while (iterator.hasNext())
+            assertEquals(1 << 12, iterator.next().getValue().size(), 0.0);
+        assertEquals(trees.rowCount(), 1 << 14);
+        trees.release();
+    }
+
+    /*
+     * The trees of a validation that doesn't fit in the off-heap space left are built on heap.
+     */
+    @Test
+    public void testOffHeapSpaceExhausted() throws Exception
+    {
+        DatabaseDescriptor.useOffheapMerkleTrees(true);
+        ActiveRepairService.instance.setOffheapMerkleTreesSpaceInMegabytes(0);
+        MerkleTrees trees = validateSizeLimited();
+
+        Iterator<Map.Entry<Range<Token>, MerkleTree>> iterator = trees.iterator();
+        while (iterator.hasNext())
+            assertEquals(1 << 12, iterator.next().getValue().size(), 0.0);
+        assertEquals(trees.rowCount(), 1 << 14);
+    }
+
+    private MerkleTrees validateSizeLimited() throws Exception
+    {
+        return validateSizeLimited(true);
+    }
+
+    private MerkleTrees validateSizeLimited(boolean remoteCoordinator) throws Exception
     {
         Keyspace ks = Keyspace.open(keyspace);
         ColumnFamilyStore cfs = ks.getColumnFamilyStore(columnFamily);
@@ -240,7 +327,7 @@ public class ValidatorTest
         // disable compaction while flushing
         cfs.disableAutoCompaction();
 
-        // 2 ** 14 rows would normally use 2^14 leaves, but with only 1 meg we should only use 2^12
+        // 2 ** 14 rows would normally use 2^14 leaves, but with only 1 meg we should only use 2^12 on heap
         CompactionsTest.populate(keyspace, columnFamily, 0, 1 << 14, 0);
 
         cfs.forceBlockingFlush();
@@ -255,29 +342,34 @@ public class ValidatorTest
                                                      cfs.getTableName(), Collections.singletonList(new Range<>(sstable.first.getToken(),
                                                                                                                sstable.last.getToken())));
 
-        InetAddressAndPort host = InetAddressAndPort.getByName("127.0.0.2");
+        InetAddressAndPort host = remoteCoordinator ? InetAddressAndPort.getByName("127.0.0.2") : FBUtilities.getBroadcastAddressAndPort();
 
         ActiveRepairService.instance.registerParentRepairSession(repairSessionId, host,
                                                                  Collections.singletonList(cfs), desc.ranges, false, ActiveRepairService.UNREPAIRED_SSTABLE,
                                                                  false, PreviewKind.NONE);
 
+        if (!remoteCoordinator)
+        {
+            // the trees of a local coordinator are handed over without a message, so are captured when prepared
+            CompletableFuture<MerkleTrees> prepared = new CompletableFuture<>();
+            Validator validator = new Validator(desc, host, 0, true, false, PreviewKind.NONE)
+            {
+                public void prepare(ColumnFamilyStore cfs, MerkleTrees tree)
+                {
+                    super.prepare(cfs, tree);
+                    prepared.complete(tree);
+                }
+            };
+            ValidationManager.instance.submitValidation(cfs, validator).get(TEST_TIMEOUT, TimeUnit.SECONDS);
+            return prepared.get(TEST_TIMEOUT, TimeUnit.SECONDS);
+        }
+
         final CompletableFuture<Message> outgoingMessageSink = registerOutgoingMessageSink();
         Validator validator = new Validator(desc, host, 0, true, false, PreviewKind.NONE);
         ValidationManager.instance.submitValidation(cfs, validator);
 
         Message message = outgoingMessageSink.get(TEST_TIMEOUT, TimeUnit.SECONDS);
-        MerkleTrees trees = ((ValidationResponse) message.payload).trees;
-
-        Iterator<Map.Entry<Range<Token>, MerkleTree>> iterator = trees.iterator();
-        int numTrees = 0;
-        while (iterator.hasNext())
-        {
-            assertEquals(1 << 12, iterator.next().getValue().size(), 0.0);
-            numTrees++;
-        }
-        assertEquals(1, numTrees);
-
-        assertEquals(trees.rowCount(), 1 << 14);
+        return ((ValidationResponse) message.payload).trees;
     }
 
     /*
@@ -295,6 +387,7 @@ public class ValidatorTest
         cfs.clearUnsafe();
 
         DatabaseDescriptor.setRepairSessionSpaceInMegabytes(1);
+        DatabaseDescriptor.useOffheapMerkleTrees(false);
 
         // disable compaction while flushing
         cfs.disableAutoCompaction();
@@ -354,6 +447,91 @@ public class ValidatorTest
         assertTrue(totalResolution > (1 << 11) && totalResolution < (1 << 13));
     }
 
+    /*
+     * Validates sstables with and without partition hashes, with partitions in several sstables, with tombstones and
+     * with TTLs, and checks that using the hashes builds the same trees as reading the partitions.
+     */
+    @Test
+    public void testPartitionDigests() throws Exception
+    {
+        testPartitionDigests(columnFamily);
+    }
+
+    /**
+     * The hashes must also match the partitions read when the sstables don't have all the columns of the table.
+     */
+    @Test
+    public void testPartitionDigestsOfSparseTable() throws Exception
+    {
+        testPartitionDigests(sparseColumnFamily);
+    }
+
+    private void testPartitionDigests(String table) throws Exception
+    {
+        Keyspace ks = Keyspace.open(keyspace);
+        ColumnFamilyStore cfs = ks.getColumnFamilyStore(table);
+        cfs.clearUnsafe();
+        cfs.disableAutoCompaction();
+        TableMetadata metadata = cfs.metadata();
+
+        DatabaseDescriptor.setRepairPartitionDigestsEnabled(true);
+        for (int i = 0; i < 100; i++)
+            new RowUpdateBuilder(metadata, 1, Integer.toString(i)).clustering("c").add("val", "a").build().applyUnsafe();
+        cfs.forceBlockingFlush();
+
+        for (int i = 50; i < 60; i++)
+            new RowUpdateBuilder(metadata, 2, Integer.toString(i)).clustering("c").add("val", "b").build().applyUnsafe();
+        for (int i = 100; i < 110; i++)
+            new RowUpdateBuilder(metadata, 2L, 3600, Integer.toString(i)).clustering("c").add("val", "b").build().applyUnsafe();
+        RowUpdateBuilder.deleteRow(metadata, 2, "0", "c").applyUnsafe();
+        cfs.forceBlockingFlush();
+
+        DatabaseDescriptor.setRepairPartitionDigestsEnabled(false);
+        for (int i = 200; i < 210; i++)
+            new RowUpdateBuilder(metadata, 1, Integer.toString(i)).clustering("c").add("val", "a").build().applyUnsafe();
+        cfs.forceBlockingFlush();
+
+        assertEquals(3, cfs.getLiveSSTables().size());
+        assertEquals(2, cfs.getLiveSSTables().stream().filter(s -> new File(s.descriptor.filenameFor(Component.PARTITION_DIGESTS)).exists()).count());
+
+        Range<Token> range = new Range<>(partitioner.getMinimumToken(), partitioner.getMinimumToken());
+        Validator validator = validator(cfs, range);
+        MerkleTrees read = validate(cfs, validator);
+        assertEquals(0, validator.getPrecomputed());
+
+        DatabaseDescriptor.setRepairPartitionDigestsEnabled(true);
+        validator = validator(cfs, range);
+        MerkleTrees hashed = validate(cfs, validator);
+        assertTrue(validator.getPrecomputed() > 0);
+
+        assertEquals(read.rowCount(), hashed.rowCount());
+        assertTrue(MerkleTrees.difference(read, hashed).isEmpty());
+    }
+
+    private Validator validator(ColumnFamilyStore cfs, Range<Token> range) throws Exception
+    {
+        UUID repairSessionId = UUIDGen.getTimeUUID();
+        RepairJobDesc desc = new RepairJobDesc(repairSessionId, UUIDGen.getTimeUUID(), cfs.keyspace.getName(),
+                                               cfs.getTableName(), Collections.singletonList(range));
+        InetAddressAndPort host = InetAddressAndPort.getByName("127.0.0.2");
+        ActiveRepairService.instance.registerParentRepairSession(repairSessionId, host,
+                                                                 Collections.singletonList(cfs), desc.ranges, false, ActiveRepairService.UNREPAIRED_SSTABLE,
+                                                                 false, PreviewKind.NONE);
+        return new Validator(desc, host, 0, PreviewKind.NONE);
+    }
+
+    private MerkleTrees validate(ColumnFamilyStore cfs, Validator validator) throws Exception
+    {
+        CompletableFuture<Message> outgoingMessageSink = registerOutgoingMessageSink();
+        ValidationManager.instance.submitValidation(cfs, validator);
+
+        Message message = outgoingMessageSink.get(TEST_TIMEOUT, TimeUnit.SECONDS);
+        ValidationResponse response = (ValidationResponse) message.payload;
+        assertTrue(response.success());
+        MessagingService.instance().outboundSink.clear();
+        return response.trees;
+    }
+
     private List<Range<Token>> splitHelper(Range<Token> range, int depth)
     {
         if (depth <= 0)
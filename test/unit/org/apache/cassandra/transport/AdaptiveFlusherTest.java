@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.codahale.metrics.Histogram;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+
+import static org.apache.cassandra.metrics.CassandraMetricsRegistry.Metrics;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveFlusherTest extends CQLTester
+{
+    @BeforeClass
+    public static void setUp()
+    {
+        DatabaseDescriptor.setNativeTransportAdaptiveFlusher(true);
+        requireNetwork();
+    }
+
+    private static Histogram flushedResponses()
+    {
+        Histogram histogram = Metrics.getHistograms().get("org.apache.cassandra.metrics.Client.FlushedResponses");
+        assertNotNull(histogram);
+        return histogram;
+    }
+
+    @Test
+    public void testSequentialRequests() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        for (int i = 0; i < 10; i++)
+        {
+            executeNet("INSERT INTO %s (k, v) VALUES (?, ?)", i, i);
+            assertRowsNet(executeNet("SELECT v FROM %s WHERE k = ?", i), row(i));
+        }
+    }
+
+    @Test
+    public void testPipelinedRequestsAreCoalesced() throws Throwable
+    {
+        createTable("CREATE TABLE %s (k int PRIMARY KEY, v int)");
+        Session session = sessionNet();
+        long flushesBefore = flushedResponses().getCount();
+
+        int requests = 500;
+        List<ResultSetFuture> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++)
+            futures.add(session.executeAsync(formatQuery(String.format("INSERT INTO %%s (k, v) VALUES (%d, %d)", i, i))));
+        for (ResultSetFuture future : futures)
+            future.getUninterruptibly();
+
+        assertEquals(requests, executeNet("SELECT * FROM %s").all().size());
+
+        // all the responses were written, and some of them in the same flush
+        long flushes = flushedResponses().getCount() - flushesBefore;
+        assertTrue(flushes > 0);
+        assertTrue("Expected coalesced flushes, but got " + flushes + " flushes for " + requests + " requests",
+                   flushedResponses().getSnapshot().getMax() > 1);
+    }
+}
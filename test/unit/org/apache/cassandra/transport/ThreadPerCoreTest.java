@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.transport;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.concurrent.LocalAwareExecutorService;
+import org.apache.cassandra.concurrent.PerCoreExecutors;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.cql3.CQLTester;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ThreadPerCoreTest extends CQLTester
+{
+    @BeforeClass
+    public static void setUp()
+    {
+        DatabaseDescriptor.setNativeTransportThreadPerCore(true);
+        requireNetwork();
+    }
+
+    private static long completedRequests(PerCoreExecutors executors)
+    {
+        long completed = 0;
+        for (LocalAwareExecutorService executor : executors.executors())
+            completed += executor.getCompletedTaskCount();
+        return completed;
+    }
+
+    @Test
+    public void testRequestsExecutedByPerCoreExecutors() throws Throwable
+    {
+        PerCoreExecutors executors = Message.Dispatcher.perCoreRequestExecutors();
+        assertNotNull(executors);
+
+        createTable("CREATE TABLE %s (k int, c int, v int, PRIMARY KEY (k, c))");
+        for (int i = 0; i < 10; i++)
+            executeNet("INSERT INTO %s (k, c, v) VALUES (?, ?, ?)", i % 3, i, i);
+
+        assertRowsNet(executeNet("SELECT v FROM %s WHERE k = 1"), row(1), row(4), row(7));
+        assertEquals(10, executeNet("SELECT * FROM %s").all().size());
+
+        // getCompletedTaskCount is only updated once the task has returned, after its response has been queued
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (completedRequests(executors) < 12 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertTrue(completedRequests(executors) >= 12);
+    }
+}
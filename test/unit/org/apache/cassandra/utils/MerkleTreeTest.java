@@ -668,6 +668,103 @@ public class MerkleTreeTest
         return ObjectSizes.measureDeep(tree);
     }
 
+    @Test
+    public void testEstimatedOffHeapSizes()
+    {
+        for (IPartitioner partitioner : newArrayList(Murmur3Partitioner.instance, RandomPartitioner.instance, ByteOrderedPartitioner.instance))
+        {
+            for (int i = 14; i < 24; i++)
+            {
+                long numBytes = 1 << i;
+                // the nodes are smaller off-heap, so the trees sized on heap fit in as many bytes off-heap
+                int maxDepth = MerkleTree.estimatedMaxDepthForBytes(partitioner, numBytes, 32);
+                Assert.assertTrue(MerkleTree.estimatedOffHeapBytesForDepth(partitioner, maxDepth) <= numBytes);
+            }
+        }
+    }
+
+    @Test
+    public void testInitOffHeap() throws IOException
+    {
+        checkInitOffHeap(Murmur3Partitioner.instance);
+        checkInitOffHeap(RandomPartitioner.instance);
+        checkInitOffHeap(ByteOrderedPartitioner.instance);
+    }
+
+    private void checkInitOffHeap(IPartitioner partitioner) throws IOException
+    {
+        Range<Token> fullRange = new Range<>(partitioner.getMinimumToken(), partitioner.getMinimumToken());
+        MerkleTree onHeap = new MerkleTree(partitioner, fullRange, RECOMMENDED_DEPTH, 256);
+        MerkleTree offHeap = new MerkleTree(partitioner, fullRange, RECOMMENDED_DEPTH, 256, true);
+        onHeap.init();
+        offHeap.init();
+        assertEquals(onHeap.size(), offHeap.size());
+
+        Random random = new Random(1);
+        addHashes(random, partitioner, 1000, onHeap, offHeap);
+        checkSameTrees(onHeap, offHeap);
+
+        // hashes added once the inner hashes were computed are accounted for
+        addHashes(random, partitioner, 1, offHeap);
+        assertFalse(MerkleTree.difference(onHeap, offHeap).isEmpty());
+        assertEquals(onHeap.rowCount() + 1, offHeap.rowCount());
+        offHeap.release();
+    }
+
+    @Test
+    public void testMoveSplitTreeOffHeap() throws IOException
+    {
+        IPartitioner partitioner = ByteOrderedPartitioner.instance;
+        Range<Token> fullRange = new Range<>(partitioner.getMinimumToken(), partitioner.getMinimumToken());
+        MerkleTree onHeap = new MerkleTree(partitioner, fullRange, RECOMMENDED_DEPTH, 64);
+        MerkleTree offHeap = new MerkleTree(partitioner, fullRange, RECOMMENDED_DEPTH, 64, true);
+
+        Random random = new Random(1);
+        byte[] key = new byte[8];
+        while (true)
+        {
+            random.nextBytes(key);
+            Token token = partitioner.getToken(ByteBuffer.wrap(key));
+            if (!onHeap.split(token))
+                break;
+            assertTrue(offHeap.split(token));
+        }
+        offHeap.moveSplitTreeOffHeap();
+        // does nothing on trees already moved, or to build on heap
+        offHeap.moveSplitTreeOffHeap();
+        onHeap.moveSplitTreeOffHeap();
+
+        addHashes(random, partitioner, 1000, onHeap, offHeap);
+        checkSameTrees(onHeap, offHeap);
+        offHeap.release();
+    }
+
+    private static void addHashes(Random random, IPartitioner partitioner, int count, MerkleTree... trees)
+    {
+        byte[] key = new byte[16];
+        for (int i = 0; i < count; i++)
+        {
+            random.nextBytes(key);
+            Token token = partitioner.getToken(ByteBuffer.wrap(key));
+            byte[] hash = new byte[32];
+            random.nextBytes(hash);
+            for (MerkleTree tree : trees)
+                tree.get(token).addHash(new RowHash(token, hash.clone(), key.length));
+        }
+    }
+
+    private static void checkSameTrees(MerkleTree onHeap, MerkleTree offHeap) throws IOException
+    {
+        assertHashEquals(onHeap.hash(onHeap.fullRange), offHeap.hash(offHeap.fullRange));
+        assertTrue(MerkleTree.difference(onHeap, offHeap).isEmpty());
+        assertEquals(onHeap.rowCount(), offHeap.rowCount());
+        assertEquals(onHeap.serializedSize(MessagingService.current_version), offHeap.serializedSize(MessagingService.current_version));
+        MerkleTree restored = cycle(offHeap, false);
+        assertHashEquals(onHeap.hash(onHeap.fullRange), restored.hash(restored.fullRange));
+        assertEquals(onHeap, restored);
+        assertTrue(MerkleTree.difference(onHeap, cycle(offHeap, true)).isEmpty());
+    }
+
     @Test
     public void testEqualTreesSameDepth() throws IOException
     {
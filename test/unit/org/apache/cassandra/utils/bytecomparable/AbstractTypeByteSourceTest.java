@@ -0,0 +1,405 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.utils.bytecomparable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ClusteringBound;
+import org.apache.cassandra.db.ClusteringBoundary;
+import org.apache.cassandra.db.ClusteringComparator;
+import org.apache.cassandra.db.ClusteringPrefix;
+import org.apache.cassandra.db.Clustering;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.PartitionPosition;
+import org.apache.cassandra.db.marshal.*;
+import org.apache.cassandra.dht.LocalPartitioner;
+import org.apache.cassandra.serializers.CollectionSerializer;
+import org.apache.cassandra.transport.ProtocolVersion;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.UUIDGen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AbstractTypeByteSourceTest
+{
+    private static final Random random = new Random(42);
+
+    @BeforeClass
+    public static void setUp()
+    {
+        DatabaseDescriptor.daemonInitialization();
+    }
+
+    @Test
+    public void testStrings()
+    {
+        String[] strings = { "", "a", "ab", "a\0", "a\0b", "a\0\0", "\0", "b", "ÿ", "Ā", "aa" };
+        List<ByteBuffer> values = new ArrayList<>();
+        for (String s : strings)
+            values.add(UTF8Type.instance.decompose(s));
+        for (int i = 0; i < 50; i++)
+            values.add(randomBytes(4));
+        testType(UTF8Type.instance, values);
+        testType(AsciiType.instance, values);
+        testType(BytesType.instance, values);
+        testType(ReversedType.getInstance(UTF8Type.instance), values);
+    }
+
+    @Test
+    public void testFixedLengthNumbers()
+    {
+        testType(Int32Type.instance, values(Int32Type.instance, 0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 255, 256, -256, -255), () -> random.nextInt());
+        testType(ReversedType.getInstance(Int32Type.instance), values(Int32Type.instance, 0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE), () -> random.nextInt());
+        testType(LongType.instance, values(LongType.instance, 0L, 1L, -1L, Long.MIN_VALUE, Long.MAX_VALUE), () -> random.nextLong());
+        // short and byte values can't be empty
+        testType(ShortType.instance, nonEmpty(values(ShortType.instance, (short) 0, (short) -1, Short.MIN_VALUE, Short.MAX_VALUE)), () -> (short) random.nextInt());
+        testType(ByteType.instance, nonEmpty(values(ByteType.instance, (byte) 0, (byte) -1, Byte.MIN_VALUE, Byte.MAX_VALUE)), () -> (byte) random.nextInt());
+        testType(BooleanType.instance, values(BooleanType.instance, true, false));
+        testType(TimestampType.instance, values(TimestampType.instance), () -> new java.util.Date(random.nextLong()));
+    }
+
+    @Test
+    public void testFloatingPoint()
+    {
+        testType(FloatType.instance,
+                 values(FloatType.instance, 0f, -0f, 1f, -1f, Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.MIN_VALUE, -Float.MIN_VALUE, Float.MAX_VALUE),
+                 () -> Float.intBitsToFloat(random.nextInt()));
+        testType(DoubleType.instance,
+                 values(DoubleType.instance, 0d, -0d, 1d, -1d, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE),
+                 () -> Double.longBitsToDouble(random.nextLong()));
+    }
+
+    @Test
+    public void testVarints()
+    {
+        List<ByteBuffer> values = values(IntegerType.instance, BigInteger.ZERO, BigInteger.ONE, BigInteger.ONE.negate(),
+                                         BigInteger.ONE.shiftLeft(2000), BigInteger.ONE.shiftLeft(2000).negate(),
+                                         BigInteger.ONE.shiftLeft(1015), BigInteger.ONE.shiftLeft(1016).negate());
+        // padded representations are equal to the minimal ones
+        values.add(ByteBuffer.wrap(new byte[]{ 0, 0, 1 }));
+        values.add(ByteBuffer.wrap(new byte[]{ -1, -1, -1 }));
+        for (int i = 0; i < 100; i++)
+            values.add(IntegerType.instance.decompose(new BigInteger(random.nextInt(300), random).subtract(BigInteger.ONE.shiftLeft(random.nextInt(300)))));
+        testType(IntegerType.instance, values);
+    }
+
+    @Test
+    public void testDecimals()
+    {
+        List<ByteBuffer> values = values(DecimalType.instance, BigDecimal.ZERO, BigDecimal.ONE, new BigDecimal("1.00"), new BigDecimal("-1.0"),
+                                         new BigDecimal("0.001"), new BigDecimal("-0.001"), new BigDecimal("1E+10"), new BigDecimal("1E-10"),
+                                         new BigDecimal("123.45"), new BigDecimal("123.4500"), new BigDecimal("-123.456"), new BigDecimal("0.12"),
+                                         new BigDecimal("0.123"), new BigDecimal("-0.12"), new BigDecimal("-0.123"), new BigDecimal("10"), new BigDecimal("9.99"));
+        for (int i = 0; i < 100; i++)
+            values.add(DecimalType.instance.decompose(new BigDecimal(new BigInteger(random.nextInt(100), random).subtract(BigInteger.ONE.shiftLeft(random.nextInt(100))),
+                                                                     random.nextInt(40) - 20)));
+        testType(DecimalType.instance, values);
+    }
+
+    @Test
+    public void testUUIDs()
+    {
+        List<ByteBuffer> timeUUIDs = values(TimeUUIDType.instance);
+        List<ByteBuffer> uuids = values(UUIDType.instance);
+        for (int i = 0; i < 50; i++)
+        {
+            // time-based UUIDs with random node bytes, which are compared signed
+            UUID timeUUID = UUIDGen.getTimeUUID(random.nextLong() & 0xFFFFFFFFFFL, random.nextInt(10000), random.nextLong());
+            timeUUIDs.add(TimeUUIDType.instance.decompose(timeUUID));
+            uuids.add(UUIDType.instance.decompose(timeUUID));
+            uuids.add(UUIDType.instance.decompose(UUID.randomUUID()));
+            uuids.add(UUIDType.instance.decompose(new UUID(random.nextLong(), random.nextLong())));
+        }
+        testType(TimeUUIDType.instance, timeUUIDs);
+        testType(UUIDType.instance, uuids);
+        testType(LexicalUUIDType.instance, uuids);
+    }
+
+    @Test
+    public void testByteOrderTypes() throws Exception
+    {
+        testType(InetAddressType.instance, values(InetAddressType.instance, InetAddress.getByName("127.0.0.1"), InetAddress.getByName("10.0.0.1"),
+                                                  InetAddress.getByName("::1"), InetAddress.getByName("fe80::1"), InetAddress.getByName("0.0.0.0")));
+        testType(SimpleDateType.instance, values(SimpleDateType.instance), () -> random.nextInt());
+        testType(TimeType.instance, values(TimeType.instance), () -> (random.nextLong() & Long.MAX_VALUE) % 86400000000000L);
+        testType(EmptyType.instance, Collections.singletonList(ByteBufferUtil.EMPTY_BYTE_BUFFER));
+    }
+
+    @Test
+    public void testCollections()
+    {
+        List<ByteBuffer> lists = new ArrayList<>();
+        List<ByteBuffer> maps = new ArrayList<>();
+        lists.add(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        maps.add(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        for (int i = 0; i < 100; i++)
+        {
+            int size = random.nextInt(4);
+            List<ByteBuffer> elements = new ArrayList<>();
+            for (int j = 0; j < size; j++)
+                elements.add(randomBytes(2));
+            lists.add(CollectionSerializer.pack(elements, size, ProtocolVersion.V3));
+            List<ByteBuffer> entries = new ArrayList<>();
+            for (int j = 0; j < size; j++)
+            {
+                entries.add(randomBytes(2));
+                entries.add(Int32Type.instance.decompose(random.nextInt(3) - 1));
+            }
+            maps.add(CollectionSerializer.pack(entries, size, ProtocolVersion.V3));
+        }
+        testType(ListType.getInstance(BytesType.instance, false), lists);
+        testType(SetType.getInstance(BytesType.instance, false), lists);
+        testType(ListType.getInstance(ReversedType.getInstance(BytesType.instance), false), lists);
+        testType(MapType.getInstance(BytesType.instance, Int32Type.instance, false), maps);
+    }
+
+    @Test
+    public void testTuples()
+    {
+        TupleType type = new TupleType(Arrays.asList(Int32Type.instance, UTF8Type.instance, ReversedType.getInstance(LongType.instance)));
+        List<ByteBuffer> values = new ArrayList<>();
+        values.add(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        for (int i = 0; i < 200; i++)
+        {
+            // trailing empty values are ambiguous in TupleType.compare, so only generate non-empty values and nulls
+            ByteBuffer[] components = new ByteBuffer[1 + random.nextInt(3)];
+            if (random.nextInt(4) > 0)
+                components[0] = Int32Type.instance.decompose(random.nextInt(3));
+            if (components.length > 1 && random.nextInt(4) > 0)
+                components[1] = UTF8Type.instance.decompose(random.nextBoolean() ? "a" : "ab");
+            if (components.length > 2 && random.nextInt(4) > 0)
+                components[2] = LongType.instance.decompose((long) random.nextInt(3));
+            values.add(TupleType.buildValue(components));
+        }
+        testType(type, values);
+    }
+
+    @Test
+    public void testComposites()
+    {
+        CompositeType type = CompositeType.getInstance(UTF8Type.instance, ReversedType.getInstance(Int32Type.instance));
+        List<ByteBuffer> values = new ArrayList<>();
+        values.add(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        for (int i = 0; i < 200; i++)
+        {
+            int size = 1 + random.nextInt(2);
+            ByteBuffer[] components = new ByteBuffer[size];
+            components[0] = UTF8Type.instance.decompose(random.nextBoolean() ? "" : random.nextBoolean() ? "a" : "ab");
+            if (size > 1)
+                components[1] = random.nextInt(4) == 0 ? ByteBufferUtil.EMPTY_BYTE_BUFFER : Int32Type.instance.decompose(random.nextInt(3));
+            values.add(composite(random.nextInt(8) == 0, random.nextInt(3) - 1, components));
+        }
+        testType(type, values);
+
+        Map<Byte, AbstractType<?>> aliases = new HashMap<>();
+        aliases.put((byte) 'b', BytesType.instance);
+        aliases.put((byte) 'i', Int32Type.instance);
+        aliases.put((byte) 'I', ReversedType.getInstance(Int32Type.instance));
+        DynamicCompositeType dynamicType = DynamicCompositeType.getInstance(aliases);
+        List<ByteBuffer> dynamicValues = new ArrayList<>();
+        char[] types = { 'b', 'i', 'I' };
+        for (int i = 0; i < 200; i++)
+        {
+            int size = 1 + random.nextInt(2);
+            char[] aliasOf = new char[size];
+            ByteBuffer[] components = new ByteBuffer[size];
+            for (int j = 0; j < size; j++)
+            {
+                aliasOf[j] = types[random.nextInt(types.length)];
+                components[j] = aliasOf[j] == 'b' ? randomBytes(2) : Int32Type.instance.decompose(random.nextInt(3));
+            }
+            dynamicValues.add(dynamicComposite(aliasOf, random.nextInt(3) - 1, components));
+        }
+        testType(dynamicType, dynamicValues);
+    }
+
+    @Test
+    public void testSupportsComparableBytes()
+    {
+        AbstractType<?> unsupported = DynamicCompositeType.getInstance(Collections.emptyMap());
+        for (AbstractType<?> type : Arrays.asList(UTF8Type.instance, Int32Type.instance, DecimalType.instance, TimeUUIDType.instance,
+                                                  EmptyType.instance, ReversedType.getInstance(LongType.instance),
+                                                  ListType.getInstance(DoubleType.instance, false),
+                                                  MapType.getInstance(BytesType.instance, Int32Type.instance, false),
+                                                  new TupleType(Arrays.asList(Int32Type.instance, UTF8Type.instance)),
+                                                  CompositeType.getInstance(UTF8Type.instance, ReversedType.getInstance(Int32Type.instance))))
+            assertTrue(type.toString(), type.supportsComparableBytes());
+
+        for (AbstractType<?> type : Arrays.asList(unsupported, CounterColumnType.instance, ReversedType.getInstance(unsupported),
+                                                  SetType.getInstance(unsupported, false),
+                                                  MapType.getInstance(Int32Type.instance, unsupported, false),
+                                                  new TupleType(Arrays.asList(Int32Type.instance, unsupported)),
+                                                  CompositeType.getInstance(UTF8Type.instance, unsupported)))
+            assertFalse(type.toString(), type.supportsComparableBytes());
+
+        // the local tokens of such types have no byte-comparable form, starting with the minimum one
+        LocalPartitioner partitioner = new LocalPartitioner(CompositeType.getInstance(UTF8Type.instance, unsupported));
+        assertNull(partitioner.getMinimumToken().asComparableBytes());
+        assertNull(partitioner.getToken(CompositeType.build(UTF8Type.instance.decompose("a"))).asComparableBytes());
+    }
+
+    @Test
+    public void testLocalTokens()
+    {
+        LocalPartitioner partitioner = new LocalPartitioner(ReversedType.getInstance(Int32Type.instance));
+        List<PartitionPosition> positions = new ArrayList<>();
+        positions.add(partitioner.getMinimumToken().minKeyBound());
+        positions.add(partitioner.getMinimumToken().maxKeyBound());
+        for (int i = 0; i < 100; i++)
+        {
+            DecoratedKey key = partitioner.decorateKey(Int32Type.instance.decompose(random.nextInt(50) - 25));
+            positions.add(key);
+            positions.add(random.nextBoolean() ? key.getToken().minKeyBound() : key.getToken().maxKeyBound());
+        }
+        for (PartitionPosition left : positions)
+            for (PartitionPosition right : positions)
+                assertEquals(left + " vs " + right,
+                             Integer.signum(left.compareTo(right)),
+                             Integer.signum(ByteComparable.compare(left, right)));
+    }
+
+    @Test
+    public void testClusterings()
+    {
+        ClusteringComparator comparator = new ClusteringComparator(Int32Type.instance, ReversedType.getInstance(UTF8Type.instance));
+        List<ClusteringPrefix> prefixes = new ArrayList<>();
+        prefixes.add(Clustering.STATIC_CLUSTERING);
+        prefixes.add(ClusteringBound.BOTTOM);
+        prefixes.add(ClusteringBound.TOP);
+        for (int i = 0; i < 200; i++)
+        {
+            ByteBuffer first = Int32Type.instance.decompose(random.nextInt(3));
+            ByteBuffer second = UTF8Type.instance.decompose(random.nextBoolean() ? "a" : random.nextBoolean() ? "ab" : "");
+            ClusteringPrefix.Kind kind = ClusteringPrefix.Kind.values()[random.nextInt(ClusteringPrefix.Kind.values().length)];
+            switch (kind)
+            {
+                case STATIC_CLUSTERING:
+                case CLUSTERING:
+                    prefixes.add(Clustering.make(first, second));
+                    break;
+                case EXCL_END_INCL_START_BOUNDARY:
+                case INCL_END_EXCL_START_BOUNDARY:
+                    prefixes.add(ClusteringBoundary.create(kind, new ByteBuffer[]{ first, second }));
+                    break;
+                default:
+                    prefixes.add(ClusteringBound.create(kind, random.nextBoolean() ? new ByteBuffer[]{ first } : new ByteBuffer[]{ first, second }));
+            }
+        }
+
+        for (ClusteringPrefix left : prefixes)
+            for (ClusteringPrefix right : prefixes)
+                assertEquals(describe(comparator, left) + " vs " + describe(comparator, right),
+                             Integer.signum(comparator.compare(left, right)),
+                             Integer.signum(ByteComparable.compare(comparator.asByteComparable(left), comparator.asByteComparable(right))));
+    }
+
+    @SafeVarargs
+    private static <T> List<ByteBuffer> values(AbstractType<T> type, T... values)
+    {
+        List<ByteBuffer> result = new ArrayList<>();
+        result.add(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        for (T value : values)
+            result.add(type.decompose(value));
+        return result;
+    }
+
+    private static List<ByteBuffer> nonEmpty(List<ByteBuffer> values)
+    {
+        values.removeIf(value -> !value.hasRemaining());
+        return values;
+    }
+
+    private static <T> void testType(AbstractType<T> type, List<ByteBuffer> values, Supplier<T> generator)
+    {
+        List<ByteBuffer> all = new ArrayList<>(values);
+        for (int i = 0; i < 100; i++)
+            all.add(type.decompose(generator.get()));
+        testType(type, all);
+    }
+
+    private static void testType(AbstractType<?> type, List<ByteBuffer> values)
+    {
+        // components are followed by a separator in any multi-component source
+        for (ByteBuffer left : values)
+            for (ByteBuffer right : values)
+                assertEquals(type + ": " + ByteBufferUtil.bytesToHex(left) + " vs " + ByteBufferUtil.bytesToHex(right),
+                             Integer.signum(type.compare(left, right)),
+                             Integer.signum(ByteSource.compare(ByteSource.concat(type.asComparableComponent(left), ByteSource.oneByte(ByteSource.TERMINATOR)),
+                                                               ByteSource.concat(type.asComparableComponent(right), ByteSource.oneByte(ByteSource.TERMINATOR)))));
+    }
+
+    private static String describe(ClusteringComparator comparator, ClusteringPrefix prefix)
+    {
+        StringBuilder builder = new StringBuilder(prefix.kind().toString()).append('(');
+        for (int i = 0; i < prefix.size(); i++)
+            builder.append(i == 0 ? "" : ", ").append(comparator.subtype(i).getString(prefix.get(i)));
+        return builder.append(')').toString();
+    }
+
+    private static ByteBuffer randomBytes(int maxLength)
+    {
+        byte[] bytes = new byte[random.nextInt(maxLength + 1)];
+        // restrict to a few values to have many equal prefixes, including the escaped 0
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) (random.nextInt(3) * 127);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static ByteBuffer composite(boolean isStatic, int lastEoc, ByteBuffer... components)
+    {
+        ByteBuffer value = CompositeType.build(isStatic, components);
+        value.put(value.limit() - 1, (byte) lastEoc);
+        return value;
+    }
+
+    private static ByteBuffer dynamicComposite(char[] aliases, int lastEoc, ByteBuffer... components)
+    {
+        int size = 0;
+        for (ByteBuffer component : components)
+            size += 2 + 2 + component.remaining() + 1;
+        ByteBuffer value = ByteBuffer.allocate(size);
+        for (int i = 0; i < components.length; i++)
+        {
+            value.putShort((short) (0x8000 | aliases[i]));
+            value.putShort((short) components[i].remaining());
+            value.put(components[i].duplicate());
+            value.put(i == components.length - 1 ? (byte) lastEoc : 0);
+        }
+        value.flip();
+        return value;
+    }
+}
@@ -432,6 +432,88 @@ public class BufferPoolTest
             BufferPool.put(buffer);
     }
 
+    @Test
+    public void testReusePartiallyFreeChunks()
+    {
+        BufferPool.MEMORY_USAGE_THRESHOLD = BufferPool.GlobalPool.MACRO_CHUNK_SIZE;
+        int numChunks = BufferPool.GlobalPool.MACRO_CHUNK_SIZE / BufferPool.NORMAL_CHUNK_SIZE;
+
+        // use 3/4 of every chunk, so that the local pool releases them with a quarter of their space still free
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < numChunks; i++)
+        {
+            ByteBuffer buffer = BufferPool.get(3 * BufferPool.NORMAL_CHUNK_SIZE / 4, BufferType.OFF_HEAP);
+            assertNotNull(BufferPool.Chunk.getParentChunk(buffer));
+            buffers.add(buffer);
+        }
+
+        // fill the chunks still in the local pool, then the chunks it released are reused rather than missing
+        int smallSize = BufferPool.NORMAL_CHUNK_SIZE / 8;
+        for (int i = 0; i < 2 * (BufferPool.unsafeNumChunks() + 1); i++)
+        {
+            ByteBuffer buffer = BufferPool.get(smallSize, BufferType.OFF_HEAP);
+            assertNotNull(BufferPool.Chunk.getParentChunk(buffer));
+            buffers.add(buffer);
+        }
+        assertEquals(BufferPool.GlobalPool.MACRO_CHUNK_SIZE, BufferPool.sizeInBytes());
+
+        for (ByteBuffer buffer : buffers)
+            BufferPool.put(buffer);
+    }
+
+    @Test
+    public void testNumaNodes()
+    {
+        BufferPool.MEMORY_USAGE_THRESHOLD = BufferPool.GlobalPool.MACRO_CHUNK_SIZE;
+        int numChunks = BufferPool.GlobalPool.MACRO_CHUNK_SIZE / BufferPool.NORMAL_CHUNK_SIZE;
+
+        int[] currentNode = new int[1];
+        BufferPool.GlobalPool pool = new BufferPool.GlobalPool(new NumaTopology(new int[0], 2)
+        {
+            int currentNode()
+            {
+                return currentNode[0];
+            }
+        });
+        assertEquals(2, pool.nodes());
+
+        // the chunks of the macro-chunk allocated by node 0 are stolen by node 1 once it can't allocate any more
+        List<BufferPool.Chunk> chunks = new ArrayList<>();
+        chunks.add(pool.get());
+        currentNode[0] = 1;
+        for (int i = 1; i < numChunks; i++)
+            chunks.add(pool.get());
+        assertNull(pool.get());
+        assertEquals(BufferPool.GlobalPool.MACRO_CHUNK_SIZE, pool.sizeInBytes());
+
+        // and go back to node 0 when recycled, which gets them first
+        for (BufferPool.Chunk chunk : chunks)
+            chunk.release();
+        assertEquals(BufferPool.GlobalPool.MACRO_CHUNK_SIZE, pool.availableBytes());
+        currentNode[0] = 0;
+        for (int i = 0; i < numChunks; i++)
+            assertNotNull(pool.get());
+        assertNull(pool.get());
+
+        pool.unsafeFree();
+    }
+
+    @Test
+    public void testNumaTopologyCpus()
+    {
+        int[] cpuNodes = NumaTopology.addCpus(new int[0], "0-3,8-11\n", 0);
+        cpuNodes = NumaTopology.addCpus(cpuNodes, "4-7,12-15,16", 1);
+        NumaTopology topology = new NumaTopology(cpuNodes, 2);
+
+        assertEquals(2, topology.nodes());
+        for (int cpu = 0; cpu < 16; cpu++)
+            assertEquals(cpu + " is on the wrong node", (cpu / 4) % 2, topology.node(cpu));
+        assertEquals(1, topology.node(16));
+        // unknown CPUs default to the first node
+        assertEquals(0, topology.node(17));
+        assertEquals(0, topology.node(-1));
+    }
+
     @Test
     public void testHeapBuffer()
     {